@@ -0,0 +1,290 @@
+package com.sblinn.superherosightings.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sblinn.superherosightings.dao.DataChangeTracker;
+import com.sblinn.superherosightings.dao.LocationDao;
+import com.sblinn.superherosightings.dao.OrganizationDao;
+import com.sblinn.superherosightings.dao.SightingDao;
+import com.sblinn.superherosightings.dao.SightingSortKey;
+import com.sblinn.superherosightings.dao.SuperheroDao;
+import com.sblinn.superherosightings.dao.SuperpowerDao;
+import com.sblinn.superherosightings.dto.Location;
+import com.sblinn.superherosightings.dto.Sighting;
+import com.sblinn.superherosightings.dto.Superhero;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Read-only JSON API over the DAOs, for dashboards which poll.
+ *
+ * Every response carries a strong ETag, the MD5 of its JSON body, and
+ * a request whose If-None-Match holds it gets 304 with no body. The
+ * serialized body and its ETag are kept per URL together with the
+ * DataChangeTracker version they were read at; until some DAO write
+ * advances that version, repeat requests are answered from memory
+ * without touching the database or serializing anything. After a write,
+ * a Superhero, Location or Sighting is re-read by id but only
+ * re-serialized if its row version has moved.
+ *
+ * @author Sara Blinn
+ */
+@RestController
+@RequestMapping(value = "/api/v1/")
+public class ApiController {
+
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static final int NO_ROW_VERSION = -1;
+
+    @Autowired
+    SuperheroDao superheroDao;
+
+    @Autowired
+    SuperpowerDao superpowerDao;
+
+    @Autowired
+    OrganizationDao organizationDao;
+
+    @Autowired
+    LocationDao locationDao;
+
+    @Autowired
+    SightingDao sightingDao;
+
+    @Autowired
+    DataChangeTracker changeTracker;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${sightings.page-size:25}")
+    private int defaultPageSize;
+
+    @Value("${api.response-cache.maximum-bytes:67108864}")
+    private long responseCacheMaximumBytes;
+
+    // request URL to the last response computed for it
+    private Cache<String, CachedResponse> responses;
+
+
+    @PostConstruct
+    private void initResponseCache() {
+        responses = Caffeine.newBuilder()
+                .maximumWeight(responseCacheMaximumBytes)
+                .weigher((String url, CachedResponse response)
+                        -> url.length() + response.body.length)
+                .build();
+    }
+
+    @GetMapping("superheros")
+    public ResponseEntity<byte[]> getSuperheros(HttpServletRequest request,
+            WebRequest webRequest) throws JsonProcessingException {
+        return respond(request, webRequest, superheroDao::getAllSuperheros);
+    }
+
+    @GetMapping("superheros/{id}")
+    public ResponseEntity<byte[]> getSuperhero(@PathVariable int id,
+            HttpServletRequest request, WebRequest webRequest)
+            throws JsonProcessingException {
+        return respond(request, webRequest,
+                () -> superheroDao.getSuperheroById(id),
+                Superhero::getVersion);
+    }
+
+    @GetMapping("superpowers")
+    public ResponseEntity<byte[]> getSuperpowers(HttpServletRequest request,
+            WebRequest webRequest) throws JsonProcessingException {
+        return respond(request, webRequest,
+                superpowerDao::getAllSuperpowers);
+    }
+
+    @GetMapping("superpowers/{id}")
+    public ResponseEntity<byte[]> getSuperpower(@PathVariable int id,
+            HttpServletRequest request, WebRequest webRequest)
+            throws JsonProcessingException {
+        return respond(request, webRequest,
+                () -> superpowerDao.getSuperpowerById(id));
+    }
+
+    @GetMapping("organizations")
+    public ResponseEntity<byte[]> getOrganizations(
+            HttpServletRequest request, WebRequest webRequest)
+            throws JsonProcessingException {
+        return respond(request, webRequest,
+                organizationDao::getAllOrganizations);
+    }
+
+    @GetMapping("organizations/{id}")
+    public ResponseEntity<byte[]> getOrganization(@PathVariable int id,
+            HttpServletRequest request, WebRequest webRequest)
+            throws JsonProcessingException {
+        return respond(request, webRequest,
+                () -> organizationDao.getOrganizationById(id));
+    }
+
+    @GetMapping("locations")
+    public ResponseEntity<byte[]> getLocations(HttpServletRequest request,
+            WebRequest webRequest) throws JsonProcessingException {
+        return respond(request, webRequest, locationDao::getAllLocations);
+    }
+
+    @GetMapping("locations/{id}")
+    public ResponseEntity<byte[]> getLocation(@PathVariable int id,
+            HttpServletRequest request, WebRequest webRequest)
+            throws JsonProcessingException {
+        return respond(request, webRequest,
+                () -> locationDao.getLocationById(id),
+                Location::getVersion);
+    }
+
+    /**
+     * One page of Sightings with their Superhero and Location. Follow
+     * nextCursor or previousCursor with the same sort and order.
+     *
+     * @param sort id, date, superhero or location
+     * @param order asc or desc
+     * @param size at most 500
+     * @param cursor
+     * @param request
+     * @param webRequest
+     * @return ResponseEntity<byte[]>
+     * @throws JsonProcessingException
+     */
+    @GetMapping("sightings")
+    public ResponseEntity<byte[]> getSightings(
+            @RequestParam(defaultValue = "date") String sort,
+            @RequestParam(defaultValue = "desc") String order,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String cursor,
+            HttpServletRequest request, WebRequest webRequest)
+            throws JsonProcessingException {
+
+        SightingSortKey sortKey;
+        try {
+            sortKey = SightingSortKey.valueOf(sort.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "sort must be id, date, superhero or location.");
+        }
+        if (!order.equals("asc") && !order.equals("desc")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "order must be asc or desc.");
+        }
+        int pageSize = size == null ? defaultPageSize : size;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "size must be 1 to " + MAX_PAGE_SIZE + ".");
+        }
+
+        return respond(request, webRequest,
+                () -> sightingDao.getSightingPage(sortKey,
+                        order.equals("desc"), pageSize, cursor));
+    }
+
+    @GetMapping("sightings/{id}")
+    public ResponseEntity<byte[]> getSighting(@PathVariable int id,
+            HttpServletRequest request, WebRequest webRequest)
+            throws JsonProcessingException {
+        return respond(request, webRequest,
+                () -> sightingDao.getSightingById(id),
+                Sighting::getVersion);
+    }
+
+    private ResponseEntity<byte[]> respond(HttpServletRequest request,
+            WebRequest webRequest, Supplier<?> loader)
+            throws JsonProcessingException {
+        return respond(request, webRequest, loader, null);
+    }
+
+    /**
+     * Answers from the cached response when no DAO write has happened
+     * since it was computed, otherwise loads the body afresh. It is only
+     * serialized again if rowVersion is null or gives a different row
+     * version than the cached body's. Responds 404 if loader returns
+     * null.
+     */
+    private <T> ResponseEntity<byte[]> respond(HttpServletRequest request,
+            WebRequest webRequest, Supplier<T> loader,
+            ToIntFunction<T> rowVersion) throws JsonProcessingException {
+
+        String url = request.getQueryString() == null
+                ? request.getRequestURI()
+                : request.getRequestURI() + "?" + request.getQueryString();
+
+        // read before loading, so a change committed meanwhile leaves
+        // the cached entry already out of date
+        long version = changeTracker.getVersion();
+        CachedResponse response = responses.getIfPresent(url);
+        if (response == null || response.version != version) {
+            T body = loader.get();
+            if (body == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }
+            int bodyVersion = rowVersion == null
+                    ? NO_ROW_VERSION : rowVersion.applyAsInt(body);
+            if (response != null && bodyVersion != NO_ROW_VERSION
+                    && response.rowVersion == bodyVersion) {
+                response = new CachedResponse(version, bodyVersion,
+                        response.etag, response.body);
+            } else {
+                byte[] json = objectMapper.writeValueAsBytes(body);
+                response = new CachedResponse(version, bodyVersion,
+                        "\"" + DigestUtils.md5DigestAsHex(json) + "\"",
+                        json);
+            }
+            responses.put(url, response);
+        }
+
+        if (webRequest.checkNotModified(response.etag)) {
+            // status 304 and the ETag header are already set
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(response.etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response.body);
+    }
+
+
+    /**
+     * A serialized body, its ETag and the data version it was read at,
+     * plus the row version of the entity in it (or NO_ROW_VERSION).
+     */
+    private static final class CachedResponse {
+
+        private final long version;
+        private final int rowVersion;
+        private final String etag;
+        private final byte[] body;
+
+
+        private CachedResponse(long version, int rowVersion, String etag,
+                byte[] body) {
+            this.version = version;
+            this.rowVersion = rowVersion;
+            this.etag = etag;
+            this.body = body;
+        }
+
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.sblinn.superherosightings.controller;
+
+import com.sblinn.superherosightings.dao.ChangeOutbox;
+import com.sblinn.superherosightings.dao.ChangePage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Feed of committed entity changes from the ChangeOutbox, for clients
+ * which keep a copy of the data and would otherwise poll every list.
+ *
+ * A client starts with since=0 (or after reading the lists it needs,
+ * with the nextCursor of an empty first page), then asks again with
+ * each page's nextCursor. When there is nothing new the request is
+ * held open as a long poll, without a servlet thread, until a change
+ * commits or wait seconds pass; a timed out poll returns an empty page
+ * and the same cursor.
+ *
+ * @author Sara Blinn
+ */
+@RestController
+@RequestMapping(value = "/api/v1/")
+public class ChangeFeedController {
+
+    private static final Logger LOGGER
+            = LoggerFactory.getLogger(ChangeFeedController.class);
+
+    private static final int MAX_LIMIT = 1000;
+
+    private static final int MAX_WAIT_SECONDS = 60;
+
+    @Autowired
+    ChangeOutbox changeOutbox;
+
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+
+    // set while a wake is queued and has not started reading yet, so a
+    // burst of commits is answered with one read per distinct cursor
+    private final AtomicBoolean wakeScheduled = new AtomicBoolean();
+
+    private ExecutorService notifier;
+
+
+    @PostConstruct
+    private void startNotifier() {
+        notifier = Executors.newSingleThreadExecutor((Runnable task) -> {
+            Thread thread = new Thread(task, "change-feed-notifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        changeOutbox.addListener(this::scheduleWake);
+    }
+
+    @PreDestroy
+    private void stopNotifier() {
+        notifier.shutdownNow();
+    }
+
+    /**
+     * Changes committed after since, oldest first.
+     *
+     * @param since 0, or the nextCursor of the previous page
+     * @param limit at most 1000
+     * @param wait seconds to hold the request open when there are no
+     * changes yet, at most 60; 0 answers at once
+     * @return DeferredResult<ChangePage>
+     */
+    @GetMapping("changes")
+    public DeferredResult<ChangePage> getChanges(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "25") int wait) {
+
+        if (since < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "since must not be negative.");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be 1 to " + MAX_LIMIT + ".");
+        }
+        if (wait < 0 || wait > MAX_WAIT_SECONDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "wait must be 0 to " + MAX_WAIT_SECONDS + " seconds.");
+        }
+
+        DeferredResult<ChangePage> result = new DeferredResult<>(
+                TimeUnit.SECONDS.toMillis(Math.max(wait, 1)),
+                new ChangePage(new ArrayList<>(), since));
+
+        ChangePage page = changeOutbox.getChangesSince(since, limit);
+        if (!page.getChanges().isEmpty() || wait == 0) {
+            result.setResult(page);
+            return result;
+        }
+
+        Waiter waiter = new Waiter(since, limit, result);
+        waiters.add(waiter);
+        result.onCompletion(() -> waiters.remove(waiter));
+        // a change committed after the read above, but before the waiter
+        // was added, has already notified without finding it
+        scheduleWake();
+        return result;
+    }
+
+    /**
+     * Called after every transaction which appended changes. Only queues
+     * the work, since it runs on the thread that committed.
+     */
+    private void scheduleWake() {
+        if (waiters.isEmpty() || !wakeScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            notifier.execute(this::wakeWaiters);
+        } catch (RejectedExecutionException ex) {
+            // shutting down
+            wakeScheduled.set(false);
+        }
+    }
+
+    /**
+     * Answers every waiter that now has changes, reading each distinct
+     * (since, limit) page once.
+     */
+    private void wakeWaiters() {
+        // a commit from here on schedules another wake
+        wakeScheduled.set(false);
+
+        Map<String, ChangePage> pages = new HashMap<>();
+        try {
+            for (Waiter waiter : waiters) {
+                if (waiter.result.isSetOrExpired()) {
+                    continue;
+                }
+                ChangePage page = pages.computeIfAbsent(
+                        waiter.since + ":" + waiter.limit,
+                        (String key) -> changeOutbox.getChangesSince(
+                                waiter.since, waiter.limit));
+                if (!page.getChanges().isEmpty()) {
+                    waiter.result.setResult(page);
+                }
+            }
+        } catch (DataAccessException ex) {
+            // waiters stay registered until the next change or timeout
+            LOGGER.warn("Could not read changes for waiting clients.", ex);
+        }
+    }
+
+
+    /**
+     * A held request and the page it is waiting for.
+     */
+    private static final class Waiter {
+
+        private final long since;
+        private final int limit;
+        private final DeferredResult<ChangePage> result;
+
+
+        private Waiter(long since, int limit,
+                DeferredResult<ChangePage> result) {
+            this.since = since;
+            this.limit = limit;
+            this.result = result;
+        }
+
+    }
+
+}
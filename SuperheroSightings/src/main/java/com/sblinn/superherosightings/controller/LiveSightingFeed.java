@@ -0,0 +1,367 @@
+package com.sblinn.superherosightings.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sblinn.superherosightings.dao.ChangeOutbox;
+import com.sblinn.superherosightings.dao.ChangePage;
+import com.sblinn.superherosightings.dao.SightingDao;
+import com.sblinn.superherosightings.dto.ChangeEvent;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes new Sightings to browsers as server-sent events once they are
+ * committed, whether by createSighting, createSightings or the
+ * write-behind queue.
+ *
+ * One thread follows the ChangeOutbox from the last change it saw.
+ * After each commit it reads the new Sightings once, with one query,
+ * serializes each once and queues it for every open connection. It
+ * never writes to a socket itself: a small pool of sender threads
+ * writes each connection's queue in order, so a browser reading slowly
+ * holds up at most one sender, never the broadcast. A connection whose
+ * queue fills is dropped, and the browser catches up by reconnecting.
+ * An open connection is only an SseEmitter and its queue, so no request
+ * thread is held while a browser waits.
+ *
+ * Each event's id is its change's cursor. A browser reconnecting with
+ * Last-Event-ID is sent the Sightings it missed, up to one page of
+ * changes, before rejoining the feed.
+ *
+ * @author Sara Blinn
+ */
+@Component
+public class LiveSightingFeed {
+
+    private static final Logger LOGGER
+            = LoggerFactory.getLogger(LiveSightingFeed.class);
+
+    private static final int PAGE_SIZE = 500;
+
+    // keeps idle connections open through proxies and finds dead ones
+    private static final long HEARTBEAT_SECONDS = 30;
+
+    private static final long RECONNECT_MILLIS = 5000;
+
+    @Autowired
+    ChangeOutbox changeOutbox;
+
+    @Autowired
+    SightingDao sightingDao;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${sightings.live.max-connections:5000}")
+    private int maxConnections;
+
+    @Value("${sightings.live.max-queued-events:100}")
+    private int maxQueuedEvents;
+
+    @Value("${sightings.live.sender-threads:4}")
+    private int senderThreads;
+
+    private final Set<Connection> subscribers = ConcurrentHashMap.newKeySet();
+    // open connections, including those not yet added to subscribers
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicBoolean pollScheduled = new AtomicBoolean();
+
+    // every read of the outbox and every event queued happens on this
+    // thread, so events reach each connection once and in order
+    private ScheduledExecutorService broadcaster;
+    private ExecutorService senders;
+    // last change broadcast; only used on the broadcaster thread
+    private long cursor = -1;
+
+
+    @PostConstruct
+    private void start() {
+        broadcaster = Executors.newSingleThreadScheduledExecutor(
+                (Runnable task) -> {
+                    Thread thread = new Thread(task, "live-sightings");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        senders = Executors.newFixedThreadPool(senderThreads,
+                (Runnable task) -> {
+                    Thread thread = new Thread(task, "live-sightings-send");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        broadcaster.execute(this::poll);
+        broadcaster.scheduleWithFixedDelay(this::sendHeartbeat,
+                HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        changeOutbox.addListener(this::schedulePoll);
+    }
+
+    @PreDestroy
+    private void stop() {
+        broadcaster.shutdownNow();
+        senders.shutdownNow();
+        subscribers.forEach(connection -> connection.emitter.complete());
+    }
+
+    /**
+     * Opens a connection which is sent each Sighting committed from now
+     * on, or from after lastEventId if it is given.
+     *
+     * @param lastEventId the id of the last event the browser received,
+     * or null
+     * @return SseEmitter
+     * @throws IllegalStateException if maxConnections are already open
+     * @throws IOException
+     */
+    public SseEmitter subscribe(Long lastEventId) throws IOException {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            throw new IllegalStateException(
+                    "Too many live sighting connections.");
+        }
+
+        SseEmitter emitter = newEmitter();
+        Connection connection = new Connection(emitter);
+        emitter.onTimeout(emitter::complete);
+        emitter.onCompletion(() -> {
+            subscribers.remove(connection);
+            connections.decrementAndGet();
+        });
+
+        emitter.send(SseEmitter.event().reconnectTime(RECONNECT_MILLIS));
+        try {
+            broadcaster.execute(() -> join(connection, lastEventId));
+        } catch (RejectedExecutionException ex) {
+            // shutting down
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    /**
+     * Creates the emitter for a new connection. The container's async
+     * request timeout applies; the browser reconnects with Last-Event-ID
+     * when it ends.
+     *
+     * @return SseEmitter
+     */
+    SseEmitter newEmitter() {
+        return new SseEmitter();
+    }
+
+    /**
+     * Called after every transaction which appended changes, on the
+     * thread that committed it. Only queues the work.
+     */
+    private void schedulePoll() {
+        if (!pollScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            broadcaster.execute(this::poll);
+        } catch (RejectedExecutionException ex) {
+            pollScheduled.set(false);
+        }
+    }
+
+    /**
+     * Broadcasts the Sightings created since the last poll and moves the
+     * cursor past every change read, Sighting or not.
+     */
+    private void poll() {
+        // a commit from here on schedules another poll
+        pollScheduled.set(false);
+        try {
+            if (cursor < 0) {
+                cursor = changeOutbox.getCurrentCursor();
+                return;
+            }
+            ChangePage page;
+            do {
+                page = changeOutbox.getChangesSince(cursor, PAGE_SIZE);
+                if (!subscribers.isEmpty()) {
+                    sendSightings(page.getChanges(), subscribers);
+                }
+                cursor = page.getNextCursor();
+            } while (page.getChanges().size() == PAGE_SIZE);
+        } catch (DataAccessException ex) {
+            // retried on the next commit
+            LOGGER.warn("Could not read new sightings for the live feed.",
+                    ex);
+        }
+    }
+
+    /**
+     * Catches a new connection up to the cursor and adds it to the
+     * broadcast.
+     */
+    private void join(Connection connection, Long lastEventId) {
+        try {
+            if (cursor < 0) {
+                cursor = changeOutbox.getCurrentCursor();
+            }
+            if (lastEventId != null && lastEventId < cursor) {
+                List<ChangeEvent> missed = changeOutbox.getChangesSince(
+                        lastEventId, PAGE_SIZE).getChanges();
+                // anything after the cursor is broadcast by the next poll
+                missed.removeIf((ChangeEvent change)
+                        -> change.getId() > cursor);
+                sendSightings(missed, Collections.singleton(connection));
+            }
+        } catch (DataAccessException ex) {
+            LOGGER.warn("Could not replay sightings for a live feed "
+                    + "connection.", ex);
+        }
+        subscribers.add(connection);
+    }
+
+    /**
+     * Queues the created Sightings among changes for each connection.
+     */
+    private void sendSightings(List<ChangeEvent> changes,
+            Collection<Connection> targets) {
+
+        // Sighting id to the id of the change creating it
+        Map<Integer, Long> changeIds = new LinkedHashMap<>();
+        for (ChangeEvent change : changes) {
+            if (change.getEntity().equals("Sighting")
+                    && change.getOperation().equals(ChangeEvent.CREATE)) {
+                changeIds.put(change.getEntity_id(), change.getId());
+            }
+        }
+        if (changeIds.isEmpty()) {
+            return;
+        }
+
+        for (SightingViewModel vmSighting
+                : sightingDao.getSightingViewModelsByIds(changeIds.keySet())) {
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(vmSighting);
+            } catch (JsonProcessingException ex) {
+                LOGGER.warn("Could not serialize a live sighting.", ex);
+                continue;
+            }
+            String id = String.valueOf(
+                    changeIds.get(vmSighting.getSighting().getId()));
+            for (Connection connection : targets) {
+                connection.queue(SseEmitter.event()
+                        .id(id)
+                        .name("sighting")
+                        .data(json, MediaType.APPLICATION_JSON));
+            }
+        }
+    }
+
+    private void sendHeartbeat() {
+        for (Connection connection : subscribers) {
+            connection.queue(SseEmitter.event().comment(""));
+        }
+    }
+
+
+    /**
+     * An open SseEmitter and the events waiting to be written to it.
+     * Events are queued by the broadcaster and written, in order, by
+     * one sender thread at a time. Only a sender calls the emitter once
+     * the connection has joined, since a write to a stalled socket holds
+     * the emitter's lock until the container gives up on it.
+     */
+    private final class Connection {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> events;
+        // set while a sender is scheduled or writing
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean closed;
+
+
+        private Connection(SseEmitter emitter) {
+            this.emitter = emitter;
+            this.events = new ArrayBlockingQueue<>(maxQueuedEvents);
+        }
+
+        /**
+         * Queues event and makes sure a sender will write it. Drops the
+         * connection if maxQueuedEvents are already waiting.
+         */
+        private void queue(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (!events.offer(event)) {
+                LOGGER.info("Dropping a live feed connection {} events "
+                        + "behind.", maxQueuedEvents);
+                close();
+            }
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::sendQueued);
+                } catch (RejectedExecutionException ex) {
+                    // shutting down
+                    closed = true;
+                }
+            }
+        }
+
+        /**
+         * Sender: writes queued events until none are left, completing
+         * the emitter instead once the connection is closed.
+         */
+        private void sendQueued() {
+            do {
+                SseEmitter.SseEventBuilder event;
+                while ((event = events.poll()) != null && !closed) {
+                    try {
+                        emitter.send(event);
+                    } catch (IOException | IllegalStateException ex) {
+                        // the browser has gone
+                        close();
+                    }
+                }
+                if (closed) {
+                    events.clear();
+                    emitter.complete();
+                    return;
+                }
+                sending.set(false);
+                // an event queued after the last poll but before the flag
+                // was cleared found a sender still running
+            } while (!events.isEmpty() && sending.compareAndSet(false, true));
+        }
+
+        /**
+         * Stops the broadcast to this connection. The emitter itself is
+         * completed by the sender, which is running or scheduled.
+         */
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+        }
+
+    }
+
+}
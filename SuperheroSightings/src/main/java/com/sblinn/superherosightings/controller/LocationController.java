@@ -2,17 +2,25 @@
 package com.sblinn.superherosightings.controller;
 
 import com.sblinn.superherosightings.dao.LocationDao;
+import com.sblinn.superherosightings.dao.LocationSpatialIndex;
+import com.sblinn.superherosightings.dao.SightingDao;
 import com.sblinn.superherosightings.dto.Location;
+import com.sblinn.superherosightings.dto.NearbyLocation;
+import java.util.ArrayList;
 import java.util.List;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.server.ResponseStatusException;
 
 /**
  *
@@ -25,6 +33,13 @@ public class LocationController {
     @Autowired
     LocationDao locationDao;
     
+    @Autowired
+    SightingDao sightingDao;
+    
+    private static final int DEFAULT_NEAREST = 10;
+    private static final int DEFAULT_NEARBY_LIMIT = 100;
+    private static final int MAX_NEARBY_LIMIT = 1000;
+    
     
     @GetMapping("locations")
     public String displayLocations(Model model) {
@@ -82,7 +97,12 @@ public class LocationController {
         if (result.hasErrors()) {
             return "location/edit";
         }
-        locationDao.updateLocation(location);
+        try {
+            locationDao.updateLocation(location);
+        } catch (OptimisticLockingFailureException e) {
+            // edited from a stale form: show the current values instead
+            return "redirect:/location/edit?id=" + location.getId() + "&conflict=true";
+        }
         
         return "redirect:/location/locations";
     }
@@ -103,4 +123,88 @@ public class LocationController {
         return "redirect:/location/locations";
     }
     
+    /**
+     * Returns Locations near lat/lng as JSON, nearest first, each with 
+     * its distance in kilometres. With radiusKm, up to limit Locations 
+     * within that radius; without it, the k nearest.
+     */
+    @GetMapping("nearby")
+    public ResponseEntity<List<NearbyLocation>> findNearbyLocations(
+            HttpServletRequest request) {
+        
+        int limit = parseInt(request, "limit", DEFAULT_NEARBY_LIMIT, 
+                MAX_NEARBY_LIMIT);
+        return ResponseEntity.ok(findNearby(request, limit));
+    }
+    
+    /**
+     * Returns up to limit of the most recent Sightings at the Locations 
+     * within radiusKm of lat/lng (or at the k nearest), newest first. 
+     * Up to 1000 Locations are searched.
+     */
+    @GetMapping("nearby/sightings")
+    public ResponseEntity<List<SightingViewModel>> findNearbySightings(
+            HttpServletRequest request) {
+        
+        List<Integer> locationIds = new ArrayList<>();
+        for (NearbyLocation nearby : findNearby(request, MAX_NEARBY_LIMIT)) {
+            locationIds.add(nearby.getLocation().getId());
+        }
+        int limit = parseInt(request, "limit", DEFAULT_NEARBY_LIMIT, 
+                MAX_NEARBY_LIMIT);
+        
+        return ResponseEntity.ok(sightingDao
+                .getMostRecentSightingsAtLocations(locationIds, limit));
+    }
+    
+    private List<NearbyLocation> findNearby(HttpServletRequest request, 
+            int limit) {
+        double latitude = parseDouble(request, "lat", -90, 90);
+        double longitude = parseDouble(request, "lng", -180, 180);
+        
+        if (request.getParameter("radiusKm") == null) {
+            int k = parseInt(request, "k", DEFAULT_NEAREST, 
+                    MAX_NEARBY_LIMIT);
+            return locationDao.getNearestLocations(latitude, longitude, k);
+        }
+        double radiusKm = parseDouble(request, "radiusKm", 0, 
+                LocationSpatialIndex.EARTH_RADIUS_KM * Math.PI);
+        return locationDao.getLocationsWithinRadius(latitude, longitude, 
+                radiusKm, limit);
+    }
+    
+    private static double parseDouble(HttpServletRequest request, 
+            String name, double min, double max) {
+        String value = request.getParameter(name);
+        try {
+            double parsed = value == null ? Double.NaN 
+                    : Double.parseDouble(value);
+            if (parsed >= min && parsed <= max) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                name + " must be a number from " + min + " to " + max + ".");
+    }
+    
+    private static int parseInt(HttpServletRequest request, String name, 
+            int defaultValue, int max) {
+        String value = request.getParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed >= 1 && parsed <= max) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                name + " must be a whole number from 1 to " + max + ".");
+    }
+    
 }
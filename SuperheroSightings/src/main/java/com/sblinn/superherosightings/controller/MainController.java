@@ -1,26 +1,34 @@
 
 package com.sblinn.superherosightings.controller;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import com.google.maps.model.LatLng;
+import com.sblinn.superherosightings.dao.ChangeOutbox;
 import com.sblinn.superherosightings.dao.LocationDao;
 import com.sblinn.superherosightings.dao.SightingDao;
 import com.sblinn.superherosightings.dao.SuperheroDao;
+import com.sblinn.superherosightings.dto.Coordinates;
 import com.sblinn.superherosightings.dto.Location;
-import com.sblinn.superherosightings.dto.Sighting;
+import com.sblinn.superherosightings.dto.SightingCluster;
 import org.springframework.beans.factory.annotation.Value;
 
 /**
@@ -41,85 +49,55 @@ public class MainController {
     @Autowired
     LocationDao locationDao;
     
+    @Autowired
+    SightingClusters sightingClusters;
+    
+    @Autowired
+    LiveSightingFeed liveSightingFeed;
+    
+    @Autowired
+    ChangeOutbox changeOutbox;
+    
     @Value("${maps.api.key}")
     private String mapsApiKey;
     
+    @Value("${sightings.recent.cache-ttl-ms:5000}")
+    private long recentSightingsTtl;
+    
+    private static final int NUM_RECENT_SIGHTINGS = 5;
+    
+    private volatile RecentSightings recentSightings;
+    
     
     @ModelAttribute("recentVMSightings")
     public void getRecentSightings(Model model) {
-        List<Sighting> dtoSightings 
-                = sightingDao.getAllSightings();
-
-        List<Sighting> recentSightings = new ArrayList<>();
-
-        List<SightingViewModel> vmSightings
-                = new ArrayList<>();
-
-        // sort from most recent -> oldest
-        dtoSightings.sort((s1, s2) -> 
-                s1.getDate().compareTo(s2.getDate()));
-        Collections.reverse(dtoSightings);
-        
-        for (int index = 0; index < 5; index++) {
-            recentSightings.add(dtoSightings.get(index));
-        }
-                
-        for (Sighting sighting : recentSightings) {
-            SightingViewModel s = new SightingViewModel();
-            s.setSighting(sighting);
-            s.setSuperhero(superheroDao.getSuperheroById(
-                    sighting.getSuperhero_id()));
-            s.setLocation(locationDao.getLocationById(
-                    sighting.getLocation_id()));
-            
-            vmSightings.add(s);
-        }
-
-        model.addAttribute("recentVMSightings", vmSightings);
+        RecentSightings recent = loadRecentSightings();
+        model.addAttribute("recentVMSightings", recent.vmSightings);
+        model.addAttribute("liveSightingsCursor", recent.cursor);
     }
 
 
     @GetMapping
     public String loadHomepage(Model model) {
         
-        List<Sighting> dtoSightings 
-                = sightingDao.getAllSightings();
-
-        List<Sighting> recentSightings = new ArrayList<>();
-
-        List<SightingViewModel> recentVMSightings
-                = new ArrayList<>();
-
-        // sort from oldest -> most recent
-        dtoSightings.sort((s1, s2) -> 
-                s1.getDate().compareTo(s2.getDate()));
-
-        int max = dtoSightings.size()-1;
-        for (int index = max; index > max-5; index--) {
-            recentSightings.add(dtoSightings.get(index));
-        }
-                
-        for (Sighting sighting : recentSightings) {
-            SightingViewModel s = new SightingViewModel();
-            s.setSighting(sighting);
-            s.setSuperhero(superheroDao.getSuperheroById(
-                    sighting.getSuperhero_id()));
-            s.setLocation(locationDao.getLocationById(
-                    sighting.getLocation_id()));
-            
-            recentVMSightings.add(s);
-        }
+        // already loaded for this request by getRecentSightings
+        @SuppressWarnings("unchecked")
+        List<SightingViewModel> recentVMSightings 
+                = (List<SightingViewModel>) model.getAttribute(
+                        "recentVMSightings");
 
         //display the most recent sighting location on the map
-        Location recentSightingLocation 
-            = recentVMSightings.get(0).getLocation();
-        
-
-        double latitude = recentSightingLocation.getLatitude().doubleValue();
-        double longitude = recentSightingLocation.getLongitude().doubleValue();
+        int latitude = 0;
+        int longitude = 0;
+        if (!recentVMSightings.isEmpty()) {
+            Location recentSightingLocation 
+                = recentVMSightings.get(0).getLocation();
+            latitude = recentSightingLocation.getLatitudeMicrodegrees();
+            longitude = recentSightingLocation.getLongitudeMicrodegrees();
+        }
 
-        String latStr = String.format("%.8f", latitude);
-        String lngStr = String.format("%.8f", longitude);
+        String latStr = Coordinates.format(latitude);
+        String lngStr = Coordinates.format(longitude);
 
         model.addAttribute("selectedLocationLat", latStr);
         model.addAttribute("selectedLocationLng", lngStr);
@@ -129,15 +107,8 @@ public class MainController {
         
         model.addAttribute("googleMapSrcURL", URL);
 
-        List<LatLng> latLngs = new ArrayList<>();
-        for (SightingViewModel sightingViewModel : recentVMSightings) {
-            Location location = sightingViewModel.getLocation();
-            double lat = location.getLatitude().doubleValue();
-            double lng = location.getLongitude().doubleValue();
-            latLngs.add(new LatLng(lat, lng));
-        }
-
-        model.addAttribute("recentSightingsLatLngs", latLngs);
+        // the map loads every Sighting from /map/clusters as it moves
+        model.addAttribute("showSightingClusters", true);
         
         return "home";
     }
@@ -148,11 +119,10 @@ public class MainController {
             int locationId = Integer.parseInt(request.getParameter("id"));
             Location location = locationDao.getLocationById(locationId);
 
-            double latitude = location.getLatitude().doubleValue();
-            double longitude = location.getLongitude().doubleValue();
-            
-            String latStr = String.format("%.8f", latitude);
-            String lngStr = String.format("%.8f", longitude);
+            String latStr 
+                    = Coordinates.format(location.getLatitudeMicrodegrees());
+            String lngStr 
+                    = Coordinates.format(location.getLongitudeMicrodegrees());
 
             model.addAttribute("selectedLocationLat", latStr);
             model.addAttribute("selectedLocationLng", lngStr);
@@ -165,5 +135,92 @@ public class MainController {
             return "home";
     }
 
+    /**
+     * Returns clustered markers for every Sighting inside the map 
+     * viewport bounded by west, south, east and north at the map's 
+     * zoom, so the browser receives a few hundred markers at most 
+     * however many Sightings there are.
+     */
+    @GetMapping("map/clusters")
+    public ResponseEntity<List<SightingCluster>> getSightingClusters(
+            @RequestParam int zoom, @RequestParam double west, 
+            @RequestParam double south, @RequestParam double east, 
+            @RequestParam double north) {
+        
+        try {
+            return ResponseEntity.ok(sightingClusters.getClusters(
+                    zoom, west, south, east, north));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                    e.getMessage());
+        }
+    }
+    
+    /**
+     * Streams Sightings committed after the homepage was rendered as 
+     * server-sent "sighting" events, each a SightingViewModel. since is 
+     * the cursor the page was rendered at; a reconnecting browser's 
+     * Last-Event-ID takes its place. Responds 503 when too many 
+     * browsers are connected.
+     */
+    @GetMapping(value = "sightings/live", 
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getLiveSightings(
+            @RequestParam(required = false) Long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) 
+                    Long lastEventId) throws IOException {
+        
+        try {
+            return liveSightingFeed.subscribe(
+                    lastEventId != null ? lastEventId : since);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+    
+    /**
+     * Returns the most recent Sightings, reusing the last result for 
+     * recentSightingsTtl milliseconds. Every page renders the recent 
+     * Sightings, so this keeps them to at most one query per TTL.
+     * 
+     * @return RecentSightings
+     */
+    private RecentSightings loadRecentSightings() {
+        RecentSightings cached = recentSightings;
+        long now = System.currentTimeMillis();
+        
+        if (cached == null || now - cached.loadedAt > recentSightingsTtl) {
+            // read first: a Sighting committed before the query but 
+            // after the cursor is pushed again, never missed
+            long cursor = changeOutbox.getCurrentCursor();
+            cached = new RecentSightings(
+                    sightingDao.getMostRecentSightings(NUM_RECENT_SIGHTINGS),
+                    now, cursor);
+            recentSightings = cached;
+        }
+        
+        return cached;
+    }
+    
+    /**
+     * Recent Sightings along with the time they were loaded and the 
+     * live feed cursor they are current to.
+     */
+    private static final class RecentSightings {
+        
+        private final List<SightingViewModel> vmSightings;
+        private final long loadedAt;
+        private final long cursor;
+
+        private RecentSightings(List<SightingViewModel> vmSightings, 
+                long loadedAt, long cursor) {
+            this.vmSightings = Collections.unmodifiableList(vmSightings);
+            this.loadedAt = loadedAt;
+            this.cursor = cursor;
+        }
+        
+    }
+
 
 }
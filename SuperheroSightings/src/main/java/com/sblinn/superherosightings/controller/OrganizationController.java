@@ -7,6 +7,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -82,16 +83,20 @@ public class OrganizationController {
                 = organizationDao.getOrganizationById(id);
         
         model.addAttribute("organization", organization);
-        model.addAttribute("superheros", superheroDao.getAllSuperheros());
+        model.addAttribute("superheros", 
+                superheroDao.getSuperheroSummaries());
         
         return "organization/edit";
     }
 
     @PostMapping("editOrganization")
     public String editOrganization(HttpServletRequest request, 
-            @Valid Organization organization, BindingResult result) {
+            @Valid Organization organization, BindingResult result, 
+            Model model) {
                 
         if (result.hasErrors()) {
+            model.addAttribute("superheros", 
+                    superheroDao.getSuperheroSummaries());
             return "organization/edit";
         }
         
@@ -105,7 +110,12 @@ public class OrganizationController {
         }
         
         organization.setMembers(selectedSuperheros);
-        organizationDao.updateOrganization(organization);
+        try {
+            organizationDao.updateOrganization(organization);
+        } catch (OptimisticLockingFailureException e) {
+            // edited from a stale form: show the current values instead
+            return "redirect:/organization/edit?id=" + organization.getId() + "&conflict=true";
+        }
         
         return "redirect:/organization/organizations";
     }
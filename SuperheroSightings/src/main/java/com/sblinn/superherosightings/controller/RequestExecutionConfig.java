@@ -0,0 +1,23 @@
+package com.sblinn.superherosightings.controller;
+
+import java.util.List;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Lets handlers using RequestLookups return a view name in platform
+ * mode and a CompletableFuture of one in async mode.
+ *
+ * @author Sara Blinn
+ */
+@Configuration
+public class RequestExecutionConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addReturnValueHandlers(
+            List<HandlerMethodReturnValueHandler> handlers) {
+        handlers.add(new ViewOrFutureReturnValueHandler());
+    }
+
+}
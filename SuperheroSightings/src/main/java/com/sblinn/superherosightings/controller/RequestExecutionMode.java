@@ -0,0 +1,24 @@
+package com.sblinn.superherosightings.controller;
+
+/**
+ * How requests and the DAO lookups inside them are run, set with
+ * requests.execution-mode.
+ *
+ * @author Sara Blinn
+ */
+public enum RequestExecutionMode {
+
+    /**
+     * Tomcat worker threads; a handler's lookups run one after another
+     * on the request thread, and the view is rendered without an async
+     * dispatch.
+     */
+    PLATFORM,
+
+    /**
+     * Tomcat worker threads; a handler's lookups run concurrently on a
+     * bounded pool, and the worker is released while they do.
+     */
+    ASYNC
+
+}
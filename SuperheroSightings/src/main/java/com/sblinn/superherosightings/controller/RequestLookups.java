@@ -0,0 +1,125 @@
+package com.sblinn.superherosightings.controller;
+
+import com.sblinn.superherosightings.metrics.JdbcStatementCounter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Runs the independent DAO lookups of a request as the configured
+ * RequestExecutionMode says. A handler starts each lookup with supply,
+ * combines the futures into a CompletableFuture of its view name and
+ * returns that through complete. In async mode Spring MVC renders the
+ * view once the future completes; in platform mode the lookups have
+ * already run and the handler returns the plain view name.
+ *
+ * In async mode the pool is as large as the connection pool, so
+ * throughput is set by the database and the pool's queue absorbs
+ * bursts; a request arriving with the queue full gets 503.
+ *
+ * @author Sara Blinn
+ */
+@Component
+public class RequestLookups {
+
+    @Autowired
+    JdbcStatementCounter statementCounter;
+
+    @Value("${requests.execution-mode:platform}")
+    private RequestExecutionMode mode;
+
+    @Value("${requests.async.pool-size:10}")
+    private int poolSize;
+
+    @Value("${requests.async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    // null in platform mode, where lookups run on the calling thread
+    private ExecutorService executor;
+
+
+    @PostConstruct
+    private void startExecutor() {
+        if (mode == RequestExecutionMode.ASYNC) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = new ThreadPoolExecutor(poolSize, poolSize,
+                    0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    (Runnable task) -> {
+                        Thread thread = new Thread(task, "request-lookup-"
+                                + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    @PreDestroy
+    private void stopExecutor() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Starts lookup, or in platform mode runs it before returning.
+     *
+     * @param <T>
+     * @param lookup
+     * @return CompletableFuture<T>
+     * @throws ResponseStatusException 503 if the async queue is full
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> lookup) {
+        if (executor == null) {
+            return CompletableFuture.completedFuture(lookup.get());
+        }
+        try {
+            // decorated here, on the request thread, so the lookup's
+            // statements count towards the request
+            return CompletableFuture.supplyAsync(lookup,
+                    (Runnable task) -> executor.execute(
+                            statementCounter.decorate(task)));
+        } catch (RejectedExecutionException ex) {
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many requests are waiting for the database.");
+        }
+    }
+
+    /**
+     * Returns what a handler declared to return Object should return
+     * for view (see ViewOrFutureReturnValueHandler): view itself in
+     * async mode, or in platform mode, where it has already completed,
+     * the view name, so no async dispatch is started.
+     *
+     * @param view
+     * @return Object
+     */
+    public Object complete(CompletableFuture<String> view) {
+        if (executor != null) {
+            return view;
+        }
+        try {
+            return view.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+package com.sblinn.superherosightings.controller;
+
+import com.sblinn.superherosightings.dto.SightingCluster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, pre-clustered Sighting markers for every zoom level from 0
+ * to maxZoom. At zoom z the Web Mercator world (256 * 2^z pixels wide)
+ * is cut into 64 pixel cells, and each cell holding any sighted
+ * Location becomes one SightingCluster. Each level is built by merging
+ * the 2 x 2 cells below it, so building costs one sort per level.
+ *
+ * Levels are stored as parallel primitive arrays sorted by cell key
+ * (column * cellsPerSide + row), so a viewport query is one binary
+ * search per visible column.
+ *
+ * @author Sara Blinn
+ */
+final class SightingClusterIndex {
+
+    private static final int CELLS_AT_ZOOM_0 = 4;
+    private static final int INDEX_BITS = 27;
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private final Level[] levels;
+
+
+    private SightingClusterIndex(Level[] levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Clusters the given Locations, weighted by their Sighting counts.
+     *
+     * @param maxZoom at most 16
+     * @param size number of Locations in the arrays
+     * @param locationIds
+     * @param latitudes
+     * @param longitudes
+     * @param sightings
+     * @return SightingClusterIndex
+     */
+    static SightingClusterIndex build(int maxZoom, int size,
+            int[] locationIds, double[] latitudes, double[] longitudes,
+            int[] sightings) {
+
+        if (maxZoom < 0 || maxZoom > 16) {
+            throw new IllegalArgumentException("maxZoom must be 0 to 16.");
+        }
+        if (size >= 1 << INDEX_BITS) {
+            throw new IllegalArgumentException("Too many Locations.");
+        }
+
+        int cellsPerSide = CELLS_AT_ZOOM_0 << maxZoom;
+        long[] keys = new long[size];
+        int[] locations = new int[size];
+        double[] sumX = new double[size];
+        double[] sumY = new double[size];
+        for (int i = 0; i < size; i++) {
+            double x = mercatorX(longitudes[i]);
+            double y = mercatorY(latitudes[i]);
+            keys[i] = (long) cell(x, cellsPerSide) * cellsPerSide
+                    + cell(y, cellsPerSide);
+            locations[i] = 1;
+            sumX[i] = x * sightings[i];
+            sumY[i] = y * sightings[i];
+        }
+
+        Level[] levels = new Level[maxZoom + 1];
+        levels[maxZoom] = Level.merge(cellsPerSide, keys,
+                Arrays.copyOf(sightings, size), locations,
+                Arrays.copyOf(locationIds, size), sumX, sumY, size);
+
+        for (int zoom = maxZoom - 1; zoom >= 0; zoom--) {
+            Level child = levels[zoom + 1];
+            int parentCells = child.cellsPerSide / 2;
+            long[] parentKeys = new long[child.size];
+            for (int i = 0; i < child.size; i++) {
+                long column = child.keys[i] / child.cellsPerSide;
+                long row = child.keys[i] % child.cellsPerSide;
+                parentKeys[i] = (column / 2) * parentCells + row / 2;
+            }
+            levels[zoom] = Level.merge(parentCells, parentKeys,
+                    child.sightings, child.locations, child.locationIds,
+                    child.sumX, child.sumY, child.size);
+        }
+        return new SightingClusterIndex(levels);
+    }
+
+    int getMaxZoom() {
+        return levels.length - 1;
+    }
+
+    /**
+     * Returns the clusters at zoom whose cells overlap the box. A box
+     * with west east of east crosses the antimeridian. Zooms past
+     * maxZoom use maxZoom's clusters.
+     *
+     * @param zoom
+     * @param west
+     * @param south
+     * @param east
+     * @param north
+     * @param maxCells the most cells the box may cover
+     * @return List<SightingCluster>
+     * @throws IllegalArgumentException if the box covers more than
+     * maxCells cells
+     */
+    List<SightingCluster> getClusters(int zoom, double west, double south,
+            double east, double north, int maxCells) {
+
+        Level level = levels[Math.max(0, Math.min(zoom, getMaxZoom()))];
+        int cells = level.cellsPerSide;
+
+        int firstRow = cell(mercatorY(north), cells);
+        int lastRow = cell(mercatorY(south), cells);
+        int firstColumn = cell(mercatorX(west), cells);
+        int lastColumn = cell(mercatorX(east), cells);
+        if (firstRow > lastRow) {
+            throw new IllegalArgumentException(
+                    "north must not be less than south.");
+        }
+        // columns are visited modulo cells, so wrap by extending past
+        // the last column; compare the longitudes, as both edges may
+        // fall in one column
+        if (west > east) {
+            lastColumn += cells;
+        }
+        if (lastColumn - firstColumn + 1 > cells) {
+            firstColumn = 0;
+            lastColumn = cells - 1;
+        }
+        long numCells = (long) (lastColumn - firstColumn + 1)
+                * (lastRow - firstRow + 1);
+        if (numCells > maxCells) {
+            throw new IllegalArgumentException("The box covers "
+                    + numCells + " cells at zoom " + zoom
+                    + "; the most allowed is " + maxCells + ".");
+        }
+
+        List<SightingCluster> clusters = new ArrayList<>();
+        for (int c = firstColumn; c <= lastColumn; c++) {
+            long column = c % cells;
+            long lastKey = column * cells + lastRow;
+            for (int i = level.lowerBound(column * cells + firstRow);
+                    i < level.size && level.keys[i] <= lastKey; i++) {
+                clusters.add(level.toCluster(i));
+            }
+        }
+        return clusters;
+    }
+
+    private static int cell(double fraction, int cellsPerSide) {
+        return Math.max(0, Math.min(cellsPerSide - 1,
+                (int) (fraction * cellsPerSide)));
+    }
+
+    private static double mercatorX(double longitude) {
+        return (longitude + 180) / 360;
+    }
+
+    private static double mercatorY(double latitude) {
+        double sin = Math.sin(Math.toRadians(
+                Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude))));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+
+    private static double longitude(double mercatorX) {
+        return mercatorX * 360 - 180;
+    }
+
+    private static double latitude(double mercatorY) {
+        return Math.toDegrees(Math.atan(Math.sinh(
+                Math.PI * (1 - 2 * mercatorY))));
+    }
+
+
+    /**
+     * The clusters at one zoom level.
+     */
+    private static final class Level {
+
+        private final int cellsPerSide;
+        private final int size;
+        private final long[] keys;
+        private final int[] sightings;
+        private final int[] locations;
+        // the only Location in the cell, or 0 if there are several
+        private final int[] locationIds;
+        // Sighting-weighted sums of Mercator coordinates
+        private final double[] sumX;
+        private final double[] sumY;
+
+
+        private Level(int cellsPerSide, int size) {
+            this.cellsPerSide = cellsPerSide;
+            this.size = size;
+            this.keys = new long[size];
+            this.sightings = new int[size];
+            this.locations = new int[size];
+            this.locationIds = new int[size];
+            this.sumX = new double[size];
+            this.sumY = new double[size];
+        }
+
+        /**
+         * Sorts entries by key and adds together those sharing a key.
+         */
+        private static Level merge(int cellsPerSide, long[] keys,
+                int[] sightings, int[] locations, int[] locationIds,
+                double[] sumX, double[] sumY, int size) {
+
+            // sort keys and entry indexes together as one long each
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = keys[i] << INDEX_BITS | i;
+            }
+            Arrays.sort(order);
+
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || order[i] >>> INDEX_BITS
+                        != order[i - 1] >>> INDEX_BITS) {
+                    distinct++;
+                }
+            }
+
+            Level level = new Level(cellsPerSide, distinct);
+            int out = -1;
+            for (int i = 0; i < size; i++) {
+                long key = order[i] >>> INDEX_BITS;
+                int from = (int) (order[i] & ((1 << INDEX_BITS) - 1));
+                if (out < 0 || level.keys[out] != key) {
+                    out++;
+                    level.keys[out] = key;
+                    level.locationIds[out] = locationIds[from];
+                } else {
+                    level.locationIds[out] = 0;
+                }
+                level.sightings[out] += sightings[from];
+                level.locations[out] += locations[from];
+                level.sumX[out] += sumX[from];
+                level.sumY[out] += sumY[from];
+            }
+            return level;
+        }
+
+        private int lowerBound(long key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        private SightingCluster toCluster(int i) {
+            return new SightingCluster(
+                    latitude(sumY[i] / sightings[i]),
+                    longitude(sumX[i] / sightings[i]),
+                    sightings[i], locations[i], locationIds[i]);
+        }
+
+    }
+
+}
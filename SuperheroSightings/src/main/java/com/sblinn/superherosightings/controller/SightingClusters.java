@@ -0,0 +1,125 @@
+package com.sblinn.superherosightings.controller;
+
+import com.sblinn.superherosightings.dao.SightingDao;
+import com.sblinn.superherosightings.dto.SightingCluster;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serves map markers for every Sighting from a SightingClusterIndex
+ * which is rebuilt from the database once it is older than ttlSeconds.
+ * Only the request which finds the index stale rebuilds it; requests
+ * arriving meanwhile are answered from the previous index.
+ *
+ * @author Sara Blinn
+ */
+@Component
+public class SightingClusters {
+
+    // a 1920 x 1080 viewport covers about 30 x 17 cells of 64 pixels
+    private static final int MAX_CELLS = 2000;
+
+    @Autowired
+    SightingDao sightingDao;
+
+    @Value("${sightings.map.max-zoom:16}")
+    private int maxZoom;
+
+    @Value("${sightings.map.cluster-ttl-seconds:60}")
+    private long ttlSeconds;
+
+    private volatile Snapshot snapshot;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+
+    /**
+     * Returns the clusters at zoom inside the box, a few hundred at most
+     * for a screen-sized box whatever the number of Sightings.
+     *
+     * @param zoom
+     * @param west
+     * @param south
+     * @param east
+     * @param north
+     * @return List<SightingCluster>
+     * @throws IllegalArgumentException if the box is far larger than a
+     * screen at that zoom
+     */
+    public List<SightingCluster> getClusters(int zoom, double west,
+            double south, double east, double north) {
+        return getIndex().getClusters(zoom, west, south, east, north,
+                MAX_CELLS);
+    }
+
+    private SightingClusterIndex getIndex() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    snapshot = new Snapshot(load());
+                }
+                return snapshot.index;
+            }
+        }
+        if (current.isOlderThan(ttlSeconds * 1000)
+                && rebuilding.compareAndSet(false, true)) {
+            try {
+                current = new Snapshot(load());
+                snapshot = current;
+            } finally {
+                rebuilding.set(false);
+            }
+        }
+        return current.index;
+    }
+
+    private SightingClusterIndex load() {
+        int[] size = {0};
+        int[][] ints = {new int[1024], new int[1024]};
+        double[][] doubles = {new double[1024], new double[1024]};
+
+        sightingDao.forEachLocationSightingCount(
+                (locationId, latitude, longitude, sightings) -> {
+                    if (size[0] == ints[0].length) {
+                        int capacity = size[0] * 2;
+                        ints[0] = Arrays.copyOf(ints[0], capacity);
+                        ints[1] = Arrays.copyOf(ints[1], capacity);
+                        doubles[0] = Arrays.copyOf(doubles[0], capacity);
+                        doubles[1] = Arrays.copyOf(doubles[1], capacity);
+                    }
+                    ints[0][size[0]] = locationId;
+                    ints[1][size[0]] = sightings;
+                    doubles[0][size[0]] = latitude;
+                    doubles[1][size[0]] = longitude;
+                    size[0]++;
+                });
+
+        return SightingClusterIndex.build(maxZoom, size[0], ints[0],
+                doubles[0], doubles[1], ints[1]);
+    }
+
+
+    /**
+     * An index and when it was built.
+     */
+    private static final class Snapshot {
+
+        private final SightingClusterIndex index;
+        private final long builtAt = System.currentTimeMillis();
+
+
+        private Snapshot(SightingClusterIndex index) {
+            this.index = index;
+        }
+
+        private boolean isOlderThan(long millis) {
+            return System.currentTimeMillis() - builtAt > millis;
+        }
+
+    }
+
+}
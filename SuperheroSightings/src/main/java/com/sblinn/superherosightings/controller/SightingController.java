@@ -1,24 +1,41 @@
 
 package com.sblinn.superherosightings.controller;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.sblinn.superherosightings.dao.LocationDao;
 import com.sblinn.superherosightings.dao.SightingDao;
+import com.sblinn.superherosightings.dao.SightingPage;
+import com.sblinn.superherosightings.dao.SightingSortKey;
+import com.sblinn.superherosightings.dao.SightingWriteBehindQueue;
 import com.sblinn.superherosightings.dao.SuperheroDao;
 import com.sblinn.superherosightings.dto.Location;
 import com.sblinn.superherosightings.dto.Sighting;
@@ -41,28 +58,30 @@ public class SightingController {
     @Autowired
     LocationDao locationDao;
     
+    @Autowired
+    SightingImporter sightingImporter;
+    
+    // present only when sightings.write-behind.enabled=true
+    @Autowired(required = false)
+    SightingWriteBehindQueue writeBehindQueue;
+    
+    @Value("${sightings.page-size:25}")
+    private int pageSize;
+    
+    @Value("${sightings.export.fetch-size:-2147483648}")
+    private int exportFetchSize;
+    
 
     @GetMapping("sightings")
-    public String displaySightings(Model model) {
-        List<Sighting> dtoSightings 
-                = sightingDao.getAllSightings();
+    public String displaySightings(HttpServletRequest request, 
+            Model model) {
         
-        List<SightingViewModel> vmSightings
-                = new ArrayList<>();
-
-        for (Sighting sighting : dtoSightings) {
-            SightingViewModel s = new SightingViewModel();
-            s.setSighting(sighting);
-            s.setSuperhero(superheroDao.getSuperheroById(
-                    sighting.getSuperhero_id()));
-            s.setLocation(locationDao.getLocationById(
-                    sighting.getLocation_id()));
-            
-            vmSightings.add(s);
-        }
+        SightingPage page = sightingDao.getSightingPage(
+                SightingSortKey.ID, false, pageSize, 
+                request.getParameter("cursor"));
 
-        model.addAttribute("vmSightings", vmSightings);
-        model.addAttribute("order");
+        model.addAttribute("vmSightings", page.getSightings());
+        model.addAttribute("page", page);
 
         return "sighting/sightings";
     }
@@ -71,73 +90,109 @@ public class SightingController {
     public String displaySightingsInOrder(HttpServletRequest request, 
             Model model) {
         
-        List<Sighting> dtoSightings 
-                = sightingDao.getAllSightings();
-
-        List<SightingViewModel> vmSightings
-                = new ArrayList<>();
-        for (Sighting sighting : dtoSightings) {
-            SightingViewModel s = new SightingViewModel();
-            s.setSighting(sighting);
-            s.setSuperhero(superheroDao.getSuperheroById(
-                    sighting.getSuperhero_id()));
-            s.setLocation(locationDao.getLocationById(
-                    sighting.getLocation_id()));
-            
-            vmSightings.add(s);
+        String orderRequest = request.getParameter("order");
+        if (orderRequest == null) {
+            orderRequest = "date-asc";
         }
         
-        String orderRequest = request.getParameter("order");
-
         // date-asc = most recent -> oldest
         // date-desc = oldest -> most recent
-        if (orderRequest.equals("date-asc") || 
-                orderRequest.equals("date-desc") || 
-                orderRequest.equals(null)) {
-
-            vmSightings.sort((s1, s2) -> 
-                    s1.getSighting().getDate().compareTo(
-                            s2.getSighting().getDate()));
-            
-            if (orderRequest.equals("date-asc") || 
-                    orderRequest.equals(null)) {
-                Collections.reverse(vmSightings);
-            }
-        };
-
-        // superhero-desc = Z-A
-        if (orderRequest.equals("superhero") ||
-            orderRequest.equals("superhero-desc")) {
-
-            vmSightings.sort((s1, s2) -> 
-                    (s1.getSuperhero().getName())
-                            .compareToIgnoreCase(
-                                    s2.getSuperhero().getName()));
-
-            if (orderRequest.equals("superhero-desc")) {
-                Collections.reverse(vmSightings);
-            }
-        };
-
-        if (orderRequest.equals("location") ||
-            orderRequest.equals("location-desc")) {
-
-            vmSightings.sort((s1, s2) -> 
-                    (s1.getLocation().getName())
-                            .compareToIgnoreCase(
-                                s2.getLocation().getName()));
-                        
-            if (orderRequest.equals("location-desc")) {
-                Collections.reverse(vmSightings);
-            }
-        };
+        // superhero-desc, location-desc = Z-A
+        SightingSortKey sortKey;
+        boolean descending;
+        switch (orderRequest) {
+            case "date-desc":
+                sortKey = SightingSortKey.DATE;
+                descending = false;
+                break;
+            case "superhero":
+            case "superhero-desc":
+                sortKey = SightingSortKey.SUPERHERO;
+                descending = orderRequest.equals("superhero-desc");
+                break;
+            case "location":
+            case "location-desc":
+                sortKey = SightingSortKey.LOCATION;
+                descending = orderRequest.equals("location-desc");
+                break;
+            default:
+                orderRequest = "date-asc";
+                sortKey = SightingSortKey.DATE;
+                descending = true;
+        }
+        
+        SightingPage page = sightingDao.getSightingPage(sortKey, 
+                descending, pageSize, request.getParameter("cursor"));
 
-        model.addAttribute("vmSightings", vmSightings);
-        model.addAttribute("order");
+        model.addAttribute("vmSightings", page.getSightings());
+        model.addAttribute("page", page);
+        model.addAttribute("order", orderRequest);
 
         return "sighting/sightings";
     }
 
+    /**
+     * Streams every Sighting with its Superhero and Location as CSV 
+     * (the default) or, with format=ndjson, as newline delimited JSON. 
+     * Rows are written as they are read from the database, so memory 
+     * use does not grow with the number of Sightings.
+     */
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> exportSightings(
+            HttpServletRequest request) {
+        
+        boolean ndjson = "ndjson".equalsIgnoreCase(
+                request.getParameter("format"));
+        
+        StreamingResponseBody body = (OutputStream out) -> {
+            Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            SightingExportWriter exportWriter = ndjson 
+                    ? SightingExportWriter.ndjson(writer) 
+                    : SightingExportWriter.csv(writer);
+            
+            exportWriter.writeHeader();
+            sightingDao.forEachSightingViewModel(exportFetchSize, 
+                    exportWriter);
+            exportWriter.flush();
+        };
+        
+        return ResponseEntity.ok()
+                .contentType(ndjson 
+                        ? MediaType.parseMediaType("application/x-ndjson") 
+                        : MediaType.parseMediaType("text/csv"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, 
+                        "attachment; filename=\"sightings." 
+                                + (ndjson ? "ndjson" : "csv") + "\"")
+                .body(body);
+    }
+    
+    /**
+     * Imports Sightings posted as CSV (Content-Type text/csv) or as a 
+     * JSON array (any other type), in the columns written by export. 
+     * Valid rows are inserted in chunks and the response lists the rows 
+     * which were rejected; a body which cannot be parsed is answered 
+     * with 400 after the rows before the bad one are imported.
+     */
+    @PostMapping("import")
+    public ResponseEntity<SightingImportResult> importSightings(
+            HttpServletRequest request) throws IOException {
+        
+        String contentType = request.getContentType();
+        SightingImportResult result;
+        if (contentType != null && contentType.contains("csv")) {
+            result = sightingImporter.importCsv(new BufferedReader(
+                    new InputStreamReader(request.getInputStream(), 
+                            StandardCharsets.UTF_8)));
+        } else {
+            result = sightingImporter.importJson(request.getInputStream());
+        }
+        
+        return result.isMalformed() 
+                ? ResponseEntity.badRequest().body(result) 
+                : ResponseEntity.ok(result);
+    }
+    
     @GetMapping("details")
     public String viewSightingDetails(HttpServletRequest request, Model model) {
         SightingViewModel sightingViewModel = new SightingViewModel();
@@ -160,18 +215,23 @@ public class SightingController {
     @GetMapping("add")
     public String displayAddSighting(Model model) {
         model.addAttribute("sighting", new Sighting());
-        model.addAttribute("superheros", superheroDao.getAllSuperheros());
-        model.addAttribute("locations", locationDao.getAllLocations());
+        model.addAttribute("superheros", superheroDao.getSuperheroSummaries());
+        model.addAttribute("locations", locationDao.getLocationSummaries());
 
         return "sighting/add";
     }
 
     @PostMapping("reportSighting")
     public String addSighting(HttpServletRequest request, 
+            HttpServletResponse response, 
             @Valid Sighting sighting,      
             BindingResult result, Model model) {
 
         if (result.hasErrors()) {
+            model.addAttribute("superheros", 
+                    superheroDao.getSuperheroSummaries());
+            model.addAttribute("locations", 
+                    locationDao.getLocationSummaries());
             return "sighting/add";
         }
 
@@ -181,7 +241,14 @@ public class SightingController {
         sighting.setSuperhero_id(Integer.parseInt(request.getParameter("sighting-superhero")));
         sighting.setLocation_id(Integer.parseInt(request.getParameter("sighting-location")));
 
-        sightingDao.createSighting(sighting);
+        if (writeBehindQueue == null) {
+            sightingDao.createSighting(sighting);
+        } else if (!writeBehindQueue.offer(sighting)) {
+            // queue full: tell the client to back off and resubmit
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, 
+                    "Too many sighting reports, try again shortly.");
+        }
         
         return "redirect:/sighting/sightings";
     }
@@ -192,17 +259,21 @@ public class SightingController {
         Sighting sighting = sightingDao.getSightingById(id);
 
         model.addAttribute("sighting", sighting);
-        model.addAttribute("superheros", superheroDao.getAllSuperheros());
-        model.addAttribute("locations", locationDao.getAllLocations());
+        model.addAttribute("superheros", superheroDao.getSuperheroSummaries());
+        model.addAttribute("locations", locationDao.getLocationSummaries());
         
         return "sighting/edit";
     }
 
     @PostMapping("editSighting")
     public String editSighting(HttpServletRequest request, @Valid Sighting sighting,     
-            BindingResult result) {
+            BindingResult result, Model model) {
 
         if (result.hasErrors()) {
+            model.addAttribute("superheros", 
+                    superheroDao.getSuperheroSummaries());
+            model.addAttribute("locations", 
+                    locationDao.getLocationSummaries());
             return "sighting/edit";
         }
 
@@ -210,7 +281,12 @@ public class SightingController {
         sighting.setLocation_id(Integer.parseInt(request.getParameter("sighting-location")));
         sighting.setDate(LocalDateTime.parse(request.getParameter("sighting-date")));
 
-        sightingDao.updateSighting(sighting);
+        try {
+            sightingDao.updateSighting(sighting);
+        } catch (OptimisticLockingFailureException e) {
+            // edited from a stale form: show the current values instead
+            return "redirect:/sighting/edit?id=" + sighting.getId() + "&conflict=true";
+        }
         
         return "redirect:/sighting/sightings";
     }
@@ -0,0 +1,149 @@
+package com.sblinn.superherosightings.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sblinn.superherosightings.dto.Location;
+import com.sblinn.superherosightings.dto.Sighting;
+import com.sblinn.superherosightings.dto.Superhero;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.function.Consumer;
+
+/**
+ * Writes SightingViewModels to a Writer as they arrive, one CSV line 
+ * or one NDJSON object per Sighting, so an export never holds more
+ * than one row.
+ *
+ * @author Sara Blinn
+ */
+public class SightingExportWriter implements Consumer<SightingViewModel> {
+
+    private static final String[] COLUMNS = {"sighting_id", "date",
+        "superhero_id", "superhero_name", "superhero_description",
+        "location_id", "location_name", "street_address", "city", "state",
+        "country", "latitude", "longitude", "location_description"};
+
+    private final Writer writer;
+    private final JsonGenerator json;
+
+
+    private SightingExportWriter(Writer writer, JsonGenerator json) {
+        this.writer = writer;
+        this.json = json;
+    }
+
+    public static SightingExportWriter csv(Writer writer) {
+        return new SightingExportWriter(writer, null);
+    }
+
+    public static SightingExportWriter ndjson(Writer writer)
+            throws IOException {
+        // each object ends its own line; no space before the next one
+        JsonGenerator json = new JsonFactory().createGenerator(writer)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+        return new SightingExportWriter(writer, json);
+    }
+
+    /**
+     * Writes the CSV header line. NDJSON has no header.
+     *
+     * @throws IOException
+     */
+    public void writeHeader() throws IOException {
+        if (json == null) {
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\r\n");
+        }
+    }
+
+    @Override
+    public void accept(SightingViewModel vm) {
+        Object[] values = getValues(vm);
+        try {
+            if (json == null) {
+                writeCsvLine(values);
+            } else {
+                writeJsonLine(values);
+            }
+        } catch (IOException e) {
+            // e.g. the client went away; abandons the query as well
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes anything buffered for the current row.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (json != null) {
+            json.flush();
+        }
+        writer.flush();
+    }
+
+    private Object[] getValues(SightingViewModel vm) {
+        Sighting sighting = vm.getSighting();
+        Superhero superhero = vm.getSuperhero();
+        Location location = vm.getLocation();
+
+        return new Object[] {sighting.getId(), sighting.getDate(),
+            superhero.getId(), superhero.getName(),
+            superhero.getDescription(), location.getId(),
+            location.getName(), location.getStreet_address(),
+            location.getCity(), location.getState(), location.getCountry(),
+            location.getLatitude(), location.getLongitude(),
+            location.getDescription()};
+    }
+
+    private void writeCsvLine(Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(escapeCsv(toText(values[i])));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeJsonLine(Object[] values) throws IOException {
+        json.writeStartObject();
+        for (int i = 0; i < values.length; i++) {
+            json.writeFieldName(COLUMNS[i]);
+            Object value = values[i];
+            if (value == null) {
+                json.writeNull();
+            } else if (value instanceof Integer) {
+                json.writeNumber((Integer) value);
+            } else if (value instanceof BigDecimal) {
+                json.writeNumber((BigDecimal) value);
+            } else {
+                json.writeString(value.toString());
+            }
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private static String toText(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        return value.toString();
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+}
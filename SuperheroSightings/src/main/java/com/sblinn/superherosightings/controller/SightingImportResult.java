@@ -0,0 +1,114 @@
+package com.sblinn.superherosightings.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk Sighting import: how many rows were read and
+ * inserted, and why the others were rejected. Only the first
+ * maxReportedErrors rejections are listed; errorCount counts them all.
+ *
+ * @author Sara Blinn
+ */
+public class SightingImportResult {
+
+    private final int maxReportedErrors;
+
+    private int rowsRead;
+    private int rowsImported;
+    private int errorCount;
+    private boolean malformed;
+    private long elapsedMillis;
+    private final List<RowError> errors = new ArrayList<>();
+
+
+    public SightingImportResult(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public int getRowsRead() {
+        return rowsRead;
+    }
+
+    void setRowsRead(int rowsRead) {
+        this.rowsRead = rowsRead;
+    }
+
+    public int getRowsImported() {
+        return rowsImported;
+    }
+
+    void addRowsImported(int count) {
+        this.rowsImported += count;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * True when the input could not be parsed past some row. Rows before
+     * it are still imported.
+     *
+     * @return boolean
+     */
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    void setMalformed(boolean malformed) {
+        this.malformed = malformed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0
+                ? rowsImported
+                : rowsImported * 1000L / elapsedMillis;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    void addError(int row, String message) {
+        errorCount++;
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new RowError(row, message));
+        }
+    }
+
+
+    /**
+     * A rejected row. Rows are numbered from 1 and do not count the CSV
+     * header.
+     */
+    public static final class RowError {
+
+        private final int row;
+        private final String message;
+
+
+        RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+    }
+
+}
@@ -0,0 +1,406 @@
+package com.sblinn.superherosightings.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sblinn.superherosightings.dao.LocationDao;
+import com.sblinn.superherosightings.dao.SightingDao;
+import com.sblinn.superherosightings.dao.SuperheroDao;
+import com.sblinn.superherosightings.dto.Sighting;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads Sightings from CSV or a JSON array and inserts them in chunks.
+ * Each chunk has its superhero and location ids checked with one query
+ * per table and is then inserted in one batch and one transaction, so
+ * a failed chunk never leaves part of itself behind and never undoes
+ * the chunks before it.
+ *
+ * Both formats need superhero_id, location_id and date fields; any
+ * others, such as the names written by /sighting/export, are ignored.
+ * Dates are ISO local date-times, with a 'T' or a space before the time.
+ *
+ * @author Sara Blinn
+ */
+@Component
+public class SightingImporter {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final int SUPERHERO_ID = 0;
+    private static final int LOCATION_ID = 1;
+    private static final int DATE = 2;
+    private static final String[] FIELDS
+            = {"superhero_id", "location_id", "date"};
+
+    @Autowired
+    SightingDao sightingDao;
+
+    @Autowired
+    SuperheroDao superheroDao;
+
+    @Autowired
+    LocationDao locationDao;
+
+    @Value("${sightings.import.chunk-size:5000}")
+    private int chunkSize;
+
+
+    public SightingImportResult importCsv(Reader reader) throws IOException {
+        return importRows(new CsvRowReader(reader));
+    }
+
+    public SightingImportResult importJson(InputStream in)
+            throws IOException {
+        return importRows(new JsonRowReader(in));
+    }
+
+    private SightingImportResult importRows(RowReader rows)
+            throws IOException {
+
+        long start = System.nanoTime();
+        SightingImportResult result
+                = new SightingImportResult(MAX_REPORTED_ERRORS);
+
+        List<Sighting> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkRows = new ArrayList<>(chunkSize);
+        int rowNum = 0;
+        try {
+            String[] fields;
+            while ((fields = rows.next()) != null) {
+                rowNum++;
+                Sighting sighting = toSighting(fields, rowNum, result);
+                if (sighting != null) {
+                    chunk.add(sighting);
+                    chunkRows.add(rowNum);
+                }
+                if (chunk.size() == chunkSize) {
+                    importChunk(chunk, chunkRows, result);
+                    chunk.clear();
+                    chunkRows.clear();
+                }
+            }
+        } catch (MalformedImportException ex) {
+            result.setMalformed(true);
+            result.addError(rowNum + 1, ex.getMessage());
+        } catch (JsonProcessingException ex) {
+            result.setMalformed(true);
+            result.addError(rowNum + 1, ex.getOriginalMessage());
+        }
+        importChunk(chunk, chunkRows, result);
+
+        result.setRowsRead(rowNum);
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Parses one row's fields, recording an error and returning null if
+     * any of them is missing or invalid.
+     */
+    private Sighting toSighting(String[] fields, int rowNum,
+            SightingImportResult result) {
+
+        int superheroId = parseId(fields[SUPERHERO_ID]);
+        int locationId = parseId(fields[LOCATION_ID]);
+        LocalDateTime date = parseDate(fields[DATE]);
+
+        List<String> invalid = new ArrayList<>();
+        if (superheroId <= 0) {
+            invalid.add(FIELDS[SUPERHERO_ID]);
+        }
+        if (locationId <= 0) {
+            invalid.add(FIELDS[LOCATION_ID]);
+        }
+        if (date == null) {
+            invalid.add(FIELDS[DATE]);
+        }
+        if (!invalid.isEmpty()) {
+            result.addError(rowNum, "Missing or invalid "
+                    + String.join(", ", invalid) + ".");
+            return null;
+        }
+
+        Sighting sighting = new Sighting();
+        sighting.setSuperhero_id(superheroId);
+        sighting.setLocation_id(locationId);
+        sighting.setDate(date);
+        return sighting;
+    }
+
+    /**
+     * Drops the Sightings whose Superhero or Location does not exist and
+     * inserts the rest in one transaction.
+     */
+    private void importChunk(List<Sighting> chunk, List<Integer> chunkRows,
+            SightingImportResult result) {
+
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<Integer> superheroIds = new HashSet<>();
+        Set<Integer> locationIds = new HashSet<>();
+        for (Sighting sighting : chunk) {
+            superheroIds.add(sighting.getSuperhero_id());
+            locationIds.add(sighting.getLocation_id());
+        }
+
+        List<Sighting> valid = new ArrayList<>(chunk.size());
+        List<Integer> validRows = new ArrayList<>(chunk.size());
+        try {
+            Set<Integer> existingSuperheroIds
+                    = superheroDao.getExistingSuperheroIds(superheroIds);
+            Set<Integer> existingLocationIds
+                    = locationDao.getExistingLocationIds(locationIds);
+
+            for (int i = 0; i < chunk.size(); i++) {
+                Sighting sighting = chunk.get(i);
+                if (!existingSuperheroIds.contains(
+                        sighting.getSuperhero_id())) {
+                    result.addError(chunkRows.get(i), "No Superhero with id "
+                            + sighting.getSuperhero_id() + ".");
+                } else if (!existingLocationIds.contains(
+                        sighting.getLocation_id())) {
+                    result.addError(chunkRows.get(i), "No Location with id "
+                            + sighting.getLocation_id() + ".");
+                } else {
+                    valid.add(sighting);
+                    validRows.add(chunkRows.get(i));
+                }
+            }
+
+            if (!valid.isEmpty()) {
+                result.addRowsImported(sightingDao.createSightings(valid));
+            }
+        } catch (DataAccessException ex) {
+            // valid is still empty if the id lookups themselves failed
+            List<Integer> failedRows = valid.isEmpty() ? chunkRows : validRows;
+            for (int rowNum : failedRows) {
+                result.addError(rowNum, "Not imported, the chunk failed: "
+                        + ex.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    private static int parseId(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private static LocalDateTime parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value.trim().replace(' ', 'T'));
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Supplies one row at a time as values ordered like FIELDS, with null
+     * for an absent field, or null after the last row.
+     */
+    private interface RowReader {
+
+        String[] next() throws IOException;
+
+    }
+
+
+    /**
+     * RFC 4180 CSV: a header line naming the columns (in any order and
+     * case), comma separated fields, and double quoted fields which may
+     * hold commas, doubled quotes and line breaks.
+     */
+    private static final class CsvRowReader implements RowReader {
+
+        private final Reader reader;
+        private final List<String> record = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private int[] columns;
+        private boolean eof;
+
+
+        private CsvRowReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            if (columns == null) {
+                readHeader();
+            }
+            while (readRecord()) {
+                // skip blank lines, such as a trailing line break
+                if (record.size() == 1 && record.get(0).isEmpty()) {
+                    continue;
+                }
+                String[] fields = new String[FIELDS.length];
+                for (int i = 0; i < FIELDS.length; i++) {
+                    if (columns[i] < record.size()) {
+                        fields[i] = record.get(columns[i]);
+                    }
+                }
+                return fields;
+            }
+            return null;
+        }
+
+        private void readHeader() throws IOException {
+            if (!readRecord()) {
+                throw new MalformedImportException("No CSV header line.");
+            }
+            columns = new int[FIELDS.length];
+            for (int i = 0; i < FIELDS.length; i++) {
+                columns[i] = -1;
+                for (int c = 0; c < record.size(); c++) {
+                    if (FIELDS[i].equalsIgnoreCase(record.get(c).trim())) {
+                        columns[i] = c;
+                    }
+                }
+                if (columns[i] == -1) {
+                    throw new MalformedImportException(
+                            "CSV header has no " + FIELDS[i] + " column.");
+                }
+            }
+        }
+
+        /**
+         * Reads the next line's fields into record, returning false at
+         * the end of the input.
+         */
+        private boolean readRecord() throws IOException {
+            if (eof) {
+                return false;
+            }
+            record.clear();
+            field.setLength(0);
+            boolean quoted = false;
+
+            int ch = reader.read();
+            if (ch == -1) {
+                eof = true;
+                return false;
+            }
+            while (true) {
+                if (quoted) {
+                    if (ch == -1) {
+                        throw new MalformedImportException(
+                                "Unterminated quoted CSV field.");
+                    } else if (ch == '"') {
+                        ch = reader.read();
+                        if (ch != '"') {
+                            quoted = false;
+                            continue;
+                        }
+                    }
+                    field.append((char) ch);
+                } else if (ch == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (ch == ',') {
+                    record.add(field.toString());
+                    field.setLength(0);
+                } else if (ch == '\n' || ch == -1) {
+                    eof = ch == -1;
+                    break;
+                } else if (ch != '\r') {
+                    field.append((char) ch);
+                }
+                ch = reader.read();
+            }
+            record.add(field.toString());
+            return true;
+        }
+
+    }
+
+
+    /**
+     * A JSON array of objects. Scalar fields are read as text so that
+     * ids and dates may be given as numbers or strings; nested values
+     * are skipped.
+     */
+    private static final class JsonRowReader implements RowReader {
+
+        private final JsonParser parser;
+        private boolean started;
+
+
+        private JsonRowReader(InputStream in) throws IOException {
+            this.parser = new JsonFactory().createParser(in);
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            if (!started) {
+                started = true;
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new MalformedImportException(
+                            "Expected a JSON array of sightings.");
+                }
+            }
+
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new MalformedImportException(
+                        "Expected a JSON object for each sighting.");
+            }
+
+            String[] fields = new String[FIELDS.length];
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value.isStructStart()) {
+                    parser.skipChildren();
+                    continue;
+                }
+                for (int i = 0; i < FIELDS.length; i++) {
+                    if (FIELDS[i].equals(name)
+                            && value != JsonToken.VALUE_NULL) {
+                        fields[i] = parser.getText();
+                    }
+                }
+            }
+            return fields;
+        }
+
+    }
+
+
+    /**
+     * The input cannot be read past the current row.
+     */
+    private static final class MalformedImportException extends IOException {
+
+        private MalformedImportException(String message) {
+            super(message);
+        }
+
+    }
+
+}
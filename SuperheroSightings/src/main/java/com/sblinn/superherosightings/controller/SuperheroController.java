@@ -3,11 +3,13 @@ package com.sblinn.superherosightings.controller;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -16,10 +18,13 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 
 import com.sblinn.superherosightings.dao.OrganizationDao;
+import com.sblinn.superherosightings.dao.SightingDao;
 import com.sblinn.superherosightings.dao.SuperheroDao;
 import com.sblinn.superherosightings.dao.SuperpowerDao;
+import com.sblinn.superherosightings.dto.EntitySummary;
 import com.sblinn.superherosightings.dto.Organization;
 import com.sblinn.superherosightings.dto.Superhero;
+import com.sblinn.superherosightings.dto.SuperheroSightingStats;
 import com.sblinn.superherosightings.dto.Superpower;
 
 /**
@@ -38,6 +43,12 @@ public class SuperheroController {
 
     @Autowired
     OrganizationDao organizationDao;
+
+    @Autowired
+    SightingDao sightingDao;
+    
+    @Autowired
+    RequestLookups lookups;
     
     
     @GetMapping("superheros")
@@ -50,18 +61,35 @@ public class SuperheroController {
         return "superhero/superheros";
     }
 
+    // a view name, or in async mode a CompletableFuture of one
     @GetMapping("details")
-    public String viewSuperhero(HttpServletRequest request, Model model) {
+    public Object viewSuperhero(
+            HttpServletRequest request, Model model) {
+        
         int id = Integer.parseInt(request.getParameter("id"));
-        Superhero superhero = superheroDao.getSuperheroById(id);
-
-        model.addAttribute("superhero", superhero);
-        model.addAttribute("superpowers", 
-                superpowerDao.getSuperpowersForSuperhero(id));
-        model.addAttribute("organizations", 
-                organizationDao.getOrganizationsForSuperhero(id));
         
-        return "superhero/details";
+        // none of these depends on another, so they run side by side
+        CompletableFuture<Superhero> superhero = lookups.supply(
+                () -> superheroDao.getSuperheroById(id));
+        CompletableFuture<List<Superpower>> superpowers = lookups.supply(
+                () -> superpowerDao.getSuperpowersForSuperhero(id));
+        CompletableFuture<List<Organization>> organizations = lookups.supply(
+                () -> organizationDao.getOrganizationsForSuperhero(id));
+        CompletableFuture<SuperheroSightingStats> sightingStats 
+                = lookups.supply(
+                        () -> sightingDao.getSuperheroSightingStats(id));
+        
+        return lookups.complete(CompletableFuture.allOf(superhero, 
+                superpowers, organizations, sightingStats)
+                .thenApply((Void done) -> {
+                    model.addAttribute("superhero", superhero.join());
+                    model.addAttribute("superpowers", superpowers.join());
+                    model.addAttribute("organizations", 
+                            organizations.join());
+                    model.addAttribute("sightingStats", 
+                            sightingStats.join());
+                    return "superhero/details";
+                }));
     }
     
     @GetMapping("add")
@@ -74,9 +102,9 @@ public class SuperheroController {
         model.addAttribute("superhero", 
                 superheroViewModel.getSuperhero());
         model.addAttribute("allSuperpowers", 
-                superpowerDao.getAllSuperpowers());
+                superpowerDao.getSuperpowerSummaries());
         model.addAttribute("allOrganizations", 
-                organizationDao.getAllOrganizations());
+                organizationDao.getOrganizationSummaries());
 
         return "superhero/add";
     }
@@ -118,52 +146,63 @@ public class SuperheroController {
                 model.addAttribute("superhero", 
                         superheroViewModel.getSuperhero());
                 model.addAttribute("allSuperpowers", 
-                        superpowerDao.getAllSuperpowers());
+                        superpowerDao.getSuperpowerSummaries());
                 model.addAttribute("allOrganizations", 
-                        organizationDao.getAllOrganizations());
+                        organizationDao.getOrganizationSummaries());
                 return "superhero/add";
         }
         
         superheroDao.createSuperhero(superhero);
         
         // add selected superpowers to bridge table
-        for (Superpower superpower : superpowers) {
-            superpowerDao.addSuperpowerForSuperhero(superpower, 
-                    superhero);
-        }
+        superpowerDao.addSuperpowersForSuperhero(superhero, superpowers);
 
         // add new superhero's affiliations to bridge table
-        for (Organization org : organizations) {
-            organizationDao.addOrganizationMember(org, superhero);
-        }
+        organizationDao.addOrganizationsForSuperhero(superhero, 
+                organizations);
 
         return "redirect:/superhero/superheros";
     }
     
+    // a view name, or in async mode a CompletableFuture of one
     @GetMapping("edit")
-    public String displayEditSuperhero(HttpServletRequest request, 
-            Model model) {
+    public Object displayEditSuperhero(
+            HttpServletRequest request, Model model) {
         
         int superheroId 
                 = Integer.parseInt(request.getParameter("id"));
-        Superhero superhero 
-                = superheroDao.getSuperheroById(superheroId);
         
-        SuperheroViewModel superheroViewModel = new SuperheroViewModel();
-        superheroViewModel.setSuperhero(superhero);
-        superheroViewModel.setSuperpowers(
-                superpowerDao.getSuperpowersForSuperhero(superheroId));
-        superheroViewModel.setOrganizations(
-                organizationDao.getOrganizationsForSuperhero(superheroId));
-
-        model.addAttribute("superheroViewModel", superheroViewModel);
-        model.addAttribute("superhero", superhero);
-        model.addAttribute("allSuperpowers", 
-                superpowerDao.getAllSuperpowers());
-        model.addAttribute("allOrganizations", 
-                organizationDao.getAllOrganizations());
+        CompletableFuture<Superhero> superhero = lookups.supply(
+                () -> superheroDao.getSuperheroById(superheroId));
+        CompletableFuture<List<Superpower>> superpowers = lookups.supply(
+                () -> superpowerDao.getSuperpowersForSuperhero(superheroId));
+        CompletableFuture<List<Organization>> organizations = lookups.supply(
+                () -> organizationDao.getOrganizationsForSuperhero(
+                        superheroId));
+        CompletableFuture<List<EntitySummary>> allSuperpowers 
+                = lookups.supply(superpowerDao::getSuperpowerSummaries);
+        CompletableFuture<List<EntitySummary>> allOrganizations 
+                = lookups.supply(organizationDao::getOrganizationSummaries);
         
-        return "superhero/edit";
+        return lookups.complete(CompletableFuture.allOf(superhero, 
+                superpowers, organizations, allSuperpowers, 
+                allOrganizations).thenApply((Void done) -> {
+                    SuperheroViewModel superheroViewModel 
+                            = new SuperheroViewModel();
+                    superheroViewModel.setSuperhero(superhero.join());
+                    superheroViewModel.setSuperpowers(superpowers.join());
+                    superheroViewModel.setOrganizations(
+                            organizations.join());
+
+                    model.addAttribute("superheroViewModel", 
+                            superheroViewModel);
+                    model.addAttribute("superhero", superhero.join());
+                    model.addAttribute("allSuperpowers", 
+                            allSuperpowers.join());
+                    model.addAttribute("allOrganizations", 
+                            allOrganizations.join());
+                    return "superhero/edit";
+                }));
     }
 
     @PostMapping("edit")
@@ -204,55 +243,28 @@ public class SuperheroController {
                         superheroViewModel);
                 model.addAttribute("superhero", superhero);
                 model.addAttribute("allSuperpowers", 
-                        superpowerDao.getAllSuperpowers());
+                        superpowerDao.getSuperpowerSummaries());
                 model.addAttribute("allOrganizations", 
-                        organizationDao.getAllOrganizations());
+                        organizationDao.getOrganizationSummaries());
                 
 
                 return "superhero/edit";
         }
 
-        superheroDao.updateSuperhero(superhero);
+        try {
+            superheroDao.updateSuperhero(superhero);
+        } catch (OptimisticLockingFailureException e) {
+            // edited from a stale form: show the current values instead
+            return "redirect:/superhero/edit?id=" + superhero.getId() + "&conflict=true";
+        }
         
         // UPDATE SUPERPOWERS
-        List<Superpower> formerSuperpowers 
-                = superpowerDao.getSuperpowersForSuperhero(
-                        superhero.getId());
-        
-        //delete any former superpowers that were deselected
-        for (Superpower formerSuperpower : formerSuperpowers) {
-            if (!selectedSuperpowers.contains(formerSuperpower)) {
-                superpowerDao.deleteSuperpowerForSuperhero(
-                        formerSuperpower, superhero.getId());
-            }
-        }
-        // add selected superpowers
-        for (Superpower selectedSuperpower : selectedSuperpowers) {
-            if (!formerSuperpowers.contains(selectedSuperpower)) {
-                superpowerDao.addSuperpowerForSuperhero(
-                        selectedSuperpower, superhero);
-            }
-        }
+        superpowerDao.setSuperpowersForSuperhero(superhero.getId(), 
+                selectedSuperpowers);
         
         // UPDATE ORGANIZATIONS
-        List<Organization> formerOrganizations 
-                = organizationDao.getOrganizationsForSuperhero(
-                        superhero.getId());
-        
-        // delete any former affiliations that were deselected
-        for (Organization formerOrg : formerOrganizations) {
-            if (!selectedOrgs.contains(formerOrg)) {
-                organizationDao.deleteOrganizationMember(formerOrg, 
-                        superhero.getId());
-            }
-        }
-        // add new affiliations
-        for (Organization selectedOrg : selectedOrgs) {
-            if (!formerOrganizations.contains(selectedOrg)) {
-            organizationDao.addOrganizationMember(selectedOrg, 
-                    superhero);
-            }
-        }
+        organizationDao.setOrganizationsForSuperhero(superhero.getId(), 
+                selectedOrgs);
         
         return "redirect:/superhero/superheros";
     }
@@ -7,6 +7,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -77,7 +78,7 @@ public class SuperpowerController {
         model.addAttribute("superpower", superpower);
         model.addAttribute("selectedSuperheros", superpower.getSuperheros());
         model.addAttribute("allSuperheros", 
-                superheroDao.getAllSuperheros());
+                superheroDao.getSuperheroSummaries());
 
         return "superpower/edit";
     }
@@ -102,12 +103,17 @@ public class SuperpowerController {
             model.addAttribute("selectedSuperheros",
                 selectedSuperheros);
             model.addAttribute("allSuperheros", 
-                superheroDao.getAllSuperheros());
+                superheroDao.getSuperheroSummaries());
             return "superpower/edit";
         }
         
         superpower.setSuperheros(selectedSuperheros);
-        superpowerDao.updateSuperpower(superpower);
+        try {
+            superpowerDao.updateSuperpower(superpower);
+        } catch (OptimisticLockingFailureException e) {
+            // edited from a stale form: show the current values instead
+            return "redirect:/superpower/edit?id=" + superpower.getId() + "&conflict=true";
+        }
         
         return "redirect:/superpower/superpowers";
     }
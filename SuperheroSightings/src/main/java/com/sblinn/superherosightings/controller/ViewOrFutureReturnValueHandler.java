@@ -0,0 +1,51 @@
+package com.sblinn.superherosightings.controller;
+
+import java.util.concurrent.CompletionStage;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.DeferredResultMethodReturnValueHandler;
+import org.springframework.web.servlet.mvc.method.annotation.ViewNameMethodReturnValueHandler;
+
+/**
+ * Handles the value of a controller method declared to return Object,
+ * as those returning RequestLookups.complete are: a view name is
+ * rendered at once on the request thread, and only a CompletionStage
+ * of one starts async processing.
+ *
+ * Spring MVC picks a return value handler by the declared type, so a
+ * method declared to return CompletableFuture always goes through an
+ * async dispatch, even when its future has already completed.
+ *
+ * @author Sara Blinn
+ */
+final class ViewOrFutureReturnValueHandler
+        implements HandlerMethodReturnValueHandler {
+
+    private final HandlerMethodReturnValueHandler viewNames
+            = new ViewNameMethodReturnValueHandler();
+    private final HandlerMethodReturnValueHandler futures
+            = new DeferredResultMethodReturnValueHandler();
+
+
+    @Override
+    public boolean supportsReturnType(MethodParameter returnType) {
+        return returnType.getParameterType() == Object.class;
+    }
+
+    @Override
+    public void handleReturnValue(Object returnValue,
+            MethodParameter returnType, ModelAndViewContainer mavContainer,
+            NativeWebRequest webRequest) throws Exception {
+
+        if (returnValue instanceof CompletionStage) {
+            futures.handleReturnValue(returnValue, returnType,
+                    mavContainer, webRequest);
+        } else {
+            viewNames.handleReturnValue(returnValue, returnType,
+                    mavContainer, webRequest);
+        }
+    }
+
+}
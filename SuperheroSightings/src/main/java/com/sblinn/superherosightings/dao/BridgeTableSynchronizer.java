@@ -0,0 +1,205 @@
+package com.sblinn.superherosightings.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Brings the rows of a two column bridge table for one owner in line
+ * with a desired set of member ids. Only the rows which differ are
+ * inserted or deleted, in JDBC batches, so an unchanged membership
+ * does not touch the table at all.
+ *
+ * @author Sara Blinn
+ */
+public class BridgeTableSynchronizer {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String selectMemberIds;
+    private final String insertMember;
+    private final String deleteMember;
+
+
+    /**
+     * @param jdbcTemplate
+     * @param table bridge table name
+     * @param ownerColumn column holding the id being synchronized for
+     * @param memberColumn column holding the related ids
+     */
+    public BridgeTableSynchronizer(JdbcTemplate jdbcTemplate, String table,
+            String ownerColumn, String memberColumn) {
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.selectMemberIds = "SELECT " + memberColumn + " "
+                + "FROM " + table + " "
+                + "WHERE " + ownerColumn + " = ? "
+                + "ORDER BY " + memberColumn + ";";
+        // no trailing semicolon so the driver can rewrite the batch
+        this.insertMember = "INSERT INTO " + table + " "
+                + "(" + ownerColumn + ", " + memberColumn + ") "
+                + "VALUES(?,?)";
+        this.deleteMember = "DELETE FROM " + table + " "
+                + "WHERE " + ownerColumn + " = ? AND " + memberColumn + " = ?";
+    }
+
+    /**
+     * Makes desiredMemberIds the only members of the owner, returning
+     * the number of rows inserted and deleted.
+     *
+     * @param ownerId
+     * @param desiredMemberIds may be unsorted and hold repeats
+     * @return int
+     */
+    public int synchronize(int ownerId, int[] desiredMemberIds) {
+        return synchronize(ownerId, desiredMemberIds, null);
+    }
+
+    /**
+     * As synchronize(ownerId, desiredMemberIds), also passing each member
+     * id whose row was inserted or deleted to changedMembers.
+     *
+     * @param ownerId
+     * @param desiredMemberIds may be unsorted and hold repeats
+     * @param changedMembers may be null
+     * @return int
+     */
+    public int synchronize(int ownerId, int[] desiredMemberIds,
+            IntConsumer changedMembers) {
+        int[] current = getMemberIds(ownerId);
+        int[] desired = sortedDistinct(desiredMemberIds);
+
+        int[] toInsert = new int[desired.length];
+        int[] toDelete = new int[current.length];
+        int numToInsert = 0;
+        int numToDelete = 0;
+
+        // merge the two sorted arrays, keeping ids found in only one
+        int c = 0;
+        int d = 0;
+        while (c < current.length || d < desired.length) {
+            if (d == desired.length
+                    || (c < current.length && current[c] < desired[d])) {
+                toDelete[numToDelete++] = current[c++];
+            } else if (c == current.length || desired[d] < current[c]) {
+                toInsert[numToInsert++] = desired[d++];
+            } else {
+                c++;
+                d++;
+            }
+        }
+
+        batchUpdate(deleteMember, ownerId, toDelete, numToDelete);
+        batchUpdate(insertMember, ownerId, toInsert, numToInsert);
+
+        if (changedMembers != null) {
+            for (int i = 0; i < numToDelete; i++) {
+                changedMembers.accept(toDelete[i]);
+            }
+            for (int i = 0; i < numToInsert; i++) {
+                changedMembers.accept(toInsert[i]);
+            }
+        }
+
+        return numToInsert + numToDelete;
+    }
+
+    /**
+     * Returns the ids of entities, sorted and without repeats, skipping
+     * null entities. The array is built straight from the list, without
+     * boxing any id, and is what synchronize takes.
+     *
+     * @param <T> entity type
+     * @param entities
+     * @param idOf
+     * @return int[]
+     */
+    static <T> int[] getIds(List<T> entities, ToIntFunction<T> idOf) {
+        return entities.stream()
+                .filter(Objects::nonNull)
+                .mapToInt(idOf)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    private int[] getMemberIds(int ownerId) {
+        List<Integer> memberIds = jdbcTemplate.queryForList(
+                selectMemberIds, Integer.class, ownerId);
+
+        int[] ids = new int[memberIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = memberIds.get(i);
+        }
+        return ids;
+    }
+
+    private void batchUpdate(String sql, int ownerId, int[] memberIds,
+            int count) {
+
+        for (int start = 0; start < count; start += BATCH_SIZE) {
+            int size = Math.min(BATCH_SIZE, count - start);
+            jdbcTemplate.batchUpdate(sql, 
+                    new MemberIdsSetter(ownerId, memberIds, start, size));
+        }
+    }
+
+    private static int[] sortedDistinct(int[] ids) {
+        if (ids == null || ids.length == 0) {
+            return new int[0];
+        }
+        int[] sorted = Arrays.copyOf(ids, ids.length);
+        Arrays.sort(sorted);
+
+        int numDistinct = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[numDistinct - 1]) {
+                sorted[numDistinct++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, numDistinct);
+    }
+
+
+    /**
+     * Binds (ownerId, memberId) for a slice of a primitive id array
+     * without boxing each id.
+     */
+    private static final class MemberIdsSetter implements
+            BatchPreparedStatementSetter {
+
+        private final int ownerId;
+        private final int[] memberIds;
+        private final int offset;
+        private final int size;
+
+        private MemberIdsSetter(int ownerId,
+                int[] memberIds, int offset, int size) {
+            this.ownerId = ownerId;
+            this.memberIds = memberIds;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public void setValues(PreparedStatement statement, int i)
+                throws SQLException {
+            statement.setInt(1, ownerId);
+            statement.setInt(2, memberIds[offset + i]);
+        }
+
+        @Override
+        public int getBatchSize() {
+            return size;
+        }
+
+    }
+
+}
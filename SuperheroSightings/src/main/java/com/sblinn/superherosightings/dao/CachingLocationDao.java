@@ -0,0 +1,125 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.dto.EntitySummary;
+import com.sblinn.superherosightings.dto.Location;
+import com.sblinn.superherosightings.dto.NearbyLocation;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Read-through cache in front of LocationDaoDB for getLocationById.
+ * Every other method is passed straight through; creates, updates and
+ * deletes evict the Location they touch. A successful update outside a
+ * transaction replaces a version a racing read cached meanwhile, unless
+ * that one is newer; an id left uncached stays uncached.
+ *
+ * @author Sara Blinn
+ */
+@Repository
+@Primary
+@Profile("database")
+public class CachingLocationDao implements LocationDao {
+
+    private final LocationDaoDB locationDao;
+    private final EntityCache<Location> cache;
+
+
+    @Autowired
+    public CachingLocationDao(LocationDaoDB locationDao, MeterRegistry registry,
+            @Value("${cache.locations.maximum-size:1000}") long maximumSize,
+            @Value("${cache.locations.ttl-seconds:300}") long ttlSeconds) {
+
+        this.locationDao = locationDao;
+        this.cache = new EntityCache<>("locations", registry, maximumSize,
+                Duration.ofSeconds(ttlSeconds),
+                CachingLocationDao::copyLocation, Location::getVersion);
+    }
+
+    @Override
+    public Location getLocationById(int id) {
+        return cache.get(id, locationDao::getLocationById);
+    }
+
+    @Override
+    public List<Location> getAllLocations() {
+        return locationDao.getAllLocations();
+    }
+
+    @Override
+    public List<EntitySummary> getLocationSummaries() {
+        return locationDao.getLocationSummaries();
+    }
+
+    @Override
+    public Set<Integer> getExistingLocationIds(Collection<Integer> ids) {
+        return locationDao.getExistingLocationIds(ids);
+    }
+
+    @Override
+    public List<NearbyLocation> getLocationsWithinRadius(double latitude,
+            double longitude, double radiusKm, int limit) {
+        return locationDao.getLocationsWithinRadius(latitude, longitude,
+                radiusKm, limit);
+    }
+
+    @Override
+    public List<NearbyLocation> getNearestLocations(double latitude,
+            double longitude, int k) {
+        return locationDao.getNearestLocations(latitude, longitude, k);
+    }
+
+    @Override
+    public Location createLocation(Location location) {
+        Location createdLocation = locationDao.createLocation(location);
+        cache.evict(location.getId());
+        return createdLocation;
+    }
+
+    @Override
+    public boolean updateLocation(Location updatedLocation) {
+        cache.evict(updatedLocation.getId());
+        boolean updated = locationDao.updateLocation(updatedLocation);
+        if (updated) {
+            cache.putUpdated(updatedLocation.getId(), updatedLocation);
+        }
+        return updated;
+    }
+
+    /**
+     * The Location's Sightings are deleted along with it; they are not
+     * cached here, so only the Location itself is evicted.
+     *
+     * @param id
+     * @return boolean
+     */
+    @Override
+    public boolean deleteLocationById(int id) {
+        boolean deleted = locationDao.deleteLocationById(id);
+        cache.evict(id);
+        return deleted;
+    }
+
+    private static Location copyLocation(Location location) {
+        Location copy = new Location();
+        copy.setId(location.getId());
+        copy.setVersion(location.getVersion());
+        copy.setName(location.getName());
+        copy.setDescription(location.getDescription());
+        copy.setStreet_address(location.getStreet_address());
+        copy.setCity(location.getCity());
+        copy.setState(location.getState());
+        copy.setCountry(location.getCountry());
+        copy.setLatitudeMicrodegrees(location.getLatitudeMicrodegrees());
+        copy.setLongitudeMicrodegrees(location.getLongitudeMicrodegrees());
+        return copy;
+    }
+
+}
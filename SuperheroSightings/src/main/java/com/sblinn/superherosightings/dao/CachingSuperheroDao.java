@@ -0,0 +1,106 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.dto.EntitySummary;
+import com.sblinn.superherosightings.dto.Superhero;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Read-through cache in front of SuperheroDaoDB for getSuperheroById.
+ * Every other method is passed straight through; creates, updates and
+ * deletes evict the Superhero they touch. A successful update outside a
+ * transaction replaces a version a racing read cached meanwhile, unless
+ * that one is newer; an id left uncached stays uncached.
+ *
+ * @author Sara Blinn
+ */
+@Repository
+@Primary
+@Profile("database")
+public class CachingSuperheroDao implements SuperheroDao {
+
+    private final SuperheroDaoDB superheroDao;
+    private final EntityCache<Superhero> cache;
+
+
+    @Autowired
+    public CachingSuperheroDao(SuperheroDaoDB superheroDao, MeterRegistry registry,
+            @Value("${cache.superheros.maximum-size:1000}") long maximumSize,
+            @Value("${cache.superheros.ttl-seconds:300}") long ttlSeconds) {
+
+        this.superheroDao = superheroDao;
+        this.cache = new EntityCache<>("superheros", registry, maximumSize,
+                Duration.ofSeconds(ttlSeconds),
+                CachingSuperheroDao::copySuperhero, Superhero::getVersion);
+    }
+
+    @Override
+    public Superhero getSuperheroById(int id) {
+        return cache.get(id, superheroDao::getSuperheroById);
+    }
+
+    @Override
+    public List<Superhero> getAllSuperheros() {
+        return superheroDao.getAllSuperheros();
+    }
+
+    @Override
+    public List<EntitySummary> getSuperheroSummaries() {
+        return superheroDao.getSuperheroSummaries();
+    }
+
+    @Override
+    public Set<Integer> getExistingSuperheroIds(Collection<Integer> ids) {
+        return superheroDao.getExistingSuperheroIds(ids);
+    }
+
+    @Override
+    public Superhero createSuperhero(Superhero superhero) {
+        Superhero createdHero = superheroDao.createSuperhero(superhero);
+        cache.evict(superhero.getId());
+        return createdHero;
+    }
+
+    @Override
+    public boolean updateSuperhero(Superhero updatedHero) {
+        cache.evict(updatedHero.getId());
+        boolean updated = superheroDao.updateSuperhero(updatedHero);
+        if (updated) {
+            cache.putUpdated(updatedHero.getId(), updatedHero);
+        }
+        return updated;
+    }
+
+    /**
+     * The Superhero's Sightings and bridge table rows are deleted along
+     * with it; none of them are cached here, so only the Superhero
+     * itself is evicted.
+     *
+     * @param id
+     * @return boolean
+     */
+    @Override
+    public boolean deleteSuperheroById(int id) {
+        boolean deleted = superheroDao.deleteSuperheroById(id);
+        cache.evict(id);
+        return deleted;
+    }
+
+    private static Superhero copySuperhero(Superhero superhero) {
+        Superhero copy = new Superhero();
+        copy.setId(superhero.getId());
+        copy.setVersion(superhero.getVersion());
+        copy.setName(superhero.getName());
+        copy.setDescription(superhero.getDescription());
+        return copy;
+    }
+
+}
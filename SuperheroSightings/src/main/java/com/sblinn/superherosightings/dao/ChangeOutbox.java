@@ -0,0 +1,259 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.dto.ChangeEvent;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Transactional outbox of entity changes. The DAOs append an event in
+ * the same transaction as each create, update and delete, so an event
+ * is recorded if and only if its change is committed.
+ *
+ * Events are read back in id order. Ids are handed out when an event is
+ * inserted, not when it is committed, so a transaction can commit id 12
+ * while another still holds id 11; a reader that moved its cursor past
+ * 12 would never see 11. To prevent that, each transaction appending
+ * events registers a floor below any id it can be given, and readers are
+ * only shown events up to the lowest floor still registered. Floors are
+ * tracked per process, which covers every write made by this
+ * application instance.
+ *
+ * @author Sara Blinn
+ */
+@Repository
+@Profile("database")
+public class ChangeOutbox {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // floor to number of in-flight transactions registered with it
+    private final TreeMap<Long, Integer> floors = new TreeMap<>();
+    // highest event id known to have been handed out
+    private final AtomicLong highestId = new AtomicLong();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+
+    /**
+     * Records one change.
+     *
+     * @param entity Superhero, Superpower, Organization, Location or
+     * Sighting
+     * @param entityId
+     * @param operation ChangeEvent.CREATE, UPDATE or DELETE
+     */
+    public void append(String entity, int entityId, String operation) {
+        registerTransaction();
+
+        final String INSERT_CHANGE
+                = "INSERT INTO Change_Event(entity, entity_id, operation) "
+                + "VALUES(?,?,?);";
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update((Connection conn) -> {
+            // named, since some drivers also return defaulted columns
+            PreparedStatement statement = conn.prepareStatement(
+                    INSERT_CHANGE, new String[] {"id"});
+            statement.setString(1, entity);
+            statement.setInt(2, entityId);
+            statement.setString(3, operation);
+            return statement;
+        }, keyHolder);
+
+        highestId.accumulateAndGet(keyHolder.getKey().longValue(),
+                Math::max);
+    }
+
+    /**
+     * Records the same change to many entities of one kind in JDBC
+     * batches.
+     *
+     * @param entity
+     * @param entityIds
+     * @param operation
+     */
+    public void appendAll(String entity, Collection<Integer> entityIds,
+            String operation) {
+
+        if (entityIds.isEmpty()) {
+            return;
+        }
+        registerTransaction();
+
+        // no trailing semicolon so the driver can rewrite the batch
+        final String INSERT_CHANGES
+                = "INSERT INTO Change_Event(entity, entity_id, operation) "
+                + "VALUES(?,?,?)";
+        jdbcTemplate.batchUpdate(INSERT_CHANGES, entityIds, 500,
+                (PreparedStatement statement, Integer entityId) -> {
+                    statement.setString(1, entity);
+                    statement.setInt(2, entityId);
+                    statement.setString(3, operation);
+                });
+    }
+
+    /**
+     * Records the same change to each entity whose id is selected by
+     * idQuery, in one INSERT ... SELECT. Used before cascading deletes,
+     * while the affected rows can still be found.
+     *
+     * @param entity
+     * @param operation
+     * @param idQuery selects one column named id, with no semicolon
+     * @param args parameters of idQuery
+     */
+    public void appendSelected(String entity, String operation,
+            String idQuery, Object... args) {
+
+        registerTransaction();
+
+        Object[] params = new Object[args.length + 2];
+        params[0] = entity;
+        params[1] = operation;
+        System.arraycopy(args, 0, params, 2, args.length);
+        jdbcTemplate.update("INSERT INTO Change_Event"
+                + "(entity, entity_id, operation) "
+                + "SELECT ?, selected.id, ? "
+                + "FROM (" + idQuery + ") selected "
+                + "ORDER BY selected.id;", params);
+    }
+
+    /**
+     * Returns up to limit committed events after cursor, oldest first.
+     * Events which may still have an earlier event committed before
+     * them are held back until it is.
+     *
+     * @param cursor 0, or the nextCursor of a previous page
+     * @param limit
+     * @return ChangePage
+     */
+    public ChangePage getChangesSince(long cursor, int limit) {
+        refreshHighestId();
+
+        final String SELECT_CHANGES
+                = "SELECT * FROM Change_Event "
+                + "WHERE id > ? AND id <= ? "
+                + "ORDER BY id "
+                + "LIMIT ?;";
+        List<ChangeEvent> changes = jdbcTemplate.query(SELECT_CHANGES,
+                new ChangeEventMapper(), cursor, getVisibleLimit(), limit);
+
+        return new ChangePage(changes, changes.isEmpty()
+                ? cursor : changes.get(changes.size() - 1).getId());
+    }
+
+    /**
+     * Returns a cursor from which only changes committed from now on
+     * are read, without reading the changes before it.
+     *
+     * @return long
+     */
+    public long getCurrentCursor() {
+        refreshHighestId();
+        return getVisibleLimit();
+    }
+
+    /**
+     * Runs listener after every transaction which appended events has
+     * completed, whether it committed or not. Listeners run on the
+     * thread that completed the transaction and must return quickly.
+     *
+     * @param listener
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Registers the current transaction's floor, once, and arranges for
+     * it to be removed when the transaction completes.
+     */
+    private void registerTransaction() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Changes must be appended in "
+                    + "the transaction making them.");
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        long floor;
+        synchronized (floors) {
+            floor = highestId.get();
+            floors.merge(floor, 1, Integer::sum);
+        }
+        TransactionSynchronizationManager.bindResource(this, floor);
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(
+                        ChangeOutbox.this);
+                synchronized (floors) {
+                    floors.computeIfPresent(floor,
+                            (key, count) -> count == 1 ? null : count - 1);
+                }
+                listeners.forEach(Runnable::run);
+            }
+        });
+    }
+
+    private void refreshHighestId() {
+        // anything handed out so far is below every floor registered
+        // from now on
+        final String SELECT_MAX_ID = "SELECT MAX(id) FROM Change_Event;";
+        Long maxId = jdbcTemplate.queryForObject(SELECT_MAX_ID, Long.class);
+        if (maxId != null) {
+            highestId.accumulateAndGet(maxId, Math::max);
+        }
+    }
+
+    /**
+     * Every event up to the returned id is committed or rolled back: it
+     * was handed out before now, so its transaction had registered a
+     * floor below it, and no floor that low is still registered.
+     */
+    private long getVisibleLimit() {
+        synchronized (floors) {
+            return floors.isEmpty() ? highestId.get() : floors.firstKey();
+        }
+    }
+
+
+    /**
+     * Maps a Change_Event row.
+     */
+    public static final class ChangeEventMapper implements
+            RowMapper<ChangeEvent> {
+
+        @Override
+        public ChangeEvent mapRow(ResultSet rs, int rowNum)
+                throws SQLException {
+
+            ChangeEvent change = new ChangeEvent();
+            change.setId(rs.getLong("id"));
+            change.setEntity(rs.getString("entity"));
+            change.setEntity_id(rs.getInt("entity_id"));
+            change.setOperation(rs.getString("operation"));
+            change.setChangedAt(
+                    rs.getTimestamp("changed_at").toLocalDateTime());
+
+            return change;
+        }
+
+    }
+
+}
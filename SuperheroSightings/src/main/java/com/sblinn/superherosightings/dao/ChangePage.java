@@ -0,0 +1,71 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.dto.ChangeEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Change events in the order they were recorded, and the cursor to ask
+ * for the ones after them. With no events the cursor is the one asked
+ * with.
+ *
+ * @author Sara Blinn
+ */
+public class ChangePage {
+
+    private List<ChangeEvent> changes = new ArrayList<>();
+    private long nextCursor;
+
+
+    public ChangePage() {
+    }
+
+    public ChangePage(List<ChangeEvent> changes, long nextCursor) {
+        this.changes = changes;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ChangeEvent> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(List<ChangeEvent> changes) {
+        this.changes = changes;
+    }
+
+    public long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 3;
+        hash = 23 * hash + Objects.hashCode(this.changes);
+        hash = 23 * hash + Long.hashCode(this.nextCursor);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final ChangePage other = (ChangePage) obj;
+        if (this.nextCursor != other.nextCursor) {
+            return false;
+        }
+        return Objects.equals(this.changes, other.changes);
+    }
+
+}
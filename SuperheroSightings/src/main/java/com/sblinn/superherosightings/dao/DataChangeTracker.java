@@ -0,0 +1,55 @@
+package com.sblinn.superherosightings.dao;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.aspectj.lang.annotation.After;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Counts changes made through the DAOs: any create, update, delete,
+ * add or set method called on a DAO advances the version once its
+ * transaction has completed (or at once outside a transaction).
+ *
+ * Something computed from DAO reads after seeing version v is known
+ * to be current for as long as the version is still v. The version is
+ * only advanced after the change is visible, so a read that starts
+ * before a commit can never be mistaken for one made after it.
+ *
+ * The count is per process and covers only changes made through the
+ * DAOs.
+ *
+ * @author Sara Blinn
+ */
+@Aspect
+@Component
+public class DataChangeTracker {
+
+    private final AtomicLong version = new AtomicLong();
+
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    @After("execution(* com.sblinn.superherosightings.dao.*Dao+.create*(..)) "
+            + "|| execution(* com.sblinn.superherosightings.dao.*Dao+.update*(..)) "
+            + "|| execution(* com.sblinn.superherosightings.dao.*Dao+.delete*(..)) "
+            + "|| execution(* com.sblinn.superherosightings.dao.*Dao+.add*(..)) "
+            + "|| execution(* com.sblinn.superherosightings.dao.*Dao+.set*(..))")
+    public void recordChange() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    version.incrementAndGet();
+                }
+            });
+        } else {
+            version.incrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.sblinn.superherosightings.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Bounded id to entity cache used by the caching DAOs. Entries are
+ * evicted by Caffeine's W-TinyLFU policy once maximumSize is reached
+ * and expire ttl after they were loaded.
+ *
+ * Cached entities are mutable DTOs, so a copy is stored and a copy is
+ * handed out; callers can never change what the cache holds.
+ *
+ * Entities carry a row version, which putUpdated uses to keep the
+ * newer of two racing updates. It only replaces an entry already
+ * cached, so it can never bring back a row deleted in the meantime.
+ *
+ * Hits, misses, evictions and size are published as the cache.* 
+ * meters, tagged with the cache's name.
+ *
+ * @author Sara Blinn
+ * @param <T> entity type
+ */
+class EntityCache<T> {
+
+    private final Cache<Integer, T> cache;
+    private final UnaryOperator<T> copier;
+    private final ToIntFunction<T> versionOf;
+
+
+    EntityCache(String name, MeterRegistry registry, long maximumSize, 
+            Duration ttl, UnaryOperator<T> copier, 
+            ToIntFunction<T> versionOf) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.copier = copier;
+        this.versionOf = versionOf;
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+    }
+
+    /**
+     * Returns the cached entity for id, loading and caching it on a
+     * miss. Returns null (and caches nothing) if the loader does.
+     *
+     * @param id
+     * @param loader
+     * @return T
+     */
+    T get(int id, IntFunction<T> loader) {
+        T entity = cache.get(id, key -> {
+            T loaded = loader.apply(key);
+            return loaded == null ? null : copier.apply(loaded);
+        });
+        return entity == null ? null : copier.apply(entity);
+    }
+
+    /**
+     * Evicts id now and, when called inside a transaction, again once
+     * the transaction completes. The second eviction drops anything
+     * read from the uncommitted (or rolled back) row in the meantime.
+     * Outside a transaction, call it after the write has committed, so
+     * a read racing the write cannot cache the old row afterwards.
+     *
+     * @param id
+     */
+    void evict(int id) {
+        cache.invalidate(id);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(id);
+                }
+            });
+        }
+    }
+
+    /**
+     * Replaces the cached entry for id with entity, just written by a
+     * committed compare-and-set update, unless the cached one is newer.
+     * A read racing the update may have cached the old row after evict;
+     * comparing versions in one atomic step on the entry replaces it,
+     * and keeps the later of two updates that commit in one order and
+     * get here in the other. Nothing is cached when id has no entry:
+     * a delete committing after the update evicts it, and caching the
+     * update afterwards would bring the deleted row back. Inside a
+     * transaction the write may still roll back, so nothing is cached
+     * and the eviction registered by evict stands.
+     *
+     * @param id
+     * @param entity
+     */
+    void putUpdated(int id, T entity) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        T updated = copier.apply(entity);
+        cache.asMap().computeIfPresent(id, 
+                (Integer key, T cached) 
+                        -> versionOf.applyAsInt(cached) 
+                                > versionOf.applyAsInt(updated) 
+                        ? cached : updated);
+    }
+
+}
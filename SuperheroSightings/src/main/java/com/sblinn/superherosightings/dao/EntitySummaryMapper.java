@@ -0,0 +1,23 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.dto.EntitySummary;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Maps id and name columns into an EntitySummary object.
+ *
+ * @author Sara Blinn
+ */
+public final class EntitySummaryMapper implements
+        RowMapper<EntitySummary> {
+
+    @Override
+    public EntitySummary mapRow(ResultSet rs, int rowNum)
+            throws SQLException {
+
+        return new EntitySummary(rs.getInt("id"), rs.getString("name"));
+    }
+
+}
@@ -1,7 +1,11 @@
 package com.sblinn.superherosightings.dao;
 
+import com.sblinn.superherosightings.dto.EntitySummary;
 import com.sblinn.superherosightings.dto.Location;
+import com.sblinn.superherosightings.dto.NearbyLocation;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  *
@@ -13,6 +17,16 @@ public interface LocationDao {
     
     List<Location> getAllLocations();
     
+    List<EntitySummary> getLocationSummaries();
+    
+    Set<Integer> getExistingLocationIds(Collection<Integer> ids);
+    
+    List<NearbyLocation> getLocationsWithinRadius(double latitude, 
+            double longitude, double radiusKm, int limit);
+    
+    List<NearbyLocation> getNearestLocations(double latitude, 
+            double longitude, int k);
+    
     Location createLocation(Location location);
     
     boolean updateLocation(Location updatedLocation);
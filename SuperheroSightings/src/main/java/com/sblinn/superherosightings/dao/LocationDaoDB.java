@@ -1,14 +1,27 @@
 
 package com.sblinn.superherosightings.dao;
 
+import com.sblinn.superherosightings.dto.ChangeEvent;
+import com.sblinn.superherosightings.dto.EntitySummary;
+import com.sblinn.superherosightings.dto.Coordinates;
 import com.sblinn.superherosightings.dto.Location;
+import com.sblinn.superherosightings.dto.NearbyLocation;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -16,6 +29,8 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 
 /**
@@ -29,6 +44,23 @@ public class LocationDaoDB implements LocationDao {
     @Autowired
     private JdbcTemplate jdbcTemplate;
     
+    @Autowired
+    private ChangeOutbox changeOutbox;
+    
+    @Value("${locations.spatial-index.cell-degrees:0.1}")
+    private double spatialIndexCellDegrees;
+    
+    // built from the database on first use
+    private volatile LocationSpatialIndex spatialIndex;
+    
+    private SightingStatsUpdater statsUpdater;
+    
+    
+    @PostConstruct
+    private void initStatsUpdater() {
+        statsUpdater = new SightingStatsUpdater(jdbcTemplate);
+    }
+    
     @Override
     @Transactional
     public Location getLocationById(int id) {
@@ -56,6 +88,78 @@ public class LocationDaoDB implements LocationDao {
         return locations;
     }
 
+    /**
+     * Returns the id and name of every Location, for pages which list 
+     * Locations without showing their other fields.
+     * 
+     * @return List<EntitySummary>
+     */
+    @Override
+    public List<EntitySummary> getLocationSummaries() {
+        final String SELECT_SUMMARIES
+                = "SELECT id, `name` FROM Location "
+                + "ORDER BY id;";
+        return jdbcTemplate.query(SELECT_SUMMARIES, 
+                new EntitySummaryMapper());
+    }
+
+    /**
+     * Returns which of the given ids belong to an existing Location, 
+     * using one query.
+     * 
+     * @param ids
+     * @return Set<Integer>
+     */
+    @Override
+    public Set<Integer> getExistingLocationIds(Collection<Integer> ids) {
+        Set<Integer> existingIds = new HashSet<>();
+        if (ids.isEmpty()) {
+            return existingIds;
+        }
+        final String SELECT_EXISTING_IDS
+                = "SELECT id FROM Location "
+                + "WHERE id IN (" 
+                + String.join(",", Collections.nCopies(ids.size(), "?")) 
+                + ");";
+        jdbcTemplate.query(SELECT_EXISTING_IDS, 
+                (ResultSet rs) -> {
+                    existingIds.add(rs.getInt("id"));
+                }, ids.toArray());
+        return existingIds;
+    }
+
+    /**
+     * Returns up to limit Locations within radiusKm of the point, 
+     * nearest first.
+     * 
+     * @param latitude
+     * @param longitude
+     * @param radiusKm
+     * @param limit
+     * @return List<NearbyLocation>
+     */
+    @Override
+    public List<NearbyLocation> getLocationsWithinRadius(double latitude, 
+            double longitude, double radiusKm, int limit) {
+        return getNearbyLocations(getSpatialIndex().withinRadius(
+                latitude, longitude, radiusKm, limit));
+    }
+
+    /**
+     * Returns the k Locations nearest the point, nearest first.
+     * 
+     * @param latitude
+     * @param longitude
+     * @param k
+     * @return List<NearbyLocation>
+     */
+    @Override
+    public List<NearbyLocation> getNearestLocations(double latitude, 
+            double longitude, int k) {
+        return getNearbyLocations(getSpatialIndex().nearest(
+                latitude, longitude, k));
+    }
+
     @Override
     @Transactional
     public Location createLocation(Location location) {
@@ -105,21 +209,26 @@ public class LocationDaoDB implements LocationDao {
             location.setId(keyholder.getKey().intValue());
         }
         
+        indexLocation(location);
+        changeOutbox.append("Location", location.getId(), 
+                ChangeEvent.CREATE);
         return location;
     }
 
-    // Allows empty fields but not null required fields.
+    // Allows empty fields but not null required fields. Only applies
+    // to the version updatedLocation was read at (see RowVersions).
     @Override
+    @Transactional
     public boolean updateLocation(Location updatedLocation) {
         final String UPDATE_LOCATION
                 = "UPDATE Location "
-                + "SET id = ?, `name` = ?, `street_address` = ?, "
+                + "SET `name` = ?, `street_address` = ?, "
                 + "city = ?, state = ?, country = ?, latitude = ?, "
-                + "longitude = ?, `description` = ? "
-                + "WHERE id = ?;";
+                + "longitude = ?, `description` = ?, "
+                + "version = version + 1 "
+                + "WHERE id = ? AND version = ?;";
         int numRowsUpdated = jdbcTemplate.update(
                 UPDATE_LOCATION,
-                updatedLocation.getId(),
                 updatedLocation.getName(),
                 updatedLocation.getStreet_address(),
                 updatedLocation.getCity(),
@@ -128,28 +237,150 @@ public class LocationDaoDB implements LocationDao {
                 updatedLocation.getLatitude(),
                 updatedLocation.getLongitude(),
                 updatedLocation.getDescription(),
-                updatedLocation.getId());
+                updatedLocation.getId(),
+                updatedLocation.getVersion());
         
-        return numRowsUpdated == 1;
+        if (!RowVersions.checkUpdated(jdbcTemplate, "Location", 
+                updatedLocation.getId(), updatedLocation.getVersion(), 
+                numRowsUpdated)) {
+            return false;
+        }
+        updatedLocation.setVersion(updatedLocation.getVersion() + 1);
+        indexLocation(updatedLocation);
+        changeOutbox.append("Location", updatedLocation.getId(), 
+                ChangeEvent.UPDATE);
+        return true;
     }
 
     @Override
     @Transactional
     public boolean deleteLocationById(int id) {
         // must delete reference in Sighting
+        changeOutbox.appendSelected("Sighting", ChangeEvent.DELETE, 
+                "SELECT id FROM Sighting WHERE location_id = ?", id);
         final String DELETE_SIGHTING
                 = "DELETE FROM Sighting "
                 + "WHERE location_id = ?;";
         jdbcTemplate.update(DELETE_SIGHTING, id);
+        statsUpdater.locationDeleted(id);
         
         final String DELETE_LOCATION
                 = "DELETE FROM Location "
                 + "WHERE id = ?;";
         int numRowsDeleted = jdbcTemplate.update(DELETE_LOCATION, id);
         
+        getSpatialIndex().remove(id);
+        resyncSpatialIndexOnRollback(id);
+        if (numRowsDeleted == 1) {
+            changeOutbox.append("Location", id, ChangeEvent.DELETE);
+        }
         return numRowsDeleted == 1;
     }
     
+    /**
+     * Loads Locations for the neighbors with one query, keeping the 
+     * neighbors' order. A Location deleted since it was indexed is left 
+     * out.
+     */
+    private List<NearbyLocation> getNearbyLocations(
+            List<LocationSpatialIndex.Neighbor> neighbors) {
+        
+        List<NearbyLocation> nearbyLocations = new ArrayList<>();
+        if (neighbors.isEmpty()) {
+            return nearbyLocations;
+        }
+        Object[] ids = new Object[neighbors.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = neighbors.get(i).getId();
+        }
+        final String SELECT_LOCATIONS_BY_ID
+                = "SELECT * FROM Location "
+                + "WHERE id IN (" 
+                + String.join(",", Collections.nCopies(ids.length, "?")) 
+                + ");";
+        Map<Integer, Location> locationsById = new HashMap<>();
+        for (Location location : jdbcTemplate.query(SELECT_LOCATIONS_BY_ID, 
+                new LocationMapper(), ids)) {
+            locationsById.put(location.getId(), location);
+        }
+        
+        for (LocationSpatialIndex.Neighbor neighbor : neighbors) {
+            Location location = locationsById.get(neighbor.getId());
+            if (location != null) {
+                nearbyLocations.add(new NearbyLocation(location, 
+                        neighbor.getDistanceKm()));
+            }
+        }
+        return nearbyLocations;
+    }
+    
+    /**
+     * Returns the spatial index, reading every Location's coordinates 
+     * into it the first time. Writes made through this DAO keep it 
+     * current afterwards; rows changed by other means are not seen.
+     */
+    private LocationSpatialIndex getSpatialIndex() {
+        LocationSpatialIndex index = spatialIndex;
+        if (index == null) {
+            index = loadSpatialIndex();
+        }
+        return index;
+    }
+    
+    private synchronized LocationSpatialIndex loadSpatialIndex() {
+        if (spatialIndex == null) {
+            LocationSpatialIndex index 
+                    = new LocationSpatialIndex(spatialIndexCellDegrees);
+            final String SELECT_COORDINATES
+                    = "SELECT id, latitude, longitude FROM Location;";
+            jdbcTemplate.query(SELECT_COORDINATES, 
+                    (ResultSet rs) -> {
+                        index.put(rs.getInt("id"), 
+                                rs.getDouble("latitude"), 
+                                rs.getDouble("longitude"));
+                    });
+            spatialIndex = index;
+        }
+        return spatialIndex;
+    }
+    
+    private void indexLocation(Location location) {
+        if (location.hasCoordinates()) {
+            getSpatialIndex().put(location.getId(), 
+                    location.getLatitudeDegrees(), 
+                    location.getLongitudeDegrees());
+        }
+        resyncSpatialIndexOnRollback(location.getId());
+    }
+    
+    /**
+     * Index changes are made as soon as the row is written. If the 
+     * surrounding transaction rolls back, the Location is read again 
+     * once it has, and re-indexed or removed to match.
+     */
+    private void resyncSpatialIndexOnRollback(int id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
+                Location location = getLocationById(id);
+                if (location == null) {
+                    getSpatialIndex().remove(id);
+                } else {
+                    getSpatialIndex().put(id, 
+                            location.getLatitudeDegrees(), 
+                            location.getLongitudeDegrees());
+                }
+            }
+        });
+    }
+    
     
     /**
      * Maps Location data to a Location Object.
@@ -163,13 +394,18 @@ public class LocationDaoDB implements LocationDao {
             
             Location location = new Location();
             location.setId(rs.getInt("id"));
+            location.setVersion(rs.getInt("version"));
             location.setName(rs.getString("name"));
             location.setStreet_address(rs.getString("street_address"));
             location.setCity(rs.getString("city"));
             location.setState(rs.getString("state"));
             location.setCountry(rs.getString("country"));
-            location.setLatitude(rs.getBigDecimal("latitude"));
-            location.setLongitude(rs.getBigDecimal("longitude"));
+            // the columns are NOT NULL DECIMAL(9,6); read as doubles
+            // they convert to microdegrees exactly, without a BigDecimal
+            location.setLatitudeMicrodegrees(
+                    Coordinates.toMicrodegrees(rs.getDouble("latitude")));
+            location.setLongitudeMicrodegrees(
+                    Coordinates.toMicrodegrees(rs.getDouble("longitude")));
             location.setDescription(rs.getString("description"));
             
             return location;
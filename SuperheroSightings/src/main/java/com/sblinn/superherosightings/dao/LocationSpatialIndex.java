@@ -0,0 +1,298 @@
+package com.sblinn.superherosightings.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory grid of Location coordinates for radius and nearest
+ * neighbour searches. The globe is cut into cells of cellDegrees by
+ * cellDegrees; each cell keeps its ids, latitudes and longitudes in
+ * primitive arrays, so a search scans only the cells its radius can
+ * reach and compares doubles without touching any Location object.
+ *
+ * Distances are great-circle (haversine) kilometres. Safe for use by
+ * many threads.
+ *
+ * @author Sara Blinn
+ */
+public class LocationSpatialIndex {
+
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE
+            = Math.PI * EARTH_RADIUS_KM / 180;
+    private static final double MAX_DISTANCE_KM = Math.PI * EARTH_RADIUS_KM;
+
+    private final double cellDegrees;
+    private final int rows;
+    private final int columns;
+
+    private final Map<Integer, Cell> cells = new HashMap<>();
+    private final Map<Integer, Integer> cellKeysById = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+
+    /**
+     * @param cellDegrees grid cell edge; smaller cells suit denser data
+     */
+    public LocationSpatialIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        this.rows = (int) Math.ceil(180 / cellDegrees);
+        this.columns = (int) Math.ceil(360 / cellDegrees);
+    }
+
+    /**
+     * Adds the Location id at the given point, moving it if it is
+     * already indexed.
+     *
+     * @param id
+     * @param latitude
+     * @param longitude
+     */
+    public void put(int id, double latitude, double longitude) {
+        int key = cellKey(row(latitude), column(longitude));
+        lock.writeLock().lock();
+        try {
+            Integer oldKey = cellKeysById.put(id, key);
+            if (oldKey != null) {
+                removeFromCell(oldKey, id);
+            }
+            cells.computeIfAbsent(key, k -> new Cell())
+                    .add(id, latitude, longitude);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            Integer key = cellKeysById.remove(id);
+            if (key != null) {
+                removeFromCell(key, id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes id from the cell at key, dropping the cell once it is
+     * empty. Called with the write lock held.
+     */
+    private void removeFromCell(int key, int id) {
+        Cell cell = cells.get(key);
+        cell.remove(id);
+        if (cell.size == 0) {
+            cells.remove(key);
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return cellKeysById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to limit Locations within radiusKm of the point,
+     * nearest first.
+     *
+     * @param latitude
+     * @param longitude
+     * @param radiusKm
+     * @param limit
+     * @return List<Neighbor>
+     */
+    public List<Neighbor> withinRadius(double latitude, double longitude,
+            double radiusKm, int limit) {
+
+        if (limit <= 0 || radiusKm < 0) {
+            return Collections.emptyList();
+        }
+        // farthest first, so the head is the one to drop
+        PriorityQueue<Neighbor> nearest = new PriorityQueue<>(
+                (a, b) -> Double.compare(b.distanceKm, a.distanceKm));
+
+        double latDelta = radiusKm / KM_PER_DEGREE;
+        double minLat = latitude - latDelta;
+        double maxLat = latitude + latDelta;
+        int firstRow = row(Math.max(-90, minLat));
+        int lastRow = row(Math.min(90, maxLat));
+
+        // the circle's widest longitude span, from its tangent points
+        double lngDelta = 180;
+        double sinRadius = Math.sin(Math.min(radiusKm / EARTH_RADIUS_KM,
+                Math.PI / 2));
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        if (minLat > -90 && maxLat < 90 && sinRadius < cosLat) {
+            lngDelta = Math.toDegrees(Math.asin(sinRadius / cosLat));
+        }
+        int firstColumn = (int) Math.floor(
+                (longitude - lngDelta + 180) / cellDegrees);
+        int lastColumn = (int) Math.floor(
+                (longitude + lngDelta + 180) / cellDegrees);
+        if (lastColumn - firstColumn + 1 >= columns) {
+            firstColumn = 0;
+            lastColumn = columns - 1;
+        }
+
+        double lat1 = Math.toRadians(latitude);
+        double lng1 = Math.toRadians(longitude);
+
+        lock.readLock().lock();
+        try {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int c = firstColumn; c <= lastColumn; c++) {
+                    // wrap across the antimeridian
+                    int column = Math.floorMod(c, columns);
+                    Cell cell = cells.get(cellKey(row, column));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < cell.size; i++) {
+                        double distance = haversineKm(lat1, lng1,
+                                cell.latitudes[i], cell.longitudes[i]);
+                        if (distance > radiusKm) {
+                            continue;
+                        }
+                        if (nearest.size() < limit) {
+                            nearest.add(new Neighbor(cell.ids[i], distance));
+                        } else if (distance < nearest.peek().distanceKm) {
+                            nearest.poll();
+                            nearest.add(new Neighbor(cell.ids[i], distance));
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Neighbor> neighbors = new ArrayList<>(nearest);
+        neighbors.sort((a, b) -> Double.compare(a.distanceKm, b.distanceKm));
+        return neighbors;
+    }
+
+    /**
+     * Returns the k Locations nearest the point, nearest first. Searches
+     * a radius of two cells and doubles it until k are found or the
+     * radius spans the globe.
+     *
+     * @param latitude
+     * @param longitude
+     * @param k
+     * @return List<Neighbor>
+     */
+    public List<Neighbor> nearest(double latitude, double longitude, int k) {
+        double radiusKm = 2 * cellDegrees * KM_PER_DEGREE;
+        while (true) {
+            List<Neighbor> neighbors
+                    = withinRadius(latitude, longitude, radiusKm, k);
+            if (neighbors.size() >= k || radiusKm >= MAX_DISTANCE_KM) {
+                return neighbors;
+            }
+            radiusKm = Math.min(radiusKm * 2, MAX_DISTANCE_KM);
+        }
+    }
+
+    /**
+     * Great-circle distance from a point given in radians to one given
+     * in degrees.
+     */
+    private static double haversineKm(double lat1, double lng1,
+            double latitude, double longitude) {
+        double lat2 = Math.toRadians(latitude);
+        double sinLat = Math.sin((lat2 - lat1) / 2);
+        double sinLng = Math.sin((Math.toRadians(longitude) - lng1) / 2);
+        double a = sinLat * sinLat
+                + Math.cos(lat1) * Math.cos(lat2) * sinLng * sinLng;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private int row(double latitude) {
+        return Math.min(rows - 1, (int) ((latitude + 90) / cellDegrees));
+    }
+
+    private int column(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / cellDegrees),
+                columns);
+    }
+
+    private int cellKey(int row, int column) {
+        return row * columns + column;
+    }
+
+
+    /**
+     * A Location id and its distance from the searched point.
+     */
+    public static final class Neighbor {
+
+        private final int id;
+        private final double distanceKm;
+
+
+        public Neighbor(int id, double distanceKm) {
+            this.id = id;
+            this.distanceKm = distanceKm;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+
+    }
+
+
+    /**
+     * The points in one grid cell, in parallel arrays.
+     */
+    private static final class Cell {
+
+        private int[] ids = new int[4];
+        private double[] latitudes = new double[4];
+        private double[] longitudes = new double[4];
+        private int size;
+
+
+        private void add(int id, double latitude, double longitude) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+            }
+            ids[size] = id;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            size++;
+        }
+
+        private void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    size--;
+                    ids[i] = ids[size];
+                    latitudes[i] = latitudes[size];
+                    longitudes[i] = longitudes[size];
+                    return;
+                }
+            }
+        }
+
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.sblinn.superherosightings.dao;
 
+import com.sblinn.superherosightings.dto.EntitySummary;
 import com.sblinn.superherosightings.dto.Organization;
 import com.sblinn.superherosightings.dto.Superhero;
 import java.util.List;
@@ -14,6 +15,8 @@ public interface OrganizationDao {
     
     List<Organization> getAllOrganizations();
     
+    List<EntitySummary> getOrganizationSummaries();
+    
     Organization createOrganization(Organization org);
     
     boolean updateOrganization(Organization updatedOrg);
@@ -31,4 +34,10 @@ public interface OrganizationDao {
     boolean deleteOrganizationMember(Organization organization,
             int superheroId);
     
+    void addOrganizationsForSuperhero(Superhero superhero, 
+            List<Organization> organizations);
+    
+    void setOrganizationsForSuperhero(int superheroId, 
+            List<Organization> organizations);
+    
 }
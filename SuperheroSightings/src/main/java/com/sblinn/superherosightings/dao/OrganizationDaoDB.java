@@ -2,6 +2,8 @@
 package com.sblinn.superherosightings.dao;
 
 import com.sblinn.superherosightings.dao.SuperheroDaoDB.SuperheroMapper;
+import com.sblinn.superherosightings.dto.ChangeEvent;
+import com.sblinn.superherosightings.dto.EntitySummary;
 import com.sblinn.superherosightings.dto.Organization;
 import com.sblinn.superherosightings.dto.Superhero;
 import java.sql.Connection;
@@ -10,7 +12,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
@@ -33,6 +38,31 @@ public class OrganizationDaoDB implements OrganizationDao {
     @Autowired
     private JdbcTemplate jdbcTemplate;
     
+    @Autowired
+    private ChangeOutbox changeOutbox;
+    
+    private static final int BATCH_SIZE = 500;
+    
+    // batched statements have no trailing semicolon so that the driver 
+    // can rewrite a batch of inserts into one multi-row INSERT
+    private static final String INSERT_ORGANIZATION_MEMBERS
+            = "INSERT INTO Organization_Superhero "
+            + "(superhero_id, org_id) "
+            + "VALUES(?,?)";
+    
+    // Organization_Superhero rows seen from each side of the table
+    private BridgeTableSynchronizer memberSynchronizer;
+    private BridgeTableSynchronizer organizationSynchronizer;
+    
+    
+    @PostConstruct
+    private void initSynchronizers() {
+        memberSynchronizer = new BridgeTableSynchronizer(jdbcTemplate, 
+                "Organization_Superhero", "org_id", "superhero_id");
+        organizationSynchronizer = new BridgeTableSynchronizer(jdbcTemplate, 
+                "Organization_Superhero", "superhero_id", "org_id");
+    }
+    
     
     @Override
     @Transactional
@@ -61,11 +91,29 @@ public class OrganizationDaoDB implements OrganizationDao {
         List<Organization> orgs = jdbcTemplate.query(
                 SELECT_ALL, new OrganizationMapper());
         
-        getMembersForOrganizations(orgs);
+        if (!orgs.isEmpty()) {
+            setMembersForOrganizations(orgs, 
+                    getMembersByOrganization(null));
+        }
         
         return orgs;
     }
 
+    /**
+     * Returns the id and name of every Organization, for pages which list 
+     * Organizations without showing their other fields.
+     * 
+     * @return List<EntitySummary>
+     */
+    @Override
+    public List<EntitySummary> getOrganizationSummaries() {
+        final String SELECT_SUMMARIES
+                = "SELECT id, `name` FROM `Organization` "
+                + "ORDER BY id;";
+        return jdbcTemplate.query(SELECT_SUMMARIES, 
+                new EntitySummaryMapper());
+    }
+
     @Override
     @Transactional
     public Organization createOrganization(Organization org) {
@@ -115,36 +163,55 @@ public class OrganizationDaoDB implements OrganizationDao {
                     org.getMembers());
         }
         
+        changeOutbox.append("Organization", org.getId(), 
+                ChangeEvent.CREATE);
         return org;
     }
 
+    /**
+     * Updates the Organization and its members if it is still at the 
+     * version updatedOrg was read at, advancing updatedOrg's version to 
+     * match. Throws OptimisticLockingFailureException if someone else 
+     * updated it first.
+     * 
+     * @param updatedOrg
+     * @return boolean
+     */
     @Override
     @Transactional
     public boolean updateOrganization(Organization updatedOrg) {
         final String UPDATE_ORG
                 = "UPDATE `Organization` "
-                + "SET id = ?, `name` = ?, `description` = ?, "
-                + "street_address = ?, city = ?, country = ? "
-                + "WHERE id = ?;";
+                + "SET `name` = ?, `description` = ?, "
+                + "street_address = ?, city = ?, country = ?, "
+                + "version = version + 1 "
+                + "WHERE id = ? AND version = ?;";
         int numRowsUpdated = jdbcTemplate.update(
                 UPDATE_ORG,
-                updatedOrg.getId(),
                 updatedOrg.getName(),
                 updatedOrg.getDescription(),
                 updatedOrg.getStreet_address(),
                 updatedOrg.getCity(),
                 updatedOrg.getCountry(),
-                updatedOrg.getId());
-        
-        // delete and update rows of bridge table with new values
-        deleteMembersForOrganization(updatedOrg.getId());
+                updatedOrg.getId(),
+                updatedOrg.getVersion());
         
-        if (!updatedOrg.getMembers().isEmpty()) {
-            addMembersForOrganization(updatedOrg.getId(), 
-                    updatedOrg.getMembers());
+        if (!RowVersions.checkUpdated(jdbcTemplate, "Organization", 
+                updatedOrg.getId(), updatedOrg.getVersion(), 
+                numRowsUpdated)) {
+            return false;
         }
+        updatedOrg.setVersion(updatedOrg.getVersion() + 1);
+        
+        // insert and delete only the bridge table rows that changed
+        List<Superhero> members = updatedOrg.getMembers() == null
+                ? new ArrayList<>() : updatedOrg.getMembers();
+        memberSynchronizer.synchronize(updatedOrg.getId(), 
+                BridgeTableSynchronizer.getIds(members, Superhero::getId));
         
-        return numRowsUpdated == 1;
+        changeOutbox.append("Organization", updatedOrg.getId(), 
+                ChangeEvent.UPDATE);
+        return true;
     }
 
     @Override
@@ -161,6 +228,9 @@ public class OrganizationDaoDB implements OrganizationDao {
                 + "WHERE id = ?;";
         int numRowsDeleted = jdbcTemplate.update(DELETE_ORG, id);
         
+        if (numRowsDeleted == 1) {
+            changeOutbox.append("Organization", id, ChangeEvent.DELETE);
+        }
         return numRowsDeleted == 1;
     }
     
@@ -174,6 +244,7 @@ public class OrganizationDaoDB implements OrganizationDao {
         try {
             final String GET_ORGANIZATIONS
                     = "SELECT org.id, " 
+                    + "org.version, "
                     + "org.`name`, "
                     + "org.`description`, "
                     + "org.street_address, " 
@@ -190,8 +261,14 @@ public class OrganizationDaoDB implements OrganizationDao {
                     GET_ORGANIZATIONS, new OrganizationMapper(), 
                     superheroId);
             
-            for (Organization org : orgs) {
-                org.setMembers(getOrganizationMembers(org.getId()));
+            if (!orgs.isEmpty()) {
+                setMembersForOrganizations(orgs, 
+                        getMembersByOrganization(
+                                "members.org_id IN ("
+                                + "SELECT org_id "
+                                + "FROM Organization_Superhero "
+                                + "WHERE superhero_id = ?) ", 
+                                superheroId));
             }
             
             return orgs;
@@ -212,6 +289,7 @@ public class OrganizationDaoDB implements OrganizationDao {
             final String GET_MEMBERS
                     = "SELECT "
                     + "Superhero.id, "
+                    + "Superhero.version, "
                     + "Superhero.`name`, "
                     + "Superhero.`description` "
                     + "FROM Superhero "
@@ -229,15 +307,57 @@ public class OrganizationDaoDB implements OrganizationDao {
         }
     }
         
+    /**
+     * Returns the members (Superheros) of many Organizations, keyed by 
+     * Organization id, using a single query over the bridge table. 
+     * The condition restricts which bridge table rows (members) are 
+     * read, or all rows are read if it is null.
+     * 
+     * @param condition
+     * @param params
+     * @return Map of Organization id to members
+     */
+    private Map<Integer, List<Superhero>> getMembersByOrganization(
+            String condition, Object... params) {
+        
+        final String GET_MEMBERS
+                = "SELECT "
+                + "members.org_id, "
+                + "Superhero.id, "
+                + "Superhero.version, "
+                + "Superhero.`name`, "
+                + "Superhero.`description` "
+                + "FROM Organization_Superhero members "
+                + "INNER JOIN Superhero "
+                + "ON Superhero.id = members.superhero_id "
+                + (condition == null ? "" : "WHERE " + condition)
+                + "ORDER BY members.org_id, Superhero.id;";
+        
+        Map<Integer, List<Superhero>> membersByOrg = new HashMap<>();
+        SuperheroMapper superheroMapper = new SuperheroMapper();
+        
+        jdbcTemplate.query(GET_MEMBERS, (ResultSet rs) -> {
+            membersByOrg.computeIfAbsent(rs.getInt("org_id"), 
+                    orgId -> new ArrayList<>())
+                    .add(superheroMapper.mapRow(rs, rs.getRow()));
+        }, params);
+        
+        return membersByOrg;
+    }
+    
     /**
      * Sets the members field (list of Superheros) for a list of 
-     * Organizations.
+     * Organizations from members grouped by Organization id.
      * 
      * @param orgs 
+     * @param membersByOrg
      */
-    private void getMembersForOrganizations(List<Organization> orgs) {
+    private void setMembersForOrganizations(List<Organization> orgs, 
+            Map<Integer, List<Superhero>> membersByOrg) {
+        
         for (Organization org : orgs) {
-            org.setMembers(getOrganizationMembers(org.getId()));
+            org.setMembers(membersByOrg.getOrDefault(org.getId(), 
+                    new ArrayList<>()));
         }
     }
     
@@ -251,6 +371,7 @@ public class OrganizationDaoDB implements OrganizationDao {
      * @return boolean 
      */
     @Override
+    @Transactional
     public boolean addOrganizationMember(Organization organization, 
             Superhero superhero) {
         
@@ -265,6 +386,10 @@ public class OrganizationDaoDB implements OrganizationDao {
                     superhero.getId(),
                     organization.getId());
             
+            if (numRowsAdded == 1) {
+                changeOutbox.append("Organization", organization.getId(), 
+                        ChangeEvent.UPDATE);
+            }
             return numRowsAdded == 1;
         } catch (NullPointerException | DuplicateKeyException e) {
             // ignore
@@ -282,6 +407,7 @@ public class OrganizationDaoDB implements OrganizationDao {
      * @return boolean
      */
     @Override
+    @Transactional
     public boolean deleteOrganizationMember(
             Organization organization, int superheroId) {
         
@@ -295,6 +421,10 @@ public class OrganizationDaoDB implements OrganizationDao {
                     organization.getId(), 
                     superheroId);
             
+            if (numRowsDeleted == 1) {
+                changeOutbox.append("Organization", organization.getId(), 
+                        ChangeEvent.UPDATE);
+            }
             return numRowsDeleted == 1;
         } catch (NullPointerException e) {
             //ignore
@@ -310,37 +440,82 @@ public class OrganizationDaoDB implements OrganizationDao {
     private void addMembersForOrganization(int orgId, 
             List<Superhero> members) {
         
-        try {
-            if (!members.isEmpty()) {
-                final String INSERT_ORGANIZATION_MEMBER
-                        = "INSERT INTO Organization_Superhero "
-                        + "(superhero_id, org_id) "
-                        + "VALUES(?,?);";
-                for (Superhero member : members) {
-                    jdbcTemplate.update(INSERT_ORGANIZATION_MEMBER, 
-                            member.getId(),
-                            orgId);
-                }
-            }
-        } catch (NullPointerException e) {
-            // ignore
+        if (members == null) {
+            return;
         }
+        List<int[]> rows = new ArrayList<>();
+        for (int superheroId 
+                : BridgeTableSynchronizer.getIds(members, Superhero::getId)) {
+            rows.add(new int[] {superheroId, orgId});
+        }
+        batchUpdateOrganizationMembers(INSERT_ORGANIZATION_MEMBERS, rows);
     }
     
+    /**
+     * Adds a Superhero to many Organizations in JDBC batches. Null and 
+     * repeated Organizations are skipped.
+     * 
+     * @param superhero
+     * @param organizations 
+     */
+    @Override
+    @Transactional
+    public void addOrganizationsForSuperhero(Superhero superhero, 
+            List<Organization> organizations) {
+        
+        List<int[]> rows = new ArrayList<>();
+        List<Integer> changedOrgIds = new ArrayList<>();
+        for (int orgId : BridgeTableSynchronizer.getIds(organizations, 
+                Organization::getId)) {
+            rows.add(new int[] {superhero.getId(), orgId});
+            changedOrgIds.add(orgId);
+        }
+        batchUpdateOrganizationMembers(INSERT_ORGANIZATION_MEMBERS, rows);
+        changeOutbox.appendAll("Organization", changedOrgIds, 
+                ChangeEvent.UPDATE);
+    }
     
     /**
-     * Deletes rows in bridge table which are linked to a given 
-     * Organization.
-     * @param orgId 
+     * Makes the given Organizations the only affiliations of a 
+     * Superhero, inserting and deleting only the rows that changed.
+     * 
+     * @param superheroId
+     * @param organizations 
      */
-    private void deleteMembersForOrganization(int orgId) {
+    @Override
+    @Transactional
+    public void setOrganizationsForSuperhero(int superheroId, 
+            List<Organization> organizations) {
         
-        final String DELETE_ORGANIZATION_MEMBERS 
-                = "DELETE FROM Organization_Superhero "
-                + "WHERE org_id = ?;";
-        jdbcTemplate.update(DELETE_ORGANIZATION_MEMBERS, orgId);
+        List<Integer> changedOrgIds = new ArrayList<>();
+        organizationSynchronizer.synchronize(superheroId, 
+                BridgeTableSynchronizer.getIds(organizations, 
+                        Organization::getId), 
+                changedOrgIds::add);
+        changeOutbox.appendAll("Organization", changedOrgIds, 
+                ChangeEvent.UPDATE);
     }
-
+    
+    /**
+     * Runs an Organization_Superhero statement taking (superhero_id, 
+     * org_id) parameters once per row, in JDBC batches.
+     * 
+     * @param sql
+     * @param rows {superhero_id, org_id} pairs
+     */
+    private void batchUpdateOrganizationMembers(String sql, 
+            List<int[]> rows) {
+        
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows, BATCH_SIZE, 
+                    (PreparedStatement statement, int[] row) -> {
+                        statement.setInt(1, row[0]);
+                        statement.setInt(2, row[1]);
+                    });
+        }
+    }
+    
+    
     
     /**
      * Maps Organization data into an Organization object.
@@ -354,6 +529,7 @@ public class OrganizationDaoDB implements OrganizationDao {
 
             Organization org = new Organization();
             org.setId(rs.getInt("id"));
+            org.setVersion(rs.getInt("version"));
             org.setName(rs.getString("name"));
             org.setDescription(rs.getString("description"));
             org.setStreet_address(rs.getString("street_address"));
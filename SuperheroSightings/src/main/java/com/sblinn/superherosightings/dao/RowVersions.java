@@ -0,0 +1,58 @@
+package com.sblinn.superherosightings.dao;
+
+import java.util.List;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Interprets the result of a compare-and-set update, one of the form
+ * UPDATE ... SET ..., version = version + 1 WHERE id = ? AND version = ?
+ * which changes nothing when the row has moved on from the version the
+ * caller read.
+ *
+ * @author Sara Blinn
+ */
+final class RowVersions {
+
+    private RowVersions() {
+    }
+
+    /**
+     * Returns true if the update applied and false if there is no row
+     * with id. If the row is there but no longer at expectedVersion the
+     * update lost a race with another writer, which is thrown as an
+     * OptimisticLockingFailureException for the caller to show or to
+     * retry from a fresh read.
+     *
+     * @param jdbcTemplate
+     * @param table
+     * @param id
+     * @param expectedVersion version the update was conditional on
+     * @param numRowsUpdated what the update returned
+     * @return boolean
+     */
+    static boolean checkUpdated(JdbcTemplate jdbcTemplate, String table,
+            int id, int expectedVersion, int numRowsUpdated) {
+
+        if (numRowsUpdated == 1) {
+            return true;
+        }
+        final String SELECT_VERSION
+                = "SELECT version FROM `" + table + "` "
+                + "WHERE id = ?;";
+        List<Integer> versions = jdbcTemplate.queryForList(SELECT_VERSION,
+                Integer.class, id);
+        if (versions.isEmpty()) {
+            return false;
+        }
+        throw conflict(table, id, versions.get(0), expectedVersion);
+    }
+
+    static OptimisticLockingFailureException conflict(String table, int id,
+            int version, int expectedVersion) {
+        return new OptimisticLockingFailureException(table + " " + id
+                + " is at version " + version + ", not " + expectedVersion
+                + "; it was changed since it was read.");
+    }
+
+}
@@ -1,9 +1,13 @@
 package com.sblinn.superherosightings.dao;
 
+import com.sblinn.superherosightings.controller.SightingViewModel;
 import com.sblinn.superherosightings.dto.Location;
 import com.sblinn.superherosightings.dto.Sighting;
+import com.sblinn.superherosightings.dto.SuperheroSightingStats;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  *
@@ -21,10 +25,45 @@ public interface SightingDao {
     
     List<Sighting> getAllSightings();
     
+    List<SightingViewModel> getAllSightingViewModels();
+    
+    void forEachSightingViewModel(int fetchSize, 
+            Consumer<SightingViewModel> action);
+    
+    List<SightingViewModel> getMostRecentSightings(int limit);
+    
+    void forEachLocationSightingCount(LocationSightingCountHandler handler);
+    
+    List<SightingViewModel> getMostRecentSightingsAtLocations(
+            Collection<Integer> locationIds, int limit);
+    
+    List<SightingViewModel> getSightingViewModelsByIds(
+            Collection<Integer> ids);
+    
+    SightingPage getSightingPage(SightingSortKey sortKey, 
+            boolean descending, int pageSize, String cursor);
+    
     Sighting createSighting(Sighting sighting);
     
+    int createSightings(List<Sighting> sightings);
+    
     boolean updateSighting(Sighting updatedSighting);
     
     boolean deleteSightingById(int id);
     
+    SuperheroSightingStats getSuperheroSightingStats(int superheroId);
+    
+    
+    /**
+     * Receives a sighted Location's coordinates and its number of 
+     * Sightings.
+     */
+    @FunctionalInterface
+    interface LocationSightingCountHandler {
+        
+        void accept(int locationId, double latitude, double longitude, 
+                int sightings);
+        
+    }
+    
 }
@@ -1,9 +1,15 @@
 
 package com.sblinn.superherosightings.dao;
 
+import com.sblinn.superherosightings.controller.SightingViewModel;
 import com.sblinn.superherosightings.dao.LocationDaoDB.LocationMapper;
+import com.sblinn.superherosightings.dto.ChangeEvent;
+import com.sblinn.superherosightings.dto.Coordinates;
 import com.sblinn.superherosightings.dto.Location;
 import com.sblinn.superherosightings.dto.Sighting;
+import com.sblinn.superherosightings.dto.Superhero;
+import com.sblinn.superherosightings.dto.SuperheroSightingStats;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -13,7 +19,14 @@ import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
@@ -35,6 +48,51 @@ public class SightingDaoDB implements SightingDao {
     @Autowired
     private JdbcTemplate jdbcTemplate;
     
+    @Autowired
+    private ChangeOutbox changeOutbox;
+    
+    /**
+     * Selects a Sighting joined with its Superhero and Location. 
+     * Columns sharing a name across tables are aliased for 
+     * SightingViewModelMapper.
+     */
+    private static final String SELECT_SIGHTING_VIEW_MODELS
+            = "SELECT "
+            + "s.id, "
+            + "s.version, "
+            + "s.location_id, "
+            + "s.superhero_id, "
+            + "s.`date`, "
+            + "h.version AS superhero_version, "
+            + "h.`name` AS superhero_name, "
+            + "h.`description` AS superhero_description, "
+            + "l.version AS location_version, "
+            + "l.`name` AS location_name, "
+            + "l.street_address, "
+            + "l.city, "
+            + "l.state, "
+            + "l.country, "
+            + "l.latitude, "
+            + "l.longitude, "
+            + "l.`description` AS location_description "
+            + "FROM Sighting s "
+            + "INNER JOIN Superhero h "
+            + "ON h.id = s.superhero_id "
+            + "INNER JOIN Location l "
+            + "ON l.id = s.location_id ";
+    
+    // cursor directions, relative to the row the cursor was made from
+    private static final String NEXT = "N";
+    private static final String PREVIOUS = "P";
+    
+    private SightingStatsUpdater statsUpdater;
+    
+    
+    @PostConstruct
+    private void initStatsUpdater() {
+        statsUpdater = new SightingStatsUpdater(jdbcTemplate);
+    }
+    
     @Override
     public Sighting getSightingById(int id) {
         try {
@@ -101,6 +159,7 @@ public class SightingDaoDB implements SightingDao {
             final String GET_SIGHTING_LOCATIONS
                     = "SELECT "
                     + "l.id, "
+                    + "l.version, "
                     + "l.`name`, "
                     + "l.street_address, "
                     + "l.city, "
@@ -136,6 +195,249 @@ public class SightingDaoDB implements SightingDao {
         return sightings;
     }
 
+    /**
+     * Passes every Sighting, with its Superhero and Location set, to 
+     * the action one row at a time in id order, without building a 
+     * list. The rows are read through a forward-only cursor; on MySQL 
+     * a fetchSize of Integer.MIN_VALUE streams them from the server 
+     * instead of buffering the whole result in the driver.
+     * 
+     * @param fetchSize
+     * @param action 
+     */
+    @Override
+    public void forEachSightingViewModel(int fetchSize, 
+            Consumer<SightingViewModel> action) {
+        
+        final String SELECT_ALL_VIEW_MODELS
+                = SELECT_SIGHTING_VIEW_MODELS
+                + "ORDER BY s.id;";
+        SightingViewModelMapper mapper = new SightingViewModelMapper();
+        int[] rowNum = {0};
+        
+        jdbcTemplate.query((Connection conn) -> {
+            PreparedStatement statement = conn.prepareStatement(
+                    SELECT_ALL_VIEW_MODELS, ResultSet.TYPE_FORWARD_ONLY, 
+                    ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, (ResultSet rs) -> {
+            action.accept(mapper.mapRow(rs, rowNum[0]++));
+        });
+    }
+    
+    /**
+     * Returns every Sighting with its Superhero and Location set, 
+     * using a single joined query rather than a lookup per Sighting.
+     * 
+     * @return List<SightingViewModel>
+     */
+    @Override
+    @Transactional
+    public List<SightingViewModel> getAllSightingViewModels() {
+        final String SELECT_ALL_VIEW_MODELS
+                = SELECT_SIGHTING_VIEW_MODELS
+                + "ORDER BY s.id;";
+        List<SightingViewModel> vmSightings = jdbcTemplate.query(
+                SELECT_ALL_VIEW_MODELS, new SightingViewModelMapper());
+        return vmSightings;
+    }
+
+    /**
+     * Returns up to limit of the most recent Sightings, newest first, 
+     * with their Superhero and Location set.
+     * 
+     * @param limit
+     * @return List<SightingViewModel>
+     */
+    @Override
+    @Transactional
+    public List<SightingViewModel> getMostRecentSightings(int limit) {
+        final String SELECT_MOST_RECENT
+                = SELECT_SIGHTING_VIEW_MODELS
+                + "ORDER BY s.`date` DESC, s.id DESC "
+                + "LIMIT ?;";
+        List<SightingViewModel> vmSightings = jdbcTemplate.query(
+                SELECT_MOST_RECENT, new SightingViewModelMapper(), 
+                limit);
+        return vmSightings;
+    }
+    
+    /**
+     * Passes each Location with at least one Sighting to the handler 
+     * with its coordinates and Sighting count, one row at a time.
+     * 
+     * @param handler 
+     */
+    @Override
+    public void forEachLocationSightingCount(
+            LocationSightingCountHandler handler) {
+        
+        final String SELECT_LOCATION_SIGHTING_COUNTS
+                = "SELECT l.id, l.latitude, l.longitude, "
+                + "COUNT(*) AS sightings "
+                + "FROM Sighting s "
+                + "INNER JOIN Location l "
+                + "ON l.id = s.location_id "
+                + "GROUP BY l.id, l.latitude, l.longitude;";
+        jdbcTemplate.query(SELECT_LOCATION_SIGHTING_COUNTS, 
+                (ResultSet rs) -> {
+                    handler.accept(rs.getInt("id"), 
+                            rs.getDouble("latitude"), 
+                            rs.getDouble("longitude"), 
+                            rs.getInt("sightings"));
+                });
+    }
+    
+    /**
+     * Returns up to limit of the most recent Sightings at any of the 
+     * given Locations, newest first. Used with the Location proximity 
+     * searches to list Sightings near a point.
+     * 
+     * @param locationIds
+     * @param limit
+     * @return List<SightingViewModel>
+     */
+    @Override
+    public List<SightingViewModel> getMostRecentSightingsAtLocations(
+            Collection<Integer> locationIds, int limit) {
+        if (locationIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final String SELECT_MOST_RECENT_AT_LOCATIONS
+                = SELECT_SIGHTING_VIEW_MODELS
+                + "WHERE s.location_id IN (" 
+                + String.join(",", 
+                        Collections.nCopies(locationIds.size(), "?")) 
+                + ") "
+                + "ORDER BY s.`date` DESC, s.id DESC "
+                + "LIMIT ?;";
+        List<Object> args = new ArrayList<>(locationIds);
+        args.add(limit);
+        return jdbcTemplate.query(SELECT_MOST_RECENT_AT_LOCATIONS, 
+                new SightingViewModelMapper(), args.toArray());
+    }
+    
+    /**
+     * Returns the Sightings with the given ids, with their Superhero and 
+     * Location set, in id order. Ids with no Sighting are left out.
+     * 
+     * @param ids
+     * @return List<SightingViewModel>
+     */
+    @Override
+    public List<SightingViewModel> getSightingViewModelsByIds(
+            Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final String SELECT_VIEW_MODELS_BY_ID
+                = SELECT_SIGHTING_VIEW_MODELS
+                + "WHERE s.id IN (" 
+                + String.join(",", Collections.nCopies(ids.size(), "?")) 
+                + ") "
+                + "ORDER BY s.id;";
+        return jdbcTemplate.query(SELECT_VIEW_MODELS_BY_ID, 
+                new SightingViewModelMapper(), ids.toArray());
+    }
+    
+    /**
+     * Returns a page of SightingViewModels ordered by the given sort 
+     * key (then by Sighting id). The cursor is one returned by a 
+     * previous page, or null for the first page. Pages are found by 
+     * seeking past the cursor's row rather than by offset, so the 
+     * cost of a page does not grow with its position in the list.
+     * 
+     * @param sortKey
+     * @param descending
+     * @param pageSize
+     * @param cursor
+     * @return SightingPage
+     */
+    @Override
+    @Transactional
+    public SightingPage getSightingPage(SightingSortKey sortKey, 
+            boolean descending, int pageSize, String cursor) {
+        
+        String[] position = decodeCursor(cursor);
+        Object sortValue = position == null 
+                ? null : toSortValue(sortKey, position[2]);
+        if (sortValue == null) {
+            position = null;
+        }
+        boolean backward 
+                = position != null && position[0].equals(PREVIOUS);
+        
+        // reading backward from a cursor scans in the reverse order
+        boolean scanDescending = descending != backward;
+        String comparison = scanDescending ? "<" : ">";
+        String direction = scanDescending ? " DESC" : " ASC";
+        String column = sortKey.getColumn();
+        
+        StringBuilder pageQuery 
+                = new StringBuilder(SELECT_SIGHTING_VIEW_MODELS);
+        List<Object> params = new ArrayList<>();
+        
+        if (position != null && sortKey == SightingSortKey.ID) {
+            pageQuery.append("WHERE s.id ").append(comparison)
+                    .append(" ? ");
+            params.add(Integer.parseInt(position[1]));
+        } else if (position != null) {
+            pageQuery.append("WHERE (").append(column).append(" ")
+                    .append(comparison).append(" ? OR (")
+                    .append(column).append(" = ? AND s.id ")
+                    .append(comparison).append(" ?)) ");
+            params.add(sortValue);
+            params.add(sortValue);
+            params.add(Integer.parseInt(position[1]));
+        }
+        
+        pageQuery.append("ORDER BY ");
+        if (sortKey != SightingSortKey.ID) {
+            pageQuery.append(column).append(direction).append(", ");
+        }
+        pageQuery.append("s.id").append(direction).append(" LIMIT ?;");
+        // one extra row shows whether there is another page
+        params.add(pageSize + 1);
+        
+        List<SightingViewModel> vmSightings = jdbcTemplate.query(
+                pageQuery.toString(), new SightingViewModelMapper(), 
+                params.toArray());
+        
+        if (vmSightings.isEmpty() && backward) {
+            // rows before the cursor were removed, start over
+            return getSightingPage(sortKey, descending, pageSize, null);
+        }
+        
+        boolean hasMore = vmSightings.size() > pageSize;
+        if (hasMore) {
+            vmSightings = new ArrayList<>(
+                    vmSightings.subList(0, pageSize));
+        }
+        if (backward) {
+            Collections.reverse(vmSightings);
+        }
+        
+        SightingPage page = new SightingPage();
+        page.setSightings(vmSightings);
+        
+        if (!vmSightings.isEmpty()) {
+            boolean hasNext = backward || hasMore;
+            boolean hasPrevious = backward ? hasMore : position != null;
+            
+            if (hasNext) {
+                page.setNextCursor(encodeCursor(NEXT, sortKey, 
+                        vmSightings.get(vmSightings.size() - 1)));
+            }
+            if (hasPrevious) {
+                page.setPreviousCursor(encodeCursor(PREVIOUS, sortKey, 
+                        vmSightings.get(0)));
+            }
+        }
+        
+        return page;
+    }
+
     /**
      * Adds a Sighting to the database and returns the Sighting with
      * an id value (if none set prior). 
@@ -182,38 +484,269 @@ public class SightingDaoDB implements SightingDao {
             sighting.setId(keyholder.getKey().intValue());
         }
         
+        statsUpdater.sightingsAdded(Collections.singletonList(sighting));
+        changeOutbox.append("Sighting", sighting.getId(), 
+                ChangeEvent.CREATE);
         return sighting;
     }
+    
+    /**
+     * Inserts Sightings with one JDBC batch in one transaction and 
+     * returns the number inserted. Ids are always generated by the 
+     * database and are set on the Sightings; the driver still sends the 
+     * batch as one multi-row INSERT and reads the keys back from it.
+     * 
+     * @param sightings
+     * @return int
+     */
+    @Override
+    @Transactional
+    public int createSightings(List<Sighting> sightings) {
+        if (sightings.isEmpty()) {
+            return 0;
+        }
+        // no trailing semicolon so the driver can rewrite the batch
+        final String INSERT_SIGHTINGS
+                = "INSERT INTO Sighting(location_id, "
+                + "superhero_id, `date`) "
+                + "VALUES(?,?,?)";
+        
+        List<Integer> ids = new ArrayList<>();
+        int[] counts = jdbcTemplate.execute((Connection conn) -> {
+            try (PreparedStatement statement = conn.prepareStatement(
+                    INSERT_SIGHTINGS, Statement.RETURN_GENERATED_KEYS)) {
+                for (Sighting sighting : sightings) {
+                    statement.setInt(1, sighting.getLocation_id());
+                    statement.setInt(2, sighting.getSuperhero_id());
+                    statement.setTimestamp(3, 
+                            Timestamp.valueOf(sighting.getDate()));
+                    statement.addBatch();
+                }
+                int[] batchCounts = statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getInt(1));
+                    }
+                }
+                return batchCounts;
+            }
+        });
+        for (int i = 0; i < ids.size() && i < sightings.size(); i++) {
+            sightings.get(i).setId(ids.get(i));
+        }
+        
+        // a rewritten batch reports SUCCESS_NO_INFO rather than counts
+        int numInserted = 0;
+        for (int count : counts) {
+            numInserted += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+        }
+        statsUpdater.sightingsAdded(sightings);
+        changeOutbox.appendAll("Sighting", ids, ChangeEvent.CREATE);
+        return numInserted;
+    }
 
+    /**
+     * Updates the Sighting if it is still at updatedSighting's version, 
+     * advancing the version, and throws OptimisticLockingFailureException 
+     * if it has changed since. The row read for the statistics is not 
+     * locked: the version check guarantees it is the one replaced.
+     * 
+     * @param updatedSighting
+     * @return boolean
+     */
     @Override
+    @Transactional
     public boolean updateSighting(Sighting updatedSighting) {
+        Sighting oldSighting = getSightingAtVersion(updatedSighting.getId(), 
+                updatedSighting.getVersion());
+        if (oldSighting == null) {
+            return false;
+        }
+        
         final String UPDATE_SIGHTING
                 = "UPDATE Sighting "
-                + "SET id = ?, location_id = ?, superhero_id = ?, "
-                + "`date` = ? "
-                + "WHERE id = ?;";
+                + "SET location_id = ?, superhero_id = ?, `date` = ?, "
+                + "version = version + 1 "
+                + "WHERE id = ? AND version = ?;";
        
         int numRowsUpdated = jdbcTemplate.update(UPDATE_SIGHTING,
-                updatedSighting.getId(),
                 updatedSighting.getLocation_id(),
                 updatedSighting.getSuperhero_id(),
                 Timestamp.valueOf(updatedSighting.getDate()),
-                updatedSighting.getId());
-                
-        return numRowsUpdated == 1;
+                updatedSighting.getId(),
+                updatedSighting.getVersion());
+        
+        if (!RowVersions.checkUpdated(jdbcTemplate, "Sighting", 
+                updatedSighting.getId(), updatedSighting.getVersion(), 
+                numRowsUpdated)) {
+            return false;
+        }
+        updatedSighting.setVersion(updatedSighting.getVersion() + 1);
+        
+        statsUpdater.sightingsRemoved(
+                Collections.singletonList(oldSighting));
+        statsUpdater.sightingsAdded(
+                Collections.singletonList(updatedSighting));
+        changeOutbox.append("Sighting", updatedSighting.getId(), 
+                ChangeEvent.UPDATE);
+        return true;
     }
 
+    /**
+     * Deletes the Sighting at the version it is read at here, so the 
+     * statistics are adjusted from the row actually deleted. Throws 
+     * OptimisticLockingFailureException if it is updated in between.
+     * 
+     * @param id
+     * @return boolean
+     */
     @Override
+    @Transactional
     public boolean deleteSightingById(int id) {
+        Sighting oldSighting = getSightingById(id);
+        if (oldSighting == null) {
+            return false;
+        }
+        
         final String DELETE_SIGHTING
                 = "DELETE FROM Sighting "
-                + "WHERE id = ?;";
-        int numRowsDeleted = jdbcTemplate.update(DELETE_SIGHTING, id);
+                + "WHERE id = ? AND version = ?;";
+        int numRowsDeleted = jdbcTemplate.update(DELETE_SIGHTING, id, 
+                oldSighting.getVersion());
+        
+        if (!RowVersions.checkUpdated(jdbcTemplate, "Sighting", id, 
+                oldSighting.getVersion(), numRowsDeleted)) {
+            return false;
+        }
+        statsUpdater.sightingsRemoved(
+                Collections.singletonList(oldSighting));
+        changeOutbox.append("Sighting", id, ChangeEvent.DELETE);
+        return true;
+    }
+    
+    /**
+     * Returns the Superhero's statistics, read from one precomputed 
+     * row. A Superhero with no Sightings gets zero counts.
+     * 
+     * @param superheroId
+     * @return SuperheroSightingStats
+     */
+    @Override
+    public SuperheroSightingStats getSuperheroSightingStats(
+            int superheroId) {
+        final String SELECT_STATS
+                = "SELECT * FROM Superhero_Sighting_Stats "
+                + "WHERE superhero_id = ?;";
+        List<SuperheroSightingStats> stats = jdbcTemplate.query(
+                SELECT_STATS, new SuperheroSightingStatsMapper(), 
+                superheroId);
         
-        return numRowsDeleted == 1;
+        return stats.isEmpty() 
+                ? new SuperheroSightingStats(superheroId) : stats.get(0);
+    }
+    
+    /**
+     * Reads a Sighting, which must still be at version. Returns null if 
+     * there is no such Sighting.
+     */
+    private Sighting getSightingAtVersion(int id, int version) {
+        Sighting sighting = getSightingById(id);
+        if (sighting != null && sighting.getVersion() != version) {
+            throw RowVersions.conflict("Sighting", id, 
+                    sighting.getVersion(), version);
+        }
+        return sighting;
     }
 
     
+    // PRIVATE METHODS FOR HANDLING PAGE CURSORS
+    
+    /**
+     * Encodes the position of a SightingViewModel within an ordering 
+     * as an opaque, URL-safe cursor.
+     * 
+     * @param direction
+     * @param sortKey
+     * @param vmSighting
+     * @return cursor String
+     */
+    private String encodeCursor(String direction, 
+            SightingSortKey sortKey, SightingViewModel vmSighting) {
+        
+        String sortValue;
+        switch (sortKey) {
+            case DATE:
+                sortValue = vmSighting.getSighting().getDate().toString();
+                break;
+            case SUPERHERO:
+                sortValue = vmSighting.getSuperhero().getName();
+                break;
+            case LOCATION:
+                sortValue = vmSighting.getLocation().getName();
+                break;
+            default:
+                sortValue = "";
+        }
+        
+        String position = direction + ":" 
+                + vmSighting.getSighting().getId() + ":" + sortValue;
+        
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                position.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decodes a cursor into its direction, Sighting id and sort value.
+     * Returns null if there is no cursor or it cannot be read, which 
+     * starts the listing from the first page.
+     * 
+     * @param cursor
+     * @return String[] {direction, id, sort value}
+     */
+    private String[] decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        
+        try {
+            String position = new String(
+                    Base64.getUrlDecoder().decode(cursor), 
+                    StandardCharsets.UTF_8);
+            String[] parts = position.split(":", 3);
+            
+            if (parts.length != 3 
+                    || !(parts[0].equals(NEXT) 
+                            || parts[0].equals(PREVIOUS))) {
+                return null;
+            }
+            Integer.parseInt(parts[1]);
+            
+            return parts;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Converts a cursor's sort value into the type of its column, or 
+     * returns null if the value does not fit the sort key.
+     * 
+     * @param sortKey
+     * @param sortValue
+     * @return Object
+     */
+    private Object toSortValue(SightingSortKey sortKey, String sortValue) {
+        if (sortKey == SightingSortKey.DATE) {
+            try {
+                return Timestamp.valueOf(LocalDateTime.parse(sortValue));
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        return sortValue;
+    }
+    
+    
     /**
      * Maps Sighting data into a Sighting object.
      */
@@ -226,6 +759,7 @@ public class SightingDaoDB implements SightingDao {
             
             Sighting sighting = new Sighting();
             sighting.setId(rs.getInt("id"));
+            sighting.setVersion(rs.getInt("version"));
             sighting.setLocation_id(rs.getInt("location_id"));
             sighting.setSuperhero_id(rs.getInt("superhero_id"));
             sighting.setDate(rs.getTimestamp("date").toLocalDateTime());
@@ -235,4 +769,78 @@ public class SightingDaoDB implements SightingDao {
         
     }
     
+    /**
+     * Maps a Superhero_Sighting_Stats row.
+     */
+    public static final class SuperheroSightingStatsMapper implements 
+            RowMapper<SuperheroSightingStats> {
+
+        @Override
+        public SuperheroSightingStats mapRow(ResultSet rs, int rowNum) 
+                throws SQLException {
+            
+            SuperheroSightingStats stats = new SuperheroSightingStats(
+                    rs.getInt("superhero_id"));
+            stats.setSightingCount(rs.getInt("sighting_count"));
+            stats.setLocationCount(rs.getInt("location_count"));
+            stats.setFirstSeen(
+                    rs.getTimestamp("first_seen").toLocalDateTime());
+            stats.setLastSeen(
+                    rs.getTimestamp("last_seen").toLocalDateTime());
+            
+            return stats;
+        }
+        
+    }
+    
+    /**
+     * Maps joined Sighting, Superhero and Location data into a 
+     * SightingViewModel object.
+     */
+    public static final class SightingViewModelMapper implements 
+            RowMapper<SightingViewModel> {
+
+        @Override
+        public SightingViewModel mapRow(ResultSet rs, int rowNum) 
+                throws SQLException {
+            
+            Sighting sighting = new Sighting();
+            sighting.setId(rs.getInt("id"));
+            sighting.setVersion(rs.getInt("version"));
+            sighting.setLocation_id(rs.getInt("location_id"));
+            sighting.setSuperhero_id(rs.getInt("superhero_id"));
+            sighting.setDate(rs.getTimestamp("date").toLocalDateTime());
+            
+            Superhero superhero = new Superhero();
+            superhero.setId(sighting.getSuperhero_id());
+            superhero.setVersion(rs.getInt("superhero_version"));
+            superhero.setName(rs.getString("superhero_name"));
+            superhero.setDescription(
+                    rs.getString("superhero_description"));
+            
+            Location location = new Location();
+            location.setId(sighting.getLocation_id());
+            location.setVersion(rs.getInt("location_version"));
+            location.setName(rs.getString("location_name"));
+            location.setStreet_address(rs.getString("street_address"));
+            location.setCity(rs.getString("city"));
+            location.setState(rs.getString("state"));
+            location.setCountry(rs.getString("country"));
+            location.setLatitudeMicrodegrees(
+                    Coordinates.toMicrodegrees(rs.getDouble("latitude")));
+            location.setLongitudeMicrodegrees(
+                    Coordinates.toMicrodegrees(rs.getDouble("longitude")));
+            location.setDescription(
+                    rs.getString("location_description"));
+            
+            SightingViewModel vmSighting = new SightingViewModel();
+            vmSighting.setSighting(sighting);
+            vmSighting.setSuperhero(superhero);
+            vmSighting.setLocation(location);
+            
+            return vmSighting;
+        }
+        
+    }
+    
 }
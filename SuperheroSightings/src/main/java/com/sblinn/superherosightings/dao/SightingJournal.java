@@ -0,0 +1,217 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.dto.Sighting;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of Sightings accepted by the write-behind queue but
+ * not yet known to be in the database, plus a checkpoint file holding
+ * the sequence number of the last one which is.
+ *
+ * Records are fixed length and carry a CRC, so a record torn by a
+ * crash mid-write is recognised and ignored along with anything after
+ * it. Replay is at least once: a crash between a database commit and
+ * the checkpoint that follows it replays that batch again.
+ *
+ * Sightings the database refuses for good are moved to a parked file
+ * in the same record format, which is only ever appended to; an
+ * operator can inspect it and re-import what should be kept.
+ *
+ * @author Sara Blinn
+ */
+class SightingJournal implements AutoCloseable {
+
+    // sequence, superhero_id, location_id, date (epoch second), crc
+    private static final int RECORD_SIZE = 8 + 4 + 4 + 8 + 4;
+
+    private final FileChannel journal;
+    private final FileChannel checkpoint;
+    private final FileChannel parked;
+    private final boolean sync;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final ByteBuffer checkpointBuffer = ByteBuffer.allocate(8);
+    private long lastAppended;
+
+
+    /**
+     * @param directory created if missing
+     * @param sync force each append and checkpoint to disk before
+     * returning; without it a power failure can lose the most recent
+     * appends
+     * @throws IOException
+     */
+    SightingJournal(Path directory, boolean sync) throws IOException {
+        Files.createDirectories(directory);
+        this.journal = FileChannel.open(directory.resolve("sightings.journal"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.checkpoint = FileChannel.open(
+                directory.resolve("sightings.checkpoint"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.parked = FileChannel.open(directory.resolve("sightings.parked"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.sync = sync;
+    }
+
+    /**
+     * Returns the sequence number of the last Sighting written to the
+     * database, or 0 if none has been.
+     *
+     * @return long
+     * @throws IOException
+     */
+    synchronized long readCheckpoint() throws IOException {
+        checkpointBuffer.clear();
+        if (checkpoint.read(checkpointBuffer, 0) < 8) {
+            return 0;
+        }
+        return checkpointBuffer.getLong(0);
+    }
+
+    /**
+     * Returns every intact record in the journal, in the order written.
+     * A torn or corrupt record ends the read and is cut off the file so
+     * later appends follow the last good record.
+     *
+     * @return List<Entry>
+     * @throws IOException
+     */
+    synchronized List<Entry> readAll() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long position = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        while (true) {
+            buffer.clear();
+            if (journal.read(buffer, position) < RECORD_SIZE
+                    || buffer.getInt(RECORD_SIZE - 4) != crc(buffer)) {
+                break;
+            }
+            Sighting sighting = new Sighting();
+            sighting.setSuperhero_id(buffer.getInt(8));
+            sighting.setLocation_id(buffer.getInt(12));
+            sighting.setDate(LocalDateTime.ofEpochSecond(
+                    buffer.getLong(16), 0, ZoneOffset.UTC));
+            entries.add(new Entry(buffer.getLong(0), sighting));
+            lastAppended = buffer.getLong(0);
+            position += RECORD_SIZE;
+        }
+        journal.truncate(position);
+        journal.position(position);
+        // an emptied journal numbers on from the checkpoint
+        lastAppended = Math.max(lastAppended, readCheckpoint());
+        return entries;
+    }
+
+    /**
+     * Writes sighting to the end of the journal and returns the
+     * sequence number given to it. readAll must have been called first.
+     *
+     * @param sighting
+     * @return long
+     * @throws IOException
+     */
+    synchronized long append(Sighting sighting) throws IOException {
+        long sequence = lastAppended + 1;
+        write(journal, sequence, sighting);
+        lastAppended = sequence;
+        return sequence;
+    }
+
+    /**
+     * Appends entry to the parked file. It must still be checkpointed to
+     * leave the journal.
+     *
+     * @param entry
+     * @throws IOException
+     */
+    synchronized void park(Entry entry) throws IOException {
+        write(parked, entry.sequence, entry.sighting);
+    }
+
+    private void write(FileChannel channel, long sequence,
+            Sighting sighting) throws IOException {
+        record.clear();
+        record.putLong(sequence)
+                .putInt(sighting.getSuperhero_id())
+                .putInt(sighting.getLocation_id())
+                .putLong(sighting.getDate().toEpochSecond(ZoneOffset.UTC));
+        record.putInt(crc(record));
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Records that every Sighting up to and including sequence is in
+     * the database. If that is every Sighting appended so far the
+     * journal is emptied.
+     *
+     * @param sequence
+     * @throws IOException
+     */
+    synchronized void checkpoint(long sequence) throws IOException {
+        checkpointBuffer.clear();
+        checkpointBuffer.putLong(0, sequence);
+        checkpoint.write(checkpointBuffer, 0);
+        if (sync) {
+            checkpoint.force(false);
+        }
+        if (sequence == lastAppended) {
+            journal.truncate(0);
+            journal.position(0);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            journal.close();
+        } finally {
+            try {
+                checkpoint.close();
+            } finally {
+                parked.close();
+            }
+        }
+    }
+
+    private static int crc(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, RECORD_SIZE - 4);
+        return (int) crc.getValue();
+    }
+
+
+    /**
+     * A journalled Sighting and its sequence number.
+     */
+    static final class Entry {
+
+        final long sequence;
+        final Sighting sighting;
+
+
+        Entry(long sequence, Sighting sighting) {
+            this.sequence = sequence;
+            this.sighting = sighting;
+        }
+
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.controller.SightingViewModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One page of SightingViewModels along with the opaque cursors for
+ * the pages on either side of it. A cursor is null when there is no
+ * page in that direction.
+ *
+ * @author Sara Blinn
+ */
+public class SightingPage {
+
+    private List<SightingViewModel> sightings = new ArrayList<>();
+    private String nextCursor;
+    private String previousCursor;
+
+
+    public List<SightingViewModel> getSightings() {
+        return sightings;
+    }
+
+    public void setSightings(List<SightingViewModel> sightings) {
+        this.sightings = sightings;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public void setPreviousCursor(String previousCursor) {
+        this.previousCursor = previousCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 41 * hash + Objects.hashCode(this.sightings);
+        hash = 41 * hash + Objects.hashCode(this.nextCursor);
+        hash = 41 * hash + Objects.hashCode(this.previousCursor);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final SightingPage other = (SightingPage) obj;
+        if (!Objects.equals(this.nextCursor, other.nextCursor)) {
+            return false;
+        }
+        if (!Objects.equals(this.previousCursor, other.previousCursor)) {
+            return false;
+        }
+        return Objects.equals(this.sightings, other.sightings);
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.sblinn.superherosightings.dao;
+
+/**
+ * Columns a page of SightingViewModels can be ordered by. Sighting
+ * id is always used as the tie-breaker so every row has a unique
+ * position to seek from.
+ *
+ * Only ID and DATE pages cost the same at any position: they seek along
+ * the primary key or idx_Sighting_date and read one page of rows.
+ * SUPERHERO and LOCATION order by a column of the joined table, which
+ * no index on Sighting holds, so every page of them sorts the whole
+ * join first. Their pages skip no rows either way, but each one costs
+ * more as the number of Sightings grows.
+ *
+ * @author Sara Blinn
+ */
+public enum SightingSortKey {
+
+    ID("s.id"),
+    DATE("s.`date`"),
+    SUPERHERO("h.`name`"),
+    LOCATION("l.`name`");
+
+    private final String column;
+
+
+    private SightingSortKey(String column) {
+        this.column = column;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+}
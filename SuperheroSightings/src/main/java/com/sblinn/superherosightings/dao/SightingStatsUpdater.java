@@ -0,0 +1,238 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.dto.Sighting;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Keeps Superhero_Sighting_Stats (one row per sighted Superhero) and
+ * Superhero_Location_Sightings (one row per Superhero and Location they
+ * were sighted at) in line with the Sighting table. Every method is to
+ * be called in the same transaction as the Sighting change it reports,
+ * after that change has been made.
+ *
+ * Additions adjust counts and dates in place. Removals adjust counts
+ * and re-read the first and last dates from idx_Sighting_superhero_date.
+ * Either way a Superhero's location count is recounted from their
+ * Superhero_Location_Sightings rows, so no write scans their Sightings.
+ * Rows are locked in key order to keep concurrent writers from
+ * deadlocking.
+ *
+ * @author Sara Blinn
+ */
+class SightingStatsUpdater {
+
+    // no trailing semicolons so the driver can rewrite the batches
+    private static final String UPSERT_LOCATION_COUNT
+            = "INSERT INTO Superhero_Location_Sightings"
+            + "(superhero_id, location_id, sighting_count) "
+            + "VALUES(?,?,?) "
+            + "ON DUPLICATE KEY UPDATE "
+            + "sighting_count = sighting_count + VALUES(sighting_count)";
+    private static final String UPSERT_STATS
+            = "INSERT INTO Superhero_Sighting_Stats"
+            + "(superhero_id, sighting_count, location_count, "
+            + "first_seen, last_seen) "
+            + "VALUES(?,?,0,?,?) "
+            + "ON DUPLICATE KEY UPDATE "
+            + "sighting_count = sighting_count + VALUES(sighting_count), "
+            + "first_seen = LEAST(first_seen, VALUES(first_seen)), "
+            + "last_seen = GREATEST(last_seen, VALUES(last_seen))";
+    private static final String RECOUNT_LOCATIONS
+            = "UPDATE Superhero_Sighting_Stats "
+            + "SET location_count = ("
+            + "SELECT COUNT(*) FROM Superhero_Location_Sightings "
+            + "WHERE superhero_id = ?) "
+            + "WHERE superhero_id = ?";
+
+    private static final String SUBTRACT_LOCATION_COUNT
+            = "UPDATE Superhero_Location_Sightings "
+            + "SET sighting_count = sighting_count - ? "
+            + "WHERE superhero_id = ? AND location_id = ?";
+    private static final String DELETE_EMPTY_LOCATION_COUNT
+            = "DELETE FROM Superhero_Location_Sightings "
+            + "WHERE superhero_id = ? AND location_id = ? "
+            + "AND sighting_count <= 0";
+    private static final String SUBTRACT_STATS
+            = "UPDATE Superhero_Sighting_Stats "
+            + "SET sighting_count = sighting_count - ? "
+            + "WHERE superhero_id = ?";
+    private static final String DELETE_EMPTY_STATS
+            = "DELETE FROM Superhero_Sighting_Stats "
+            + "WHERE superhero_id = ? AND sighting_count <= 0";
+    private static final String REFRESH_STATS
+            = "UPDATE Superhero_Sighting_Stats "
+            + "SET location_count = ("
+            + "SELECT COUNT(*) FROM Superhero_Location_Sightings "
+            + "WHERE superhero_id = ?), "
+            + "first_seen = ("
+            + "SELECT MIN(`date`) FROM Sighting WHERE superhero_id = ?), "
+            + "last_seen = ("
+            + "SELECT MAX(`date`) FROM Sighting WHERE superhero_id = ?) "
+            + "WHERE superhero_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+
+    SightingStatsUpdater(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param sightings newly inserted, or the new state of updated ones
+     */
+    void sightingsAdded(Collection<Sighting> sightings) {
+        if (sightings.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> locationCounts = new TreeMap<>();
+        Map<Integer, HeroChange> heroChanges = new TreeMap<>();
+        for (Sighting sighting : sightings) {
+            locationCounts.merge(key(sighting), 1, Integer::sum);
+            heroChanges.computeIfAbsent(sighting.getSuperhero_id(),
+                    id -> new HeroChange()).add(sighting.getDate());
+        }
+
+        List<Object[]> locationRows = new ArrayList<>();
+        locationCounts.forEach((key, count) -> locationRows.add(
+                new Object[] {superheroId(key), locationId(key), count}));
+        List<Object[]> statsRows = new ArrayList<>();
+        List<Object[]> recountRows = new ArrayList<>();
+        heroChanges.forEach((superheroId, change) -> {
+            statsRows.add(new Object[] {superheroId, change.sightings,
+                Timestamp.valueOf(change.firstSeen),
+                Timestamp.valueOf(change.lastSeen)});
+            recountRows.add(new Object[] {superheroId, superheroId});
+        });
+
+        jdbcTemplate.batchUpdate(UPSERT_STATS, statsRows);
+        jdbcTemplate.batchUpdate(UPSERT_LOCATION_COUNT, locationRows);
+        jdbcTemplate.batchUpdate(RECOUNT_LOCATIONS, recountRows);
+    }
+
+    /**
+     * @param sightings deleted ones, or the old state of updated ones
+     */
+    void sightingsRemoved(Collection<Sighting> sightings) {
+        Map<Long, Integer> locationCounts = new TreeMap<>();
+        for (Sighting sighting : sightings) {
+            locationCounts.merge(key(sighting), 1, Integer::sum);
+        }
+        subtract(locationCounts);
+    }
+
+    /**
+     * Removes the counts for Sightings at a Location, which must be
+     * called after its Sightings and before the Location is deleted.
+     *
+     * @param locationId
+     */
+    void locationDeleted(int locationId) {
+        final String SELECT_LOCATION_COUNTS
+                = "SELECT superhero_id, sighting_count "
+                + "FROM Superhero_Location_Sightings "
+                + "WHERE location_id = ? "
+                + "ORDER BY superhero_id;";
+        Map<Long, Integer> locationCounts = new TreeMap<>();
+        jdbcTemplate.query(SELECT_LOCATION_COUNTS, rs -> {
+            locationCounts.put(key(rs.getInt("superhero_id"), locationId),
+                    rs.getInt("sighting_count"));
+        }, locationId);
+        subtract(locationCounts);
+    }
+
+    /**
+     * Removes a Superhero's statistics, which must be called before the
+     * Superhero is deleted.
+     *
+     * @param superheroId
+     */
+    void superheroDeleted(int superheroId) {
+        final String DELETE_LOCATION_COUNTS
+                = "DELETE FROM Superhero_Location_Sightings "
+                + "WHERE superhero_id = ?;";
+        jdbcTemplate.update(DELETE_LOCATION_COUNTS, superheroId);
+
+        final String DELETE_STATS
+                = "DELETE FROM Superhero_Sighting_Stats "
+                + "WHERE superhero_id = ?;";
+        jdbcTemplate.update(DELETE_STATS, superheroId);
+    }
+
+    private void subtract(Map<Long, Integer> locationCounts) {
+        if (locationCounts.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> heroCounts = new TreeMap<>();
+        List<Object[]> subtractRows = new ArrayList<>();
+        List<Object[]> deleteRows = new ArrayList<>();
+        locationCounts.forEach((key, count) -> {
+            heroCounts.merge(superheroId(key), count, Integer::sum);
+            subtractRows.add(new Object[] {count, superheroId(key),
+                locationId(key)});
+            deleteRows.add(new Object[] {superheroId(key), locationId(key)});
+        });
+
+        List<Object[]> statsRows = new ArrayList<>();
+        List<Object[]> emptyRows = new ArrayList<>();
+        List<Object[]> refreshRows = new ArrayList<>();
+        heroCounts.forEach((superheroId, count) -> {
+            statsRows.add(new Object[] {count, superheroId});
+            emptyRows.add(new Object[] {superheroId});
+            refreshRows.add(new Object[] {superheroId, superheroId,
+                superheroId, superheroId});
+        });
+
+        jdbcTemplate.batchUpdate(SUBTRACT_STATS, statsRows);
+        jdbcTemplate.batchUpdate(SUBTRACT_LOCATION_COUNT, subtractRows);
+        jdbcTemplate.batchUpdate(DELETE_EMPTY_LOCATION_COUNT, deleteRows);
+        jdbcTemplate.batchUpdate(DELETE_EMPTY_STATS, emptyRows);
+        jdbcTemplate.batchUpdate(REFRESH_STATS, refreshRows);
+    }
+
+    private static long key(Sighting sighting) {
+        return key(sighting.getSuperhero_id(), sighting.getLocation_id());
+    }
+
+    private static long key(int superheroId, int locationId) {
+        return (long) superheroId << 32 | (locationId & 0xFFFFFFFFL);
+    }
+
+    private static int superheroId(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int locationId(long key) {
+        return (int) key;
+    }
+
+
+    /**
+     * One Superhero's share of a batch of added Sightings.
+     */
+    private static final class HeroChange {
+
+        private int sightings;
+        private LocalDateTime firstSeen;
+        private LocalDateTime lastSeen;
+
+
+        private void add(LocalDateTime date) {
+            sightings++;
+            if (firstSeen == null || date.isBefore(firstSeen)) {
+                firstSeen = date;
+            }
+            if (lastSeen == null || date.isAfter(lastSeen)) {
+                lastSeen = date;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.sblinn.superherosightings.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the write-behind writer at /actuator/health as
+ * sightingWriteBehind: DOWN while it is retrying a failed insert or
+ * journal write (reports are still accepted until the queue fills), UP
+ * otherwise.
+ *
+ * @author Sara Blinn
+ */
+@Component
+@Profile("database")
+@ConditionalOnProperty(name = "sightings.write-behind.enabled",
+        havingValue = "true")
+public class SightingWriteBehindHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    SightingWriteBehindQueue writeBehindQueue;
+
+
+    @Override
+    public Health health() {
+        Exception failure = writeBehindQueue.getWriterFailure();
+        Health.Builder health;
+        if (!writeBehindQueue.isWriterAlive()) {
+            health = Health.down().withDetail("writer", "stopped");
+        } else if (failure != null) {
+            health = Health.down(failure).withDetail("writer", "retrying");
+        } else {
+            health = Health.up().withDetail("writer", "running");
+        }
+        return health
+                .withDetail("queued", writeBehindQueue.getQueueSize())
+                .withDetail("parked", writeBehindQueue.getParkedCount())
+                .build();
+    }
+
+}
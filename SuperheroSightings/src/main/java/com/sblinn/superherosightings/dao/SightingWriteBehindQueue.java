@@ -0,0 +1,367 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.dao.SightingJournal.Entry;
+import com.sblinn.superherosightings.dto.Sighting;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Optional write-behind path for reported Sightings. A report is
+ * journalled to local disk and queued, and the request returns without
+ * waiting for the database; one writer thread drains the queue and
+ * inserts whatever has gathered (up to batchSize) in one transaction.
+ *
+ * The queue is bounded. When it is full offer returns false and the
+ * caller should ask the client to retry later. Sightings still in the
+ * journal when the application stops are inserted by the writer the
+ * next time it starts, before any report queued after startup.
+ *
+ * The writer never gives up. Failures the database may recover from,
+ * and failures of the journal itself, are retried with a growing delay
+ * while the health indicator reports the writer DOWN. A batch refused
+ * for any other reason is retried one Sighting at a time; a Sighting
+ * still refused is moved to the parked file (see SightingJournal) so
+ * that it cannot hold up the ones behind it.
+ *
+ * Enabled with sightings.write-behind.enabled=true.
+ *
+ * @author Sara Blinn
+ */
+@Component
+@Profile("database")
+@ConditionalOnProperty(name = "sightings.write-behind.enabled",
+        havingValue = "true")
+public class SightingWriteBehindQueue {
+
+    private static final Logger LOGGER
+            = LoggerFactory.getLogger(SightingWriteBehindQueue.class);
+
+    private static final long MIN_RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60000;
+
+    private final SightingDao sightingDao;
+    private final Path journalDirectory;
+    private final boolean syncJournal;
+    private final int batchSize;
+    private final long maxDelayMillis;
+
+    private final BlockingQueue<Entry> queue;
+    // permits are taken when a Sighting is offered and returned once it
+    // is committed, bounding queued plus in-flight Sightings
+    private final Semaphore capacity;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong parked = new AtomicLong();
+
+    private SightingJournal journal;
+    private Thread writer;
+    private volatile boolean running;
+    // the failure the writer is retrying, or null while it is keeping up
+    private volatile Exception writerFailure;
+
+
+    @Autowired
+    public SightingWriteBehindQueue(SightingDao sightingDao,
+            MeterRegistry registry,
+            @Value("${sightings.write-behind.journal-directory:data/write-behind}")
+                    String journalDirectory,
+            @Value("${sightings.write-behind.journal-sync:true}")
+                    boolean syncJournal,
+            @Value("${sightings.write-behind.capacity:10000}") int capacity,
+            @Value("${sightings.write-behind.batch-size:500}") int batchSize,
+            @Value("${sightings.write-behind.max-delay-ms:20}")
+                    long maxDelayMillis) {
+
+        this.sightingDao = sightingDao;
+        this.journalDirectory = Paths.get(journalDirectory);
+        this.syncJournal = syncJournal;
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = new Semaphore(capacity);
+
+        Gauge.builder("sightings.queue.size", queue, BlockingQueue::size)
+                .description("Sightings waiting to be inserted")
+                .register(registry);
+        FunctionCounter.builder("sightings.queue.rejected", rejected,
+                AtomicLong::get)
+                .description("Reports refused because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("sightings.queue.dropped", dropped,
+                AtomicLong::get)
+                .description("Queued Sightings the database refused")
+                .register(registry);
+        FunctionCounter.builder("sightings.queue.parked", parked,
+                AtomicLong::get)
+                .description("Queued Sightings moved to the parked file")
+                .register(registry);
+    }
+
+    /**
+     * Opens the journal and starts the writer thread, which first inserts
+     * any Sightings left in the journal by a previous run. Startup does
+     * not wait for the database.
+     *
+     * @throws IOException
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        journal = new SightingJournal(journalDirectory, syncJournal);
+
+        long checkpoint = journal.readCheckpoint();
+        List<Entry> pending = new ArrayList<>();
+        for (Entry entry : journal.readAll()) {
+            if (entry.sequence > checkpoint) {
+                pending.add(entry);
+            }
+        }
+
+        running = true;
+        writer = new Thread(() -> run(pending), "sighting-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops accepting Sightings and waits for the writer to insert those
+     * already queued. Anything it cannot insert within 30 seconds stays 
+     * in the journal.
+     *
+     * @throws InterruptedException
+     * @throws IOException
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+            // still retrying a failure
+            writer.interrupt();
+            writer.join();
+        }
+        journal.close();
+    }
+
+    /**
+     * Journals and queues sighting for insertion, returning false without
+     * doing either if the queue is full or not running.
+     *
+     * @param sighting
+     * @return boolean
+     */
+    public boolean offer(Sighting sighting) {
+        if (!running || !capacity.tryAcquire()) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        try {
+            long sequence;
+            // keep journal and queue order the same
+            synchronized (queue) {
+                sequence = journal.append(sighting);
+                queue.add(new Entry(sequence, sighting));
+            }
+            return true;
+        } catch (IOException ex) {
+            capacity.release();
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the failure the writer is currently retrying, or null if
+     * its last attempt succeeded.
+     *
+     * @return Exception
+     */
+    public Exception getWriterFailure() {
+        return writerFailure;
+    }
+
+    public boolean isWriterAlive() {
+        return writer != null && writer.isAlive();
+    }
+
+    public long getParkedCount() {
+        return parked.get();
+    }
+
+    /**
+     * Writer thread: replays pending, then drains the queue.
+     */
+    private void run(List<Entry> pending) {
+        try {
+            if (!pending.isEmpty()) {
+                LOGGER.info("Replaying {} journalled sightings.",
+                        pending.size());
+                for (int start = 0; start < pending.size();
+                        start += batchSize) {
+                    write(pending.subList(start,
+                            Math.min(pending.size(), start + batchSize)));
+                }
+            }
+            drain();
+        } catch (InterruptedException ex) {
+            // stopping; what is left stays in the journal
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for a first Sighting, gives others up to maxDelayMillis to
+     * join it, and inserts the batch.
+     */
+    private void drain() throws InterruptedException {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            long deadline = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+            while (batch.size() < batchSize) {
+                queue.drainTo(batch, batchSize - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() == batchSize || remaining <= 0) {
+                    break;
+                }
+                Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+
+            write(batch);
+            capacity.release(batch.size());
+            batch.clear();
+        }
+    }
+
+    /**
+     * Inserts entries in one transaction and checkpoints the journal.
+     * If the batch is refused the entries are inserted one at a time, so
+     * a Sighting whose Superhero or Location has since been deleted is
+     * dropped alone and any other refused Sighting is parked alone.
+     * Returns only once every entry is in the database, dropped or
+     * parked.
+     */
+    private void write(List<Entry> entries) throws InterruptedException {
+        List<Sighting> sightings = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            sightings.add(entry.sighting);
+        }
+
+        try {
+            retryWhileRecoverable(
+                    () -> sightingDao.createSightings(sightings));
+        } catch (RuntimeException ex) {
+            for (Entry entry : entries) {
+                writeOne(entry);
+            }
+        }
+        long sequence = entries.get(entries.size() - 1).sequence;
+        retryJournal(() -> journal.checkpoint(sequence));
+    }
+
+    private void writeOne(Entry entry) throws InterruptedException {
+        try {
+            retryWhileRecoverable(
+                    () -> sightingDao.createSighting(entry.sighting));
+        } catch (DataIntegrityViolationException ex) {
+            dropped.incrementAndGet();
+            LOGGER.warn("Dropped queued sighting {}: {}", entry.sequence,
+                    ex.getMostSpecificCause().getMessage());
+        } catch (RuntimeException ex) {
+            retryJournal(() -> journal.park(entry));
+            parked.incrementAndGet();
+            LOGGER.error("Parked queued sighting {}.", entry.sequence, ex);
+        }
+    }
+
+    /**
+     * Runs insert, retrying it with a growing delay while it fails in a
+     * way the database may recover from: a lost or unavailable
+     * connection, a deadlock or a timeout. Any other failure is thrown.
+     */
+    private void retryWhileRecoverable(Runnable insert)
+            throws InterruptedException {
+
+        long delay = MIN_RETRY_DELAY_MILLIS;
+        while (true) {
+            try {
+                insert.run();
+                writerFailure = null;
+                return;
+            } catch (TransientDataAccessException
+                    | RecoverableDataAccessException
+                    | DataAccessResourceFailureException ex) {
+                writerFailure = ex;
+                LOGGER.warn("Sighting insert failed, retrying in {} ms.",
+                        delay, ex);
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Runs a journal write, retrying it with a growing delay until it
+     * succeeds.
+     */
+    private void retryJournal(JournalWrite write) throws InterruptedException {
+        long delay = MIN_RETRY_DELAY_MILLIS;
+        while (true) {
+            try {
+                write.run();
+                writerFailure = null;
+                return;
+            } catch (IOException ex) {
+                writerFailure = ex;
+                LOGGER.error("Write-behind journal write failed, retrying "
+                        + "in {} ms.", delay, ex);
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+
+    private interface JournalWrite {
+
+        void run() throws IOException;
+
+    }
+
+}
@@ -1,7 +1,10 @@
 package com.sblinn.superherosightings.dao;
 
+import com.sblinn.superherosightings.dto.EntitySummary;
 import com.sblinn.superherosightings.dto.Superhero;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  *
@@ -13,6 +16,10 @@ public interface SuperheroDao {
     
     List<Superhero> getAllSuperheros();
     
+    List<EntitySummary> getSuperheroSummaries();
+    
+    Set<Integer> getExistingSuperheroIds(Collection<Integer> ids);
+    
     Superhero createSuperhero(Superhero superhero);
     
     boolean updateSuperhero(Superhero updatedHero);
@@ -1,13 +1,20 @@
 
 package com.sblinn.superherosightings.dao;
 
+import com.sblinn.superherosightings.dto.ChangeEvent;
+import com.sblinn.superherosightings.dto.EntitySummary;
 import com.sblinn.superherosightings.dto.Superhero;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
@@ -29,6 +36,17 @@ public class SuperheroDaoDB implements SuperheroDao {
     @Autowired 
     private JdbcTemplate jdbcTemplate;
     
+    @Autowired
+    private ChangeOutbox changeOutbox;
+    
+    private SightingStatsUpdater statsUpdater;
+    
+    
+    @PostConstruct
+    private void initStatsUpdater() {
+        statsUpdater = new SightingStatsUpdater(jdbcTemplate);
+    }
+    
     
     @Override
     @Transactional
@@ -58,6 +76,46 @@ public class SuperheroDaoDB implements SuperheroDao {
         return superheros;
     }
 
+    /**
+     * Returns the id and name of every Superhero, for pages which list 
+     * Superheros without showing their other fields.
+     * 
+     * @return List<EntitySummary>
+     */
+    @Override
+    public List<EntitySummary> getSuperheroSummaries() {
+        final String SELECT_SUMMARIES
+                = "SELECT id, `name` FROM Superhero "
+                + "ORDER BY id;";
+        return jdbcTemplate.query(SELECT_SUMMARIES, 
+                new EntitySummaryMapper());
+    }
+
+    /**
+     * Returns which of the given ids belong to an existing Superhero, 
+     * using one query.
+     * 
+     * @param ids
+     * @return Set<Integer>
+     */
+    @Override
+    public Set<Integer> getExistingSuperheroIds(Collection<Integer> ids) {
+        Set<Integer> existingIds = new HashSet<>();
+        if (ids.isEmpty()) {
+            return existingIds;
+        }
+        final String SELECT_EXISTING_IDS
+                = "SELECT id FROM Superhero "
+                + "WHERE id IN (" 
+                + String.join(",", Collections.nCopies(ids.size(), "?")) 
+                + ");";
+        jdbcTemplate.query(SELECT_EXISTING_IDS, 
+                (ResultSet rs) -> {
+                    existingIds.add(rs.getInt("id"));
+                }, ids.toArray());
+        return existingIds;
+    }
+
     /**
      * Adds Superhero to the database, return the Superhero with id 
      * if id not previously set.
@@ -100,24 +158,44 @@ public class SuperheroDaoDB implements SuperheroDao {
             superhero.setId(keyholder.getKey().intValue());
         }
         
+        changeOutbox.append("Superhero", superhero.getId(), 
+                ChangeEvent.CREATE);
         return superhero;
     }
 
+    /**
+     * Updates the Superhero if it is still at updatedHero's version, 
+     * which is then advanced to match the row. Returns false if there 
+     * is no such Superhero and throws OptimisticLockingFailureException 
+     * if it was changed since updatedHero was read.
+     * 
+     * @param updatedHero
+     * @return boolean
+     */
     @Override
     @Transactional
     public boolean updateSuperhero(Superhero updatedHero) {
         final String UPDATE_HERO
                 = "UPDATE Superhero "
-                + "SET id = ?, `name` = ?, `description` = ? "
-                + "WHERE id = ?;";
+                + "SET `name` = ?, `description` = ?, "
+                + "version = version + 1 "
+                + "WHERE id = ? AND version = ?;";
         int numRowsUpdated = jdbcTemplate.update(
                 UPDATE_HERO,
-                updatedHero.getId(),
                 updatedHero.getName(),
                 updatedHero.getDescription(),
-                updatedHero.getId());
+                updatedHero.getId(),
+                updatedHero.getVersion());
 
-        return numRowsUpdated == 1;
+        if (!RowVersions.checkUpdated(jdbcTemplate, "Superhero", 
+                updatedHero.getId(), updatedHero.getVersion(), 
+                numRowsUpdated)) {
+            return false;
+        }
+        updatedHero.setVersion(updatedHero.getVersion() + 1);
+        changeOutbox.append("Superhero", updatedHero.getId(), 
+                ChangeEvent.UPDATE);
+        return true;
     }
 
     /**
@@ -132,10 +210,21 @@ public class SuperheroDaoDB implements SuperheroDao {
     public boolean deleteSuperheroById(int id) {
         // must delete references to superhero in:
         // Sighting, Superhero_Superpower, Organization_Superhero
+        // and record what that changes while the references remain
+        changeOutbox.appendSelected("Sighting", ChangeEvent.DELETE, 
+                "SELECT id FROM Sighting WHERE superhero_id = ?", id);
+        changeOutbox.appendSelected("Superpower", ChangeEvent.UPDATE, 
+                "SELECT superpower_id AS id FROM Superhero_Superpower "
+                + "WHERE superhero_id = ?", id);
+        changeOutbox.appendSelected("Organization", ChangeEvent.UPDATE, 
+                "SELECT org_id AS id FROM Organization_Superhero "
+                + "WHERE superhero_id = ?", id);
+        
         final String DELETE_SUPERHERO_SIGHTING
                 = "DELETE FROM Sighting "
                 + "WHERE superhero_id = ?;";
         jdbcTemplate.update(DELETE_SUPERHERO_SIGHTING, id);
+        statsUpdater.superheroDeleted(id);
         
         deleteSuperpowersForHero(id);
         deleteOrganizationsForHero(id);
@@ -145,6 +234,9 @@ public class SuperheroDaoDB implements SuperheroDao {
                 + "WHERE id = ?;";
         int numRowsDeleted = jdbcTemplate.update(DELETE_SUPERHERO, id);
         
+        if (numRowsDeleted == 1) {
+            changeOutbox.append("Superhero", id, ChangeEvent.DELETE);
+        }
         return numRowsDeleted == 1;
     }
 
@@ -198,6 +290,7 @@ public class SuperheroDaoDB implements SuperheroDao {
             
             Superhero superhero = new Superhero();
             superhero.setId(rs.getInt("id"));
+            superhero.setVersion(rs.getInt("version"));
             superhero.setName(rs.getString("name"));
             superhero.setDescription(rs.getString("description"));
             
@@ -1,5 +1,6 @@
 package com.sblinn.superherosightings.dao;
 
+import com.sblinn.superherosightings.dto.EntitySummary;
 import com.sblinn.superherosightings.dto.Superhero;
 import com.sblinn.superherosightings.dto.Superpower;
 import java.util.List;
@@ -14,6 +15,8 @@ public interface SuperpowerDao {
     
     List<Superpower> getAllSuperpowers();
     
+    List<EntitySummary> getSuperpowerSummaries();
+    
     Superpower createSuperpower(Superpower superpower);
     
     boolean updateSuperpower(Superpower updatedSuperpower);
@@ -31,4 +34,10 @@ public interface SuperpowerDao {
     boolean deleteSuperpowerForSuperhero(Superpower superpower,
             int superheroId);
     
+    void addSuperpowersForSuperhero(Superhero superhero, 
+            List<Superpower> superpowers);
+    
+    void setSuperpowersForSuperhero(int superheroId, 
+            List<Superpower> superpowers);
+    
 }
@@ -2,6 +2,8 @@
 package com.sblinn.superherosightings.dao;
 
 import com.sblinn.superherosightings.dao.SuperheroDaoDB.SuperheroMapper;
+import com.sblinn.superherosightings.dto.ChangeEvent;
+import com.sblinn.superherosightings.dto.EntitySummary;
 import com.sblinn.superherosightings.dto.Superhero;
 import com.sblinn.superherosightings.dto.Superpower;
 import java.sql.Connection;
@@ -10,7 +12,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
@@ -33,6 +38,31 @@ public class SuperpowerDaoDB implements SuperpowerDao {
     @Autowired
     private JdbcTemplate jdbcTemplate;
     
+    @Autowired
+    private ChangeOutbox changeOutbox;
+    
+    private static final int BATCH_SIZE = 500;
+    
+    // batched statements have no trailing semicolon so that the driver 
+    // can rewrite a batch of inserts into one multi-row INSERT
+    private static final String INSERT_SUPERHERO_SUPERPOWERS
+            = "INSERT INTO Superhero_Superpower "
+            + "(superhero_id, superpower_id) "
+            + "VALUES(?,?)";
+    
+    // Superhero_Superpower rows seen from each side of the table
+    private BridgeTableSynchronizer superheroSynchronizer;
+    private BridgeTableSynchronizer superpowerSynchronizer;
+    
+    
+    @PostConstruct
+    private void initSynchronizers() {
+        superheroSynchronizer = new BridgeTableSynchronizer(jdbcTemplate, 
+                "Superhero_Superpower", "superpower_id", "superhero_id");
+        superpowerSynchronizer = new BridgeTableSynchronizer(jdbcTemplate, 
+                "Superhero_Superpower", "superhero_id", "superpower_id");
+    }
+    
     
     @Override
     @Transactional
@@ -62,14 +92,29 @@ public class SuperpowerDaoDB implements SuperpowerDao {
         List<Superpower> superpowers = jdbcTemplate.query(
                 SELECT_ALL, new SuperpowerMapper());
         
-        for (Superpower superpower : superpowers) {
-            superpower.setSuperheros(
-                    getAllSuperherosWithSuperpower(superpower.getId()));
+        if (!superpowers.isEmpty()) {
+            setSuperherosForSuperpowers(superpowers, 
+                    getSuperherosBySuperpower(null));
         }
         
         return superpowers;
     }
 
+    /**
+     * Returns the id and name of every Superpower, for pages which list 
+     * Superpowers without showing their other fields.
+     * 
+     * @return List<EntitySummary>
+     */
+    @Override
+    public List<EntitySummary> getSuperpowerSummaries() {
+        final String SELECT_SUMMARIES
+                = "SELECT id, `name` FROM Superpower "
+                + "ORDER BY id;";
+        return jdbcTemplate.query(SELECT_SUMMARIES, 
+                new EntitySummaryMapper());
+    }
+
     /**
      * Adds a given Superpower to the database and returns the 
      * Superpower with an id if one was not specified in the parameter.
@@ -113,44 +158,48 @@ public class SuperpowerDaoDB implements SuperpowerDao {
                     superpower.getSuperheros());
         }
         
+        changeOutbox.append("Superpower", superpower.getId(), 
+                ChangeEvent.CREATE);
         return superpower;
     }
 
     /**
-     * Returns true if update  to Superpower occurred.
+     * Returns true if update  to Superpower occurred. The update only 
+     * applies to the version updatedSuperpower was read at (see 
+     * RowVersions), and advances it.
      * @param updatedSuperpower
      * @return boolean
      */
     @Override
     @Transactional
     public boolean updateSuperpower(Superpower updatedSuperpower) {
-        // get the current list of Superheros with Superpower 
-        List<Superhero> currentSuperherosWithSuperpower
-                = getAllSuperherosWithSuperpower(
-                        updatedSuperpower.getId());
-        int numRowsUpdated = 0;
-        
         final String UPDATE_POWER
                 = "UPDATE Superpower "
-                + "SET id = ?, `name` = ? "
-                + "WHERE id = ?;";
-        numRowsUpdated = jdbcTemplate.update(
+                + "SET `name` = ?, version = version + 1 "
+                + "WHERE id = ? AND version = ?;";
+        int numRowsUpdated = jdbcTemplate.update(
                 UPDATE_POWER,
-                updatedSuperpower.getId(),
                 updatedSuperpower.getName(),
-                updatedSuperpower.getId());
+                updatedSuperpower.getId(),
+                updatedSuperpower.getVersion());
         
-        if (!currentSuperherosWithSuperpower.isEmpty()) {
-            deleteSuperpowerForSuperheros(updatedSuperpower, 
-                    currentSuperherosWithSuperpower);
+        if (!RowVersions.checkUpdated(jdbcTemplate, "Superpower", 
+                updatedSuperpower.getId(), updatedSuperpower.getVersion(), 
+                numRowsUpdated)) {
+            return false;
         }
+        updatedSuperpower.setVersion(updatedSuperpower.getVersion() + 1);
         
-        if (!updatedSuperpower.getSuperheros().isEmpty()) {
-            addSuperpowerForSuperheros(updatedSuperpower, 
-                    updatedSuperpower.getSuperheros());
-        }
+        // insert and delete only the bridge table rows that changed
+        List<Superhero> superheros = updatedSuperpower.getSuperheros() == null
+                ? new ArrayList<>() : updatedSuperpower.getSuperheros();
+        superheroSynchronizer.synchronize(updatedSuperpower.getId(), 
+                BridgeTableSynchronizer.getIds(superheros, 
+                        Superhero::getId));
         
-        return numRowsUpdated == 1;
+        changeOutbox.append("Superpower", updatedSuperpower.getId(), 
+                ChangeEvent.UPDATE);
+        return true;
     }
 
     /**
@@ -174,6 +223,9 @@ public class SuperpowerDaoDB implements SuperpowerDao {
                 + "WHERE id = ?;";
         int numRowsDeleted = jdbcTemplate.update(DELETE_SUPERPOWER, id);
         
+        if (numRowsDeleted == 1) {
+            changeOutbox.append("Superpower", id, ChangeEvent.DELETE);
+        }
         return numRowsDeleted == 1;
     }
 
@@ -191,6 +243,7 @@ public class SuperpowerDaoDB implements SuperpowerDao {
             final String GET_SUPERHEROS
                     = "SELECT "
                     + "Superhero.id, "
+                    + "Superhero.version, "
                     + "Superhero.`name`, "
                     + "Superhero.`description` "
                     + "FROM Superhero "
@@ -224,7 +277,8 @@ public class SuperpowerDaoDB implements SuperpowerDao {
         try {
             final String GET_SUPERPOWERS
                     = "SELECT "
-                    + "Superpower.id,"
+                    + "Superpower.id, "
+                    + "Superpower.version, "
                     + "Superpower.`name` "
                     + "FROM Superpower "
                     + "LEFT OUTER JOIN Superhero_Superpower "
@@ -237,10 +291,13 @@ public class SuperpowerDaoDB implements SuperpowerDao {
                     superheroId);
             
             if (!powers.isEmpty()) {
-                for(Superpower power : powers) {
-                    power.setSuperheros(getAllSuperherosWithSuperpower(
-                        power.getId()));
-                }
+                setSuperherosForSuperpowers(powers, 
+                        getSuperherosBySuperpower(
+                                "hero_powers.superpower_id IN ("
+                                + "SELECT superpower_id "
+                                + "FROM Superhero_Superpower "
+                                + "WHERE superhero_id = ?) ", 
+                                superheroId));
             }
             
             return powers;
@@ -258,6 +315,7 @@ public class SuperpowerDaoDB implements SuperpowerDao {
      * @return boolean
      */
     @Override
+    @Transactional
     public boolean addSuperpowerForSuperhero(Superpower superpower,
             Superhero superhero) {
         
@@ -272,6 +330,10 @@ public class SuperpowerDaoDB implements SuperpowerDao {
                         INSERT_SUPERHERO_SUPERPOWER,
                         superhero.getId(),
                         superpower.getId());
+                if (numRowsAdded == 1) {
+                    changeOutbox.append("Superpower", superpower.getId(), 
+                            ChangeEvent.UPDATE);
+                }
                 return numRowsAdded == 1;
             }
         } catch (NullPointerException | DuplicateKeyException e) {
@@ -289,6 +351,7 @@ public class SuperpowerDaoDB implements SuperpowerDao {
      * @return boolean
      */
     @Override
+    @Transactional
     public boolean deleteSuperpowerForSuperhero(Superpower superpower,
             int superheroId) {
         
@@ -302,6 +365,10 @@ public class SuperpowerDaoDB implements SuperpowerDao {
                     superpower.getId(),
                     superheroId);
             
+            if (numRowsDeleted == 1) {
+                changeOutbox.append("Superpower", superpower.getId(), 
+                        ChangeEvent.UPDATE);
+            }
             return numRowsDeleted == 1; 
         } catch (NullPointerException e) {
             //ignore and return false
@@ -309,20 +376,132 @@ public class SuperpowerDaoDB implements SuperpowerDao {
         return false;
     }
     
+    /**
+     * Returns the Superheros with each of many Superpowers, keyed by 
+     * Superpower id, using a single query over the bridge table. The 
+     * condition restricts which bridge table rows are read, or all 
+     * rows are read if it is null.
+     * 
+     * @param condition
+     * @param params
+     * @return Map of Superpower id to Superheros
+     */
+    private Map<Integer, List<Superhero>> getSuperherosBySuperpower(
+            String condition, Object... params) {
+        
+        final String GET_SUPERHEROS
+                = "SELECT "
+                + "hero_powers.superpower_id, "
+                + "Superhero.id, "
+                + "Superhero.version, "
+                + "Superhero.`name`, "
+                + "Superhero.`description` "
+                + "FROM Superhero_Superpower hero_powers "
+                + "INNER JOIN Superhero "
+                + "ON Superhero.id = hero_powers.superhero_id "
+                + (condition == null ? "" : "WHERE " + condition)
+                + "ORDER BY hero_powers.superpower_id, Superhero.id;";
+        
+        Map<Integer, List<Superhero>> superherosByPower = new HashMap<>();
+        SuperheroMapper superheroMapper = new SuperheroMapper();
+        
+        jdbcTemplate.query(GET_SUPERHEROS, (ResultSet rs) -> {
+            superherosByPower.computeIfAbsent(rs.getInt("superpower_id"), 
+                    powerId -> new ArrayList<>())
+                    .add(superheroMapper.mapRow(rs, rs.getRow()));
+        }, params);
+        
+        return superherosByPower;
+    }
+    
+    /**
+     * Sets the superheros field for a list of Superpowers from 
+     * Superheros grouped by Superpower id.
+     * 
+     * @param superpowers
+     * @param superherosByPower 
+     */
+    private void setSuperherosForSuperpowers(List<Superpower> superpowers, 
+            Map<Integer, List<Superhero>> superherosByPower) {
+        
+        for (Superpower superpower : superpowers) {
+            superpower.setSuperheros(superherosByPower.getOrDefault(
+                    superpower.getId(), new ArrayList<>()));
+        }
+    }
+    
+    /**
+     * Adds many Superpowers for a Superhero in JDBC batches. Null and 
+     * repeated Superpowers are skipped.
+     * 
+     * @param superhero
+     * @param superpowers 
+     */
+    @Override
+    @Transactional
+    public void addSuperpowersForSuperhero(Superhero superhero, 
+            List<Superpower> superpowers) {
+        
+        List<int[]> rows = new ArrayList<>();
+        List<Integer> changedSuperpowerIds = new ArrayList<>();
+        for (int superpowerId : BridgeTableSynchronizer.getIds(superpowers, 
+                Superpower::getId)) {
+            rows.add(new int[] {superhero.getId(), superpowerId});
+            changedSuperpowerIds.add(superpowerId);
+        }
+        batchUpdateSuperheroSuperpowers(INSERT_SUPERHERO_SUPERPOWERS, rows);
+        changeOutbox.appendAll("Superpower", changedSuperpowerIds, 
+                ChangeEvent.UPDATE);
+    }
+    
+    /**
+     * Makes the given Superpowers the only Superpowers of a Superhero, 
+     * inserting and deleting only the rows that changed.
+     * 
+     * @param superheroId
+     * @param superpowers 
+     */
+    @Override
+    @Transactional
+    public void setSuperpowersForSuperhero(int superheroId, 
+            List<Superpower> superpowers) {
+        
+        List<Integer> changedSuperpowerIds = new ArrayList<>();
+        superpowerSynchronizer.synchronize(superheroId, 
+                BridgeTableSynchronizer.getIds(superpowers, 
+                        Superpower::getId), 
+                changedSuperpowerIds::add);
+        changeOutbox.appendAll("Superpower", changedSuperpowerIds, 
+                ChangeEvent.UPDATE);
+    }
+    
     private void addSuperpowerForSuperheros(Superpower superpower, 
             List<Superhero> superheros) {
         
-        for (Superhero superhero : superheros) {
-            addSuperpowerForSuperhero(superpower, superhero);
+        List<int[]> rows = new ArrayList<>();
+        for (int superheroId : BridgeTableSynchronizer.getIds(superheros, 
+                Superhero::getId)) {
+            rows.add(new int[] {superheroId, superpower.getId()});
         }
+        batchUpdateSuperheroSuperpowers(INSERT_SUPERHERO_SUPERPOWERS, rows);
     }
     
-    private void deleteSuperpowerForSuperheros(Superpower superpower,
-            List<Superhero> superheros) {
+    /**
+     * Runs a Superhero_Superpower statement taking (superhero_id, 
+     * superpower_id) parameters once per row, in JDBC batches.
+     * 
+     * @param sql
+     * @param rows {superhero_id, superpower_id} pairs
+     */
+    private void batchUpdateSuperheroSuperpowers(String sql, 
+            List<int[]> rows) {
         
-        for (Superhero superhero : superheros) {
-            deleteSuperpowerForSuperhero(superpower, 
-                    superhero.getId());
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows, BATCH_SIZE, 
+                    (PreparedStatement statement, int[] row) -> {
+                        statement.setInt(1, row[0]);
+                        statement.setInt(2, row[1]);
+                    });
         }
     }
     
@@ -339,6 +518,7 @@ public class SuperpowerDaoDB implements SuperpowerDao {
 
             Superpower power = new Superpower();
             power.setId(rs.getInt("id"));
+            power.setVersion(rs.getInt("version"));
             power.setName(rs.getString("name"));
             
             return power;
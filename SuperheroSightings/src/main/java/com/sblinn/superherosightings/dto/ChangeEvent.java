@@ -0,0 +1,113 @@
+package com.sblinn.superherosightings.dto;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * One committed change to an entity, as recorded in the change outbox.
+ * Events carry no entity data: a consumer reads the entity's current
+ * state by entity and entity_id, or forgets it on DELETE.
+ *
+ * An UPDATE is also recorded for an Organization or Superpower whose
+ * members change, since its members are part of what is read for it.
+ *
+ * @author Sara Blinn
+ */
+public class ChangeEvent {
+
+    public static final String CREATE = "CREATE";
+    public static final String UPDATE = "UPDATE";
+    public static final String DELETE = "DELETE";
+
+    private long id;
+    private String entity;
+    private int entity_id;
+    private String operation;
+    private LocalDateTime changedAt;
+
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * @return Superhero, Superpower, Organization, Location or Sighting
+     */
+    public String getEntity() {
+        return entity;
+    }
+
+    public void setEntity(String entity) {
+        this.entity = entity;
+    }
+
+    public int getEntity_id() {
+        return entity_id;
+    }
+
+    public void setEntity_id(int entity_id) {
+        this.entity_id = entity_id;
+    }
+
+    /**
+     * @return CREATE, UPDATE or DELETE
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(LocalDateTime changedAt) {
+        this.changedAt = changedAt;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 59 * hash + Long.hashCode(this.id);
+        hash = 59 * hash + Objects.hashCode(this.entity);
+        hash = 59 * hash + this.entity_id;
+        hash = 59 * hash + Objects.hashCode(this.operation);
+        hash = 59 * hash + Objects.hashCode(this.changedAt);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final ChangeEvent other = (ChangeEvent) obj;
+        if (this.id != other.id) {
+            return false;
+        }
+        if (this.entity_id != other.entity_id) {
+            return false;
+        }
+        if (!Objects.equals(this.entity, other.entity)) {
+            return false;
+        }
+        if (!Objects.equals(this.operation, other.operation)) {
+            return false;
+        }
+        return Objects.equals(this.changedAt, other.changedAt);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.sblinn.superherosightings.dto;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Conversions for coordinates held as fixed-point microdegrees: an int
+ * counting millionths of a degree. This is exactly the precision of the
+ * DECIMAL(9,6) latitude and longitude columns, so converting between
+ * the two loses nothing.
+ *
+ * @author Sara Blinn
+ */
+public final class Coordinates {
+
+    public static final int SCALE = 6;
+
+    private static final double MICRODEGREES = 1_000_000d;
+    // well outside any valid coordinate, but still a legal int
+    private static final long MAX_MICRODEGREES = 2_000_000_000L;
+
+    private Coordinates() {
+    }
+
+    /**
+     * Rounds degrees to microdegrees the way MySQL rounds a value into a
+     * DECIMAL(9,6) column. Values too large for an int are clamped to
+     * one which still fails validation.
+     *
+     * @param degrees
+     * @return int
+     */
+    public static int toMicrodegrees(BigDecimal degrees) {
+        BigInteger micro = degrees.setScale(SCALE, RoundingMode.HALF_UP)
+                .unscaledValue();
+        if (micro.bitLength() > 62) {
+            return (int) (micro.signum() * MAX_MICRODEGREES);
+        }
+        return (int) Math.max(-MAX_MICRODEGREES,
+                Math.min(MAX_MICRODEGREES, micro.longValue()));
+    }
+
+    /**
+     * Exact for any double read from a DECIMAL(9,6) column.
+     *
+     * @param degrees
+     * @return int
+     */
+    public static int toMicrodegrees(double degrees) {
+        return (int) Math.max(-MAX_MICRODEGREES, Math.min(MAX_MICRODEGREES,
+                Math.round(degrees * MICRODEGREES)));
+    }
+
+    public static BigDecimal toBigDecimal(int microdegrees) {
+        return BigDecimal.valueOf(microdegrees, SCALE);
+    }
+
+    public static double toDegrees(int microdegrees) {
+        return microdegrees / MICRODEGREES;
+    }
+
+    /**
+     * Formats microdegrees with all six decimal places, e.g. -87.000041,
+     * without going through BigDecimal or String.format.
+     *
+     * @param microdegrees
+     * @return String
+     */
+    public static String format(int microdegrees) {
+        StringBuilder sb = new StringBuilder(12);
+        long micro = microdegrees;
+        if (micro < 0) {
+            sb.append('-');
+            micro = -micro;
+        }
+        sb.append(micro / 1_000_000).append('.');
+        String fraction = Long.toString(micro % 1_000_000);
+        for (int i = fraction.length(); i < SCALE; i++) {
+            sb.append('0');
+        }
+        return sb.append(fraction).toString();
+    }
+
+}
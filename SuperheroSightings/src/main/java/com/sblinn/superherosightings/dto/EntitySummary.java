@@ -0,0 +1,58 @@
+package com.sblinn.superherosightings.dto;
+
+import java.util.Objects;
+
+/**
+ * Immutable id and name of a Superhero, Superpower, Organization or
+ * Location, for pages such as form option lists which show nothing
+ * else about the entity.
+ *
+ * @author Sara Blinn
+ */
+public final class EntitySummary {
+
+    private final int id;
+    private final String name;
+
+
+    public EntitySummary(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+
+    @Override
+    public int hashCode() {
+        int hash = 3;
+        hash = 53 * hash + this.id;
+        hash = 53 * hash + Objects.hashCode(this.name);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final EntitySummary other = (EntitySummary) obj;
+        if (this.id != other.id) {
+            return false;
+        }
+        return Objects.equals(this.name, other.name);
+    }
+
+}
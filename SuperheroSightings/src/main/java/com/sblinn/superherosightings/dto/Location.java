@@ -1,6 +1,7 @@
 
 package com.sblinn.superherosightings.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.math.BigDecimal;
 import java.util.Objects;
 import javax.validation.constraints.DecimalMax;
@@ -16,7 +17,11 @@ import javax.validation.constraints.Size;
  */
 public class Location {
 
+    private static final int UNSET = Integer.MIN_VALUE;
+
     private int id;
+
+    private int version;
     
     @NotBlank(message = "Name cannot be empty.")
     @Size(max = 50, message = "Name must be less than 50 characters.")
@@ -39,15 +44,11 @@ public class Location {
     @Pattern(regexp = "^[a-zA-Z]*$", message = "Country name can only contain alphabet characters.")
     private String country; 
     
-    @NotNull(message = "Longitude cannot be empty.")
-    @DecimalMin(value = "-180.000000", inclusive = true)
-    @DecimalMax(value = "180.000000", inclusive = true)
-    private BigDecimal longitude;
+    // microdegrees (see Coordinates), or UNSET; validated through the
+    // BigDecimal getters below
+    private int longitude = UNSET;
     
-    @NotNull(message = "Latitude cannot be empty.")
-    @DecimalMin(value = "-90.000000", inclusive = true)
-    @DecimalMax(value = "90.000000", inclusive = true)
-    private BigDecimal latitude;
+    private int latitude = UNSET;
     
     @NotBlank(message = "Description cannot be empty.")
     @Size(max = 100, message = "Description must be less than 100 characters.")
@@ -62,6 +63,14 @@ public class Location {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -102,46 +111,72 @@ public class Location {
         this.country = country;
     }
 
+    @NotNull(message = "Longitude cannot be empty.")
+    @DecimalMin(value = "-180.000000", inclusive = true)
+    @DecimalMax(value = "180.000000", inclusive = true)
     public BigDecimal getLongitude() {
-        return longitude;
+        return longitude == UNSET ? null : Coordinates.toBigDecimal(longitude);
     }
 
     public void setLongitude(BigDecimal longitude) {
-        String lngStr = longitude.toString();
-        if (!lngStr.contains(".")) {
-            lngStr.concat(".000000");
-        }
-
-        longitude = new BigDecimal(lngStr);
-        this.longitude = longitude;
+        this.longitude = longitude == null 
+                ? UNSET : Coordinates.toMicrodegrees(longitude);
     }
     
     public void setLongitude(String longitude) {
-        if (!longitude.contains(".")) {
-            longitude.concat(".000000");
-        }
-        this.longitude = new BigDecimal(longitude);
+        setLongitude(longitude == null ? null : new BigDecimal(longitude));
+    }
+
+    @JsonIgnore
+    public int getLongitudeMicrodegrees() {
+        return longitude;
     }
 
+    public void setLongitudeMicrodegrees(int longitude) {
+        this.longitude = longitude;
+    }
+
+    @JsonIgnore
+    public double getLongitudeDegrees() {
+        return Coordinates.toDegrees(longitude);
+    }
+
+    @NotNull(message = "Latitude cannot be empty.")
+    @DecimalMin(value = "-90.000000", inclusive = true)
+    @DecimalMax(value = "90.000000", inclusive = true)
     public BigDecimal getLatitude() {
-        return latitude;
+        return latitude == UNSET ? null : Coordinates.toBigDecimal(latitude);
     }
 
     public void setLatitude(BigDecimal latitude) {
-        String latStr = latitude.toString();
-        if (!latStr.contains(".")) {
-            latStr.concat(".000000");
-        }
-        
-        latitude = new BigDecimal(latStr);
-        this.latitude = latitude;
+        this.latitude = latitude == null 
+                ? UNSET : Coordinates.toMicrodegrees(latitude);
     }
 
     public void setLatitude(String latitude) {
-        if (!latitude.contains(".")) {
-            latitude.concat(".000000");
-        }
-        this.longitude = new BigDecimal(latitude);
+        setLatitude(latitude == null ? null : new BigDecimal(latitude));
+    }
+
+    @JsonIgnore
+    public int getLatitudeMicrodegrees() {
+        return latitude;
+    }
+
+    public void setLatitudeMicrodegrees(int latitude) {
+        this.latitude = latitude;
+    }
+
+    @JsonIgnore
+    public double getLatitudeDegrees() {
+        return Coordinates.toDegrees(latitude);
+    }
+
+    /**
+     * @return true if both latitude and longitude have been set
+     */
+    @JsonIgnore
+    public boolean hasCoordinates() {
+        return latitude != UNSET && longitude != UNSET;
     }
 
     public String getDescription() {
@@ -161,8 +196,8 @@ public class Location {
         hash = 29 * hash + Objects.hashCode(this.city);
         hash = 29 * hash + Objects.hashCode(this.state);
         hash = 29 * hash + Objects.hashCode(this.country);
-        hash = 29 * hash + Objects.hashCode(this.longitude);
-        hash = 29 * hash + Objects.hashCode(this.latitude);
+        hash = 29 * hash + this.longitude;
+        hash = 29 * hash + this.latitude;
         hash = 29 * hash + Objects.hashCode(this.description);
         return hash;
     }
@@ -200,10 +235,10 @@ public class Location {
         if (!Objects.equals(this.description, other.description)) {
             return false;
         }
-        if (this.longitude.compareTo(other.longitude) != 0) {
+        if (this.longitude != other.longitude) {
             return false;
         }
-        return (this.latitude.compareTo(other.latitude) == 0);
+        return (this.latitude == other.latitude);
     }
     
 }
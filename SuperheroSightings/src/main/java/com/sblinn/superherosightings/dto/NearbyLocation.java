@@ -0,0 +1,58 @@
+package com.sblinn.superherosightings.dto;
+
+import java.util.Objects;
+
+/**
+ * A Location found by a proximity search, with its great-circle 
+ * distance in kilometres from the searched point.
+ *
+ * @author Sara Blinn
+ */
+public final class NearbyLocation {
+
+    private final Location location;
+    private final double distanceKm;
+
+
+    public NearbyLocation(Location location, double distanceKm) {
+        this.location = location;
+        this.distanceKm = distanceKm;
+    }
+
+    public Location getLocation() {
+        return location;
+    }
+
+    public double getDistanceKm() {
+        return distanceKm;
+    }
+
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 67 * hash + Objects.hashCode(this.location);
+        hash = 67 * hash + Double.hashCode(this.distanceKm);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final NearbyLocation other = (NearbyLocation) obj;
+        if (Double.doubleToLongBits(this.distanceKm) 
+                != Double.doubleToLongBits(other.distanceKm)) {
+            return false;
+        }
+        return Objects.equals(this.location, other.location);
+    }
+
+}
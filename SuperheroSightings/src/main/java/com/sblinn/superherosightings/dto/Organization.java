@@ -15,6 +15,8 @@ import javax.validation.constraints.Size;
 public class Organization {
 
     private int id;
+
+    private int version;
     
     @NotBlank(message = "Name cannot be empty.")
     @Size(max = 50, message = "Name must be less than 50 characters.")
@@ -47,6 +49,14 @@ public class Organization {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -13,6 +13,8 @@ import javax.validation.constraints.NotNull;
 public class Sighting {
 
     private int id;
+
+    private int version;
     
     @NotNull(message = "Location required.")
     private int location_id;
@@ -31,6 +33,14 @@ public class Sighting {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public int getLocation_id() {
         return location_id;
     }
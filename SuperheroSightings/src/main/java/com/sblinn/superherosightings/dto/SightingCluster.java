@@ -0,0 +1,49 @@
+package com.sblinn.superherosightings.dto;
+
+/**
+ * A map marker standing for every Sighting in one grid cell at one zoom 
+ * level: the Sighting-weighted centre of the cell's Locations, how many 
+ * Sightings and Locations it covers, and the Location's id when it 
+ * covers only one (otherwise 0).
+ *
+ * @author Sara Blinn
+ */
+public final class SightingCluster {
+
+    private final double latitude;
+    private final double longitude;
+    private final int sightings;
+    private final int locations;
+    private final int locationId;
+
+
+    public SightingCluster(double latitude, double longitude, int sightings, 
+            int locations, int locationId) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.sightings = sightings;
+        this.locations = locations;
+        this.locationId = locationId;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public int getSightings() {
+        return sightings;
+    }
+
+    public int getLocations() {
+        return locations;
+    }
+
+    public int getLocationId() {
+        return locationId;
+    }
+
+}
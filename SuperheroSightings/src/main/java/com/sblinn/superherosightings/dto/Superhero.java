@@ -11,6 +11,8 @@ import javax.validation.constraints.Size;
 public class Superhero {
 
     private int id;
+
+    private int version;
     
     @NotBlank(message = "Name cannot be empty.")
     @Size(max = 50, message = "Name must be less than 50 characters.")
@@ -29,6 +31,14 @@ public class Superhero {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -0,0 +1,109 @@
+package com.sblinn.superherosightings.dto;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * How often, where and when a Superhero has been sighted. A Superhero
+ * never sighted has counts of 0 and no first or last sighting.
+ *
+ * @author Sara Blinn
+ */
+public class SuperheroSightingStats {
+
+    private int superhero_id;
+    private int sightingCount;
+    private int locationCount;
+    private LocalDateTime firstSeen;
+    private LocalDateTime lastSeen;
+
+
+    public SuperheroSightingStats() {
+    }
+
+    public SuperheroSightingStats(int superhero_id) {
+        this.superhero_id = superhero_id;
+    }
+
+    public int getSuperhero_id() {
+        return superhero_id;
+    }
+
+    public void setSuperhero_id(int superhero_id) {
+        this.superhero_id = superhero_id;
+    }
+
+    public int getSightingCount() {
+        return sightingCount;
+    }
+
+    public void setSightingCount(int sightingCount) {
+        this.sightingCount = sightingCount;
+    }
+
+    /**
+     * @return number of distinct Locations the Superhero was sighted at
+     */
+    public int getLocationCount() {
+        return locationCount;
+    }
+
+    public void setLocationCount(int locationCount) {
+        this.locationCount = locationCount;
+    }
+
+    public LocalDateTime getFirstSeen() {
+        return firstSeen;
+    }
+
+    public void setFirstSeen(LocalDateTime firstSeen) {
+        this.firstSeen = firstSeen;
+    }
+
+    public LocalDateTime getLastSeen() {
+        return lastSeen;
+    }
+
+    public void setLastSeen(LocalDateTime lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 41 * hash + this.superhero_id;
+        hash = 41 * hash + this.sightingCount;
+        hash = 41 * hash + this.locationCount;
+        hash = 41 * hash + Objects.hashCode(this.firstSeen);
+        hash = 41 * hash + Objects.hashCode(this.lastSeen);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final SuperheroSightingStats other = (SuperheroSightingStats) obj;
+        if (this.superhero_id != other.superhero_id) {
+            return false;
+        }
+        if (this.sightingCount != other.sightingCount) {
+            return false;
+        }
+        if (this.locationCount != other.locationCount) {
+            return false;
+        }
+        if (!Objects.equals(this.firstSeen, other.firstSeen)) {
+            return false;
+        }
+        return Objects.equals(this.lastSeen, other.lastSeen);
+    }
+
+}
@@ -14,6 +14,8 @@ import javax.validation.constraints.Size;
 public class Superpower {
 
     private int id;
+
+    private int version;
     
     @NotBlank(message = "Name cannot be empty.")
     @Size(max = 50, message = "Name must be less than 50 characters.")
@@ -30,6 +32,14 @@ public class Superpower {
         this.id = id;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
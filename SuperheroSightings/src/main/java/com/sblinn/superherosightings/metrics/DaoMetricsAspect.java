@@ -0,0 +1,78 @@
+package com.sblinn.superherosightings.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Collection;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every public DAO method (dao.method, with a latency histogram)
+ * and records how many rows each read returned (dao.rows: the size of
+ * a returned collection, or 1 for a single entity).
+ *
+ * @author Sara Blinn
+ */
+@Aspect
+@Component
+public class DaoMetricsAspect {
+
+    private final MeterRegistry registry;
+
+
+    public DaoMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("within(com.sblinn.superherosightings.dao..*) "
+            + "&& execution(public * *(..))")
+    public Object timeDaoMethod(ProceedingJoinPoint joinPoint)
+            throws Throwable {
+
+        String dao = joinPoint.getSignature().getDeclaringType()
+                .getSimpleName();
+        String method = joinPoint.getSignature().getName();
+
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "success";
+        try {
+            Object result = joinPoint.proceed();
+            recordRows(dao, method, result);
+            return result;
+        } catch (Throwable e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("dao.method")
+                    .description("DAO method latency")
+                    .tag("dao", dao)
+                    .tag("method", method)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+
+    private void recordRows(String dao, String method, Object result) {
+        int rows;
+        if (result instanceof Collection) {
+            rows = ((Collection<?>) result).size();
+        } else if (result == null || result instanceof Boolean
+                || result instanceof Number) {
+            // nothing mapped
+            return;
+        } else {
+            rows = 1;
+        }
+        DistributionSummary.builder("dao.rows")
+                .description("Rows mapped by a DAO read")
+                .tag("dao", dao)
+                .tag("method", method)
+                .register(registry)
+                .record(rows);
+    }
+
+}
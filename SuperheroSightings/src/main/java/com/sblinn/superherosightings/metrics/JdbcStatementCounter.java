@@ -0,0 +1,87 @@
+package com.sblinn.superherosightings.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+/**
+ * Counts the JDBC statements executed on the current thread between
+ * start() and stop(). A batch counts once: it is one round trip. Work
+ * handed to other threads through decorate() counts towards the same
+ * total.
+ *
+ * @author Sara Blinn
+ */
+public class JdbcStatementCounter implements QueryExecutionListener {
+
+    private final ThreadLocal<AtomicInteger> count = new ThreadLocal<>();
+
+
+    /**
+     * Starts counting on the current thread.
+     *
+     * @return the count, which keeps growing after stop() if decorated
+     * tasks are still running
+     */
+    public AtomicInteger start() {
+        AtomicInteger current = new AtomicInteger();
+        count.set(current);
+        return current;
+    }
+
+    /**
+     * Stops counting on the current thread.
+     *
+     * @return statements executed since start(), or 0 if not started
+     */
+    public int stop() {
+        AtomicInteger current = count.get();
+        count.remove();
+        return current == null ? 0 : current.get();
+    }
+
+    /**
+     * Returns task, made to count its statements towards the calling
+     * thread's count when it runs on another thread.
+     *
+     * @param task
+     * @return Runnable
+     */
+    public Runnable decorate(Runnable task) {
+        AtomicInteger caller = count.get();
+        if (caller == null) {
+            return task;
+        }
+        return () -> {
+            AtomicInteger previous = count.get();
+            count.set(caller);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    count.remove();
+                } else {
+                    count.set(previous);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo,
+            List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo,
+            List<QueryInfo> queryInfoList) {
+
+        AtomicInteger current = count.get();
+        if (current != null) {
+            current.incrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.sblinn.superherosightings.metrics;
+
+import javax.sql.DataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wires the JDBC statement counter in front of the DataSource.
+ *
+ * @author Sara Blinn
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public static JdbcStatementCounter jdbcStatementCounter() {
+        return new JdbcStatementCounter();
+    }
+
+    /**
+     * Wraps the DataSource so every statement passes through the
+     * JdbcStatementCounter. Static so it is registered before the
+     * DataSource is created.
+     *
+     * @param counter
+     * @return BeanPostProcessor
+     */
+    @Bean
+    public static BeanPostProcessor statementCountingDataSource(
+            ObjectProvider<JdbcStatementCounter> counter) {
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean,
+                    String beanName) {
+
+                if (bean instanceof DataSource
+                        && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder
+                            .create(beanName, (DataSource) bean)
+                            .listener(counter.getObject())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.sblinn.superherosightings.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Records the number of JDBC statements each request issued
+ * (http.server.requests.jdbc.statements, tagged like the request
+ * timer with method and uri pattern). Requests over the configured
+ * limit are logged and counted in jdbc.statements.over.limit, which
+ * can be alerted on to catch N+1 query regressions.
+ *
+ * @author Sara Blinn
+ */
+@Component
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER
+            = LoggerFactory.getLogger(StatementCountFilter.class);
+
+    private final JdbcStatementCounter counter;
+    private final MeterRegistry registry;
+    private final int statementLimit;
+
+
+    public StatementCountFilter(JdbcStatementCounter counter,
+            MeterRegistry registry,
+            @Value("${metrics.jdbc.statements-per-request.limit:20}")
+                    int statementLimit) {
+        this.counter = counter;
+        this.registry = registry;
+        this.statementLimit = statementLimit;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+            HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        AtomicInteger statements = counter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            counter.stop();
+            if (request.isAsyncStarted()) {
+                // the handler is still running elsewhere
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(request, statements.get());
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(request, statements.get());
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, int statements) {
+        String uri = getUriPattern(request);
+
+        DistributionSummary.builder("http.server.requests.jdbc.statements")
+                .description("JDBC statements executed per request")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(registry)
+                .record(statements);
+
+        if (statements > statementLimit) {
+            registry.counter("jdbc.statements.over.limit",
+                    "method", request.getMethod(), "uri", uri)
+                    .increment();
+            LOGGER.warn("{} {} executed {} JDBC statements (limit {})",
+                    request.getMethod(), uri, statements, statementLimit);
+        }
+    }
+
+    private String getUriPattern(HttpServletRequest request) {
+        Object pattern = request.getAttribute(
+                HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        // unmatched requests are grouped so that arbitrary paths do not
+        // each create a meter
+        return pattern == null ? "UNKNOWN" : pattern.toString();
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.sblinn.superherosightings.migration;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Checks against information_schema so that migrations can be run on
+ * databases which were already changed by hand or by an older schema
+ * script (MySQL has no CREATE INDEX IF NOT EXISTS).
+ *
+ * @author Sara Blinn
+ */
+final class SchemaSupport {
+
+    private SchemaSupport() {
+    }
+
+    static boolean indexExists(JdbcTemplate jdbcTemplate, String table,
+            String indexName) {
+
+        final String COUNT_INDEX
+                = "SELECT COUNT(*) FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() "
+                + "AND table_name = ? AND index_name = ?;";
+        Integer count = jdbcTemplate.queryForObject(COUNT_INDEX,
+                Integer.class, table, indexName);
+        return count != null && count > 0;
+    }
+
+    static boolean columnExists(JdbcTemplate jdbcTemplate, String table,
+            String column) {
+
+        final String COUNT_COLUMN
+                = "SELECT COUNT(*) FROM information_schema.columns "
+                + "WHERE table_schema = DATABASE() "
+                + "AND table_name = ? AND column_name = ?;";
+        Integer count = jdbcTemplate.queryForObject(COUNT_COLUMN,
+                Integer.class, table, column);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Creates the index unless an index with that name already exists
+     * on the table.
+     *
+     * @param jdbcTemplate
+     * @param table
+     * @param indexName
+     * @param columns comma separated column list
+     */
+    static void createIndexIfMissing(JdbcTemplate jdbcTemplate,
+            String table, String indexName, String columns) {
+
+        if (!indexExists(jdbcTemplate, table, indexName)) {
+            jdbcTemplate.execute("CREATE INDEX " + indexName
+                    + " ON " + table + "(" + columns + ");");
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.sblinn.superherosightings.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Secondary indexes for the DAO queries which otherwise rely on the
+ * single column indexes MySQL creates for foreign keys (or on nothing).
+ * MySQL drops those implicit foreign key indexes by itself once one of
+ * these can enforce the constraint instead.
+ *
+ * @author Sara Blinn
+ */
+public class V1__Add_query_indexes extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(
+                new SingleConnectionDataSource(context.getConnection(), true));
+
+        // sightings on a date, the sightings list and recent sightings;
+        // InnoDB appends the id, so this also orders ties by id
+        SchemaSupport.createIndexIfMissing(jdbcTemplate, "Sighting",
+                "idx_Sighting_date", "`date`");
+
+        // sighting locations for a superhero, and superhero deletes
+        SchemaSupport.createIndexIfMissing(jdbcTemplate, "Sighting",
+                "idx_Sighting_superhero_location",
+                "superhero_id, location_id");
+
+        // sightings at a location, and location deletes
+        SchemaSupport.createIndexIfMissing(jdbcTemplate, "Sighting",
+                "idx_Sighting_location_date", "location_id, `date`");
+
+        // superheros with a superpower
+        SchemaSupport.createIndexIfMissing(jdbcTemplate,
+                "Superhero_Superpower", "idx_Superhero_Superpower_superpower",
+                "superpower_id, superhero_id");
+
+        // members of an organization
+        SchemaSupport.createIndexIfMissing(jdbcTemplate,
+                "Organization_Superhero", "idx_Organization_Superhero_org",
+                "org_id, superhero_id");
+    }
+
+}
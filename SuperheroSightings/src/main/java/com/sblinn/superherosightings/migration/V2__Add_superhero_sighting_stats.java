@@ -0,0 +1,74 @@
+package com.sblinn.superherosightings.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Per-Superhero Sighting statistics, kept up to date by the DAOs on
+ * every Sighting change (see SightingStatsUpdater) so the superhero
+ * details page reads one row instead of aggregating Sightings.
+ * Superhero_Location_Sightings counts Sightings per Superhero and
+ * Location, which is what lets the distinct location count be kept
+ * without rescanning Sightings. Both are filled from the existing
+ * Sightings here.
+ *
+ * @author Sara Blinn
+ */
+public class V2__Add_superhero_sighting_stats extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(
+                new SingleConnectionDataSource(context.getConnection(), true));
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS "
+                + "Superhero_Sighting_Stats ("
+                + "superhero_id INT PRIMARY KEY, "
+                + "sighting_count INT NOT NULL, "
+                + "location_count INT NOT NULL, "
+                + "first_seen DATETIME NOT NULL, "
+                + "last_seen DATETIME NOT NULL, "
+                + "CONSTRAINT fk_Superhero_Sighting_Stats_Superhero "
+                + "FOREIGN KEY (superhero_id) REFERENCES Superhero(id));");
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS "
+                + "Superhero_Location_Sightings ("
+                + "superhero_id INT NOT NULL, "
+                + "location_id INT NOT NULL, "
+                + "sighting_count INT NOT NULL, "
+                + "PRIMARY KEY (superhero_id, location_id), "
+                + "CONSTRAINT fk_Superhero_Location_Sightings_Superhero "
+                + "FOREIGN KEY (superhero_id) REFERENCES Superhero(id), "
+                + "CONSTRAINT fk_Superhero_Location_Sightings_Location "
+                + "FOREIGN KEY (location_id) REFERENCES Location(id));");
+
+        // Superheros sighted at a Location, when it is deleted
+        SchemaSupport.createIndexIfMissing(jdbcTemplate,
+                "Superhero_Location_Sightings",
+                "idx_Superhero_Location_Sightings_location",
+                "location_id, superhero_id");
+
+        // first and last Sighting of a Superhero, after a delete
+        SchemaSupport.createIndexIfMissing(jdbcTemplate, "Sighting",
+                "idx_Sighting_superhero_date", "superhero_id, `date`");
+
+        jdbcTemplate.update("DELETE FROM Superhero_Location_Sightings;");
+        jdbcTemplate.update("INSERT INTO Superhero_Location_Sightings"
+                + "(superhero_id, location_id, sighting_count) "
+                + "SELECT superhero_id, location_id, COUNT(*) "
+                + "FROM Sighting "
+                + "GROUP BY superhero_id, location_id;");
+
+        jdbcTemplate.update("DELETE FROM Superhero_Sighting_Stats;");
+        jdbcTemplate.update("INSERT INTO Superhero_Sighting_Stats"
+                + "(superhero_id, sighting_count, location_count, "
+                + "first_seen, last_seen) "
+                + "SELECT superhero_id, COUNT(*), "
+                + "COUNT(DISTINCT location_id), MIN(`date`), MAX(`date`) "
+                + "FROM Sighting "
+                + "GROUP BY superhero_id;");
+    }
+
+}
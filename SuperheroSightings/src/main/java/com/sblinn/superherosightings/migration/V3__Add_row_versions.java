@@ -0,0 +1,35 @@
+package com.sblinn.superherosightings.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Adds a version column to each entity table. Every update advances
+ * it and only applies if it still holds the version the entity was
+ * read at, so an edit made from a stale form fails instead of silently
+ * overwriting someone else's. Existing rows start at version 0.
+ *
+ * @author Sara Blinn
+ */
+public class V3__Add_row_versions extends BaseJavaMigration {
+
+    private static final String[] TABLES = {"Superhero", "Superpower",
+        "Organization", "Location", "Sighting"};
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(
+                new SingleConnectionDataSource(context.getConnection(), true));
+
+        for (String table : TABLES) {
+            if (!SchemaSupport.columnExists(jdbcTemplate, table, "version")) {
+                jdbcTemplate.execute("ALTER TABLE `" + table + "` "
+                        + "ADD COLUMN version INT NOT NULL DEFAULT 0 "
+                        + "AFTER id;");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.sblinn.superherosightings.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Change_Event is the outbox the DAOs append to in the same transaction
+ * as every create, update and delete (see ChangeOutbox). It starts
+ * empty: clients read entities in full once, then follow changes from
+ * there.
+ *
+ * @author Sara Blinn
+ */
+public class V4__Add_change_outbox extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(
+                new SingleConnectionDataSource(context.getConnection(), true));
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS Change_Event ("
+                + "id BIGINT PRIMARY KEY AUTO_INCREMENT, "
+                + "entity VARCHAR(20) NOT NULL, "
+                + "entity_id INT NOT NULL, "
+                + "operation VARCHAR(6) NOT NULL, "
+                + "changed_at DATETIME NOT NULL "
+                + "DEFAULT CURRENT_TIMESTAMP);");
+    }
+
+}
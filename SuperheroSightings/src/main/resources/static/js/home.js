@@ -1,55 +1,68 @@
-
 /* NOTE: 
 max bounds for Google Maps Latitude is +-85.
 map will not display a location if out of bounds.
 */
 
+const NUM_RECENT_SIGHTINGS = 5;
+const MAX_LIVE_MARKERS = 200;
+
+// the map of clustered sightings, once initMap has created it
+var clusterMap = null;
+// markers for sightings pushed since the page loaded, oldest first
+var liveMarkers = [];
+// sightings pushed before the map was ready
+var pendingSightings = [];
+
 // Initialize and add the map
 function initMap() {
 
-    if ($('#recent-sightings-latlngs').val().trim().length != 0) {
-        var points = $('#recent-sightings-latlngs').val();
-
-        points = points.slice(1, -1);
-        
-        var latLngs = points.split(",");
-        
-        var locations = [];
-        for (let index = 0; index < latLngs.length; index++) {
-            if (index % 2 == 0) {
-                var x = latLngs[index];
-                var y = latLngs[index + 1];
-                locations.push(new google.maps.LatLng(x, y));
-            }
-        }
+    if ($('#map-clusters-url').length != 0) {
+        var clustersUrl = $('#map-clusters-url').val();
 
         // The map, centered at the coordinates, global
         const map = new google.maps.Map(document.getElementById("map"), {
             zoom: 0,
             center: { lat: 0.0000, lng: 0.0000 },
         });
-
-        var infowindow = new google.maps.InfoWindow();
+        clusterMap = map;
+        for (let i = 0; i < pendingSightings.length; i++) {
+            addLiveMarker(pendingSightings[i]);
+        }
+        pendingSightings = [];
 
         var markers = [];
-
-        var marker,i;
-        
-        for (i = 0; i < locations.length; i++) {  
-            marker = new google.maps.Marker({
-                position: new google.maps.LatLng(locations[i]),
-                map
-            });
+        var request = null;
+
+        // fetch the clustered sightings for the visible area each time 
+        // the map stops moving, replacing the previous markers
+        google.maps.event.addListener(map, 'idle', function() {
+            var bounds = map.getBounds();
+            if (!bounds) {
+                return;
+            }
+            var ne = bounds.getNorthEast();
+            var sw = bounds.getSouthWest();
             
-            google.maps.event.addListener(marker, 'click', (function(marker, i) {
-                return function() {
-                    //infowindow.setContent(label);
-                    //infowindow.open(map, marker);
+            if (request) {
+                request.abort();
+            }
+            request = $.getJSON(clustersUrl, {
+                zoom: map.getZoom(),
+                west: sw.lng(),
+                south: sw.lat(),
+                east: ne.lng(),
+                north: ne.lat()
+            }, function(clusters) {
+                for (let i = 0; i < markers.length; i++) {
+                    markers[i].setMap(null);
                 }
-            }) (marker, i)); 
-
-            markers.push(marker);
-        }
+                markers = [];
+                
+                for (let i = 0; i < clusters.length; i++) {
+                    markers.push(addClusterMarker(map, clusters[i]));
+                }
+            });
+        });
 
     } else {
 
@@ -72,5 +85,116 @@ function initMap() {
 
 }
 
+// A cluster's marker is labelled with its number of sightings. Clicking 
+// a cluster of several locations zooms in on it; clicking a single 
+// location opens it.
+function addClusterMarker(map, cluster) {
+    var position = new google.maps.LatLng(cluster.latitude, cluster.longitude);
+    var marker = new google.maps.Marker({
+        position: position,
+        label: cluster.sightings > 1 ? String(cluster.sightings) : null,
+        map: map
+    });
+
+    google.maps.event.addListener(marker, 'click', function() {
+        if (cluster.locations == 1) {
+            window.location.href = 'home?id=' + cluster.locationId;
+        } else {
+            map.setCenter(position);
+            map.setZoom(map.getZoom() + 2);
+        }
+    });
+    return marker;
+}
+
+// New sightings are pushed by the server as they are committed. The 
+// browser reconnects by itself, resuming after the last one received.
+function followLiveSightings() {
+    var url = $('#live-sightings-url').val();
+    if (!url || !window.EventSource) {
+        return;
+    }
+    var source = new EventSource(url);
+    source.addEventListener('sighting', function(event) {
+        var vmSighting = JSON.parse(event.data);
+        addRecentSighting(vmSighting);
+        if (clusterMap) {
+            addLiveMarker(vmSighting);
+        } else {
+            pendingSightings.push(vmSighting);
+        }
+    });
+}
+
+// Inserts a card into the recent sightings list, which stays newest 
+// first and NUM_RECENT_SIGHTINGS long.
+function addRecentSighting(vmSighting) {
+    var list = $('#recent-sightings-list');
+    var sighting = vmSighting.sighting;
+    if (list.children('[data-sighting-id="' + sighting.id + '"]').length) {
+        return;
+    }
+
+    var card = $('<div class="container recent-sightings-wrapper"></div>')
+        .attr('data-sighting-id', sighting.id)
+        .attr('data-sighting-date', sighting.date)
+        .append($('<div class="recent-sighting-card card m-2"></div>')
+            .append($('<div class="text-start"></div>')
+                .append($('<div class="card-header"></div>')
+                    .append(link('/sighting/details?id=' + sighting.id,
+                        vmSighting.datetimeStr)))
+                .append($('<div class="card-body row"></div>')
+                    .append($('<div class="col-md-8"></div>')
+                        .append($('<div class="recent-sighting-superhero-name"></div>')
+                            .append(link('/superhero/details?id=' + sighting.superhero_id,
+                                vmSighting.superhero.name + ', ')))
+                        .append($('<div class="recent-sighting-location-name"></div>')
+                            .append(link('/location/details?id=' + sighting.location_id,
+                                vmSighting.location.name))))
+                    .append($('<div class="col-md-4"></div>')
+                        .append(link('/home?id=' + sighting.location_id, 'map')
+                            .attr('class', 'btn details-btn btn-sm btn-outline-secondary m-2'))
+                        .append(link('/sighting/details?id=' + sighting.id, 'details')
+                            .attr('class', 'btn details-btn btn-sm btn-outline-secondary m-2'))))));
+
+    // sightings can be reported after the fact, so find its place by date
+    var date = new Date(sighting.date);
+    var older = list.children().filter(function() {
+        var cardDate = $(this).attr('data-sighting-date')
+            || $(this).find('.card-header a').attr('value');
+        return new Date(cardDate) < date;
+    }).first();
+    if (older.length) {
+        card.insertBefore(older);
+    } else {
+        list.append(card);
+    }
+    list.children().slice(NUM_RECENT_SIGHTINGS).remove();
+}
+
+function link(href, text) {
+    return $('<a class="btn-link"></a>').attr('href', href).text(text);
+}
+
+// Gives a pushed sighting its own marker. The clustered markers catch up 
+// when the server next rebuilds them.
+function addLiveMarker(vmSighting) {
+    var location = vmSighting.location;
+    var marker = new google.maps.Marker({
+        position: new google.maps.LatLng(location.latitude, location.longitude),
+        title: vmSighting.superhero.name + ', ' + location.name,
+        map: clusterMap
+    });
+    google.maps.event.addListener(marker, 'click', function() {
+        window.location.href = 'home?id=' + location.id;
+    });
+
+    liveMarkers.push(marker);
+    if (liveMarkers.length > MAX_LIVE_MARKERS) {
+        liveMarkers.shift().setMap(null);
+    }
+}
+
 
-window.initMap = initMap;
\ No newline at end of file
+window.initMap = initMap;
+followLiveSightings();
@@ -0,0 +1,167 @@
+package com.sblinn.superherosightings.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sblinn.superherosightings.Application;
+import com.sblinn.superherosightings.dao.SuperheroDao;
+import com.sblinn.superherosightings.dto.Superhero;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Tests ApiController's ETags and response cache through MockMvc, with
+ * the SuperheroDao and ObjectMapper spied on to see when the database
+ * is read and when a body is serialized.
+ *
+ * Not @Transactional: DataChangeTracker only advances once a write's
+ * transaction completes, so the writes here must commit. The Superheros
+ * created are deleted afterwards.
+ *
+ * @author Sara Blinn
+ */
+@SpringBootTest(classes = Application.class)
+@AutoConfigureMockMvc
+public class ApiControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @SpyBean
+    private SuperheroDao superheroDao;
+
+    @SpyBean
+    private ObjectMapper objectMapper;
+
+    private final List<Integer> createdIds = new ArrayList<>();
+    private String url;
+
+
+    public ApiControllerTest() {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        Superhero hero = createSuperhero("Superman");
+        url = "/api/v1/superheros/" + hero.getId();
+        clearInvocations(superheroDao, objectMapper);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        for (int id : createdIds) {
+            superheroDao.deleteSuperheroById(id);
+        }
+    }
+
+
+    /* method: respond()
+        - test the ETag is the quoted MD5 of the body
+        - test a matching If-None-Match gets 304 with no body
+        - test repeat requests reuse the cached body without reading
+          the database or serializing again
+    */
+    @Test
+    public void testETagAndNotModified() throws Exception {
+        MvcResult result = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn();
+        byte[] body = result.getResponse().getContentAsByteArray();
+        String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        assertEquals("\"" + DigestUtils.md5DigestAsHex(body) + "\"", etag,
+                "ETag should be the MD5 of the body.");
+
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().bytes(new byte[0]));
+
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().bytes(body));
+
+        verify(superheroDao, times(1)).getSuperheroById(anyInt());
+        verify(objectMapper, times(1)).writeValueAsBytes(any());
+    }
+
+    /* method: respond()
+        - test a DAO write changing the Superhero invalidates the cached
+          body and its ETag
+    */
+    @Test
+    public void testInvalidatedByWrite() throws Exception {
+        String etag = mockMvc.perform(get(url))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        Superhero hero = superheroDao.getSuperheroById(createdIds.get(0));
+        hero.setDescription("Changed.");
+        assertTrue(superheroDao.updateSuperhero(hero));
+        clearInvocations(superheroDao);
+
+        MvcResult result = mockMvc.perform(
+                get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertNotEquals(etag,
+                result.getResponse().getHeader(HttpHeaders.ETAG),
+                "The ETag should change with the Superhero.");
+        assertTrue(result.getResponse().getContentAsString()
+                .contains("Changed."), "The body should be re-read.");
+        verify(superheroDao, times(1)).getSuperheroById(anyInt());
+    }
+
+    /* method: respond()
+        - test an unrelated DAO write makes the Superhero be re-read
+        - test it is not re-serialized while its row version is the same
+    */
+    @Test
+    public void testRowVersionShortcut() throws Exception {
+        MvcResult result = mockMvc.perform(get(url)).andReturn();
+        String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        byte[] body = result.getResponse().getContentAsByteArray();
+
+        createSuperhero("Batman");
+        clearInvocations(superheroDao, objectMapper);
+
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().bytes(body));
+
+        verify(superheroDao, times(1)).getSuperheroById(anyInt());
+        verify(objectMapper, never()).writeValueAsBytes(any());
+    }
+
+    private Superhero createSuperhero(String name) {
+        Superhero hero = new Superhero();
+        hero.setName(name);
+        hero.setDescription("Created by ApiControllerTest.");
+        hero = superheroDao.createSuperhero(hero);
+        createdIds.add(hero.getId());
+        return hero;
+    }
+
+}
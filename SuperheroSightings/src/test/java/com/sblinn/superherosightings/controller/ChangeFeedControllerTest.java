@@ -0,0 +1,129 @@
+package com.sblinn.superherosightings.controller;
+
+import com.sblinn.superherosightings.Application;
+import com.sblinn.superherosightings.dao.ChangeOutbox;
+import com.sblinn.superherosightings.dao.ChangePage;
+import com.sblinn.superherosightings.dto.ChangeEvent;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Tests the /api/v1/changes long poll through MockMvc: a held request
+ * must be answered by the commit of a change, not by its timeout.
+ *
+ * Not @Transactional, since only a committed change wakes a poll. The
+ * events appended are deleted afterwards.
+ *
+ * @author Sara Blinn
+ */
+@SpringBootTest(classes = Application.class)
+@AutoConfigureMockMvc
+public class ChangeFeedControllerTest {
+
+    // well inside the poll's wait, which MockMvc never times out
+    private static final long WAKE_MILLIS = 5000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ChangeOutbox changeOutbox;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long start;
+
+
+    public ChangeFeedControllerTest() {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        start = changeOutbox.getCurrentCursor();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM Change_Event WHERE id > ?;", start);
+    }
+
+
+    /* method: getChanges()
+        - test a poll with no changes is held open
+        - test a commit wakes it with the new change and cursor
+    */
+    @Test
+    public void testLongPollWokenByCommit() throws Exception {
+        MvcResult poll = mockMvc.perform(get("/api/v1/changes")
+                .param("since", String.valueOf(start))
+                .param("wait", "30"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThrows(IllegalStateException.class,
+                () -> poll.getAsyncResult(200),
+                "The poll should be held while nothing has changed.");
+
+        transactionTemplate.executeWithoutResult(status
+                -> changeOutbox.append("Sighting", 7, ChangeEvent.CREATE));
+
+        ChangePage page = (ChangePage) poll.getAsyncResult(WAKE_MILLIS);
+        assertEquals(1, page.getChanges().size(),
+                "The commit should wake the poll.");
+        assertTrue(page.getNextCursor() > start);
+
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes[0].entity").value("Sighting"))
+                .andExpect(jsonPath("$.changes[0].entity_id").value(7))
+                .andExpect(jsonPath("$.nextCursor")
+                        .value(page.getNextCursor()));
+    }
+
+    /* method: getChanges()
+        - test a poll whose cursor is already behind is answered at once
+        - test wait=0 answers at once with an empty page
+    */
+    @Test
+    public void testAnsweredWithoutWaiting() throws Exception {
+        transactionTemplate.executeWithoutResult(status
+                -> changeOutbox.append("Sighting", 7, ChangeEvent.CREATE));
+
+        MvcResult poll = mockMvc.perform(get("/api/v1/changes")
+                .param("since", String.valueOf(start)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(1, ((ChangePage) poll.getAsyncResult(0))
+                .getChanges().size());
+
+        long cursor = changeOutbox.getCurrentCursor();
+        poll = mockMvc.perform(get("/api/v1/changes")
+                .param("since", String.valueOf(cursor))
+                .param("wait", "0"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes").isEmpty())
+                .andExpect(jsonPath("$.nextCursor").value(cursor));
+    }
+
+}
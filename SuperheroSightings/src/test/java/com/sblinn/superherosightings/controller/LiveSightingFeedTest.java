@@ -0,0 +1,368 @@
+package com.sblinn.superherosightings.controller;
+
+import com.sblinn.superherosightings.dao.ChangeOutbox;
+import com.sblinn.superherosightings.dao.ChangePage;
+import com.sblinn.superherosightings.dao.SightingDao;
+import com.sblinn.superherosightings.dto.ChangeEvent;
+import com.sblinn.superherosightings.dto.Sighting;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Tests LiveSightingFeed against a mocked ChangeOutbox and SightingDao.
+ * The outbox holds the changes in the changes list, and a commit is
+ * simulated by calling the listener the feed registered. Each
+ * connection's emitter records the ids of the events written to it,
+ * and can be made to block in send like a browser reading slowly.
+ *
+ * Change n creates Sighting 100 + n.
+ *
+ * @author Sara Blinn
+ */
+public class LiveSightingFeedTest {
+
+    private final List<ChangeEvent> changes = new CopyOnWriteArrayList<>();
+    private final CountDownLatch cursorRead = new CountDownLatch(1);
+    private ChangeOutbox changeOutbox;
+    private SightingDao sightingDao;
+    private LiveSightingFeed feed;
+    private Runnable commitListener;
+
+
+    public LiveSightingFeedTest() {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        changeOutbox = mock(ChangeOutbox.class);
+        when(changeOutbox.getCurrentCursor()).thenAnswer(invocation -> {
+            long cursor = changes.isEmpty()
+                    ? 0L : changes.get(changes.size() - 1).getId();
+            cursorRead.countDown();
+            return cursor;
+        });
+        when(changeOutbox.getChangesSince(anyLong(), anyInt()))
+                .thenAnswer(invocation -> getChangesSince(
+                        invocation.getArgument(0),
+                        invocation.getArgument(1)));
+
+        sightingDao = mock(SightingDao.class);
+        when(sightingDao.getSightingViewModelsByIds(anyCollection()))
+                .thenAnswer(invocation -> newViewModels(
+                        invocation.getArgument(0)));
+
+        feed = new LiveSightingFeed() {
+            @Override
+            SseEmitter newEmitter() {
+                return new RecordingEmitter();
+            }
+        };
+        feed.changeOutbox = changeOutbox;
+        feed.sightingDao = sightingDao;
+        feed.objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        ReflectionTestUtils.setField(feed, "maxConnections", 10);
+        ReflectionTestUtils.setField(feed, "maxQueuedEvents", 100);
+        ReflectionTestUtils.setField(feed, "senderThreads", 4);
+    }
+
+    private void startFeed() throws InterruptedException {
+        ReflectionTestUtils.invokeMethod(feed, "start");
+        ArgumentCaptor<Runnable> listener
+                = ArgumentCaptor.forClass(Runnable.class);
+        verify(changeOutbox).addListener(listener.capture());
+        commitListener = listener.getValue();
+        // the broadcaster starts from the cursor it reads first
+        assertTrue(cursorRead.await(10, TimeUnit.SECONDS));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (commitListener != null) {
+            ReflectionTestUtils.invokeMethod(feed, "stop");
+        }
+    }
+
+
+    /* method: subscribe()
+        - test every connection is sent each created Sighting once, in
+          change id order, across several commits
+        - test changes other than Sighting creates are not sent
+    */
+    @Test
+    public void testEventsReachEverySubscriberInOrder() throws Exception {
+        startFeed();
+        RecordingEmitter first = subscribe(null);
+        RecordingEmitter second = subscribe(null);
+
+        commit(createSighting(1), createSighting(2),
+                updateSuperhero(3), createSighting(4));
+        commit(createSighting(5));
+        commit(createSighting(6), createSighting(7));
+
+        List<String> expected = List.of("1", "2", "4", "5", "6", "7");
+        waitFor(() -> first.ids.size() == expected.size()
+                && second.ids.size() == expected.size());
+        assertEquals(expected, first.ids,
+                "Events should be sent in change id order.");
+        assertEquals(expected, second.ids,
+                "Every connection should be sent every event.");
+    }
+
+    /* method: subscribe()
+        - test a connection whose queue fills is dropped from the
+          broadcast and its emitter completed
+        - test the other connections are still sent every event
+    */
+    @Test
+    public void testFullQueueDropsConnection() throws Exception {
+        ReflectionTestUtils.setField(feed, "maxQueuedEvents", 3);
+        startFeed();
+        RecordingEmitter slow = subscribe(null);
+        slow.blockSends();
+        RecordingEmitter fast = subscribe(null);
+
+        commit(createSighting(1));
+        assertTrue(slow.sendStarted.await(10, TimeUnit.SECONDS));
+
+        // event 1 is being written; 2 to 4 fill the queue and 5 is one
+        // too many
+        for (int changeId = 2; changeId <= 5; changeId++) {
+            commit(createSighting(changeId));
+            int sent = changeId;
+            waitFor(() -> fast.ids.size() == sent);
+        }
+        waitFor(() -> getSubscribers().size() == 1);
+
+        slow.releaseSends();
+        assertTrue(slow.completed.await(10, TimeUnit.SECONDS),
+                "The dropped connection should be completed.");
+        assertEquals(List.of("1"), slow.ids,
+                "Queued events should be discarded once dropped.");
+
+        commit(createSighting(6));
+        waitFor(() -> fast.ids.size() == 6);
+        assertEquals(List.of("1", "2", "3", "4", "5", "6"), fast.ids);
+        assertEquals(1, getSubscribers().size(),
+                "The dropped connection should not rejoin.");
+    }
+
+    /* method: subscribe()
+        - test a reconnecting browser is replayed only the changes after
+          its Last-Event-ID up to the broadcaster's cursor
+        - test the later changes then reach it once, by the broadcast
+    */
+    @Test
+    public void testReplayStopsAtCursor() throws Exception {
+        changes.add(createSighting(1));
+        changes.add(createSighting(2));
+        changes.add(createSighting(3));
+        startFeed();
+        RecordingEmitter other = subscribe(null);
+
+        // committed, but not yet read by the broadcaster
+        changes.add(createSighting(4));
+        changes.add(createSighting(5));
+        RecordingEmitter reconnected = subscribe(1L);
+
+        waitFor(() -> getSubscribers().size() == 2);
+        assertEquals(List.of("2", "3"), reconnected.ids,
+                "Only changes up to the cursor should be replayed.");
+        verify(sightingDao).getSightingViewModelsByIds(Set.of(102, 103));
+
+        commitListener.run();
+        waitFor(() -> reconnected.ids.size() == 4
+                && other.ids.size() == 2);
+        assertEquals(List.of("2", "3", "4", "5"), reconnected.ids,
+                "Later changes should be sent once, by the broadcast.");
+        assertEquals(List.of("4", "5"), other.ids);
+    }
+
+    /* method: subscribe()
+        - test a connection blocked writing an event does not hold up
+          the others
+        - test it is sent its events in order once it reads again
+    */
+    @Test
+    public void testSlowConnectionDoesNotDelayOthers() throws Exception {
+        startFeed();
+        RecordingEmitter slow = subscribe(null);
+        slow.blockSends();
+        RecordingEmitter fast = subscribe(null);
+
+        commit(createSighting(1));
+        assertTrue(slow.sendStarted.await(10, TimeUnit.SECONDS));
+        commit(createSighting(2));
+        commit(createSighting(3));
+
+        waitFor(() -> fast.ids.size() == 3);
+        assertEquals(List.of("1", "2", "3"), fast.ids,
+                "The other connection should not wait for the slow one.");
+        assertTrue(slow.ids.isEmpty());
+
+        slow.releaseSends();
+        waitFor(() -> slow.ids.size() == 3);
+        assertEquals(List.of("1", "2", "3"), slow.ids,
+                "The slow connection should catch up in order.");
+        assertFalse(slow.completed.getCount() == 0,
+                "The slow connection should stay open.");
+        assertEquals(2, getSubscribers().size());
+    }
+
+    private RecordingEmitter subscribe(Long lastEventId) throws IOException {
+        return (RecordingEmitter) feed.subscribe(lastEventId);
+    }
+
+    private void commit(ChangeEvent... committed) {
+        changes.addAll(List.of(committed));
+        commitListener.run();
+    }
+
+    private Set<?> getSubscribers() {
+        return (Set<?>) ReflectionTestUtils.getField(feed, "subscribers");
+    }
+
+    private ChangePage getChangesSince(long cursor, int limit) {
+        List<ChangeEvent> page = new ArrayList<>();
+        for (ChangeEvent change : changes) {
+            if (change.getId() > cursor && page.size() < limit) {
+                page.add(change);
+            }
+        }
+        return new ChangePage(page, page.isEmpty()
+                ? cursor : page.get(page.size() - 1).getId());
+    }
+
+    private static List<SightingViewModel> newViewModels(
+            Collection<Integer> ids) {
+        List<SightingViewModel> vmSightings = new ArrayList<>();
+        ids.stream().sorted().forEach(id -> {
+            Sighting sighting = new Sighting();
+            sighting.setId(id);
+            sighting.setSuperhero_id(1);
+            sighting.setLocation_id(1);
+            sighting.setDate(LocalDateTime.of(2022, 1, 1, 10, 0));
+            SightingViewModel vmSighting = new SightingViewModel();
+            vmSighting.setSighting(sighting);
+            vmSightings.add(vmSighting);
+        });
+        return vmSightings;
+    }
+
+    private static ChangeEvent createSighting(long changeId) {
+        return newChange(changeId, "Sighting", 100 + (int) changeId,
+                ChangeEvent.CREATE);
+    }
+
+    private static ChangeEvent updateSuperhero(long changeId) {
+        return newChange(changeId, "Superhero", 1, ChangeEvent.UPDATE);
+    }
+
+    private static ChangeEvent newChange(long id, String entity,
+            int entityId, String operation) {
+        ChangeEvent change = new ChangeEvent();
+        change.setId(id);
+        change.setEntity(entity);
+        change.setEntity_id(entityId);
+        change.setOperation(operation);
+        change.setChangedAt(LocalDateTime.of(2022, 1, 1, 10, 0));
+        return change;
+    }
+
+    private static void waitFor(BooleanSupplier condition)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting.");
+            Thread.sleep(10);
+        }
+    }
+
+
+    /**
+     * Records the ids of the sighting events sent, ignoring the retry
+     * and heartbeat events. While blocked, the first sighting event
+     * sent waits until releaseSends.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<String> ids = new CopyOnWriteArrayList<>();
+        private final CountDownLatch sendStarted = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile CountDownLatch release;
+
+
+        private void blockSends() {
+            release = new CountDownLatch(1);
+        }
+
+        private void releaseSends() {
+            release.countDown();
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            String id = getId(builder);
+            if (id == null) {
+                return;
+            }
+            sendStarted.countDown();
+            CountDownLatch blocked = release;
+            if (blocked != null) {
+                try {
+                    blocked.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ex);
+                }
+            }
+            ids.add(id);
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+            super.complete();
+        }
+
+        private static String getId(SseEventBuilder builder) {
+            StringBuilder text = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType data
+                    : builder.build()) {
+                text.append(data.getData());
+            }
+            for (String line : text.toString().split("\n")) {
+                if (line.startsWith("id:")) {
+                    return line.substring("id:".length());
+                }
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.sblinn.superherosightings.controller;
+
+import com.sblinn.superherosightings.dto.SightingCluster;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests SightingClusterIndex directly with a handful of known Locations.
+ *
+ * @author Sara Blinn
+ */
+public class SightingClusterIndexTest {
+
+    private static final int ANY_CELLS = Integer.MAX_VALUE;
+
+
+    public SightingClusterIndexTest() {
+    }
+
+
+    /* method: build()
+        - test Locations in neighbouring cells stay apart at maxZoom
+        - test they are merged into one cluster a level up, with summed
+          counts and a Sighting-weighted centre
+        - test zooms past maxZoom use maxZoom's clusters
+    */
+    @Test
+    public void testLevelMerge() {
+        // at zoom 1 cells are 45 degrees of longitude, at zoom 0 90
+        SightingClusterIndex index = SightingClusterIndex.build(1, 3,
+                new int[] {1, 2, 3},
+                new double[] {10, 10, -40},
+                new double[] {10, 50, -100},
+                new int[] {1, 3, 2});
+
+        List<SightingCluster> clusters = getWorld(index, 1);
+        assertEquals(3, clusters.size(),
+                "Each Location should be its own cluster at maxZoom.");
+        for (SightingCluster cluster : clusters) {
+            assertEquals(1, cluster.getLocations());
+        }
+
+        clusters = getWorld(index, 0);
+        assertEquals(2, clusters.size(),
+                "Locations 1 and 2 should be merged at zoom 0.");
+        SightingCluster west = clusters.get(0);
+        assertEquals(3, west.getLocationId());
+        assertEquals(2, west.getSightings());
+        assertEquals(-40, west.getLatitude(), 1e-9);
+        assertEquals(-100, west.getLongitude(), 1e-9);
+
+        SightingCluster merged = clusters.get(1);
+        assertEquals(4, merged.getSightings());
+        assertEquals(2, merged.getLocations());
+        assertEquals(0, merged.getLocationId(),
+                "A cluster of several Locations should have no id.");
+        assertEquals(10, merged.getLatitude(), 1e-9);
+        assertEquals(40, merged.getLongitude(), 1e-9,
+                "The centre should be weighted by Sightings.");
+
+        assertEquals(3, getWorld(index, 5).size(),
+                "Zoom 5 should use zoom 1's clusters.");
+    }
+
+    /* method: build()
+        - test entries survive packing key and index into one long at the
+          deepest zoom, where keys are largest
+        - test a size needing more than INDEX_BITS is refused
+    */
+    @Test
+    public void testKeyPacking() {
+        int[] ids = {1, 2, 3, 4, 5};
+        double[] latitudes = {-85, 85, 0, -85, 40.7587};
+        double[] longitudes = {179.999, -180, 0, -180, -73.9787};
+        int[] sightings = {5, 4, 3, 2, 1};
+        SightingClusterIndex index = SightingClusterIndex.build(16,
+                ids.length, ids, latitudes, longitudes, sightings);
+
+        for (int i = 0; i < ids.length; i++) {
+            List<SightingCluster> clusters = index.getClusters(16,
+                    longitudes[i] - 0.0001, latitudes[i] - 0.0001,
+                    Math.min(180, longitudes[i] + 0.0001),
+                    latitudes[i] + 0.0001, ANY_CELLS);
+            assertEquals(1, clusters.size());
+            assertEquals(ids[i], clusters.get(0).getLocationId(),
+                    "Location " + ids[i] + " should be found at its point.");
+            assertEquals(sightings[i], clusters.get(0).getSightings());
+        }
+
+        int total = getWorld(index, 0).stream()
+                .mapToInt(SightingCluster::getSightings).sum();
+        assertEquals(15, total, "Zoom 0 should count every Sighting.");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> SightingClusterIndex.build(0, 1 << 27, ids,
+                        latitudes, longitudes, sightings));
+        assertThrows(IllegalArgumentException.class,
+                () -> SightingClusterIndex.build(17, ids.length, ids,
+                        latitudes, longitudes, sightings));
+    }
+
+    /* method: getClusters()
+        - test a box with west east of east crosses the antimeridian
+        - test a box wrapping nearly all the way round covers the world
+        - test maxCells is enforced on the wrapped box
+    */
+    @Test
+    public void testAntimeridianAndMaxCells() {
+        // at zoom 2 cells are 22.5 degrees of longitude
+        SightingClusterIndex index = SightingClusterIndex.build(2, 3,
+                new int[] {1, 2, 3},
+                new double[] {0, 0, 0},
+                new double[] {170, -170, 0},
+                new int[] {1, 1, 1});
+
+        // two columns by two rows
+        List<SightingCluster> clusters = index.getClusters(2,
+                160, -10, -160, 10, 4);
+        assertEquals(List.of(1, 2), clusters.stream()
+                .map(SightingCluster::getLocationId)
+                .collect(Collectors.toList()),
+                "Only the Locations either side of the antimeridian "
+                + "should be found.");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> index.getClusters(2, 160, -10, -160, 10, 3));
+
+        // both edges fall in the same column
+        clusters = index.getClusters(2, 10, -10, 0, 10, ANY_CELLS);
+        assertEquals(3, clusters.size(),
+                "A box from 10 east round to 0 should cover the world.");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> index.getClusters(2, -10, 10, 10, -10, ANY_CELLS));
+    }
+
+    private static List<SightingCluster> getWorld(
+            SightingClusterIndex index, int zoom) {
+        return index.getClusters(zoom, -180, -85, 180, 85, ANY_CELLS);
+    }
+
+}
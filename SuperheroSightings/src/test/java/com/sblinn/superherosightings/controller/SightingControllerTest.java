@@ -0,0 +1,109 @@
+package com.sblinn.superherosightings.controller;
+
+import com.sblinn.superherosightings.Application;
+import com.sblinn.superherosightings.dao.SightingDao;
+import java.util.List;
+import java.util.function.Consumer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests SightingController's export through MockMvc, with the
+ * SightingDao mocked to stream the two Sightings SightingExportWriterTest
+ * writes.
+ *
+ * @author Sara Blinn
+ */
+@SpringBootTest(classes = Application.class)
+@AutoConfigureMockMvc
+public class SightingControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private SightingDao sightingDao;
+
+
+    public SightingControllerTest() {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        doAnswer(invocation -> {
+            Consumer<SightingViewModel> consumer = invocation.getArgument(1);
+            consumer.accept(SightingExportWriterTest.newViewModel());
+            consumer.accept(SightingExportWriterTest.newViewModelWithNulls());
+            return null;
+        }).when(sightingDao).forEachSightingViewModel(anyInt(), any());
+    }
+
+
+    /* method: exportSightings()
+        - test CSV is the default, sent as an attachment
+        - test the body is the header and one line per Sighting
+    */
+    @Test
+    public void testExportCsv() throws Exception {
+        MvcResult result = mockMvc.perform(get("/sighting/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"sightings.csv\""))
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(body.startsWith(SightingExportWriterTest.CSV_HEADER
+                + "7,2022-01-02T10:30,3,"), "Body should start with the "
+                + "header and the first Sighting.");
+        assertTrue(body.endsWith("\"Tall\rbuildings\"\r\n"
+                + "8,2022-03-04T05:06,4,Batman,,6,Gotham,,,,,,,\r\n"),
+                "Body should end with the second Sighting.");
+    }
+
+    /* method: exportSightings()
+        - test format=ndjson is sent as an NDJSON attachment
+        - test the body is one JSON object per line, without a header
+    */
+    @Test
+    public void testExportNdjson() throws Exception {
+        MvcResult result = mockMvc.perform(get("/sighting/export")
+                .param("format", "ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"sightings.ndjson\""))
+                .andReturn().getResponse().getContentAsString();
+
+        List<String> lines = List.of(body.split("\n"));
+        assertEquals(2, lines.size(), "Body should be one line per Sighting.");
+        assertTrue(lines.get(0).startsWith("{\"sighting_id\":7,"));
+        assertTrue(lines.get(1).startsWith("{\"sighting_id\":8,"));
+    }
+
+}
@@ -0,0 +1,177 @@
+package com.sblinn.superherosightings.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sblinn.superherosightings.dto.Location;
+import com.sblinn.superherosightings.dto.Sighting;
+import com.sblinn.superherosightings.dto.Superhero;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the CSV and NDJSON written by SightingExportWriter, one row at
+ * a time, for values which need quoting and for missing values.
+ *
+ * @author Sara Blinn
+ */
+public class SightingExportWriterTest {
+
+    static final String CSV_HEADER = "sighting_id,date,superhero_id,"
+            + "superhero_name,superhero_description,location_id,"
+            + "location_name,street_address,city,state,country,latitude,"
+            + "longitude,location_description\r\n";
+
+    private final StringWriter out = new StringWriter();
+
+
+    public SightingExportWriterTest() {
+    }
+
+
+    /* method: writeHeader()
+        - test the CSV header names every column
+        - test NDJSON has no header
+    */
+    @Test
+    public void testWriteHeader() throws IOException {
+        SightingExportWriter.csv(out).writeHeader();
+        assertEquals(CSV_HEADER, out.toString());
+
+        StringWriter ndjsonOut = new StringWriter();
+        SightingExportWriter ndjson = SightingExportWriter.ndjson(ndjsonOut);
+        ndjson.writeHeader();
+        ndjson.flush();
+        assertEquals("", ndjsonOut.toString(),
+                "NDJSON should have no header.");
+    }
+
+    /* method: accept() - CSV
+        - test values with commas, quotes, CR or LF are quoted, with
+          quotes doubled
+        - test plain values are not quoted
+        - test coordinates are written in plain notation
+    */
+    @Test
+    public void testCsvQuoting() throws IOException {
+        SightingExportWriter writer = SightingExportWriter.csv(out);
+        writer.accept(newViewModel());
+        writer.flush();
+
+        assertEquals("7,2022-01-02T10:30,3,\"Superman, Jr.\","
+                + "\"The \"\"Man\"\" of Steel\",5,Metropolis,"
+                + "\"1 Main St\r\nApt 2\",\"New\nYork\",NY,USA,"
+                + "40.712800,-74.006000,\"Tall\rbuildings\"\r\n",
+                out.toString());
+    }
+
+    /* method: accept() - CSV
+        - test missing values are written as empty fields
+    */
+    @Test
+    public void testCsvNullFields() throws IOException {
+        SightingExportWriter writer = SightingExportWriter.csv(out);
+        writer.accept(newViewModelWithNulls());
+        writer.flush();
+
+        assertEquals("8,2022-03-04T05:06,4,Batman,,6,Gotham,,,,,,,\r\n",
+                out.toString());
+    }
+
+    /* method: accept() - NDJSON
+        - test each Sighting is one JSON object on its own line
+        - test ids and coordinates are numbers, text is escaped strings
+        - test missing values are null
+    */
+    @Test
+    public void testNdjsonRows() throws IOException {
+        SightingExportWriter writer = SightingExportWriter.ndjson(out);
+        writer.accept(newViewModel());
+        writer.accept(newViewModelWithNulls());
+        writer.flush();
+
+        String[] lines = out.toString().split("\n", -1);
+        assertEquals(3, lines.length,
+                "Each Sighting should be written on its own line.");
+        assertEquals("", lines[2], "The last line should end in LF.");
+        assertTrue(lines[0].startsWith("{") && lines[1].startsWith("{"),
+                "Each line should start with its object.");
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode first = mapper.readTree(lines[0]);
+        assertEquals(14, first.size());
+        assertTrue(first.get("sighting_id").isInt());
+        assertEquals(7, first.get("sighting_id").intValue());
+        assertEquals("2022-01-02T10:30", first.get("date").textValue());
+        assertTrue(first.get("superhero_id").isInt());
+        assertEquals("The \"Man\" of Steel",
+                first.get("superhero_description").textValue());
+        assertEquals("1 Main St\r\nApt 2",
+                first.get("street_address").textValue());
+        assertTrue(first.get("latitude").isNumber(),
+                "Coordinates should be numbers.");
+        assertEquals("40.712800", lines[0].replaceAll(
+                ".*\"latitude\":([^,]*),.*", "$1"),
+                "Coordinates should keep their scale.");
+        assertEquals(-74.006, first.get("longitude").doubleValue(), 0);
+
+        JsonNode second = mapper.readTree(lines[1]);
+        assertTrue(second.get("superhero_description").isNull());
+        assertTrue(second.get("street_address").isNull());
+        assertTrue(second.get("latitude").isNull());
+        assertTrue(second.get("location_description").isNull());
+    }
+
+    static SightingViewModel newViewModel() {
+        Superhero superhero = new Superhero();
+        superhero.setId(3);
+        superhero.setName("Superman, Jr.");
+        superhero.setDescription("The \"Man\" of Steel");
+
+        Location location = new Location();
+        location.setId(5);
+        location.setName("Metropolis");
+        location.setStreet_address("1 Main St\r\nApt 2");
+        location.setCity("New\nYork");
+        location.setState("NY");
+        location.setCountry("USA");
+        location.setLatitude("40.7128");
+        location.setLongitude("-74.006");
+        location.setDescription("Tall\rbuildings");
+
+        return newViewModel(7, LocalDateTime.of(2022, 1, 2, 10, 30),
+                superhero, location);
+    }
+
+    static SightingViewModel newViewModelWithNulls() {
+        Superhero superhero = new Superhero();
+        superhero.setId(4);
+        superhero.setName("Batman");
+
+        Location location = new Location();
+        location.setId(6);
+        location.setName("Gotham");
+
+        return newViewModel(8, LocalDateTime.of(2022, 3, 4, 5, 6),
+                superhero, location);
+    }
+
+    private static SightingViewModel newViewModel(int id,
+            LocalDateTime date, Superhero superhero, Location location) {
+        Sighting sighting = new Sighting();
+        sighting.setId(id);
+        sighting.setDate(date);
+        sighting.setSuperhero_id(superhero.getId());
+        sighting.setLocation_id(location.getId());
+
+        SightingViewModel vm = new SightingViewModel();
+        vm.setSighting(sighting);
+        vm.setSuperhero(superhero);
+        vm.setLocation(location);
+        return vm;
+    }
+
+}
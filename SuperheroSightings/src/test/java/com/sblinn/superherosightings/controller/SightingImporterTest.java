@@ -0,0 +1,385 @@
+package com.sblinn.superherosightings.controller;
+
+import com.sblinn.superherosightings.dao.LocationDao;
+import com.sblinn.superherosightings.dao.SightingDao;
+import com.sblinn.superherosightings.dao.SuperheroDao;
+import com.sblinn.superherosightings.dto.Sighting;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests the CSV and JSON parsing, row numbering and chunking of
+ * SightingImporter against mocked DAOs. Superhero ids 1 to 9 and
+ * Location ids 1 to 9 exist; each createSightings call is recorded as
+ * one committed chunk unless failingChunk says it should fail.
+ *
+ * @author Sara Blinn
+ */
+public class SightingImporterTest {
+
+    private static final String HEADER = "superhero_id,location_id,date\n";
+
+    private SightingImporter importer;
+
+    // the Sightings passed to each successful createSightings call
+    private List<List<Sighting>> committedChunks;
+    private int createSightingsCalls;
+    private int failingChunk;
+
+
+    public SightingImporterTest() {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        committedChunks = new ArrayList<>();
+        createSightingsCalls = 0;
+        failingChunk = -1;
+
+        SightingDao sightingDao = mock(SightingDao.class);
+        when(sightingDao.createSightings(anyList())).thenAnswer(invocation -> {
+            List<Sighting> chunk = invocation.getArgument(0);
+            if (createSightingsCalls++ == failingChunk) {
+                throw new DataAccessResourceFailureException(
+                        "Connection lost.");
+            }
+            committedChunks.add(new ArrayList<>(chunk));
+            return chunk.size();
+        });
+
+        SuperheroDao superheroDao = mock(SuperheroDao.class);
+        when(superheroDao.getExistingSuperheroIds(anyCollection()))
+                .thenAnswer(invocation -> existingIds(
+                        invocation.getArgument(0)));
+
+        LocationDao locationDao = mock(LocationDao.class);
+        when(locationDao.getExistingLocationIds(anyCollection()))
+                .thenAnswer(invocation -> existingIds(
+                        invocation.getArgument(0)));
+
+        importer = new SightingImporter();
+        importer.sightingDao = sightingDao;
+        importer.superheroDao = superheroDao;
+        importer.locationDao = locationDao;
+        ReflectionTestUtils.setField(importer, "chunkSize", 5000);
+    }
+
+    private static Set<Integer> existingIds(Collection<Integer> ids) {
+        Set<Integer> existing = new HashSet<>();
+        for (int id : ids) {
+            if (id >= 1 && id <= 9) {
+                existing.add(id);
+            }
+        }
+        return existing;
+    }
+
+
+    /*
+     * CSV parsing:
+     * - test quoted fields holding commas, doubled quotes and line breaks.
+     * - test header columns in any order and case, with extra columns.
+     * - test a header missing a required column.
+     * - test an unterminated quoted field.
+     */
+    @Test
+    public void testImportCsvQuotedFields() throws IOException {
+        String csv = "superhero_id,superhero_name,location_id,date\n"
+                + "1,\"Superman, \"\"Man of Steel\"\"\",2,2022-01-01 10:00:00\n"
+                + "3,\"Two\r\nLines\",4,\"2022-01-02T11:30:00\"\r\n";
+
+        SightingImportResult result = importCsv(csv);
+
+        assertFalse(result.isMalformed(), "Input should be well formed.");
+        assertEquals(2, result.getRowsRead(), "Two rows should be read.");
+        assertEquals(2, result.getRowsImported(),
+                "Both rows should be imported.");
+        assertEquals(0, result.getErrorCount(), "No row should fail.");
+
+        List<Sighting> imported = committedChunks.get(0);
+        assertEquals(1, imported.get(0).getSuperhero_id());
+        assertEquals(2, imported.get(0).getLocation_id());
+        assertEquals(LocalDateTime.of(2022, 1, 1, 10, 0),
+                imported.get(0).getDate());
+        assertEquals(3, imported.get(1).getSuperhero_id(),
+                "The line break inside quotes should not end the row.");
+        assertEquals(4, imported.get(1).getLocation_id());
+        assertEquals(LocalDateTime.of(2022, 1, 2, 11, 30),
+                imported.get(1).getDate());
+    }
+
+    @Test
+    public void testImportCsvHeaderAnyOrderAndCase() throws IOException {
+        String csv = "Date,notes,LOCATION_ID,Superhero_Id\n"
+                + "2022-01-01 10:00:00,seen flying,5,6\n";
+
+        SightingImportResult result = importCsv(csv);
+
+        assertEquals(1, result.getRowsImported(),
+                "Row should be imported.");
+        Sighting imported = committedChunks.get(0).get(0);
+        assertEquals(6, imported.getSuperhero_id(),
+                "superhero_id should be read from the last column.");
+        assertEquals(5, imported.getLocation_id(),
+                "location_id should be read from the third column.");
+    }
+
+    @Test
+    public void testImportCsvMissingHeaderColumn() throws IOException {
+        String csv = "superhero_id,date\n"
+                + "1,2022-01-01 10:00:00\n";
+
+        SightingImportResult result = importCsv(csv);
+
+        assertTrue(result.isMalformed(), "Input should be malformed.");
+        assertEquals(0, result.getRowsRead(), "No rows should be read.");
+        assertEquals(0, result.getRowsImported(),
+                "No rows should be imported.");
+        assertEquals("CSV header has no location_id column.",
+                result.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    public void testImportCsvUnterminatedQuote() throws IOException {
+        String csv = HEADER
+                + "1,2,2022-01-01 10:00:00\n"
+                + "3,\"4,2022-01-02 10:00:00\n";
+
+        SightingImportResult result = importCsv(csv);
+
+        assertTrue(result.isMalformed(), "Input should be malformed.");
+        assertEquals(1, result.getRowsRead(),
+                "Only the row before the bad one should be read.");
+        assertEquals(1, result.getRowsImported(),
+                "The row before the bad one should still be imported.");
+        assertEquals(1, result.getErrorCount(), "One error expected.");
+        assertEquals(2, result.getErrors().get(0).getRow(),
+                "The error should name the unterminated row.");
+        assertEquals("Unterminated quoted CSV field.",
+                result.getErrors().get(0).getMessage());
+    }
+
+    /*
+     * JSON parsing:
+     * - test ids as numbers or strings, nested values and unknown fields.
+     * - test input that is not an array.
+     * - test an element that is not an object.
+     * - test JSON cut off part way through.
+     */
+    @Test
+    public void testImportJson() throws IOException {
+        String json = "[{\"superhero_id\": 1, \"location_id\": \"2\", "
+                + "\"date\": \"2022-01-01T10:00:00\", "
+                + "\"superhero\": {\"name\": \"Superman\"}, "
+                + "\"tags\": [1, 2]},"
+                + "{\"date\": \"2022-01-02 10:00:00\", "
+                + "\"location_id\": 4, \"superhero_id\": 3}]";
+
+        SightingImportResult result = importJson(json);
+
+        assertFalse(result.isMalformed(), "Input should be well formed.");
+        assertEquals(2, result.getRowsImported(),
+                "Both rows should be imported.");
+        Sighting first = committedChunks.get(0).get(0);
+        assertEquals(1, first.getSuperhero_id());
+        assertEquals(2, first.getLocation_id());
+        Sighting second = committedChunks.get(0).get(1);
+        assertEquals(3, second.getSuperhero_id());
+        assertEquals(4, second.getLocation_id());
+    }
+
+    @Test
+    public void testImportJsonNotAnArray() throws IOException {
+        SightingImportResult result = importJson(
+                "{\"superhero_id\": 1, \"location_id\": 2}");
+
+        assertTrue(result.isMalformed(), "Input should be malformed.");
+        assertEquals(0, result.getRowsImported(),
+                "No rows should be imported.");
+        assertEquals("Expected a JSON array of sightings.",
+                result.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    public void testImportJsonNonObjectElement() throws IOException {
+        String json = "[{\"superhero_id\": 1, \"location_id\": 2, "
+                + "\"date\": \"2022-01-01T10:00:00\"}, 42]";
+
+        SightingImportResult result = importJson(json);
+
+        assertTrue(result.isMalformed(), "Input should be malformed.");
+        assertEquals(1, result.getRowsImported(),
+                "The object before the bad element should be imported.");
+        assertEquals(2, result.getErrors().get(0).getRow(),
+                "The error should name the second element.");
+        assertEquals("Expected a JSON object for each sighting.",
+                result.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    public void testImportJsonTruncated() throws IOException {
+        String json = "[{\"superhero_id\": 1, \"location_id\": 2, "
+                + "\"date\": \"2022-01-01T10:00:00\"}, "
+                + "{\"superhero_id\": 3, \"location_";
+
+        SightingImportResult result = importJson(json);
+
+        assertTrue(result.isMalformed(), "Input should be malformed.");
+        assertEquals(1, result.getRowsImported(),
+                "The complete object should be imported.");
+        assertEquals(1, result.getErrorCount(), "One error expected.");
+        assertEquals(2, result.getErrors().get(0).getRow(),
+                "The error should name the cut off element.");
+    }
+
+    /*
+     * Row errors and chunks:
+     * - test the row numbers of invalid fields and unknown ids.
+     * - test rows across chunk boundaries keep their numbers.
+     * - test a failed chunk leaves the chunks before and after it.
+     * - test only MAX_REPORTED_ERRORS errors are listed.
+     */
+    @Test
+    public void testImportCsvRowErrors() throws IOException {
+        String csv = HEADER
+                + "1,2,2022-01-01 10:00:00\n"
+                + "x,2,2022-01-01 10:00:00\n"
+                + "1,,not a date\n"
+                + "\n"
+                + "10,2,2022-01-01 10:00:00\n"
+                + "1,20,2022-01-01 10:00:00\n";
+
+        SightingImportResult result = importCsv(csv);
+
+        assertFalse(result.isMalformed(), "Input should be well formed.");
+        assertEquals(5, result.getRowsRead(),
+                "Blank lines should not count as rows.");
+        assertEquals(1, result.getRowsImported(),
+                "Only the first row should be imported.");
+        assertEquals(4, result.getErrorCount(), "Four rows should fail.");
+
+        List<SightingImportResult.RowError> errors = result.getErrors();
+        assertEquals(2, errors.get(0).getRow());
+        assertEquals("Missing or invalid superhero_id.",
+                errors.get(0).getMessage());
+        assertEquals(3, errors.get(1).getRow());
+        assertEquals("Missing or invalid location_id, date.",
+                errors.get(1).getMessage());
+        assertEquals(4, errors.get(2).getRow());
+        assertEquals("No Superhero with id 10.", errors.get(2).getMessage());
+        assertEquals(5, errors.get(3).getRow());
+        assertEquals("No Location with id 20.", errors.get(3).getMessage());
+    }
+
+    @Test
+    public void testImportCsvRowsAcrossChunks() throws IOException {
+        ReflectionTestUtils.setField(importer, "chunkSize", 2);
+        String csv = HEADER
+                + "1,1,2022-01-01 10:00:00\n"
+                + "2,\"2\n\",2022-01-01 10:00:00\n"
+                + "3,3,2022-01-01 10:00:00\n"
+                + "bad,3,2022-01-01 10:00:00\n"
+                + "4,4,2022-01-01 10:00:00\n"
+                + "10,5,2022-01-01 10:00:00\n"
+                + "6,6,2022-01-01 10:00:00\n";
+
+        SightingImportResult result = importCsv(csv);
+
+        assertEquals(7, result.getRowsRead(), "Seven rows should be read.");
+        assertEquals(5, result.getRowsImported(),
+                "Five rows should be imported.");
+        assertEquals(3, committedChunks.size(),
+                "Valid rows should be inserted two at a time.");
+        assertEquals(2, committedChunks.get(0).size());
+        assertEquals(2, committedChunks.get(1).size(),
+                "The invalid row should not take a place in a chunk.");
+        assertEquals(4, committedChunks.get(1).get(1).getSuperhero_id());
+        assertEquals(1, committedChunks.get(2).size(),
+                "The unknown Superhero should be dropped from its chunk.");
+        assertEquals(6, committedChunks.get(2).get(0).getSuperhero_id());
+
+        assertEquals(4, result.getErrors().get(0).getRow(),
+                "The invalid row should keep its number.");
+        assertEquals(6, result.getErrors().get(1).getRow(),
+                "The unknown Superhero's row should keep its number.");
+    }
+
+    @Test
+    public void testImportCsvFailedChunk() throws IOException {
+        ReflectionTestUtils.setField(importer, "chunkSize", 2);
+        failingChunk = 1;
+        String csv = HEADER
+                + "1,1,2022-01-01 10:00:00\n"
+                + "2,2,2022-01-01 10:00:00\n"
+                + "3,3,2022-01-01 10:00:00\n"
+                + "4,4,2022-01-01 10:00:00\n"
+                + "5,5,2022-01-01 10:00:00\n";
+
+        SightingImportResult result = importCsv(csv);
+
+        assertFalse(result.isMalformed(), "Input should be well formed.");
+        assertEquals(5, result.getRowsRead(), "Five rows should be read.");
+        assertEquals(3, result.getRowsImported(),
+                "The first and last chunks should be imported.");
+        assertEquals(2, committedChunks.size(),
+                "The failed chunk should not be committed.");
+        assertEquals(1, committedChunks.get(0).get(0).getSuperhero_id());
+        assertEquals(5, committedChunks.get(1).get(0).getSuperhero_id());
+
+        assertEquals(2, result.getErrorCount(),
+                "Each row of the failed chunk should be reported.");
+        assertEquals(3, result.getErrors().get(0).getRow());
+        assertEquals(4, result.getErrors().get(1).getRow());
+        assertEquals("Not imported, the chunk failed: Connection lost.",
+                result.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    public void testImportCsvReportedErrorsCapped() throws IOException {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < 1500; i++) {
+            csv.append("0,1,2022-01-01 10:00:00\n");
+        }
+        csv.append("1,1,2022-01-01 10:00:00\n");
+
+        SightingImportResult result = importCsv(csv.toString());
+
+        assertEquals(1501, result.getRowsRead(), "All rows should be read.");
+        assertEquals(1, result.getRowsImported(),
+                "The valid row should be imported.");
+        assertEquals(1500, result.getErrorCount(),
+                "Every invalid row should be counted.");
+        assertEquals(1000, result.getErrors().size(),
+                "Only the first 1000 errors should be listed.");
+        assertEquals(1000, result.getErrors().get(999).getRow());
+    }
+
+    private SightingImportResult importCsv(String csv) throws IOException {
+        return importer.importCsv(new StringReader(csv));
+    }
+
+    private SightingImportResult importJson(String json) throws IOException {
+        return importer.importJson(new ByteArrayInputStream(
+                json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
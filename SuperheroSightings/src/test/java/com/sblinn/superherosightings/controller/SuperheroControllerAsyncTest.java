@@ -0,0 +1,85 @@
+package com.sblinn.superherosightings.controller;
+
+import com.sblinn.superherosightings.Application;
+import com.sblinn.superherosightings.dao.SuperheroDao;
+import com.sblinn.superherosightings.dto.Superhero;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+/**
+ * Tests that in async mode the Superhero details and edit pages are
+ * rendered through an async dispatch once their lookups complete.
+ *
+ * Not @Transactional: the lookups run on other threads, which only see
+ * committed rows. The Superhero created is deleted afterwards.
+ *
+ * @author Sara Blinn
+ */
+@SpringBootTest(classes = Application.class,
+        properties = "requests.execution-mode=async")
+@AutoConfigureMockMvc
+public class SuperheroControllerAsyncTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SuperheroDao superheroDao;
+
+    private int superheroId;
+
+
+    public SuperheroControllerAsyncTest() {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        Superhero hero = new Superhero();
+        hero.setName("Superman");
+        hero.setDescription("Guy with superpowers.");
+        superheroId = superheroDao.createSuperhero(hero).getId();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        superheroDao.deleteSuperheroById(superheroId);
+    }
+
+
+    /* method: viewSuperhero(), displayEditSuperhero()
+        - test async mode renders once the lookups complete
+    */
+    @Test
+    public void testAsyncModeRendersAfterLookups() throws Exception {
+        MvcResult result = mockMvc.perform(get("/superhero/details")
+                .param("id", String.valueOf(superheroId)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(view().name("superhero/details"))
+                .andExpect(model().attributeExists("superhero",
+                        "sightingStats"));
+
+        result = mockMvc.perform(get("/superhero/edit")
+                .param("id", String.valueOf(superheroId)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(view().name("superhero/edit"));
+    }
+
+}
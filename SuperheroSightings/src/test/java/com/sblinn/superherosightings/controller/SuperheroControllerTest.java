@@ -0,0 +1,78 @@
+package com.sblinn.superherosightings.controller;
+
+import com.sblinn.superherosightings.Application;
+import com.sblinn.superherosightings.dao.SuperheroDao;
+import com.sblinn.superherosightings.dto.Superhero;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+/**
+ * Tests that in platform mode, the default, the Superhero details and
+ * edit pages are rendered on the request thread, without an async
+ * dispatch. SuperheroControllerAsyncTest covers async mode.
+ *
+ * @author Sara Blinn
+ */
+@SpringBootTest(classes = Application.class)
+@AutoConfigureMockMvc
+public class SuperheroControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SuperheroDao superheroDao;
+
+    private int superheroId;
+
+
+    public SuperheroControllerTest() {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        Superhero hero = new Superhero();
+        hero.setName("Superman");
+        hero.setDescription("Guy with superpowers.");
+        superheroId = superheroDao.createSuperhero(hero).getId();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        superheroDao.deleteSuperheroById(superheroId);
+    }
+
+
+    /* method: viewSuperhero(), displayEditSuperhero()
+        - test platform mode renders without starting async processing
+    */
+    @Test
+    public void testPlatformModeRendersSynchronously() throws Exception {
+        mockMvc.perform(get("/superhero/details")
+                .param("id", String.valueOf(superheroId)))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(view().name("superhero/details"))
+                .andExpect(model().attributeExists("superhero",
+                        "superpowers", "organizations", "sightingStats"));
+
+        mockMvc.perform(get("/superhero/edit")
+                .param("id", String.valueOf(superheroId)))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(view().name("superhero/edit"))
+                .andExpect(model().attributeExists("superheroViewModel",
+                        "allSuperpowers", "allOrganizations"));
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.Application;
+import com.sblinn.superherosightings.dto.ChangeEvent;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Tests that ChangeOutbox readers never move past an event which an
+ * open transaction may still commit.
+ *
+ * Not @Transactional: the transactions here must really commit, on two
+ * threads. The events appended are deleted afterwards.
+ *
+ * @author Sara Blinn
+ */
+@SpringBootTest(classes = Application.class)
+public class ChangeOutboxTest {
+
+    @Autowired
+    private ChangeOutbox changeOutbox;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long start;
+
+
+    public ChangeOutboxTest() {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        start = changeOutbox.getCurrentCursor();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM Change_Event WHERE id > ?;", start);
+    }
+
+
+    /* method: getChangesSince()
+        - test an event committed after an earlier one still in flight
+          is held back, and the cursor does not pass the open floor
+        - test both are read, in id order, once the first commits
+    */
+    @Test
+    public void testChangesHeldBehindOpenTransaction() throws Exception {
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(
+                () -> transactionTemplate.executeWithoutResult(status -> {
+                    changeOutbox.append("Superhero", 1, ChangeEvent.UPDATE);
+                    appended.countDown();
+                    await(release);
+                }));
+        try {
+            assertTrue(appended.await(10, TimeUnit.SECONDS));
+
+            transactionTemplate.executeWithoutResult(status
+                    -> changeOutbox.append("Superhero", 2,
+                            ChangeEvent.UPDATE));
+
+            ChangePage page = changeOutbox.getChangesSince(start, 10);
+            assertTrue(page.getChanges().isEmpty(),
+                    "The later event should be held back.");
+            assertEquals(start, page.getNextCursor(),
+                    "The cursor should not pass the open floor.");
+            assertEquals(start, changeOutbox.getCurrentCursor(),
+                    "A new reader should not start past the open floor.");
+        } finally {
+            release.countDown();
+        }
+        first.get(10, TimeUnit.SECONDS);
+
+        ChangePage page = changeOutbox.getChangesSince(start, 10);
+        assertEquals(List.of(1, 2), page.getChanges().stream()
+                .map(ChangeEvent::getEntity_id)
+                .collect(Collectors.toList()),
+                "Both events should be read in id order.");
+        assertEquals(page.getChanges().get(1).getId(),
+                page.getNextCursor());
+    }
+
+    /* method: getChangesSince()
+        - test a rolled back event is never read and releases its floor
+    */
+    @Test
+    public void testRolledBackChangeReleasesFloor() {
+        transactionTemplate.executeWithoutResult(status -> {
+            changeOutbox.append("Superhero", 1, ChangeEvent.UPDATE);
+            status.setRollbackOnly();
+        });
+        transactionTemplate.executeWithoutResult(status
+                -> changeOutbox.append("Superhero", 2, ChangeEvent.UPDATE));
+
+        ChangePage page = changeOutbox.getChangesSince(start, 10);
+        assertEquals(List.of(2), page.getChanges().stream()
+                .map(ChangeEvent::getEntity_id)
+                .collect(Collectors.toList()));
+    }
+
+    /* method: append()
+        - test appending outside a transaction is refused
+    */
+    @Test
+    public void testAppendOutsideTransaction() {
+        assertThrows(IllegalStateException.class,
+                () -> changeOutbox.append("Superhero", 1,
+                        ChangeEvent.UPDATE));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.dto.Superhero;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that EntityCache.putUpdated keeps the newest version when
+ * updates arrive out of order, outside any transaction, and never
+ * caches a row deleted in the meantime.
+ *
+ * @author Sara Blinn
+ */
+public class EntityCacheTest {
+
+    private final EntityCache<Superhero> cache = new EntityCache<>(
+            "test", new SimpleMeterRegistry(), 10, Duration.ofMinutes(1),
+            EntityCacheTest::copy, Superhero::getVersion);
+
+
+    public EntityCacheTest() {
+    }
+
+
+    /* method: putUpdated()
+        - test an older update arriving last does not replace a newer one
+        - test a newer update replaces an older cached row
+    */
+    @Test
+    public void testPutUpdatedKeepsNewerVersion() {
+        cache.get(1, id -> newSuperhero(1, "First"));
+        cache.putUpdated(1, newSuperhero(3, "Third"));
+        cache.putUpdated(1, newSuperhero(2, "Second"));
+        assertEquals("Third", getCached(1).getName(),
+                "An older update should not replace a newer one.");
+
+        cache.putUpdated(1, newSuperhero(4, "Fourth"));
+        assertEquals("Fourth", getCached(1).getName(),
+                "A newer update should replace the cached Superhero.");
+    }
+
+    /* method: putUpdated()
+        - test an update replaces the row a racing read loaded before it
+    */
+    @Test
+    public void testPutUpdatedReplacesOlderLoad() {
+        cache.get(1, id -> newSuperhero(1, "Loaded"));
+        cache.putUpdated(1, newSuperhero(2, "Updated"));
+        assertEquals("Updated", getCached(1).getName());
+        assertEquals(2, getCached(1).getVersion());
+    }
+
+    /* method: putUpdated()
+        - test an update whose row is deleted and evicted before it gets
+          to the cache does not bring the deleted row back
+    */
+    @Test
+    public void testPutUpdatedAfterDeleteCachesNothing() {
+        cache.get(1, id -> newSuperhero(1, "Loaded"));
+        cache.evict(1);
+        cache.putUpdated(1, newSuperhero(2, "Updated"));
+
+        assertNull(cache.get(1, id -> null),
+                "The deleted Superhero should not be cached.");
+    }
+
+    private Superhero getCached(int id) {
+        return cache.get(id, missing -> {
+            fail("Superhero " + missing + " should be cached.");
+            return null;
+        });
+    }
+
+    private static Superhero newSuperhero(int version, String name) {
+        Superhero hero = new Superhero();
+        hero.setId(1);
+        hero.setVersion(version);
+        hero.setName(name);
+        return hero;
+    }
+
+    private static Superhero copy(Superhero hero) {
+        return newSuperhero(hero.getVersion(), hero.getName());
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.sblinn.superherosightings.dao;
 
+import com.sblinn.superherosightings.dto.EntitySummary;
 import com.sblinn.superherosightings.dto.Location;
+import com.sblinn.superherosightings.dto.NearbyLocation;
 import java.math.BigDecimal;
 import java.util.List;
 import org.junit.jupiter.api.AfterEach;
@@ -369,6 +371,113 @@ public class LocationDaoDBTest {
                 "Retrieved list should contain testLocation2");
     }
 
+    /*
+     * getLocationSummaries:
+     * - test getLocationSummaries with two Locations in database.
+     */
+    @Test
+    public void testGetLocationSummaries() {
+        Location testLocation = new Location();
+        testLocation.setId(1);
+        testLocation.setName("Rockefeller Center");
+        testLocation.setStreet_address("45 Rockefeller Plaza");
+        testLocation.setCity("New York");
+        testLocation.setState("NY");
+        testLocation.setCountry("US");
+        testLocation.setLatitude(new BigDecimal("40.7587"));
+        testLocation.setLongitude(new BigDecimal("73.9787"));
+        testLocation.setDescription("NY Location");
+
+        Location testLocation2 = new Location();
+        testLocation2.setId(2);
+        testLocation2.setName("Statue of Liberty");
+        testLocation2.setCity("New York");
+        testLocation2.setState("NY");
+        testLocation2.setCountry("US");
+        testLocation2.setLatitude(new BigDecimal("40.4892"));
+        testLocation2.setLongitude(new BigDecimal("74.0445"));
+        testLocation2.setDescription("NY Landmark, no address");
+        
+        testLocationDao.createLocation(testLocation);
+        testLocationDao.createLocation(testLocation2);
+        
+        List<EntitySummary> summaries 
+                = testLocationDao.getLocationSummaries();
+        
+        assertEquals(List.of(new EntitySummary(1, "Rockefeller Center"), 
+                new EntitySummary(2, "Statue of Liberty")), summaries, 
+                "Summaries should hold the id and name of each "
+                        + "Location, in id order.");
+    }
+
+    /*
+     * getLocationsWithinRadius / getNearestLocations:
+     * - test radius search returns only Locations inside the radius, 
+     *   nearest first, and follows updates and deletes.
+     * - test nearest search across the Atlantic.
+     */
+    @Test
+    public void testGetLocationsWithinRadius() {
+        Location rockefeller = new Location();
+        rockefeller.setId(1);
+        rockefeller.setName("Rockefeller Center");
+        rockefeller.setCity("New York");
+        rockefeller.setCountry("US");
+        rockefeller.setLatitude(new BigDecimal("40.758700"));
+        rockefeller.setLongitude(new BigDecimal("-73.978700"));
+        rockefeller.setDescription("NY Location");
+        
+        Location liberty = new Location();
+        liberty.setId(2);
+        liberty.setName("Statue of Liberty");
+        liberty.setCity("New York");
+        liberty.setCountry("US");
+        liberty.setLatitude(new BigDecimal("40.689200"));
+        liberty.setLongitude(new BigDecimal("-74.044500"));
+        liberty.setDescription("NY Landmark, no address");
+        
+        Location london = new Location();
+        london.setId(3);
+        london.setName("Trafalgar Square");
+        london.setCity("London");
+        london.setCountry("GB");
+        london.setLatitude(new BigDecimal("51.508000"));
+        london.setLongitude(new BigDecimal("-0.128100"));
+        london.setDescription("London Landmark");
+        
+        testLocationDao.createLocation(rockefeller);
+        testLocationDao.createLocation(liberty);
+        testLocationDao.createLocation(london);
+        
+        List<NearbyLocation> nearby = testLocationDao
+                .getLocationsWithinRadius(40.7484, -73.9857, 20, 10);
+        
+        assertEquals(2, nearby.size(), 
+                "Only the New York Locations are within 20km.");
+        assertEquals(1, nearby.get(0).getLocation().getId(), 
+                "Rockefeller Center should be nearest.");
+        assertEquals(2, nearby.get(1).getLocation().getId(), 
+                "Statue of Liberty should be second.");
+        assertTrue(nearby.get(0).getDistanceKm() > 1 
+                && nearby.get(0).getDistanceKm() < 2, 
+                "Rockefeller Center is about 1.3km away.");
+        
+        // move Rockefeller Center out of range, then delete Liberty
+        rockefeller.setLatitude(new BigDecimal("41.758700"));
+        testLocationDao.updateLocation(rockefeller);
+        testLocationDao.deleteLocationById(2);
+        
+        assertTrue(testLocationDao.getLocationsWithinRadius(
+                40.7484, -73.9857, 20, 10).isEmpty(), 
+                "Updated and deleted Locations should be out of range.");
+        
+        List<NearbyLocation> nearest 
+                = testLocationDao.getNearestLocations(48.8566, 2.3522, 1);
+        assertEquals(1, nearest.size(), "One Location was asked for.");
+        assertEquals(3, nearest.get(0).getLocation().getId(), 
+                "London is the nearest Location to Paris.");
+    }
+
     /*
      * updateLocation:
      * - test updateLocation with valid id.
@@ -0,0 +1,114 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.dao.LocationSpatialIndex.Neighbor;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests LocationSpatialIndex directly with 1 degree cells, at the edges
+ * of the grid where the cell arithmetic wraps or is clamped.
+ *
+ * @author Sara Blinn
+ */
+public class LocationSpatialIndexTest {
+
+    private final LocationSpatialIndex index = new LocationSpatialIndex(1);
+
+
+    public LocationSpatialIndexTest() {
+    }
+
+
+    /* method: withinRadius()
+        - test a point across the antimeridian is found
+        - test the distance is measured the short way round
+    */
+    @Test
+    public void testWithinRadiusAcrossAntimeridian() {
+        index.put(1, 0, 179.99);
+        index.put(2, 0, 179.0);
+
+        List<Neighbor> neighbors = index.withinRadius(0, -179.99, 5, 10);
+
+        assertEquals(1, neighbors.size(),
+                "Only the point 0.02 degrees away should be found.");
+        assertEquals(1, neighbors.get(0).getId());
+        assertEquals(2.224, neighbors.get(0).getDistanceKm(), 0.001,
+                "Distance should be 0.02 degrees of the equator.");
+
+        neighbors = index.withinRadius(0, 179.99, 5, 10);
+        assertEquals(1, neighbors.size(),
+                "The search should also work from the other side.");
+    }
+
+    /* method: nearest()
+        - test the nearest point is across the antimeridian
+    */
+    @Test
+    public void testNearestAcrossAntimeridian() {
+        index.put(1, 0, 179.99);
+        index.put(2, 0, -179.9);
+
+        List<Neighbor> neighbors = index.nearest(0, -179.99, 2);
+
+        assertEquals(2, neighbors.size());
+        assertEquals(1, neighbors.get(0).getId(),
+                "The point across the antimeridian should be nearest.");
+        assertEquals(2, neighbors.get(1).getId());
+    }
+
+    /* method: withinRadius()
+        - test a radius reaching over the pole finds points on the far
+          side, including one at latitude 90
+        - test points beyond the radius are not found
+    */
+    @Test
+    public void testWithinRadiusNearPole() {
+        index.put(1, 89.95, 180);
+        index.put(2, 90, 0);
+        index.put(3, 89.95, 90);
+        index.put(4, 89.5, 0);
+
+        List<Neighbor> neighbors = index.withinRadius(89.9, 0, 20, 10);
+
+        assertEquals(List.of(2, 3, 1),
+                neighbors.stream().map(Neighbor::getId)
+                        .collect(Collectors.toList()),
+                "Points within 20 km should be found, nearest first.");
+        assertEquals(16.68, neighbors.get(2).getDistanceKm(), 0.01,
+                "Distance over the pole should be 0.15 degrees.");
+    }
+
+    /* method: put()
+        - test moving a point leaves it only at its new position
+        - test the emptied cell is dropped
+    */
+    @Test
+    public void testPutMovesPoint() {
+        index.put(1, 10, 10);
+        index.put(1, 50, 50);
+
+        assertEquals(1, index.size());
+        assertTrue(index.withinRadius(10, 10, 100, 10).isEmpty(),
+                "Nothing should be left at the old position.");
+        assertEquals(1, index.withinRadius(50, 50, 100, 10).size(),
+                "The point should be found at its new position.");
+        assertEquals(1, getCells().size(),
+                "The emptied cell should be dropped.");
+
+        index.remove(1);
+        assertEquals(0, index.size());
+        assertTrue(getCells().isEmpty(),
+                "The last cell should be dropped on remove.");
+    }
+
+    private Map<?, ?> getCells() {
+        return (Map<?, ?>) ReflectionTestUtils.getField(index, "cells");
+    }
+
+}
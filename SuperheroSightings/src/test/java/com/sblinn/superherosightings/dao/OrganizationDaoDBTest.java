@@ -1,7 +1,9 @@
 package com.sblinn.superherosightings.dao;
 
+import com.sblinn.superherosightings.dto.EntitySummary;
 import com.sblinn.superherosightings.dto.Organization;
 import com.sblinn.superherosightings.dto.Superhero;
+import com.sblinn.superherosightings.metrics.JdbcStatementCounter;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.AfterEach;
@@ -18,6 +20,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -34,6 +37,12 @@ public class OrganizationDaoDBTest {
     @Autowired
     private SuperheroDao testSuperheroDao;
     
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private JdbcStatementCounter statementCounter;
+    
     
     public OrganizationDaoDBTest() {
     }
@@ -374,6 +383,87 @@ public class OrganizationDaoDBTest {
                 "List should contain testOrg2.");
     }
 
+    
+    @Test
+    public void testGetAllOrganizationsQueryCount() {
+        SelectStatementCounter counter 
+                = new SelectStatementCounter(jdbcTemplate);
+        
+        List<Superhero> members = new ArrayList<>();
+        members.add(testSuperheroDao.getSuperheroById(1));
+        members.add(testSuperheroDao.getSuperheroById(2));
+        
+        for (int i = 1; i <= 2; i++) {
+            Organization testOrg = new Organization();
+            testOrg.setName("Org " + i);
+            testOrg.setCity("Montevideo");
+            testOrg.setCountry("US");
+            testOrg.setMembers(members);
+            testOrgDao.createOrganization(testOrg);
+        }
+        
+        int fewOrgsQueries = counter.count(
+                () -> testOrgDao.getAllOrganizations());
+        
+        for (int i = 3; i <= 25; i++) {
+            Organization testOrg = new Organization();
+            testOrg.setName("Org " + i);
+            testOrg.setCity("Montevideo");
+            testOrg.setCountry("US");
+            testOrg.setMembers(members);
+            testOrgDao.createOrganization(testOrg);
+        }
+        
+        int manyOrgsQueries = counter.count(
+                () -> testOrgDao.getAllOrganizations());
+        List<Organization> testOrgs = testOrgDao.getAllOrganizations();
+        
+        assertEquals(2, fewOrgsQueries, "Organizations and their "
+                + "members should be loaded with 2 queries.");
+        assertEquals(fewOrgsQueries, manyOrgsQueries, "Number of "
+                + "queries should not grow with Organizations.");
+        for (Organization org : testOrgs) {
+            assertEquals(members, org.getMembers(), 
+                    "Each Organization should have both members.");
+        }
+    }
+
+    /*
+     * getOrganizationSummaries:
+     * - test getOrganizationSummaries with two Organizations in database.
+     */
+    @Test
+    public void testGetOrganizationSummaries() {
+        Organization testOrg = new Organization();
+        testOrg.setId(1);
+        testOrg.setName("ResQRs");
+        testOrg.setDescription("Mice who save people.");
+        testOrg.setStreet_address("504 Orchard Circle");
+        testOrg.setCity("Montevideo");
+        testOrg.setCountry("US");
+        
+        List<Superhero> members = new ArrayList<>();
+        members.add(testSuperheroDao.getSuperheroById(1));
+        testOrg.setMembers(members);
+        
+        Organization testOrg2 = new Organization();
+        testOrg2.setId(2);
+        testOrg2.setName("Avengerrrs");
+        testOrg2.setDescription("Tigers who fight bears.");
+        testOrg2.setCity("Montevideo");
+        testOrg2.setCountry("US");
+        
+        testOrgDao.createOrganization(testOrg);
+        testOrgDao.createOrganization(testOrg2);
+        
+        List<EntitySummary> summaries 
+                = testOrgDao.getOrganizationSummaries();
+        
+        assertEquals(List.of(new EntitySummary(1, "ResQRs"), 
+                new EntitySummary(2, "Avengerrrs")), summaries, 
+                "Summaries should hold the id and name of each "
+                        + "Organization, in id order.");
+    }
 
     /*
      * updateOrganization:
@@ -415,6 +505,52 @@ public class OrganizationDaoDBTest {
                 "Organization's fields should have been updated.");
     }
     
+    @Test
+    public void testUpdateOrganizationOnlyChangedMembers() {
+        Organization testOrg = new Organization();
+        testOrg.setId(1);
+        testOrg.setName("ResQRs");
+        testOrg.setDescription("Mice who save people.");
+        testOrg.setStreet_address("504 Orchard Circle");
+        testOrg.setCity("Montevideo");
+        testOrg.setCountry("US");
+        
+        List<Superhero> members = new ArrayList<>();
+        members.add(testSuperheroDao.getSuperheroById(1));
+        testOrg.setMembers(members);
+        testOrgDao.createOrganization(testOrg);
+        
+        // unchanged membership: the UPDATE, reading the current members 
+        // and the change record, with no bridge table writes
+        testOrg.setDescription("Mice who eat people.");
+        statementCounter.start();
+        assertTrue(testOrgDao.updateOrganization(testOrg), 
+                "Organization should have been updated.");
+        int unchangedStatements = statementCounter.stop();
+        assertEquals(3, unchangedStatements, 
+                "No bridge table rows should have been written.");
+        
+        // swapping one member for another adds one delete batch and one 
+        // insert batch
+        List<Superhero> newMembers = new ArrayList<>();
+        newMembers.add(testSuperheroDao.getSuperheroById(2));
+        newMembers.add(testSuperheroDao.getSuperheroById(2));
+        testOrg.setMembers(newMembers);
+        statementCounter.start();
+        assertTrue(testOrgDao.updateOrganization(testOrg), 
+                "Organization should have been updated.");
+        int swappedStatements = statementCounter.stop();
+        assertEquals(unchangedStatements + 2, swappedStatements, 
+                "One row should be deleted and one inserted.");
+        
+        List<Superhero> retrievedMembers 
+                = testOrgDao.getOrganizationMembers(1);
+        assertEquals(1, retrievedMembers.size(), 
+                "Organization should only have one member.");
+        assertEquals(2, retrievedMembers.get(0).getId(), 
+                "Organization's member should be Superhero 2.");
+    }
+    
     @Test
     public void testUpdateOrganizationInvalidId() {
         Organization testOrg = new Organization();
@@ -438,20 +574,15 @@ public class OrganizationDaoDBTest {
         testOrg.setDescription("Mice who eat people.");
         testOrg.setCity("Chicago");
         
-        try {
-            testOrgDao.updateOrganization(testOrg);
-            fail("Attempt to update Organization using invalid id "
-                    + "should throw Exception as there is no "
-                    + "Organization with id = 2 (cannot update "
-                    + "foreign key child rows with values that do "
-                    + "not exist in the parent table).");
-        } catch (DataIntegrityViolationException e) {
-            // passed 
-            Organization retrievedOrg = testOrgDao.getOrganizationById(1);
+        assertFalse(testOrgDao.updateOrganization(testOrg), 
+                "Method should return false, there is no Organization "
+                + "with id = 2.");
         
-            assertNotEquals(testOrg, retrievedOrg,
+        Organization retrievedOrg = testOrgDao.getOrganizationById(1);
+        assertNotEquals(testOrg, retrievedOrg,
                 "Organization's fields should not have been updated.");
-        }
+        assertTrue(testOrgDao.getOrganizationMembers(2).isEmpty(), 
+                "No members should have been added for id = 2.");
     }
     
     @Test
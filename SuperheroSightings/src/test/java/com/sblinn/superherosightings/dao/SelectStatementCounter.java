@@ -0,0 +1,46 @@
+package com.sblinn.superherosightings.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Counts the SELECT statements executed on the current MySQL session
+ * using the Com_select status variable. Tests are @Transactional, so
+ * the DAOs and the counter share one connection (and one session).
+ *
+ * @author Sara Blinn
+ */
+class SelectStatementCounter {
+
+    private final JdbcTemplate jdbcTemplate;
+
+
+    SelectStatementCounter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Returns the number of SELECT statements issued while running
+     * the given action, not counting the status queries themselves.
+     *
+     * @param action
+     * @return int
+     */
+    int count(Runnable action) {
+        int overheadStart = getSessionSelectCount();
+        int overhead = getSessionSelectCount() - overheadStart;
+
+        int start = getSessionSelectCount();
+        action.run();
+        int end = getSessionSelectCount();
+
+        return end - start - overhead;
+    }
+
+    private int getSessionSelectCount() {
+        final String GET_SELECT_COUNT
+                = "SHOW SESSION STATUS LIKE 'Com_select';";
+        return jdbcTemplate.queryForObject(GET_SELECT_COUNT,
+                (rs, rowNum) -> rs.getInt("Value"));
+    }
+
+}
@@ -1,14 +1,22 @@
 package com.sblinn.superherosightings.dao;
 
+import com.sblinn.superherosightings.controller.SightingViewModel;
 import com.sblinn.superherosightings.dto.Location;
 import com.sblinn.superherosightings.dto.Sighting;
 import com.sblinn.superherosightings.dto.Superhero;
+import com.sblinn.superherosightings.dto.SuperheroSightingStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.AfterEach;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -18,10 +26,13 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -41,6 +52,9 @@ public class SightingDaoDBTest {
     @Autowired
     private LocationDao testLocationDao;
     
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
     public SightingDaoDBTest() {
     }
 
@@ -1051,6 +1065,406 @@ public class SightingDaoDBTest {
     }
 
     
+    /*
+     * getAllSightingViewModels:
+     * - test getAllSightingViewModels with 2 Sightings in the database.
+     * - test getAllSightingViewModels issues one query regardless of 
+     *   the number of Sightings.
+     */
+    @Test
+    public void testGetAllSightingViewModels() {
+        Sighting testSight = new Sighting();
+        testSight.setId(1);
+        testSight.setLocation_id(1); 
+        testSight.setSuperhero_id(1); 
+        testSight.setDate(LocalDateTime.now());
+        
+        Sighting testSight2 = new Sighting();
+        testSight2.setId(2);
+        testSight2.setLocation_id(2);
+        testSight2.setSuperhero_id(2);
+        testSight2.setDate(LocalDateTime.now());
+        
+        List<SightingViewModel> vmSightings 
+                = testSightingDao.getAllSightingViewModels();
+        assertTrue(vmSightings.isEmpty(), "List of SightingViewModels "
+                + "should be empty, no Sightings are in the database.");
+        
+        testSightingDao.createSighting(testSight);
+        testSightingDao.createSighting(testSight2);
+        
+        vmSightings = testSightingDao.getAllSightingViewModels();
+        
+        assertEquals(2, vmSightings.size(), 
+                "List should contain 2 SightingViewModels.");
+        
+        SightingViewModel vmSighting = vmSightings.get(0);
+        assertEquals(testSight, vmSighting.getSighting(), 
+                "First SightingViewModel should hold testSight.");
+        assertEquals(testSuperheroDao.getSuperheroById(1), 
+                vmSighting.getSuperhero(), 
+                "First SightingViewModel should hold Superhero 1.");
+        assertEquals(testLocationDao.getLocationById(1), 
+                vmSighting.getLocation(), 
+                "First SightingViewModel should hold Location 1.");
+        
+        SightingViewModel vmSighting2 = vmSightings.get(1);
+        assertEquals(testSight2, vmSighting2.getSighting(), 
+                "Second SightingViewModel should hold testSight2.");
+        assertEquals(testSuperheroDao.getSuperheroById(2), 
+                vmSighting2.getSuperhero(), 
+                "Second SightingViewModel should hold Superhero 2.");
+        assertEquals(testLocationDao.getLocationById(2), 
+                vmSighting2.getLocation(), 
+                "Second SightingViewModel should hold Location 2.");
+    }
+    
+    @Test
+    public void testForEachSightingViewModel() {
+        Sighting testSight = new Sighting();
+        testSight.setId(1);
+        testSight.setLocation_id(1); 
+        testSight.setSuperhero_id(1); 
+        testSight.setDate(LocalDateTime.now());
+        
+        Sighting testSight2 = new Sighting();
+        testSight2.setId(2);
+        testSight2.setLocation_id(2);
+        testSight2.setSuperhero_id(2);
+        testSight2.setDate(LocalDateTime.now());
+        
+        testSightingDao.createSighting(testSight);
+        testSightingDao.createSighting(testSight2);
+        
+        // streamed (MySQL fetch size Integer.MIN_VALUE) and buffered 
+        // reads should see the same rows in the same order
+        List<SightingViewModel> streamed = new ArrayList<>();
+        testSightingDao.forEachSightingViewModel(Integer.MIN_VALUE, 
+                streamed::add);
+        
+        assertEquals(testSightingDao.getAllSightingViewModels(), streamed, 
+                "Streamed SightingViewModels should match the list.");
+    }
+    
+    @Test
+    public void testCreateSightings() {
+        List<Sighting> sightings = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Sighting testSight = new Sighting();
+            testSight.setLocation_id(1 + i % 2); 
+            testSight.setSuperhero_id(1 + i % 2); 
+            testSight.setDate(LocalDateTime.now().minusDays(i));
+            sightings.add(testSight);
+        }
+        
+        int numInserted = testSightingDao.createSightings(sightings);
+        
+        assertEquals(10, numInserted, 
+                "All 10 Sightings should be reported as inserted.");
+        assertEquals(10, testSightingDao.getAllSightings().size(), 
+                "All 10 Sightings should be stored.");
+        assertEquals(Set.of(1, 2), 
+                testSuperheroDao.getExistingSuperheroIds(List.of(1, 2, 3)), 
+                "Only Superheros 1 and 2 should exist.");
+        assertEquals(Set.of(2), 
+                testLocationDao.getExistingLocationIds(List.of(2, 4)), 
+                "Only Location 2 should exist.");
+    }
+    
+    @Test
+    // the writer replays on its own connection, so it must see setUp's 
+    // rows committed
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testWriteBehindQueueReplaysJournal(@TempDir Path journalDir) 
+            throws Exception {
+        // journal three reports as if the application stopped before 
+        // the writer inserted them
+        try (SightingJournal journal = new SightingJournal(journalDir, false)) {
+            journal.readAll();
+            for (int i = 0; i < 3; i++) {
+                Sighting testSight = new Sighting();
+                testSight.setLocation_id(1 + i % 2); 
+                testSight.setSuperhero_id(1 + i % 2); 
+                testSight.setDate(LocalDateTime.now());
+                journal.append(testSight);
+            }
+        }
+        
+        SightingWriteBehindQueue queue = new SightingWriteBehindQueue(
+                testSightingDao, new SimpleMeterRegistry(), 
+                journalDir.toString(), false, 10, 500, 20);
+        queue.start();
+        queue.stop();
+        
+        assertEquals(3, testSightingDao.getAllSightings().size(), 
+                "Journalled Sightings should be inserted on start.");
+        
+        try (SightingJournal journal = new SightingJournal(journalDir, false)) {
+            assertTrue(journal.readAll().isEmpty(), 
+                    "The journal should be empty once replayed.");
+        }
+        
+        // nothing rolls this test back
+        for (String table : new String[] {"Sighting", 
+            "Superhero_Location_Sightings", "Superhero_Sighting_Stats", 
+            "Superhero", "Location"}) {
+            jdbcTemplate.update("DELETE FROM " + table + ";");
+        }
+    }
+    
+    @Test
+    public void testForEachLocationSightingCount() {
+        for (int i = 0; i < 3; i++) {
+            Sighting testSight = new Sighting();
+            testSight.setLocation_id(i == 0 ? 2 : 1); 
+            testSight.setSuperhero_id(1); 
+            testSight.setDate(LocalDateTime.now());
+            testSightingDao.createSighting(testSight);
+        }
+        
+        Map<Integer, Integer> counts = new HashMap<>();
+        testSightingDao.forEachLocationSightingCount(
+                (locationId, latitude, longitude, sightings) -> {
+                    counts.put(locationId, sightings);
+                });
+        
+        assertEquals(Map.of(1, 2, 2, 1), counts, 
+                "Location 1 has two Sightings and Location 2 one.");
+    }
+    
+    @Test
+    public void testGetAllSightingViewModelsSingleQuery() {
+        SelectStatementCounter counter 
+                = new SelectStatementCounter(jdbcTemplate);
+        
+        for (int i = 0; i < 2; i++) {
+            Sighting testSight = new Sighting();
+            testSight.setLocation_id(1 + i % 2); 
+            testSight.setSuperhero_id(1 + i % 2); 
+            testSight.setDate(LocalDateTime.now());
+            testSightingDao.createSighting(testSight);
+        }
+        
+        int fewSightingsQueries = counter.count(
+                () -> testSightingDao.getAllSightingViewModels());
+        
+        for (int i = 0; i < 50; i++) {
+            Sighting testSight = new Sighting();
+            testSight.setLocation_id(1 + i % 2); 
+            testSight.setSuperhero_id(1 + i % 2); 
+            testSight.setDate(LocalDateTime.now());
+            testSightingDao.createSighting(testSight);
+        }
+        
+        int manySightingsQueries = counter.count(
+                () -> testSightingDao.getAllSightingViewModels());
+        
+        assertEquals(1, fewSightingsQueries, 
+                "2 SightingViewModels should be loaded with one query.");
+        assertEquals(1, manySightingsQueries, 
+                "52 SightingViewModels should be loaded with one query.");
+    }
+
+    
+    /*
+     * getMostRecentSightings:
+     * - test getMostRecentSightings with more Sightings than the limit.
+     * - test getMostRecentSightings with fewer Sightings than the limit.
+     */
+    @Test
+    public void testGetMostRecentSightings() {
+        LocalDateTime start = LocalDateTime.of(2022, 8, 1, 12, 0);
+        for (int i = 1; i <= 7; i++) {
+            Sighting testSight = new Sighting();
+            testSight.setId(i);
+            testSight.setLocation_id(1 + i % 2); 
+            testSight.setSuperhero_id(1 + i % 2); 
+            // created out of date order
+            testSight.setDate(start.plusDays((i * 3) % 7));
+            testSightingDao.createSighting(testSight);
+        }
+        
+        List<SightingViewModel> recentSightings 
+                = testSightingDao.getMostRecentSightings(5);
+        
+        assertEquals(5, recentSightings.size(), 
+                "Only 5 Sightings should be returned.");
+        for (int i = 1; i < recentSightings.size(); i++) {
+            LocalDateTime newer 
+                    = recentSightings.get(i - 1).getSighting().getDate();
+            LocalDateTime older 
+                    = recentSightings.get(i).getSighting().getDate();
+            assertTrue(newer.isAfter(older), 
+                    "Sightings should be ordered newest first.");
+        }
+        assertEquals(start.plusDays(6), 
+                recentSightings.get(0).getSighting().getDate(), 
+                "First Sighting should be the most recent.");
+    }
+    
+    @Test
+    public void testGetMostRecentSightingsFewerThanLimit() {
+        List<SightingViewModel> recentSightings 
+                = testSightingDao.getMostRecentSightings(5);
+        assertTrue(recentSightings.isEmpty(), "List should be empty, "
+                + "no Sightings are in the database.");
+        
+        Sighting testSight = new Sighting();
+        testSight.setId(1);
+        testSight.setLocation_id(1); 
+        testSight.setSuperhero_id(1); 
+        testSight.setDate(LocalDateTime.now());
+        testSightingDao.createSighting(testSight);
+        
+        recentSightings = testSightingDao.getMostRecentSightings(5);
+        
+        assertEquals(1, recentSightings.size(), 
+                "List should hold the only Sighting.");
+        assertEquals(testSight, recentSightings.get(0).getSighting(), 
+                "List should hold testSight.");
+    }
+    
+    @Test
+    public void testGetSightingViewModelsByIds() {
+        for (int i = 1; i <= 3; i++) {
+            Sighting testSight = new Sighting();
+            testSight.setId(i);
+            testSight.setLocation_id(1 + i % 2); 
+            testSight.setSuperhero_id(1 + i % 2); 
+            testSight.setDate(LocalDateTime.of(2022, 8, i, 12, 0));
+            testSightingDao.createSighting(testSight);
+        }
+        
+        List<SightingViewModel> vmSightings = testSightingDao
+                .getSightingViewModelsByIds(List.of(3, 1, 4));
+        
+        assertEquals(2, vmSightings.size(), 
+                "Only Sightings 1 and 3 exist.");
+        assertEquals(1, vmSightings.get(0).getSighting().getId(), 
+                "Sightings should be in id order.");
+        assertEquals(3, vmSightings.get(1).getSighting().getId(), 
+                "Sightings should be in id order.");
+        assertEquals("Superwoman", 
+                vmSightings.get(1).getSuperhero().getName(), 
+                "Sighting 3's Superhero should be set.");
+        assertEquals("Statue of Liberty", 
+                vmSightings.get(1).getLocation().getName(), 
+                "Sighting 3's Location should be set.");
+        assertTrue(testSightingDao.getSightingViewModelsByIds(
+                new ArrayList<>()).isEmpty(), 
+                "No ids should give an empty list.");
+    }    
+    
+    /*
+     * getSightingPage:
+     * - test getSightingPage walking forward and back through pages 
+     *   ordered by date, most recent first.
+     * - test getSightingPage ordered by Superhero name, with ties 
+     *   broken by Sighting id.
+     * - test getSightingPage with an unreadable cursor (first page).
+     */
+    @Test
+    public void testGetSightingPageByDate() {
+        LocalDateTime start = LocalDateTime.of(2022, 8, 1, 12, 0);
+        for (int i = 1; i <= 5; i++) {
+            Sighting testSight = new Sighting();
+            testSight.setId(i);
+            testSight.setLocation_id(1); 
+            testSight.setSuperhero_id(1); 
+            testSight.setDate(start.plusDays(i));
+            testSightingDao.createSighting(testSight);
+        }
+        
+        SightingPage firstPage = testSightingDao.getSightingPage(
+                SightingSortKey.DATE, true, 2, null);
+        assertEquals(List.of(5, 4), getSightingIds(firstPage), 
+                "First page should hold the 2 most recent Sightings.");
+        assertFalse(firstPage.hasPrevious(), 
+                "First page should not have a previous page.");
+        assertTrue(firstPage.hasNext(), 
+                "First page should have a next page.");
+        
+        SightingPage secondPage = testSightingDao.getSightingPage(
+                SightingSortKey.DATE, true, 2, 
+                firstPage.getNextCursor());
+        assertEquals(List.of(3, 2), getSightingIds(secondPage), 
+                "Second page should hold Sightings 3 and 2.");
+        assertTrue(secondPage.hasPrevious(), 
+                "Second page should have a previous page.");
+        
+        SightingPage lastPage = testSightingDao.getSightingPage(
+                SightingSortKey.DATE, true, 2, 
+                secondPage.getNextCursor());
+        assertEquals(List.of(1), getSightingIds(lastPage), 
+                "Last page should hold only the oldest Sighting.");
+        assertFalse(lastPage.hasNext(), 
+                "Last page should not have a next page.");
+        
+        SightingPage backToSecondPage = testSightingDao.getSightingPage(
+                SightingSortKey.DATE, true, 2, 
+                lastPage.getPreviousCursor());
+        assertEquals(secondPage, backToSecondPage, 
+                "Previous page of the last page should be the second "
+                        + "page.");
+        
+        SightingPage backToFirstPage = testSightingDao.getSightingPage(
+                SightingSortKey.DATE, true, 2, 
+                backToSecondPage.getPreviousCursor());
+        assertEquals(firstPage, backToFirstPage, 
+                "Previous page of the second page should be the "
+                        + "first page.");
+    }
+    
+    @Test
+    public void testGetSightingPageBySuperhero() {
+        // Sightings 1 and 3 are of Superman, 2 and 4 of Superwoman
+        for (int i = 1; i <= 4; i++) {
+            Sighting testSight = new Sighting();
+            testSight.setId(i);
+            testSight.setLocation_id(1); 
+            testSight.setSuperhero_id(i % 2 == 1 ? 1 : 2); 
+            testSight.setDate(LocalDateTime.now());
+            testSightingDao.createSighting(testSight);
+        }
+        
+        SightingPage firstPage = testSightingDao.getSightingPage(
+                SightingSortKey.SUPERHERO, true, 3, null);
+        assertEquals(List.of(4, 2, 3), getSightingIds(firstPage), 
+                "Sightings should be ordered Z-A by Superhero name, "
+                        + "then by descending id.");
+        
+        SightingPage secondPage = testSightingDao.getSightingPage(
+                SightingSortKey.SUPERHERO, true, 3, 
+                firstPage.getNextCursor());
+        assertEquals(List.of(1), getSightingIds(secondPage), 
+                "Second page should hold the remaining Sighting.");
+    }
+    
+    @Test
+    public void testGetSightingPageInvalidCursor() {
+        Sighting testSight = new Sighting();
+        testSight.setId(1);
+        testSight.setLocation_id(1); 
+        testSight.setSuperhero_id(1); 
+        testSight.setDate(LocalDateTime.now());
+        testSightingDao.createSighting(testSight);
+        
+        SightingPage page = testSightingDao.getSightingPage(
+                SightingSortKey.DATE, true, 2, "not a cursor");
+        
+        assertEquals(List.of(1), getSightingIds(page), 
+                "An unreadable cursor should return the first page.");
+    }
+    
+    private List<Integer> getSightingIds(SightingPage page) {
+        List<Integer> ids = new ArrayList<>();
+        for (SightingViewModel vmSighting : page.getSightings()) {
+            ids.add(vmSighting.getSighting().getId());
+        }
+        return ids;
+    }
+
+    
     /*
      * updateSighting:
      * - test updateSighting with valid id.
@@ -1273,4 +1687,73 @@ public class SightingDaoDBTest {
                         + "retrieval.");
     }
     
+
+    /*
+     * getSuperheroSightingStats:
+     * - test the statistics follow createSighting, createSightings, 
+     *   updateSighting, deleteSightingById and deleteLocationById.
+     */
+    @Test
+    public void testGetSuperheroSightingStats() {
+        LocalDateTime first = LocalDateTime.of(2022, 1, 1, 12, 0);
+        LocalDateTime middle = LocalDateTime.of(2022, 6, 1, 12, 0);
+        LocalDateTime last = LocalDateTime.of(2022, 12, 1, 12, 0);
+        
+        SuperheroSightingStats noStats 
+                = testSightingDao.getSuperheroSightingStats(1);
+        assertEquals(0, noStats.getSightingCount(), 
+                "Superhero should not have been sighted yet.");
+        assertNull(noStats.getFirstSeen(), "First seen should be null.");
+        
+        Sighting testSight = new Sighting();
+        testSight.setLocation_id(1);
+        testSight.setSuperhero_id(1);
+        testSight.setDate(middle);
+        testSightingDao.createSighting(testSight);
+        
+        List<Sighting> moreSightings = new ArrayList<>();
+        for (LocalDateTime date : new LocalDateTime[] {first, last}) {
+            Sighting sighting = new Sighting();
+            sighting.setLocation_id(2);
+            sighting.setSuperhero_id(1);
+            sighting.setDate(date);
+            moreSightings.add(sighting);
+        }
+        testSightingDao.createSightings(moreSightings);
+        
+        SuperheroSightingStats stats 
+                = testSightingDao.getSuperheroSightingStats(1);
+        assertEquals(3, stats.getSightingCount(), "Sighting count wrong.");
+        assertEquals(2, stats.getLocationCount(), "Location count wrong.");
+        assertEquals(first, stats.getFirstSeen(), "First seen wrong.");
+        assertEquals(last, stats.getLastSeen(), "Last seen wrong.");
+        
+        // move the first Sighting to the other Superhero
+        Sighting firstSight = testSightingDao.getAllSightings().stream()
+                .filter(s -> s.getDate().equals(first))
+                .findFirst().get();
+        firstSight.setSuperhero_id(2);
+        testSightingDao.updateSighting(firstSight);
+        
+        stats = testSightingDao.getSuperheroSightingStats(1);
+        assertEquals(2, stats.getSightingCount(), "Sighting count wrong.");
+        assertEquals(2, stats.getLocationCount(), "Location count wrong.");
+        assertEquals(middle, stats.getFirstSeen(), "First seen wrong.");
+        assertEquals(1, testSightingDao.getSuperheroSightingStats(2)
+                .getSightingCount(), "Other Superhero count wrong.");
+        
+        testSightingDao.deleteSightingById(testSight.getId());
+        stats = testSightingDao.getSuperheroSightingStats(1);
+        assertEquals(1, stats.getSightingCount(), "Sighting count wrong.");
+        assertEquals(1, stats.getLocationCount(), "Location count wrong.");
+        assertEquals(last, stats.getFirstSeen(), "First seen wrong.");
+        
+        testLocationDao.deleteLocationById(2);
+        assertEquals(new SuperheroSightingStats(1), 
+                testSightingDao.getSuperheroSightingStats(1),
+                "Statistics should be empty once no Sightings remain.");
+        assertEquals(0, testSightingDao.getSuperheroSightingStats(2)
+                .getSightingCount(), "Other Superhero count wrong.");
+    }
+    
 }
@@ -0,0 +1,204 @@
+package com.sblinn.superherosightings.dao;
+
+import com.sblinn.superherosightings.dto.Sighting;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+/**
+ * Tests how the write-behind writer deals with database failures,
+ * against a mocked SightingDao and a journal in a temporary directory.
+ * Sightings reported by Superhero 13 are refused for good; while
+ * databaseDown is set every insert fails as if the database were
+ * unreachable.
+ *
+ * @author Sara Blinn
+ */
+public class SightingWriteBehindQueueTest {
+
+    private static final int BAD_SUPERHERO = 13;
+
+    @TempDir
+    Path journalDirectory;
+
+    private SightingDao sightingDao;
+    private final List<Sighting> inserted = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+    private SightingWriteBehindQueue queue;
+
+
+    public SightingWriteBehindQueueTest() {
+    }
+
+    @BeforeEach
+    public void setUp() {
+        sightingDao = mock(SightingDao.class);
+        when(sightingDao.createSightings(anyList())).thenAnswer(invocation -> {
+            List<Sighting> sightings = invocation.getArgument(0);
+            failIfDown();
+            for (Sighting sighting : sightings) {
+                failIfBad(sighting);
+            }
+            inserted.addAll(sightings);
+            return sightings.size();
+        });
+        when(sightingDao.createSighting(any())).thenAnswer(invocation -> {
+            Sighting sighting = invocation.getArgument(0);
+            failIfDown();
+            failIfBad(sighting);
+            inserted.add(sighting);
+            return sighting;
+        });
+    }
+
+    private void failIfDown() {
+        if (databaseDown.get()) {
+            throw new CannotGetJdbcConnectionException("Database is down.");
+        }
+    }
+
+    private static void failIfBad(Sighting sighting) {
+        if (sighting.getSuperhero_id() == BAD_SUPERHERO) {
+            throw new BadSqlGrammarException("insert", "INSERT ...",
+                    new java.sql.SQLException("Unknown column."));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        databaseDown.set(false);
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    private SightingWriteBehindQueue startQueue() throws IOException {
+        queue = new SightingWriteBehindQueue(sightingDao,
+                new SimpleMeterRegistry(), journalDirectory.toString(),
+                false, 100, 10, 5);
+        queue.start();
+        return queue;
+    }
+
+
+    @Test
+    public void testRefusedSightingIsParked() throws Exception {
+        startQueue();
+
+        assertTrue(queue.offer(newSighting(1)));
+        assertTrue(queue.offer(newSighting(BAD_SUPERHERO)));
+        assertTrue(queue.offer(newSighting(2)));
+        waitFor(() -> inserted.size() == 2 && queue.getParkedCount() == 1);
+
+        assertEquals(1, queue.getParkedCount(),
+                "The refused Sighting should be parked.");
+        assertEquals(28, Files.size(
+                journalDirectory.resolve("sightings.parked")),
+                "The parked file should hold one record.");
+
+        // the writer carries on with later reports
+        assertTrue(queue.offer(newSighting(3)),
+                "Reports should still be accepted.");
+        waitFor(() -> inserted.size() == 3);
+        assertEquals(Status.UP, getHealthStatus(),
+                "Writer should be healthy.");
+    }
+
+    @Test
+    public void testTransientFailureIsRetried() throws Exception {
+        when(sightingDao.createSightings(anyList()))
+                .thenThrow(new QueryTimeoutException("Lock wait timeout."))
+                .thenAnswer(invocation -> {
+                    List<Sighting> sightings = invocation.getArgument(0);
+                    inserted.addAll(sightings);
+                    return sightings.size();
+                });
+        startQueue();
+
+        assertTrue(queue.offer(newSighting(1)));
+        waitFor(() -> inserted.size() == 1);
+
+        assertEquals(0, queue.getParkedCount(),
+                "A timed out batch should be retried, not parked.");
+        assertEquals(Status.UP, getHealthStatus(),
+                "Writer should be healthy once the retry succeeds.");
+    }
+
+    @Test
+    public void testReplayDoesNotBlockStartup() throws Exception {
+        try (SightingJournal journal = new SightingJournal(
+                journalDirectory, false)) {
+            journal.readAll();
+            journal.append(newSighting(1));
+            journal.append(newSighting(2));
+        }
+        databaseDown.set(true);
+
+        long start = System.nanoTime();
+        startQueue();
+        assertTrue(System.nanoTime() - start
+                < TimeUnit.SECONDS.toNanos(1),
+                "Startup should not wait for the database.");
+
+        waitFor(() -> queue.getWriterFailure() != null);
+        assertEquals(Status.DOWN, getHealthStatus(),
+                "Writer should be reported down while retrying.");
+        assertTrue(queue.offer(newSighting(3)),
+                "Reports should be accepted while the writer retries.");
+
+        databaseDown.set(false);
+        waitFor(() -> inserted.size() == 3);
+        assertEquals(1, inserted.get(0).getSuperhero_id(),
+                "Journalled Sightings should be inserted first.");
+        assertEquals(2, inserted.get(1).getSuperhero_id());
+        assertEquals(3, inserted.get(2).getSuperhero_id());
+        assertEquals(Status.UP, getHealthStatus(),
+                "Writer should be healthy again.");
+    }
+
+    private Status getHealthStatus() {
+        SightingWriteBehindHealthIndicator indicator
+                = new SightingWriteBehindHealthIndicator();
+        indicator.writeBehindQueue = queue;
+        return indicator.health().getStatus();
+    }
+
+    private static Sighting newSighting(int superheroId) {
+        Sighting sighting = new Sighting();
+        sighting.setSuperhero_id(superheroId);
+        sighting.setLocation_id(1);
+        sighting.setDate(LocalDateTime.of(2022, 1, 1, 10, 0));
+        return sighting;
+    }
+
+    private static void waitFor(BooleanSupplier condition)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting.");
+            Thread.sleep(10);
+        }
+    }
+
+}
@@ -1,7 +1,10 @@
 package com.sblinn.superherosightings.dao;
 
 import com.sblinn.superherosightings.Application;
+import com.sblinn.superherosightings.dto.ChangeEvent;
+import com.sblinn.superherosightings.dto.EntitySummary;
 import com.sblinn.superherosightings.dto.Superhero;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.List;
 import org.junit.jupiter.api.AfterEach;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -16,6 +19,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -29,6 +34,12 @@ public class SuperheroDaoDBTest {
     @Autowired
     private SuperheroDao testSuperheroDao;
     
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
     public SuperheroDaoDBTest() {
     }
     
@@ -269,6 +280,100 @@ public class SuperheroDaoDBTest {
                 "List of Superheros should contain second testHero.");
     }
 
+    
+    /*
+     * getSuperheroSummaries:
+     * - test getSuperheroSummaries with two Superheros in db.
+     */
+    @Test
+    public void testGetSuperheroSummaries() {
+        Superhero testHero = new Superhero();
+        testHero.setId(1);
+        testHero.setName("Superman");
+        testHero.setDescription("Guy with superpowers.");
+        
+        Superhero testHero2 = new Superhero();
+        testHero2.setId(2);
+        testHero2.setName("Superwoman");
+        testHero2.setDescription("Lady with superpowers.");
+        
+        assertTrue(testSuperheroDao.getSuperheroSummaries().isEmpty(), 
+                "List of summaries should be empty, no Superheros "
+                        + "in database.");
+        
+        testSuperheroDao.createSuperhero(testHero);
+        testSuperheroDao.createSuperhero(testHero2);
+        
+        List<EntitySummary> summaries 
+                = testSuperheroDao.getSuperheroSummaries();
+        
+        assertEquals(List.of(new EntitySummary(1, "Superman"), 
+                new EntitySummary(2, "Superwoman")), summaries, 
+                "Summaries should hold the id and name of each "
+                        + "Superhero, in id order.");
+    }
+
+    /*
+     * getSuperheroById cache:
+     * - test a repeated lookup issues no query, returns a copy, and 
+     *   an update is seen by the next lookup.
+     */
+    @Test
+    public void testGetSuperheroByIdCached() {
+        Superhero testHero = new Superhero();
+        testHero.setId(1);
+        testHero.setName("Superman");
+        testHero.setDescription("Guy with superpowers.");
+        testSuperheroDao.createSuperhero(testHero);
+        
+        SelectStatementCounter counter 
+                = new SelectStatementCounter(jdbcTemplate);
+        
+        Superhero retrievedHero = testSuperheroDao.getSuperheroById(1);
+        retrievedHero.setName("Changed by caller");
+        
+        int numSelects = counter.count(() -> {
+            assertEquals(testHero, testSuperheroDao.getSuperheroById(1), 
+                    "Cached Superhero should not be changed by callers.");
+        });
+        assertEquals(0, numSelects, 
+                "Repeated lookup should be served from the cache.");
+        
+        testHero.setName("Clark Kent");
+        testSuperheroDao.updateSuperhero(testHero);
+        assertEquals(testHero, testSuperheroDao.getSuperheroById(1), 
+                "Update should evict the cached Superhero.");
+    }
+    
+    @Test
+    public void testSuperheroCacheMetrics() {
+        Superhero testHero = new Superhero();
+        testHero.setId(1);
+        testHero.setName("Superman");
+        testHero.setDescription("Guy with superpowers.");
+        testSuperheroDao.createSuperhero(testHero);
+        
+        double hitsBefore = getCacheGets("hit");
+        double missesBefore = getCacheGets("miss");
+        testSuperheroDao.getSuperheroById(1);
+        testSuperheroDao.getSuperheroById(1);
+        
+        assertEquals(1, getCacheGets("miss") - missesBefore, 
+                "First lookup should be counted as a miss.");
+        assertEquals(1, getCacheGets("hit") - hitsBefore, 
+                "Repeated lookup should be counted as a hit.");
+        
+        testSuperheroDao.deleteSuperheroById(1);
+        assertNull(testSuperheroDao.getSuperheroById(1), 
+                "Delete should evict the cached Superhero.");
+    }
+    
+    private double getCacheGets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", "superheros")
+                .tag("result", result)
+                .functionCounter().count();
+    }
 
     /*
      * updateSuperhero:
@@ -343,6 +448,69 @@ public class SuperheroDaoDBTest {
                 + "original testHero.");        
     }
     
+    @Test
+    public void testUpdateSuperheroStaleVersion() {
+        Superhero testHero = new Superhero();
+        testHero.setId(1);
+        testHero.setName("Superman");
+        testHero.setDescription("Guy with superpowers.");
+        testSuperheroDao.createSuperhero(testHero);
+        
+        // two editors read version 0
+        Superhero firstEdit = testSuperheroDao.getSuperheroById(1);
+        Superhero secondEdit = testSuperheroDao.getSuperheroById(1);
+        
+        firstEdit.setName("Superwoman");
+        assertTrue(testSuperheroDao.updateSuperhero(firstEdit), 
+                "First update should succeed.");
+        assertEquals(1, firstEdit.getVersion(), 
+                "Updated Superhero's version should have been advanced.");
+        
+        secondEdit.setDescription("Guy with no superpowers.");
+        try {
+            testSuperheroDao.updateSuperhero(secondEdit);
+            fail("Update from version 0 should fail, the Superhero is "
+                    + "at version 1.");
+        } catch (OptimisticLockingFailureException e) {
+            // passed
+        }
+        
+        Superhero retrievedHero = testSuperheroDao.getSuperheroById(1);
+        assertEquals(firstEdit, retrievedHero, 
+                "Only the first update should have been applied.");
+        assertEquals(1, retrievedHero.getVersion(), 
+                "Retrieved Superhero should be at version 1.");
+    }
+    
+    @Test
+    public void testSuperheroChangesRecorded() {
+        Long lastId = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(id), 0) FROM Change_Event;", 
+                Long.class);
+        
+        Superhero testHero = new Superhero();
+        testHero.setName("Superman");
+        testHero.setDescription("Guy with superpowers.");
+        testSuperheroDao.createSuperhero(testHero);
+        testHero.setName("Superwoman");
+        testSuperheroDao.updateSuperhero(testHero);
+        testSuperheroDao.deleteSuperheroById(testHero.getId());
+        
+        // read directly: the outbox holds back this transaction's events
+        List<ChangeEvent> changes = jdbcTemplate.query(
+                "SELECT * FROM Change_Event WHERE id > ? ORDER BY id;", 
+                new ChangeOutbox.ChangeEventMapper(), lastId);
+        assertEquals(3, changes.size(), 
+                "Create, update and delete should each record a change.");
+        String[] operations = {ChangeEvent.CREATE, ChangeEvent.UPDATE, 
+            ChangeEvent.DELETE};
+        for (int i = 0; i < operations.length; i++) {
+            assertEquals("Superhero", changes.get(i).getEntity());
+            assertEquals(testHero.getId(), changes.get(i).getEntity_id());
+            assertEquals(operations[i], changes.get(i).getOperation());
+        }
+    }
+    
     @Test
     public void testUpdateSuperheroNullRequiredField() {
         Superhero testHero = new Superhero();
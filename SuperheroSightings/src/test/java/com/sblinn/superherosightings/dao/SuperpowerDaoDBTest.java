@@ -1,5 +1,6 @@
 package com.sblinn.superherosightings.dao;
 
+import com.sblinn.superherosightings.dto.EntitySummary;
 import com.sblinn.superherosightings.dto.Superhero;
 import com.sblinn.superherosightings.dto.Superpower;
 import java.util.ArrayList;
@@ -18,6 +19,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -34,6 +36,9 @@ public class SuperpowerDaoDBTest {
     @Autowired
     private SuperheroDao testSuperheroDao;
     
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
     public SuperpowerDaoDBTest() {
     }
 
@@ -260,6 +265,75 @@ public class SuperpowerDaoDBTest {
                 "List of Superpowers should contain testPower2");
     }
 
+    
+    @Test
+    public void testGetAllSuperpowersQueryCount() {
+        SelectStatementCounter counter 
+                = new SelectStatementCounter(jdbcTemplate);
+        
+        List<Superhero> superheros = new ArrayList<>();
+        superheros.add(testSuperheroDao.getSuperheroById(1));
+        superheros.add(testSuperheroDao.getSuperheroById(2));
+        
+        for (int i = 1; i <= 2; i++) {
+            Superpower testPower = new Superpower();
+            testPower.setName("Power " + i);
+            testPower.setSuperheros(superheros);
+            testSuperpowerDao.createSuperpower(testPower);
+        }
+        
+        int fewPowersQueries = counter.count(
+                () -> testSuperpowerDao.getAllSuperpowers());
+        
+        for (int i = 3; i <= 25; i++) {
+            Superpower testPower = new Superpower();
+            testPower.setName("Power " + i);
+            testPower.setSuperheros(superheros);
+            testSuperpowerDao.createSuperpower(testPower);
+        }
+        
+        int manyPowersQueries = counter.count(
+                () -> testSuperpowerDao.getAllSuperpowers());
+        List<Superpower> testPowers 
+                = testSuperpowerDao.getAllSuperpowers();
+        
+        assertEquals(2, fewPowersQueries, "Superpowers and their "
+                + "Superheros should be loaded with 2 queries.");
+        assertEquals(fewPowersQueries, manyPowersQueries, "Number of "
+                + "queries should not grow with Superpowers.");
+        for (Superpower power : testPowers) {
+            assertEquals(superheros, power.getSuperheros(), 
+                    "Each Superpower should have both Superheros.");
+        }
+    }
+    
+    /*
+     * getSuperpowerSummaries:
+     * - test getSuperpowerSummaries with two Superpowers in database.
+     */
+    @Test
+    public void testGetSuperpowerSummaries() {
+        Superpower testPower = new Superpower();
+        testPower.setId(1);
+        testPower.setName("Lazer Eyes");
+        testPower.getSuperheros().add(
+                testSuperheroDao.getSuperheroById(1));
+        
+        Superpower testPower2 = new Superpower();
+        testPower2.setId(2);
+        testPower2.setName("Flight");
+        
+        testSuperpowerDao.createSuperpower(testPower);
+        testSuperpowerDao.createSuperpower(testPower2);
+        
+        List<EntitySummary> summaries 
+                = testSuperpowerDao.getSuperpowerSummaries();
+        
+        assertEquals(List.of(new EntitySummary(1, "Lazer Eyes"), 
+                new EntitySummary(2, "Flight")), summaries, 
+                "Summaries should hold the id and name of each "
+                        + "Superpower, in id order.");
+    }
 
     /*
      * updateSuperpower:
@@ -828,4 +902,38 @@ public class SuperpowerDaoDBTest {
 
     }
     
+    /*
+     * addSuperpowersForSuperhero():
+     * - test batch add with a repeated and a null Superpower.
+     */
+    
+    @Test 
+    public void testAddSuperpowersForSuperhero() {
+        Superpower testPower1 = new Superpower();
+        testPower1.setId(1);
+        testPower1.setName("Lazer Eyes");
+        testSuperpowerDao.createSuperpower(testPower1);
+        
+        Superpower testPower2 = new Superpower();
+        testPower2.setId(2);
+        testPower2.setName("Flight");
+        testSuperpowerDao.createSuperpower(testPower2);
+        
+        Superhero testHero1 = testSuperheroDao.getSuperheroById(1);
+        
+        List<Superpower> selectedPowers = new ArrayList<>();
+        selectedPowers.add(testPower1);
+        selectedPowers.add(testPower2);
+        selectedPowers.add(testPower1);
+        selectedPowers.add(null);
+        testSuperpowerDao.addSuperpowersForSuperhero(testHero1, 
+                selectedPowers);
+        
+        List<Superpower> testHero1Superpowers 
+                = testSuperpowerDao.getSuperpowersForSuperhero(
+                        testHero1.getId());
+        assertEquals(2, testHero1Superpowers.size(), 
+                "testHero1 should have each Superpower once.");
+    }
+    
 }
@@ -0,0 +1,126 @@
+package com.sblinn.superherosightings.dto;
+
+import java.math.BigDecimal;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the microdegree conversions in Coordinates and how Location
+ * holds its coordinates with them.
+ *
+ * @author Sara Blinn
+ */
+public class CoordinatesTest {
+
+    public CoordinatesTest() {
+    }
+
+
+    /* method: format()
+        - test whole, negative and fractional values keep six places
+        - test values between -1 and 0 keep their sign
+        - test trailing and leading zeros of the fraction
+    */
+    @Test
+    public void testFormat() {
+        assertEquals("40.758700", Coordinates.format(40_758_700));
+        assertEquals("-87.000041", Coordinates.format(-87_000_041));
+        assertEquals("-0.500000", Coordinates.format(-500_000),
+                "A value between -1 and 0 should keep its sign.");
+        assertEquals("-0.000001", Coordinates.format(-1));
+        assertEquals("0.000000", Coordinates.format(0));
+        assertEquals("180.000000", Coordinates.format(180_000_000));
+        assertEquals("-2147.483648", Coordinates.format(Integer.MIN_VALUE),
+                "The smallest int should not overflow.");
+
+        assertEquals(Coordinates.toBigDecimal(-500_000).toPlainString(),
+                Coordinates.format(-500_000),
+                "format should match BigDecimal's representation.");
+    }
+
+    /* method: toMicrodegrees(BigDecimal)
+        - test extra decimal places are rounded HALF_UP, as MySQL rounds
+          into DECIMAL(9,6)
+    */
+    @Test
+    public void testToMicrodegreesRoundsHalfUp() {
+        assertEquals(40_758_712,
+                Coordinates.toMicrodegrees(new BigDecimal("40.7587123")));
+        assertEquals(40_758_713,
+                Coordinates.toMicrodegrees(new BigDecimal("40.7587125")),
+                "A half should round away from zero.");
+        assertEquals(-40_758_713,
+                Coordinates.toMicrodegrees(new BigDecimal("-40.7587125")),
+                "A negative half should round away from zero.");
+        assertEquals(40_758_712,
+                Coordinates.toMicrodegrees(
+                        new BigDecimal("40.75871249999999")));
+        assertEquals(1, Coordinates.toMicrodegrees(
+                new BigDecimal("0.0000005")));
+        assertEquals(73_978_700,
+                Coordinates.toMicrodegrees(new BigDecimal("73.9787")));
+    }
+
+    /* method: toMicrodegrees()
+        - test values too large for an int are clamped, keeping their
+          sign, from BigDecimal and from double
+    */
+    @Test
+    public void testToMicrodegreesClamps() {
+        assertEquals(2_000_000_000,
+                Coordinates.toMicrodegrees(new BigDecimal("3000")));
+        assertEquals(-2_000_000_000,
+                Coordinates.toMicrodegrees(new BigDecimal("-3000")));
+        assertEquals(2_000_000_000,
+                Coordinates.toMicrodegrees(new BigDecimal("1E+30")),
+                "Values past a long should be clamped too.");
+        assertEquals(-2_000_000_000,
+                Coordinates.toMicrodegrees(new BigDecimal("-1E+30")));
+        assertEquals(2_000_000_000, Coordinates.toMicrodegrees(1e30));
+        assertEquals(-2_000_000_000, Coordinates.toMicrodegrees(-1e30));
+        assertEquals(-87_000_041, Coordinates.toMicrodegrees(-87.000041));
+    }
+
+    /* class: Location
+        - test coordinates are read back at six decimal places
+        - test Locations differing only past six places are equal
+        - test unset coordinates read as null
+        - test a clamped coordinate still fails validation
+    */
+    @Test
+    public void testLocationCoordinates() {
+        Location location = new Location();
+        assertNull(location.getLatitude());
+        assertNull(location.getLongitude());
+        assertFalse(location.hasCoordinates());
+
+        location.setLatitude("40.7587123");
+        location.setLongitude(new BigDecimal("-73.9787"));
+        assertTrue(location.hasCoordinates());
+        assertEquals(new BigDecimal("40.758712"), location.getLatitude());
+        assertEquals(new BigDecimal("-73.978700"), location.getLongitude());
+        assertEquals(40.758712, location.getLatitudeDegrees());
+        assertEquals(-73_978_700, location.getLongitudeMicrodegrees());
+
+        Location other = new Location();
+        other.setLatitude("40.758712");
+        other.setLongitude("-73.97870049");
+        assertEquals(location, other,
+                "Coordinates should be compared at six decimal places.");
+        assertEquals(location.hashCode(), other.hashCode());
+
+        Validator validator
+                = Validation.buildDefaultValidatorFactory().getValidator();
+        assertTrue(validator.validateProperty(location, "latitude")
+                .isEmpty());
+        location.setLatitude("1E+30");
+        assertEquals(1, validator.validateProperty(location, "latitude")
+                .size(), "A clamped latitude should fail validation.");
+    }
+
+}
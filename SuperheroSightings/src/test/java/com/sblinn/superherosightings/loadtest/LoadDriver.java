@@ -0,0 +1,258 @@
+package com.sblinn.superherosightings.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Sends a weighted mix of GET requests to a running application from
+ * several threads for a fixed time, and reports latency percentiles
+ * and throughput per endpoint.
+ *
+ * @author Sara Blinn
+ */
+class LoadDriver {
+
+    private final String baseUrl;
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+    private int totalWeight;
+
+
+    LoadDriver(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Adds an endpoint to the mix. It is picked weight times as often
+     * as an endpoint of weight 1.
+     *
+     * @param name label used in the report
+     * @param weight
+     * @param path supplies the path and query of each request
+     * @return this LoadDriver
+     */
+    LoadDriver endpoint(String name, int weight, Supplier<String> path) {
+        endpoints.put(name, new Endpoint(name, weight, path));
+        totalWeight += weight;
+        return this;
+    }
+
+    /**
+     * Runs the mix from the given number of threads, first for warmup
+     * (not recorded) and then for duration.
+     *
+     * @param threads
+     * @param warmup
+     * @param duration
+     * @return one EndpointStats per endpoint, in the order added
+     * @throws InterruptedException
+     */
+    List<EndpointStats> run(int threads, Duration warmup, Duration duration)
+            throws InterruptedException {
+
+        drive(threads, warmup, false);
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.reset();
+        }
+        drive(threads, duration, true);
+
+        double seconds = duration.toNanos() / 1e9;
+        List<EndpointStats> report = new ArrayList<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            report.add(endpoint.stats(seconds));
+        }
+        return report;
+    }
+
+    private void drive(int threads, Duration duration, boolean record)
+            throws InterruptedException {
+
+        long end = System.nanoTime() + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                while (System.nanoTime() < end) {
+                    Endpoint endpoint = pick();
+                    endpoint.send(record);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(duration.toMillis() + 60_000,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private Endpoint pick() {
+        int r = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Endpoint endpoint : endpoints.values()) {
+            r -= endpoint.weight;
+            if (r < 0) {
+                return endpoint;
+            }
+        }
+        throw new IllegalStateException("No endpoints added.");
+    }
+
+    /**
+     * Formats a report as a fixed width table.
+     *
+     * @param report
+     * @return String
+     */
+    static String format(List<EndpointStats> report) {
+        StringBuilder table = new StringBuilder(String.format(
+                "%-28s %9s %7s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "p50 ms", "p99 ms",
+                "req/s"));
+        for (EndpointStats stats : report) {
+            table.append(String.format(
+                    "%-28s %9d %7d %10.2f %10.2f %10.1f%n",
+                    stats.getName(), stats.getRequests(),
+                    stats.getErrors(), stats.getP50Millis(),
+                    stats.getP99Millis(), stats.getThroughput()));
+        }
+        return table.toString();
+    }
+
+
+    private final class Endpoint {
+
+        private final String name;
+        private final int weight;
+        private final Supplier<String> path;
+
+        // latencies in nanoseconds, guarded by this
+        private long[] latencies = new long[1024];
+        private int numLatencies;
+        private int errors;
+
+        private Endpoint(String name, int weight, Supplier<String> path) {
+            this.name = name;
+            this.weight = weight;
+            this.path = path;
+        }
+
+        private void send(boolean record) {
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create(baseUrl + path.get()))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                HttpResponse<Void> response = client.send(request,
+                        HttpResponse.BodyHandlers.discarding());
+                ok = response.statusCode() == 200;
+            } catch (Exception e) {
+                ok = false;
+            }
+            long latency = System.nanoTime() - start;
+
+            if (record) {
+                record(latency, ok);
+            }
+        }
+
+        private synchronized void record(long latency, boolean ok) {
+            if (numLatencies == latencies.length) {
+                latencies = Arrays.copyOf(latencies, 2 * latencies.length);
+            }
+            latencies[numLatencies++] = latency;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        private synchronized void reset() {
+            numLatencies = 0;
+            errors = 0;
+        }
+
+        private synchronized EndpointStats stats(double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, numLatencies);
+            Arrays.sort(sorted);
+            return new EndpointStats(name, numLatencies, errors,
+                    percentile(sorted, 0.50) / 1e6,
+                    percentile(sorted, 0.99) / 1e6,
+                    numLatencies / seconds);
+        }
+
+        private long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, index)];
+        }
+
+    }
+
+    /**
+     * Results for one endpoint.
+     */
+    static final class EndpointStats {
+
+        private final String name;
+        private final int requests;
+        private final int errors;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double throughput;
+
+        private EndpointStats(String name, int requests, int errors,
+                double p50Millis, double p99Millis, double throughput) {
+            this.name = name;
+            this.requests = requests;
+            this.errors = errors;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.throughput = throughput;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getRequests() {
+            return requests;
+        }
+
+        int getErrors() {
+            return errors;
+        }
+
+        double getP50Millis() {
+            return p50Millis;
+        }
+
+        double getP99Millis() {
+            return p99Millis;
+        }
+
+        /**
+         * @return requests per second
+         */
+        double getThroughput() {
+            return throughput;
+        }
+
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.sblinn.superherosightings.loadtest;
+
+import com.sblinn.superherosightings.loadtest.LoadDriver.EndpointStats;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Seeds an embedded MySQL-mode H2 database and replays a mix of page
+ * requests against the running application, printing p50/p99 latency
+ * and throughput per endpoint, then checks the request and DAO metrics
+ * were published. Only runs when asked for:
+ *
+ *   mvn test -Dtest=LoadTest -Dloadtest=true
+ *
+ * Data volumes and the run can be changed with -Dloadtest.superheros,
+ * .superpowers, .organizations, .locations, .sightings, .threads and
+ * .seconds. Add -Drequests.execution-mode=async to compare request
+ * execution modes.
+ *
+ * @author Sara Blinn
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"database", "loadtest"})
+@AutoConfigureMetrics
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+public class LoadTest {
+
+    private static final String[] ORDERS = {"date-asc", "date-desc",
+        "superhero", "superhero-desc", "location", "location-desc"};
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+
+    @Test
+    public void testPageMix() throws InterruptedException {
+        int superheros = Integer.getInteger("loadtest.superheros", 1000);
+        int superpowers = Integer.getInteger("loadtest.superpowers", 200);
+        int organizations
+                = Integer.getInteger("loadtest.organizations", 100);
+        int locations = Integer.getInteger("loadtest.locations", 5000);
+        int sightings = Integer.getInteger("loadtest.sightings", 100_000);
+
+        new LoadTestDataGenerator(jdbcTemplate, 42).seed(superheros,
+                superpowers, organizations, locations, sightings, 3, 2);
+
+        LoadDriver driver = new LoadDriver("http://localhost:" + port)
+                .endpoint("/", 4, () -> "/")
+                .endpoint("/sighting/sightings", 3,
+                        () -> "/sighting/sightings")
+                .endpoint("/sighting/sightings/sort", 3,
+                        () -> "/sighting/sightings/sort?order="
+                                + ORDERS[random(ORDERS.length) - 1])
+                .endpoint("/superhero/details", 3,
+                        () -> "/superhero/details?id=" + random(superheros))
+                .endpoint("/organization/organizations", 1,
+                        () -> "/organization/organizations");
+
+        List<EndpointStats> report = driver.run(
+                Integer.getInteger("loadtest.threads", 8),
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(Integer.getInteger("loadtest.seconds", 30)));
+
+        System.out.println(LoadDriver.format(report));
+
+        for (EndpointStats stats : report) {
+            assertEquals(0, stats.getErrors(), stats.getName()
+                    + " should have answered every request with 200.");
+        }
+        
+        String metrics = restTemplate.getForObject(
+                "http://localhost:" + port + "/actuator/prometheus", 
+                String.class);
+        assertTrue(metrics.contains("dao_method_seconds_bucket"), 
+                "DAO method timers should be published.");
+        assertTrue(metrics.contains("http_server_requests_jdbc_statements"), 
+                "Per request statement counts should be published.");
+    }
+
+    private static int random(int max) {
+        return 1 + ThreadLocalRandom.current().nextInt(max);
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.sblinn.superherosightings.loadtest;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Seeds a database with generated Superheros, Superpowers,
+ * Organizations, Locations and Sightings, in JDBC batches. Ids run
+ * from 1 to the requested count for every table.
+ *
+ * Popularity is skewed the way real data is: a few Superheros account
+ * for most Sightings and a few Organizations and Superpowers for most
+ * bridge table rows.
+ *
+ * @author Sara Blinn
+ */
+class LoadTestDataGenerator {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final LocalDateTime FIRST_SIGHTING
+            = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final int SIGHTING_SPAN_MINUTES = 3 * 365 * 24 * 60;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Random random;
+
+
+    LoadTestDataGenerator(JdbcTemplate jdbcTemplate, long seed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param superheros
+     * @param superpowers
+     * @param organizations
+     * @param locations
+     * @param sightings
+     * @param powersPerSuperhero average bridge rows per Superhero
+     * @param orgsPerSuperhero average bridge rows per Superhero
+     */
+    void seed(int superheros, int superpowers, int organizations,
+            int locations, int sightings, int powersPerSuperhero,
+            int orgsPerSuperhero) {
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 1; id <= superheros; id++) {
+            rows.add(new Object[] {id, "Superhero " + id,
+                "Generated superhero number " + id + "."});
+        }
+        insert("INSERT INTO Superhero (id, `name`, `description`) "
+                + "VALUES(?,?,?)", rows);
+
+        rows = new ArrayList<>();
+        for (int id = 1; id <= superpowers; id++) {
+            rows.add(new Object[] {id, "Superpower " + id});
+        }
+        insert("INSERT INTO Superpower (id, `name`) VALUES(?,?)", rows);
+
+        rows = new ArrayList<>();
+        for (int id = 1; id <= organizations; id++) {
+            rows.add(new Object[] {id, "Organization " + id,
+                "Generated organization.", id + " Tower Road", "Gotham",
+                "US"});
+        }
+        insert("INSERT INTO `Organization` (id, `name`, `description`, "
+                + "street_address, city, country) VALUES(?,?,?,?,?,?)",
+                rows);
+
+        rows = new ArrayList<>();
+        for (int id = 1; id <= locations; id++) {
+            rows.add(new Object[] {id, "Location " + id,
+                id + " Main Street", "Chicago", "IL", "US",
+                coordinate(24, 49), coordinate(-124, -67),
+                "Generated location."});
+        }
+        insert("INSERT INTO Location (id, `name`, street_address, city, "
+                + "state, country, latitude, longitude, `description`) "
+                + "VALUES(?,?,?,?,?,?,?,?,?)", rows);
+
+        insert("INSERT INTO Superhero_Superpower "
+                + "(superhero_id, superpower_id) VALUES(?,?)",
+                bridgeRows(superheros, superpowers, powersPerSuperhero));
+        insert("INSERT INTO Organization_Superhero "
+                + "(superhero_id, org_id) VALUES(?,?)",
+                bridgeRows(superheros, organizations, orgsPerSuperhero));
+
+        rows = new ArrayList<>();
+        for (int id = 1; id <= sightings; id++) {
+            LocalDateTime date = FIRST_SIGHTING.plusMinutes(
+                    random.nextInt(SIGHTING_SPAN_MINUTES));
+            rows.add(new Object[] {id, 1 + random.nextInt(locations),
+                skewed(superheros), Timestamp.valueOf(date)});
+            if (rows.size() == BATCH_SIZE) {
+                insertSightings(rows);
+                rows = new ArrayList<>();
+            }
+        }
+        insertSightings(rows);
+
+        // as V2__Add_superhero_sighting_stats fills them
+        jdbcTemplate.update("INSERT INTO Superhero_Location_Sightings"
+                + "(superhero_id, location_id, sighting_count) "
+                + "SELECT superhero_id, location_id, COUNT(*) "
+                + "FROM Sighting GROUP BY superhero_id, location_id");
+        jdbcTemplate.update("INSERT INTO Superhero_Sighting_Stats"
+                + "(superhero_id, sighting_count, location_count, "
+                + "first_seen, last_seen) "
+                + "SELECT superhero_id, COUNT(*), "
+                + "COUNT(DISTINCT location_id), MIN(`date`), MAX(`date`) "
+                + "FROM Sighting GROUP BY superhero_id");
+    }
+
+    private void insertSightings(List<Object[]> rows) {
+        insert("INSERT INTO Sighting (id, location_id, superhero_id, "
+                + "`date`) VALUES(?,?,?,?)", rows);
+    }
+
+    /**
+     * Gives each owner between 0 and twice the average number of
+     * distinct members, picking popular members more often.
+     */
+    private List<Object[]> bridgeRows(int owners, int members,
+            int averagePerOwner) {
+
+        List<Object[]> rows = new ArrayList<>();
+        if (members == 0) {
+            return rows;
+        }
+        for (int ownerId = 1; ownerId <= owners; ownerId++) {
+            int count = Math.min(members,
+                    random.nextInt(2 * averagePerOwner + 1));
+            Set<Integer> memberIds = new LinkedHashSet<>();
+            while (memberIds.size() < count) {
+                memberIds.add(skewed(members));
+            }
+            for (int memberId : memberIds) {
+                rows.add(new Object[] {ownerId, memberId});
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns an id from 1 to max, with low ids much more likely.
+     */
+    private int skewed(int max) {
+        double r = random.nextDouble();
+        return 1 + (int) (r * r * r * max);
+    }
+
+    private BigDecimal coordinate(int min, int max) {
+        double value = min + random.nextDouble() * (max - min);
+        return BigDecimal.valueOf(Math.round(value * 1_000_000), 6);
+    }
+
+    private void insert(String sql, List<Object[]> rows) {
+        for (int start = 0; start < rows.size(); start += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(start,
+                    Math.min(rows.size(), start + BATCH_SIZE)));
+        }
+    }
+
+}
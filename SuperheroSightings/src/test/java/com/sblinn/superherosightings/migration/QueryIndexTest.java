@@ -0,0 +1,279 @@
+package com.sblinn.superherosightings.migration;
+
+import com.sblinn.superherosightings.dao.OrganizationDao;
+import com.sblinn.superherosightings.dao.SightingDao;
+import com.sblinn.superherosightings.dao.SuperpowerDao;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Runs the DAO methods whose queries the migrations index, captures the
+ * SQL they actually execute through the proxied DataSource and checks
+ * with EXPLAIN that the intended index is the one chosen.
+ *
+ * The tables are seeded and analyzed first so that the optimizer has
+ * real row counts to go on. ANALYZE TABLE commits in MySQL, so the test
+ * is not @Transactional and deletes what it seeded afterwards.
+ *
+ * @author Sara Blinn
+ */
+@SpringBootTest
+public class QueryIndexTest {
+
+    private static final int SUPERHEROS = 100;
+    private static final int SUPERPOWERS = 20;
+    private static final int ORGANIZATIONS = 20;
+    private static final int LOCATIONS = 50;
+    private static final int SIGHTINGS = 2000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2022, 1, 1);
+    private static final int DAYS = 100;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private SightingDao sightingDao;
+
+    @Autowired
+    private SuperpowerDao superpowerDao;
+
+    @Autowired
+    private OrganizationDao organizationDao;
+
+    private final QueryRecorder recorder = new QueryRecorder();
+
+
+    @BeforeEach
+    public void setUp() {
+        deleteAll();
+        seed();
+        for (String table : new String[] {"Sighting",
+            "Superhero_Superpower", "Organization_Superhero"}) {
+            jdbcTemplate.execute("ANALYZE TABLE " + table + ";");
+        }
+        ((ProxyDataSource) dataSource).addListener(recorder);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ((ProxyDataSource) dataSource).getProxyConfig().getQueryListener()
+                .getListeners().remove(recorder);
+        deleteAll();
+    }
+
+    @Test
+    public void testMigrationsCreatedIndexes() {
+        assertTrue(SchemaSupport.indexExists(jdbcTemplate, "Sighting",
+                "idx_Sighting_date"));
+        assertTrue(SchemaSupport.indexExists(jdbcTemplate, "Sighting",
+                "idx_Sighting_superhero_location"));
+        assertTrue(SchemaSupport.indexExists(jdbcTemplate, "Sighting",
+                "idx_Sighting_location_date"));
+        assertTrue(SchemaSupport.indexExists(jdbcTemplate,
+                "Superhero_Superpower",
+                "idx_Superhero_Superpower_superpower"));
+        assertTrue(SchemaSupport.indexExists(jdbcTemplate,
+                "Organization_Superhero", "idx_Organization_Superhero_org"));
+    }
+
+    @Test
+    public void testSightingsOnDateUsesIndex() {
+        assertUsesIndex("idx_Sighting_date",
+                () -> sightingDao.getAllSightingsOnDate(FIRST_DAY));
+    }
+
+    @Test
+    public void testMostRecentSightingsUsesIndex() {
+        assertUsesIndex("idx_Sighting_date",
+                () -> sightingDao.getMostRecentSightings(5));
+    }
+
+    @Test
+    public void testSightingsAtLocationUsesIndex() {
+        assertUsesIndex("idx_Sighting_location_date",
+                () -> sightingDao.getAllSightingsAtLocation(1));
+    }
+
+    @Test
+    public void testSightingLocationsForSuperheroUsesIndex() {
+        assertUsesIndex("idx_Sighting_superhero_location",
+                () -> sightingDao.getAllSightingLocationsForSuperhero(1));
+    }
+
+    @Test
+    public void testSuperherosWithSuperpowerUsesIndex() {
+        assertUsesIndex("idx_Superhero_Superpower_superpower",
+                () -> superpowerDao.getAllSuperherosWithSuperpower(1));
+    }
+
+    @Test
+    public void testOrganizationMembersUsesIndex() {
+        assertUsesIndex("idx_Organization_Superhero_org",
+                () -> organizationDao.getOrganizationMembers(1));
+    }
+
+    /**
+     * Runs daoCall, which must execute a single query, and asserts that
+     * EXPLAIN of that query with the same parameters uses indexName.
+     */
+    private void assertUsesIndex(String indexName, Runnable daoCall) {
+        List<QueryInfo> queries = recorder.record(daoCall);
+        assertEquals(1, queries.size(), "Expected one query, executed: "
+                + queries.stream().map(QueryInfo::getQuery)
+                        .collect(Collectors.toList()));
+
+        QueryInfo query = queries.get(0);
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList(
+                "EXPLAIN " + query.getQuery(), getParameters(query));
+
+        boolean used = plan.stream()
+                .anyMatch(row -> indexName.equals(row.get("key")));
+        assertTrue(used, indexName + " should be used by: "
+                + query.getQuery() + " (plan: " + plan + ")");
+    }
+
+    private static Object[] getParameters(QueryInfo query) {
+        List<ParameterSetOperation> operations
+                = query.getParametersList().get(0);
+        Object[] parameters = new Object[operations.size()];
+        for (ParameterSetOperation operation : operations) {
+            Object[] args = operation.getArgs();
+            parameters[(Integer) args[0] - 1] = args[1];
+        }
+        return parameters;
+    }
+
+    private void seed() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 1; id <= SUPERHEROS; id++) {
+            rows.add(new Object[] {id, "Superhero " + id, "Seeded."});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO Superhero "
+                + "(id, `name`, `description`) VALUES(?,?,?)", rows);
+
+        rows = new ArrayList<>();
+        for (int id = 1; id <= SUPERPOWERS; id++) {
+            rows.add(new Object[] {id, "Superpower " + id});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO Superpower (id, `name`) "
+                + "VALUES(?,?)", rows);
+
+        rows = new ArrayList<>();
+        for (int id = 1; id <= ORGANIZATIONS; id++) {
+            rows.add(new Object[] {id, "Organization " + id, "Gotham",
+                "US"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO `Organization` "
+                + "(id, `name`, city, country) VALUES(?,?,?,?)", rows);
+
+        rows = new ArrayList<>();
+        for (int id = 1; id <= LOCATIONS; id++) {
+            rows.add(new Object[] {id, "Location " + id, "Gotham", "US",
+                40 + id / 100.0, -74 + id / 100.0});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO Location (id, `name`, city, "
+                + "country, latitude, longitude) VALUES(?,?,?,?,?,?)", rows);
+
+        // three Superpowers and two Organizations for every Superhero
+        List<Object[]> superpowerRows = new ArrayList<>();
+        List<Object[]> memberRows = new ArrayList<>();
+        for (int heroId = 1; heroId <= SUPERHEROS; heroId++) {
+            for (int i = 0; i < 3; i++) {
+                superpowerRows.add(new Object[] {heroId,
+                    (heroId + i * 7) % SUPERPOWERS + 1});
+            }
+            for (int i = 0; i < 2; i++) {
+                memberRows.add(new Object[] {heroId,
+                    (heroId + i * 11) % ORGANIZATIONS + 1});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO Superhero_Superpower "
+                + "(superhero_id, superpower_id) VALUES(?,?)",
+                superpowerRows);
+        jdbcTemplate.batchUpdate("INSERT INTO Organization_Superhero "
+                + "(superhero_id, org_id) VALUES(?,?)", memberRows);
+
+        rows = new ArrayList<>();
+        LocalDateTime firstSighting = FIRST_DAY.atTime(9, 0);
+        for (int id = 1; id <= SIGHTINGS; id++) {
+            rows.add(new Object[] {id, id % LOCATIONS + 1,
+                id % SUPERHEROS + 1,
+                Timestamp.valueOf(firstSighting.plusDays(id % DAYS)
+                        .plusMinutes(id))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO Sighting "
+                + "(id, location_id, superhero_id, `date`) "
+                + "VALUES(?,?,?,?)", rows);
+    }
+
+    private void deleteAll() {
+        for (String table : new String[] {"Sighting",
+            "Superhero_Location_Sightings", "Superhero_Sighting_Stats",
+            "Superhero_Superpower", "Organization_Superhero", "Superhero",
+            "Superpower", "`Organization`", "Location"}) {
+            jdbcTemplate.update("DELETE FROM " + table + ";");
+        }
+    }
+
+
+    /**
+     * Keeps the statements executed on the recording thread.
+     */
+    private static final class QueryRecorder
+            implements QueryExecutionListener {
+
+        private final ThreadLocal<List<QueryInfo>> queries
+                = new ThreadLocal<>();
+
+
+        List<QueryInfo> record(Runnable action) {
+            List<QueryInfo> recorded = new ArrayList<>();
+            queries.set(recorded);
+            try {
+                action.run();
+            } finally {
+                queries.remove();
+            }
+            return recorded;
+        }
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo,
+                List<QueryInfo> queryInfoList) {
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo,
+                List<QueryInfo> queryInfoList) {
+
+            List<QueryInfo> recorded = queries.get();
+            if (recorded != null) {
+                recorded.addAll(queryInfoList);
+            }
+        }
+
+    }
+
+}
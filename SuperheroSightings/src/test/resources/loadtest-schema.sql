@@ -0,0 +1,146 @@
+-- Superhero-Sightings-Schema.sql for the embedded load test database,
+-- plus the tables, columns and indexes added by the migrations.
+
+CREATE TABLE Superhero (
+	id INT PRIMARY KEY AUTO_INCREMENT,
+    version INT NOT NULL DEFAULT 0,
+    `name` VARCHAR(50) NOT NULL,
+    `description` VARCHAR(100) NOT NULL
+);
+
+CREATE TABLE Superpower (
+	id INT PRIMARY KEY AUTO_INCREMENT,
+    version INT NOT NULL DEFAULT 0,
+    `name` VARCHAR(50) NOT NULL
+);
+
+CREATE TABLE Superhero_Superpower (
+	superhero_id INT, -- FK
+    superpower_id INT, -- FK
+    PRIMARY KEY (superhero_id, superpower_id)
+);
+
+CREATE TABLE Sighting (
+	id INT PRIMARY KEY AUTO_INCREMENT,
+    version INT NOT NULL DEFAULT 0,
+    location_id INT NOT NULL, -- FK
+    superhero_id INT NOT NULL, -- FK
+    `date` DATETIME NOT NULL
+);
+
+CREATE TABLE Location (
+	id INT PRIMARY KEY AUTO_INCREMENT,
+    version INT NOT NULL DEFAULT 0,
+    `name` VARCHAR(50) NOT NULL,
+    street_address VARCHAR(50), -- CAN BE NULL
+    city VARCHAR(50) NOT NULL,
+    state CHAR(2), -- CAN BE NULL
+    country CHAR(2) NOT NULL,
+    latitude DECIMAL(9,6) NOT NULL,
+    longitude DECIMAL(9,6) NOT NULL,
+    `description` VARCHAR(100)
+);
+
+CREATE TABLE `Organization` (
+	id INT PRIMARY KEY AUTO_INCREMENT,
+    version INT NOT NULL DEFAULT 0,
+    `name` VARCHAR(50) NOT NULL,
+    `description` VARCHAR(100), -- CAN BE NULL
+    street_address VARCHAR(50), -- CAN BE NULL
+    city VARCHAR(50) NOT NULL,
+    country CHAR(2) NOT NULL
+);
+
+CREATE TABLE Organization_Superhero (
+	superhero_id INT NOT NULL, -- FK
+    org_id INT NOT NULL, -- FK
+    PRIMARY KEY (superhero_id, org_id)
+);
+
+
+-- SET FOREIGN KEYS
+
+ALTER TABLE Organization_Superhero
+	ADD CONSTRAINT fk_Organization_Superhero
+		FOREIGN KEY (org_id)
+        REFERENCES `Organization`(id);
+ALTER TABLE Organization_Superhero
+	ADD CONSTRAINT fk_Superhero_Organization
+		FOREIGN KEY (superhero_id)
+        REFERENCES Superhero(id);
+
+ALTER TABLE Superhero_Superpower 
+	ADD CONSTRAINT fk_Superhero_Superpower
+		FOREIGN KEY (superhero_id)
+        REFERENCES Superhero(id);
+ALTER TABLE Superhero_Superpower 
+	ADD CONSTRAINT fk_Superpower_Superhero
+		FOREIGN KEY (superpower_id)
+        REFERENCES Superpower(id);
+
+ALTER TABLE Sighting 
+	ADD CONSTRAINT fk_Sighting_Superhero
+		FOREIGN KEY (superhero_id)
+        REFERENCES Superhero(id);
+ALTER TABLE Sighting 
+	ADD CONSTRAINT fk_Sighting_Location
+		FOREIGN KEY (location_id)
+        REFERENCES Location(id);
+
+
+-- SET INDEXES (V1__Add_query_indexes)
+
+CREATE INDEX idx_Sighting_date ON Sighting(`date`);
+CREATE INDEX idx_Sighting_superhero_location 
+	ON Sighting(superhero_id, location_id);
+CREATE INDEX idx_Sighting_location_date ON Sighting(location_id, `date`);
+CREATE INDEX idx_Superhero_Superpower_superpower 
+	ON Superhero_Superpower(superpower_id, superhero_id);
+CREATE INDEX idx_Organization_Superhero_org 
+	ON Organization_Superhero(org_id, superhero_id);
+
+
+-- SIGHTING STATISTICS (V2__Add_superhero_sighting_stats)
+
+CREATE TABLE Superhero_Sighting_Stats (
+	superhero_id INT PRIMARY KEY, -- FK
+    sighting_count INT NOT NULL,
+    location_count INT NOT NULL,
+    first_seen DATETIME NOT NULL,
+    last_seen DATETIME NOT NULL
+);
+
+CREATE TABLE Superhero_Location_Sightings (
+	superhero_id INT NOT NULL, -- FK
+    location_id INT NOT NULL, -- FK
+    sighting_count INT NOT NULL,
+    PRIMARY KEY (superhero_id, location_id)
+);
+
+ALTER TABLE Superhero_Sighting_Stats
+	ADD CONSTRAINT fk_Superhero_Sighting_Stats_Superhero
+		FOREIGN KEY (superhero_id)
+        REFERENCES Superhero(id);
+ALTER TABLE Superhero_Location_Sightings
+	ADD CONSTRAINT fk_Superhero_Location_Sightings_Superhero
+		FOREIGN KEY (superhero_id)
+        REFERENCES Superhero(id);
+ALTER TABLE Superhero_Location_Sightings
+	ADD CONSTRAINT fk_Superhero_Location_Sightings_Location
+		FOREIGN KEY (location_id)
+        REFERENCES Location(id);
+
+CREATE INDEX idx_Superhero_Location_Sightings_location 
+	ON Superhero_Location_Sightings(location_id, superhero_id);
+CREATE INDEX idx_Sighting_superhero_date ON Sighting(superhero_id, `date`);
+
+
+-- CHANGE OUTBOX (V4__Add_change_outbox)
+
+CREATE TABLE Change_Event (
+	id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    entity VARCHAR(20) NOT NULL,
+    entity_id INT NOT NULL,
+    operation VARCHAR(6) NOT NULL,
+    changed_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,138 @@
+package com.sblinn.superherosightings.benchmarks;
+
+import com.sblinn.superherosightings.dto.Coordinates;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading and formatting Location coordinates as BigDecimals, the way
+ * LocationMapper and MainController did, against the fixed-point
+ * microdegrees Location now holds. Run with -prof gc to compare the
+ * bytes allocated per op; for the read benchmarks that is the heap the
+ * coordinates of rows Locations occupy.
+ *
+ * @author Sara Blinn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CoordinateBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private SimpleResultSet locations;
+    private BigDecimal[] bigDecimalLatitudes;
+    private int[] microdegreeLatitudes;
+
+
+    @Setup(Level.Trial)
+    public void createCoordinates() throws SQLException {
+        locations = SyntheticResultSets.locations(rows);
+
+        bigDecimalLatitudes = new BigDecimal[rows];
+        microdegreeLatitudes = new int[rows];
+        int i = 0;
+        while (locations.next()) {
+            bigDecimalLatitudes[i] = locations.getBigDecimal("latitude");
+            microdegreeLatitudes[i] = Coordinates.toMicrodegrees(
+                    locations.getDouble("latitude"));
+            i++;
+        }
+    }
+
+    @Benchmark
+    public List<BigDecimalPoint> readBigDecimals() throws SQLException {
+        locations.beforeFirst();
+        List<BigDecimalPoint> points = new ArrayList<>();
+        while (locations.next()) {
+            // a driver builds a new BigDecimal for every value it reads
+            points.add(new BigDecimalPoint(
+                    new BigDecimal(locations.getString("latitude")),
+                    new BigDecimal(locations.getString("longitude"))));
+        }
+        return points;
+    }
+
+    @Benchmark
+    public List<MicrodegreePoint> readMicrodegrees() throws SQLException {
+        locations.beforeFirst();
+        List<MicrodegreePoint> points = new ArrayList<>();
+        while (locations.next()) {
+            points.add(new MicrodegreePoint(
+                    Coordinates.toMicrodegrees(locations.getDouble("latitude")),
+                    Coordinates.toMicrodegrees(
+                            locations.getDouble("longitude"))));
+        }
+        return points;
+    }
+
+    @Benchmark
+    public void formatBigDecimals(Blackhole blackhole) {
+        for (BigDecimal latitude : bigDecimalLatitudes) {
+            blackhole.consume(String.format("%.8f", latitude.doubleValue()));
+        }
+    }
+
+    @Benchmark
+    public void formatMicrodegrees(Blackhole blackhole) {
+        for (int latitude : microdegreeLatitudes) {
+            blackhole.consume(Coordinates.format(latitude));
+        }
+    }
+
+
+    /**
+     * The coordinates as Location used to hold them.
+     */
+    public static final class BigDecimalPoint {
+
+        final BigDecimal latitude;
+        final BigDecimal longitude;
+
+
+        BigDecimalPoint(BigDecimal latitude, BigDecimal longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+    }
+
+
+    /**
+     * The coordinates as Location holds them now.
+     */
+    public static final class MicrodegreePoint {
+
+        final int latitude;
+        final int longitude;
+
+
+        MicrodegreePoint(int latitude, int longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+    }
+
+}
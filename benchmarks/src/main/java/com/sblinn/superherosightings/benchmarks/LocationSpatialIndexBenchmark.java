@@ -0,0 +1,141 @@
+package com.sblinn.superherosightings.benchmarks;
+
+import com.sblinn.superherosightings.dao.LocationSpatialIndex;
+import com.sblinn.superherosightings.dao.LocationSpatialIndex.Neighbor;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Proximity searches against LocationSpatialIndex, with most Locations
+ * gathered around a few hundred cities and the rest scattered. The
+ * linear scan is the baseline: every Location's distance computed, as
+ * filtering getAllLocations in Java would have to.
+ *
+ * @author Sara Blinn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class LocationSpatialIndexBenchmark {
+
+    private static final int NUM_CITIES = 300;
+    private static final int NUM_QUERIES = 1024;
+
+    @Param({"10000", "1000000"})
+    private int locations;
+
+    private LocationSpatialIndex index;
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] queryLatitudes;
+    private double[] queryLongitudes;
+    private int query;
+
+
+    @Setup(Level.Trial)
+    public void createIndex() {
+        Random random = new Random(42);
+
+        double[] cityLatitudes = new double[NUM_CITIES];
+        double[] cityLongitudes = new double[NUM_CITIES];
+        for (int i = 0; i < NUM_CITIES; i++) {
+            cityLatitudes[i] = random.nextDouble() * 120 - 55;
+            cityLongitudes[i] = random.nextDouble() * 360 - 180;
+        }
+
+        index = new LocationSpatialIndex(0.1);
+        latitudes = new double[locations];
+        longitudes = new double[locations];
+        for (int i = 0; i < locations; i++) {
+            if (random.nextInt(10) < 7) {
+                int city = random.nextInt(NUM_CITIES);
+                latitudes[i] = clamp(cityLatitudes[city]
+                        + random.nextGaussian() * 0.3, -90, 90);
+                longitudes[i] = clamp(cityLongitudes[city]
+                        + random.nextGaussian() * 0.3, -180, 180);
+            } else {
+                latitudes[i] = random.nextDouble() * 150 - 60;
+                longitudes[i] = random.nextDouble() * 360 - 180;
+            }
+            index.put(i + 1, latitudes[i], longitudes[i]);
+        }
+
+        // search near cities, where the searches have something to find
+        queryLatitudes = new double[NUM_QUERIES];
+        queryLongitudes = new double[NUM_QUERIES];
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            int city = random.nextInt(NUM_CITIES);
+            queryLatitudes[i] = cityLatitudes[city]
+                    + random.nextGaussian() * 0.1;
+            queryLongitudes[i] = cityLongitudes[city]
+                    + random.nextGaussian() * 0.1;
+        }
+    }
+
+    @Benchmark
+    public List<Neighbor> radius10Km() {
+        int q = nextQuery();
+        return index.withinRadius(queryLatitudes[q], queryLongitudes[q],
+                10, 100);
+    }
+
+    @Benchmark
+    public List<Neighbor> radius100Km() {
+        int q = nextQuery();
+        return index.withinRadius(queryLatitudes[q], queryLongitudes[q],
+                100, 100);
+    }
+
+    @Benchmark
+    public List<Neighbor> nearest10() {
+        int q = nextQuery();
+        return index.nearest(queryLatitudes[q], queryLongitudes[q], 10);
+    }
+
+    @Benchmark
+    public int linearScan10Km() {
+        int q = nextQuery();
+        double lat1 = Math.toRadians(queryLatitudes[q]);
+        double lng1 = Math.toRadians(queryLongitudes[q]);
+        int found = 0;
+        for (int i = 0; i < locations; i++) {
+            double lat2 = Math.toRadians(latitudes[i]);
+            double sinLat = Math.sin((lat2 - lat1) / 2);
+            double sinLng = Math.sin((Math.toRadians(longitudes[i]) - lng1) / 2);
+            double a = sinLat * sinLat
+                    + Math.cos(lat1) * Math.cos(lat2) * sinLng * sinLng;
+            double distance = 2 * LocationSpatialIndex.EARTH_RADIUS_KM
+                    * Math.asin(Math.min(1, Math.sqrt(a)));
+            if (distance <= 10) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private int nextQuery() {
+        query = (query + 1) & (NUM_QUERIES - 1);
+        return query;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+}
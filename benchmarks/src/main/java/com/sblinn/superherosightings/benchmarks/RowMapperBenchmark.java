@@ -0,0 +1,94 @@
+package com.sblinn.superherosightings.benchmarks;
+
+import com.sblinn.superherosightings.dao.LocationDaoDB.LocationMapper;
+import com.sblinn.superherosightings.dao.OrganizationDaoDB.OrganizationMapper;
+import com.sblinn.superherosightings.dao.SightingDaoDB.SightingMapper;
+import com.sblinn.superherosightings.dao.SuperpowerDaoDB.SuperpowerMapper;
+import com.sblinn.superherosightings.dto.Location;
+import com.sblinn.superherosightings.dto.Organization;
+import com.sblinn.superherosightings.dto.Sighting;
+import com.sblinn.superherosightings.dto.Superpower;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Cost of mapping a whole result set through each DAO RowMapper, the
+ * way JdbcTemplate.query does.
+ *
+ * @author Sara Blinn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RowMapperBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private SimpleResultSet locations;
+    private SimpleResultSet sightings;
+    private SimpleResultSet organizations;
+    private SimpleResultSet superpowers;
+
+
+    @Setup(Level.Trial)
+    public void createResultSets() {
+        locations = SyntheticResultSets.locations(rows);
+        sightings = SyntheticResultSets.sightings(rows);
+        organizations = SyntheticResultSets.organizations(rows);
+        superpowers = SyntheticResultSets.superpowers(rows);
+    }
+
+    @Benchmark
+    public List<Location> locationMapper() throws SQLException {
+        return mapAll(locations, new LocationMapper());
+    }
+
+    @Benchmark
+    public List<Sighting> sightingMapper() throws SQLException {
+        return mapAll(sightings, new SightingMapper());
+    }
+
+    @Benchmark
+    public List<Organization> organizationMapper() throws SQLException {
+        return mapAll(organizations, new OrganizationMapper());
+    }
+
+    @Benchmark
+    public List<Superpower> superpowerMapper() throws SQLException {
+        return mapAll(superpowers, new SuperpowerMapper());
+    }
+
+    private static <T> List<T> mapAll(ResultSet rs, RowMapper<T> mapper)
+            throws SQLException {
+
+        rs.beforeFirst();
+        List<T> results = new ArrayList<>();
+        int rowNum = 0;
+        while (rs.next()) {
+            results.add(mapper.mapRow(rs, rowNum++));
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.sblinn.superherosightings.benchmarks;
+
+import com.sblinn.superherosightings.controller.SightingViewModel;
+import com.sblinn.superherosightings.dto.Location;
+import com.sblinn.superherosightings.dto.Sighting;
+import com.sblinn.superherosightings.dto.Superhero;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * View model assembly costs on the sightings page: formatting each
+ * sighting's date, and ordering the list in memory by date, superhero
+ * or location name the way displaySightingsInOrder did before the
+ * ordering moved into the paged SQL query. The sort benchmarks are
+ * the baseline that query is measured against.
+ *
+ * @author Sara Blinn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SightingViewModelBenchmark {
+
+    private static final int NUM_SUPERHEROS = 500;
+    private static final int NUM_LOCATIONS = 2000;
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private List<SightingViewModel> vmSightings;
+
+
+    @Setup(Level.Trial)
+    public void createViewModels() {
+        Random random = new Random(42);
+
+        List<Superhero> superheros = new ArrayList<>();
+        for (int i = 0; i < NUM_SUPERHEROS; i++) {
+            Superhero superhero = new Superhero();
+            superhero.setId(i + 1);
+            superhero.setName("Superhero " + random.nextInt(1_000_000));
+            superhero.setDescription("Guy with superpowers.");
+            superheros.add(superhero);
+        }
+
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < NUM_LOCATIONS; i++) {
+            Location location = new Location();
+            location.setId(i + 1);
+            location.setName("Location " + random.nextInt(1_000_000));
+            location.setCity("Chicago");
+            location.setCountry("US");
+            locations.add(location);
+        }
+
+        // sightings arrive in id order, not date order
+        vmSightings = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Superhero superhero
+                    = superheros.get(random.nextInt(NUM_SUPERHEROS));
+            Location location = locations.get(random.nextInt(NUM_LOCATIONS));
+
+            Sighting sighting = new Sighting();
+            sighting.setId(i + 1);
+            sighting.setSuperhero_id(superhero.getId());
+            sighting.setLocation_id(location.getId());
+            sighting.setDate(SyntheticResultSets.sightingDate(
+                    random.nextInt(rows)));
+
+            SightingViewModel vm = new SightingViewModel();
+            vm.setSighting(sighting);
+            vm.setSuperhero(superhero);
+            vm.setLocation(location);
+            vmSightings.add(vm);
+        }
+    }
+
+    @Benchmark
+    public void formatDatetimes(Blackhole blackhole) {
+        for (SightingViewModel vm : vmSightings) {
+            blackhole.consume(vm.getDatetimeStr());
+        }
+    }
+
+    @Benchmark
+    public List<SightingViewModel> sortByDateNewestFirst() {
+        List<SightingViewModel> sorted = new ArrayList<>(vmSightings);
+        sorted.sort((s1, s2)
+                -> s1.getSighting().getDate().compareTo(
+                        s2.getSighting().getDate()));
+        Collections.reverse(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    public List<SightingViewModel> sortBySuperhero() {
+        List<SightingViewModel> sorted = new ArrayList<>(vmSightings);
+        sorted.sort((s1, s2)
+                -> (s1.getSuperhero().getName())
+                        .compareToIgnoreCase(s2.getSuperhero().getName()));
+        return sorted;
+    }
+
+    @Benchmark
+    public List<SightingViewModel> sortByLocation() {
+        List<SightingViewModel> sorted = new ArrayList<>(vmSightings);
+        sorted.sort((s1, s2)
+                -> (s1.getLocation().getName())
+                        .compareToIgnoreCase(s2.getLocation().getName()));
+        return sorted;
+    }
+
+}
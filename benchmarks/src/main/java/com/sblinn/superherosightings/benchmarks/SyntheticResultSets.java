@@ -0,0 +1,140 @@
+package com.sblinn.superherosightings.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import org.h2.tools.SimpleResultSet;
+import org.h2.tools.SimpleRowSource;
+
+/**
+ * In-memory ResultSets shaped like the rows the DAOs read from MySQL.
+ * Rows are taken in turn from a fixed pool, so a million row result
+ * set costs no more memory than a thousand row one and reading a row
+ * does not allocate. The result sets can be rewound with beforeFirst.
+ *
+ * @author Sara Blinn
+ */
+final class SyntheticResultSets {
+
+    private static final int POOL_SIZE = 1024;
+
+    private static final LocalDateTime FIRST_SIGHTING
+            = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    private SyntheticResultSets() {
+    }
+
+    static SimpleResultSet locations(int rowCount) {
+        SimpleResultSet rs = new SimpleResultSet(new PooledRows(rowCount,
+                i -> new Object[] {i + 1, 0, "Location " + i,
+                    i + " Main Street", "Chicago", "IL", "US",
+                    latitude(i), longitude(i), "Somewhere downtown."}));
+        rs.addColumn("id", Types.INTEGER, 10, 0);
+        rs.addColumn("version", Types.INTEGER, 10, 0);
+        rs.addColumn("name", Types.VARCHAR, 50, 0);
+        rs.addColumn("street_address", Types.VARCHAR, 50, 0);
+        rs.addColumn("city", Types.VARCHAR, 50, 0);
+        rs.addColumn("state", Types.CHAR, 2, 0);
+        rs.addColumn("country", Types.CHAR, 2, 0);
+        rs.addColumn("latitude", Types.DECIMAL, 9, 6);
+        rs.addColumn("longitude", Types.DECIMAL, 9, 6);
+        rs.addColumn("description", Types.VARCHAR, 100, 0);
+        rs.setAutoClose(false);
+        return rs;
+    }
+
+    static SimpleResultSet sightings(int rowCount) {
+        SimpleResultSet rs = new SimpleResultSet(new PooledRows(rowCount,
+                i -> new Object[] {i + 1, 0, i % 97 + 1, i % 89 + 1,
+                    Timestamp.valueOf(sightingDate(i))}));
+        rs.addColumn("id", Types.INTEGER, 10, 0);
+        rs.addColumn("version", Types.INTEGER, 10, 0);
+        rs.addColumn("location_id", Types.INTEGER, 10, 0);
+        rs.addColumn("superhero_id", Types.INTEGER, 10, 0);
+        rs.addColumn("date", Types.TIMESTAMP, 0, 0);
+        rs.setAutoClose(false);
+        return rs;
+    }
+
+    static SimpleResultSet organizations(int rowCount) {
+        SimpleResultSet rs = new SimpleResultSet(new PooledRows(rowCount,
+                i -> new Object[] {i + 1, 0, "Organization " + i,
+                    "Heroes for hire.", i + " Tower Road", "Gotham",
+                    "US"}));
+        rs.addColumn("id", Types.INTEGER, 10, 0);
+        rs.addColumn("version", Types.INTEGER, 10, 0);
+        rs.addColumn("name", Types.VARCHAR, 50, 0);
+        rs.addColumn("description", Types.VARCHAR, 100, 0);
+        rs.addColumn("street_address", Types.VARCHAR, 50, 0);
+        rs.addColumn("city", Types.VARCHAR, 50, 0);
+        rs.addColumn("country", Types.CHAR, 2, 0);
+        rs.setAutoClose(false);
+        return rs;
+    }
+
+    static SimpleResultSet superpowers(int rowCount) {
+        SimpleResultSet rs = new SimpleResultSet(new PooledRows(rowCount,
+                i -> new Object[] {i + 1, 0, "Superpower " + i}));
+        rs.addColumn("id", Types.INTEGER, 10, 0);
+        rs.addColumn("version", Types.INTEGER, 10, 0);
+        rs.addColumn("name", Types.VARCHAR, 50, 0);
+        rs.setAutoClose(false);
+        return rs;
+    }
+
+    static LocalDateTime sightingDate(int i) {
+        return FIRST_SIGHTING.plusMinutes(37L * i);
+    }
+
+    private static BigDecimal latitude(int i) {
+        return BigDecimal.valueOf(41_000_000 + i * 37, 6);
+    }
+
+    private static BigDecimal longitude(int i) {
+        return BigDecimal.valueOf(-87_000_000 - i * 41, 6);
+    }
+
+
+    /**
+     * Hands out rowCount rows, cycling through a pool of prebuilt ones.
+     */
+    private static final class PooledRows implements SimpleRowSource {
+
+        private final Object[][] pool = new Object[POOL_SIZE][];
+        private final int rowCount;
+        private int rowNum;
+
+        private PooledRows(int rowCount, RowFactory factory) {
+            this.rowCount = rowCount;
+            for (int i = 0; i < POOL_SIZE; i++) {
+                pool[i] = factory.row(i);
+            }
+        }
+
+        @Override
+        public Object[] readRow() {
+            if (rowNum == rowCount) {
+                return null;
+            }
+            return pool[rowNum++ % POOL_SIZE];
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void reset() {
+            rowNum = 0;
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface RowFactory {
+
+        Object[] row(int i);
+    }
+
+}